@@ -0,0 +1,115 @@
+package net.funkyjava.gametheory.cscfrm.vector;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import net.funkyjava.gametheory.cscfrm.CSCFRMKernels;
+import net.funkyjava.gametheory.cscfrm.CSCFRMScalarKernels;
+
+/**
+ * {@link CSCFRMKernels} implemented with the incubating Vector API of JDK 17+, with the preferred
+ * vector width of the platform. Lanes perform the same operations as
+ * {@link CSCFRMScalarKernels}, products are never fused with sums, so the results are identical.
+ * Tails shorter than a vector are computed with scalar loops.
+ *
+ * The JVM must run with --add-modules jdk.incubator.vector, else {@link CSCFRMKernels#get()} falls
+ * back to the scalar kernels.
+ *
+ * @author Pierre Mardon
+ *
+ */
+public final class CSCFRMVectorApiKernels extends CSCFRMKernels {
+
+  private static final VectorSpecies<Double> species = DoubleVector.SPECIES_PREFERRED;
+
+  @Override
+  public void regretMatching(final double[][] regrets, final double[][] strategy,
+      final int nbActions, final int length) {
+    final int bound = species.loopBound(length);
+    final DoubleVector uniform = DoubleVector.broadcast(species, 1.0d / nbActions);
+    final DoubleVector zero = DoubleVector.zero(species);
+    for (int i = 0; i < bound; i += species.length()) {
+      DoubleVector totalRegret = zero;
+      for (int action = 0; action < nbActions; action++) {
+        totalRegret = totalRegret.add(DoubleVector.fromArray(species, regrets[action], i));
+      }
+      final VectorMask<Double> noRegret = totalRegret.compare(VectorOperators.GT, 0d).not();
+      for (int action = 0; action < nbActions; action++) {
+        DoubleVector.fromArray(species, regrets[action], i).div(totalRegret)
+            .blend(uniform, noRegret).intoArray(strategy[action], i);
+      }
+    }
+    for (int i = bound; i < length; i++) {
+      regretMatchingAt(regrets, strategy, nbActions, i);
+    }
+  }
+
+  private static void regretMatchingAt(final double[][] regrets, final double[][] strategy,
+      final int nbActions, final int i) {
+    double totalRegret = 0;
+    for (int action = 0; action < nbActions; action++) {
+      totalRegret += regrets[action][i];
+    }
+    if (totalRegret > 0) {
+      for (int action = 0; action < nbActions; action++) {
+        strategy[action][i] = regrets[action][i] / totalRegret;
+      }
+    } else {
+      final double uniform = 1.0d / nbActions;
+      for (int action = 0; action < nbActions; action++) {
+        strategy[action][i] = uniform;
+      }
+    }
+  }
+
+  @Override
+  public void multiply(final double[] a, final double[] b, final double[] dst, final int length) {
+    final int bound = species.loopBound(length);
+    for (int i = 0; i < bound; i += species.length()) {
+      DoubleVector.fromArray(species, a, i).mul(DoubleVector.fromArray(species, b, i))
+          .intoArray(dst, i);
+    }
+    for (int i = bound; i < length; i++) {
+      dst[i] = a[i] * b[i];
+    }
+  }
+
+  @Override
+  public void multiplyAdd(final double[] a, final double[] b, final double[] acc,
+      final int length) {
+    final int bound = species.loopBound(length);
+    for (int i = 0; i < bound; i += species.length()) {
+      DoubleVector.fromArray(species, acc, i)
+          .add(DoubleVector.fromArray(species, a, i).mul(DoubleVector.fromArray(species, b, i)))
+          .intoArray(acc, i);
+    }
+    for (int i = bound; i < length; i++) {
+      acc[i] += a[i] * b[i];
+    }
+  }
+
+  @Override
+  public void add(final double[] src, final double[] acc, final int length) {
+    final int bound = species.loopBound(length);
+    for (int i = 0; i < bound; i += species.length()) {
+      DoubleVector.fromArray(species, acc, i).add(DoubleVector.fromArray(species, src, i))
+          .intoArray(acc, i);
+    }
+    for (int i = bound; i < length; i++) {
+      acc[i] += src[i];
+    }
+  }
+
+  @Override
+  public void subtract(final double[] a, final double[] b, final double[] dst, final int length) {
+    final int bound = species.loopBound(length);
+    for (int i = 0; i < bound; i += species.length()) {
+      DoubleVector.fromArray(species, a, i).sub(DoubleVector.fromArray(species, b, i))
+          .intoArray(dst, i);
+    }
+    for (int i = bound; i < length; i++) {
+      dst[i] = a[i] - b[i];
+    }
+  }
+}
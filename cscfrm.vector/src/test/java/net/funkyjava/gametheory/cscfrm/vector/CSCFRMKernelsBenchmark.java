@@ -0,0 +1,118 @@
+package net.funkyjava.gametheory.cscfrm.vector;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.funkyjava.gametheory.cscfrm.CSCFRMKernels;
+import net.funkyjava.gametheory.cscfrm.CSCFRMScalarKernels;
+
+/**
+ * JMH comparison of the scalar and Vector API kernels on one node of a vectorized trainer. Run it
+ * with {@link #main(String[])} from the test classpath.
+ *
+ * @author Pierre Mardon
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class CSCFRMKernelsBenchmark {
+
+  @Param({"scalar", "vector"})
+  private String implementation;
+
+  @Param({"169"})
+  private int length;
+
+  @Param({"4"})
+  private int nbActions;
+
+  private CSCFRMKernels kernels;
+  private double[][] regrets;
+  private double[][] strategy;
+  private double[] reach;
+  private double[] values;
+  private double[] util;
+
+  /**
+   * Create the kernels and random node data
+   */
+  @Setup
+  public void setup() {
+    kernels =
+        implementation.equals("vector") ? new CSCFRMVectorApiKernels() : new CSCFRMScalarKernels();
+    final Random random = new Random(0);
+    regrets = new double[nbActions][length];
+    strategy = new double[nbActions][length];
+    for (int action = 0; action < nbActions; action++) {
+      for (int i = 0; i < length; i++) {
+        regrets[action][i] = random.nextInt(4) == 0 ? 0 : random.nextDouble();
+      }
+    }
+    reach = new double[length];
+    values = new double[length];
+    util = new double[length];
+    for (int i = 0; i < length; i++) {
+      reach[i] = random.nextDouble();
+    }
+  }
+
+  /**
+   * Regret matching of a node for all chances
+   *
+   * @return the strategy
+   */
+  @Benchmark
+  public double[][] regretMatching() {
+    kernels.regretMatching(regrets, strategy, nbActions, length);
+    return strategy;
+  }
+
+  /**
+   * The dense loops of one node visit : regret matching, reach and strategy sums products, utility
+   * accumulation and regret deltas
+   *
+   * @return the utility
+   */
+  @Benchmark
+  public double[] nodeLoops() {
+    final CSCFRMKernels kernels = this.kernels;
+    final int length = this.length;
+    kernels.regretMatching(regrets, strategy, nbActions, length);
+    for (int action = 0; action < nbActions; action++) {
+      kernels.multiply(reach, strategy[action], values, length);
+      kernels.multiplyAdd(strategy[action], regrets[action], util, length);
+      kernels.subtract(regrets[action], util, values, length);
+    }
+    return util;
+  }
+
+  /**
+   * Run the benchmark
+   *
+   * @param args unused
+   * @throws RunnerException when the benchmark fails
+   */
+  public static void main(final String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(CSCFRMKernelsBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
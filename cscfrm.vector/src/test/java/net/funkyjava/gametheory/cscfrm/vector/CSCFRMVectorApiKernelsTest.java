@@ -0,0 +1,90 @@
+package net.funkyjava.gametheory.cscfrm.vector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.cscfrm.CSCFRMKernels;
+import net.funkyjava.gametheory.cscfrm.CSCFRMScalarKernels;
+
+/**
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public class CSCFRMVectorApiKernelsTest {
+
+  private static final int nbActions = 4;
+  private static final int length = 169;
+
+  private static double[] random(final Random random, final int length) {
+    final double[] res = new double[length];
+    for (int i = 0; i < length; i++) {
+      // Some zeros to cover the uniform strategies
+      res[i] = random.nextInt(4) == 0 ? 0 : random.nextDouble() * 10;
+    }
+    return res;
+  }
+
+  private static double[][] random(final Random random, final int nbRows, final int length) {
+    final double[][] res = new double[nbRows][];
+    for (int row = 0; row < nbRows; row++) {
+      res[row] = random(random, length);
+    }
+    return res;
+  }
+
+  private static void checkAll(final CSCFRMKernels kernels, final int length) {
+    final CSCFRMKernels scalar = new CSCFRMScalarKernels();
+    final Random random = new Random(length);
+    final double[][] regrets = random(random, nbActions, length);
+    // All zero regrets for some chances
+    for (int action = 0; action < nbActions; action++) {
+      regrets[action][0] = 0;
+    }
+    final double[][] expectedStrategy = new double[nbActions][length];
+    final double[][] strategy = new double[nbActions][length];
+    scalar.regretMatching(regrets, expectedStrategy, nbActions, length);
+    kernels.regretMatching(regrets, strategy, nbActions, length);
+    for (int action = 0; action < nbActions; action++) {
+      assertArrayEquals(expectedStrategy[action], strategy[action], 0);
+    }
+    final double[] a = random(random, length);
+    final double[] b = random(random, length);
+    final double[] acc = random(random, length);
+    final double[] expected = new double[length];
+    final double[] actual = new double[length];
+    scalar.multiply(a, b, expected, length);
+    kernels.multiply(a, b, actual, length);
+    assertArrayEquals(expected, actual, 0);
+    System.arraycopy(acc, 0, expected, 0, length);
+    System.arraycopy(acc, 0, actual, 0, length);
+    scalar.multiplyAdd(a, b, expected, length);
+    kernels.multiplyAdd(a, b, actual, length);
+    assertArrayEquals(expected, actual, 0);
+    scalar.add(a, expected, length);
+    kernels.add(a, actual, length);
+    assertArrayEquals(expected, actual, 0);
+    scalar.subtract(a, b, expected, length);
+    kernels.subtract(a, b, actual, length);
+    assertArrayEquals(expected, actual, 0);
+  }
+
+  /**
+   * The Vector API kernels must give exactly the scalar kernels results, and be loaded as the
+   * kernels service
+   */
+  @Test
+  public void testSameAsScalar() {
+    final CSCFRMKernels kernels = new CSCFRMVectorApiKernels();
+    for (int length : new int[] {1, 7, 8, CSCFRMVectorApiKernelsTest.length}) {
+      checkAll(kernels, length);
+    }
+    log.info("Loaded kernels : {}", CSCFRMKernels.get().getClass().getName());
+    assertTrue(CSCFRMKernels.get() instanceof CSCFRMVectorApiKernels);
+  }
+}
@@ -0,0 +1,82 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size bit set whose bits are set and cleared with CAS operations only
+ *
+ * @author Pierre Mardon
+ *
+ */
+final class AtomicBitSet {
+
+  private final AtomicLongArray words;
+
+  /**
+   * Constructor
+   *
+   * @param nbBits number of bits
+   */
+  AtomicBitSet(final int nbBits) {
+    words = new AtomicLongArray((nbBits + 63) >>> 6);
+  }
+
+  /**
+   * Set a bit if it is not already set
+   *
+   * @param bit the bit index
+   * @return true when the bit was clear and is now set by this call
+   */
+  boolean trySet(final int bit) {
+    final AtomicLongArray words = this.words;
+    final int wordIndex = bit >>> 6;
+    final long mask = 1L << bit;
+    while (true) {
+      final long word = words.get(wordIndex);
+      if ((word & mask) != 0) {
+        return false;
+      }
+      if (words.compareAndSet(wordIndex, word, word | mask)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Clear a bit
+   *
+   * @param bit the bit index
+   */
+  void clear(final int bit) {
+    final AtomicLongArray words = this.words;
+    final int wordIndex = bit >>> 6;
+    final long mask = ~(1L << bit);
+    while (true) {
+      final long word = words.get(wordIndex);
+      if (words.compareAndSet(wordIndex, word, word & mask)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Get a bit
+   *
+   * @param bit the bit index
+   * @return the bit value
+   */
+  boolean get(final int bit) {
+    return (words.get(bit >>> 6) & (1L << bit)) != 0;
+  }
+
+  /**
+   * Clear all bits. Not atomic with respect to concurrent modifications.
+   */
+  void clearAll() {
+    final AtomicLongArray words = this.words;
+    final int length = words.length();
+    for (int i = 0; i < length; i++) {
+      words.set(i, 0);
+    }
+  }
+}
@@ -0,0 +1,21 @@
+package net.funkyjava.gametheory.cscfrm;
+
+/**
+ * Chances trainer that can also perform the CSCFRM iterations of a batch of chances at once
+ *
+ * @author Pierre Mardon
+ *
+ * @param <Chances> the chances class
+ */
+public interface CSCFRMBatchChancesTrainer<Chances extends CSCFRMChances>
+    extends CSCFRMChancesTrainer<Chances> {
+
+  /**
+   * Iterates CSCFRM for each chances of a batch. The chances must not collide with each other, as
+   * provided by {@link CSCFRMChancesSynchronizer#getChances(CSCFRMChances[], int)}.
+   *
+   * @param batch the batch of chances
+   * @param count the number of chances in the batch
+   */
+  void train(Chances[] batch, int count);
+}
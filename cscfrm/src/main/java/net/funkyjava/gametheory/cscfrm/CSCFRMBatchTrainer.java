@@ -0,0 +1,261 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.AtomicDoubleArray;
+
+import net.funkyjava.gametheory.extensiveformgame.ActionTree;
+import net.funkyjava.gametheory.extensiveformgame.LinkedActionTreeNode;
+import net.funkyjava.gametheory.extensiveformgame.PlayerNode;
+
+/**
+ * CFR+ chances sampling trainer walking the action tree once for a batch of non-colliding chances.
+ * Each chances of the batch is a lane carrying its own realization weights, strategies and
+ * utilities, so that node dispatch and children loads are shared by the lanes and the inner loops
+ * run over the lanes.
+ *
+ * As the chances of a batch don't collide, their lanes update distinct regret and strategy rows.
+ * Each lane performs the same floating point operations in the same order as a
+ * {@link CSCFRMTrainer} without discounting nor pruning, so training a batch produces the same
+ * data as training its chances one after the other.
+ *
+ * @author Pierre Mardon
+ *
+ * @param <Chances> the chances class
+ */
+public class CSCFRMBatchTrainer<Chances extends CSCFRMChances>
+    implements CSCFRMBatchChancesTrainer<Chances> {
+
+  private final int nbRounds;
+  private final int nbPlayers;
+  private final int maxDepth;
+  private final int maxNbActions;
+  private final LinkedActionTreeNode<?, Chances> rootNode;
+  private final CSCFRMStore store;
+  private final int[][][] nodesOffsets;
+  private final int[][] chancesStrides;
+  private final AtomicDoubleArray utilitySum;
+  private final AtomicLong iterations;
+  private final Chances[] single;
+  private int capacity;
+  private Chances[] batch;
+  private int count;
+  // Lane k of a player indexed array of length nbPlayers starts at k * nbPlayers, lane k of an
+  // action indexed array starts at k * maxNbActions
+  private int[][][] lanesChancesOffsets;
+  private double[] realizationWeights;
+  private int[][] depthRegretIndexes;
+  private double[][] depthOldReal;
+  private double[][] depthUtil;
+  private double[][] depthActionUtil;
+  private double[][] depthStrategy;
+  private double[][] depthTerminalUtil;
+  private long visitedNodes;
+
+  /**
+   * Constructor
+   *
+   * @param data the CSCFRM data
+   */
+  @SuppressWarnings("unchecked")
+  public CSCFRMBatchTrainer(final CSCFRMData<?, Chances> data) {
+    final ActionTree<?, Chances> actionTree = data.getGameActionTree();
+    this.maxDepth = actionTree.getMaxDepth();
+    this.maxNbActions = actionTree.getMaxNbActions();
+    this.nbRounds = data.getRoundChancesSizes().length;
+    this.nbPlayers = data.getNbPlayers();
+    this.utilitySum = data.getUtilitySum();
+    this.iterations = data.getIterations();
+    rootNode = actionTree.getRoot();
+    final CSCFRMStore store = this.store = data.getStore();
+    nodesOffsets = store.getNodesOffsets();
+    chancesStrides = store.getChancesStrides();
+    single = (Chances[]) new CSCFRMChances[1];
+    ensureCapacity(1);
+  }
+
+  private final void ensureCapacity(final int count) {
+    if (count <= capacity) {
+      return;
+    }
+    final int nbPlayers = this.nbPlayers;
+    final int maxDepth = this.maxDepth;
+    final int maxNbActions = this.maxNbActions;
+    capacity = count;
+    lanesChancesOffsets = new int[count][nbRounds][nbPlayers];
+    realizationWeights = new double[count * nbPlayers];
+    depthRegretIndexes = new int[maxDepth][count];
+    depthOldReal = new double[maxDepth][count];
+    depthUtil = new double[maxDepth][count * nbPlayers];
+    depthActionUtil = new double[maxDepth][count * maxNbActions];
+    depthStrategy = new double[maxDepth][count * maxNbActions];
+    // Terminal children are one level below the deepest player nodes
+    depthTerminalUtil = new double[maxDepth + 1][count * nbPlayers];
+  }
+
+  @Override
+  public final void train(final Chances chances) {
+    final Chances[] single = this.single;
+    single[0] = chances;
+    train(single, 1);
+    single[0] = null;
+  }
+
+  @Override
+  public final void train(final Chances[] batch, final int count) {
+    ensureCapacity(count);
+    final int nbRounds = this.nbRounds;
+    final int nbPlayers = this.nbPlayers;
+    final int[][] chancesStrides = this.chancesStrides;
+    for (int k = 0; k < count; k++) {
+      final int[][] playersChances = batch[k].getPlayersChances();
+      final int[][] chancesOffsets = lanesChancesOffsets[k];
+      for (int round = 0; round < nbRounds; round++) {
+        final int[] roundChances = playersChances[round];
+        final int[] roundStrides = chancesStrides[round];
+        final int[] roundOffsets = chancesOffsets[round];
+        for (int player = 0; player < nbPlayers; player++) {
+          roundOffsets[player] = roundChances[player] * roundStrides[player];
+        }
+      }
+    }
+    final double[] realizationWeights = this.realizationWeights;
+    final int nbWeights = count * nbPlayers;
+    for (int i = 0; i < nbWeights; i++) {
+      realizationWeights[i] = 1;
+    }
+    this.batch = batch;
+    this.count = count;
+    final double[] utility = rec(0, rootNode);
+    this.batch = null;
+    final AtomicDoubleArray utilitySum = this.utilitySum;
+    final AtomicLong iterations = this.iterations;
+    for (int k = 0; k < count; k++) {
+      final int laneOffset = k * nbPlayers;
+      for (int i = 0; i < nbPlayers; i++) {
+        utilitySum.addAndGet(i, utility[laneOffset + i]);
+      }
+      iterations.incrementAndGet();
+    }
+  }
+
+  @Override
+  public long getVisitedNodes() {
+    return visitedNodes;
+  }
+
+  private final double[] rec(final int depth, final LinkedActionTreeNode<?, Chances> node) {
+    final int nbPlayers = this.nbPlayers;
+    final int count = this.count;
+    switch (node.getNodeType()) {
+
+      case PAYOUTS_NO_CHANCE: {
+        final double[] payouts = node.getPayoutsNoChance();
+        final double[] util = depthTerminalUtil[depth];
+        for (int k = 0; k < count; k++) {
+          System.arraycopy(payouts, 0, util, k * nbPlayers, nbPlayers);
+        }
+        return util;
+      }
+
+      case CHANCES_PAYOUTS: {
+        final Chances[] batch = this.batch;
+        final double[] util = depthTerminalUtil[depth];
+        for (int k = 0; k < count; k++) {
+          System.arraycopy(node.getChancesPayouts().getPayouts(batch[k]), 0, util, k * nbPlayers,
+              nbPlayers);
+        }
+        return util;
+      }
+
+      case PLAYER:
+        final int maxNbActions = this.maxNbActions;
+        final PlayerNode<?> pNode = node.getPlayerNode();
+        final int index = node.getPlayerRoundActionIndex();
+        final int round = pNode.getRound();
+        final int player = pNode.getPlayer();
+        final CSCFRMStore store = this.store;
+        final int nodeOffset = nodesOffsets[round][player][index];
+        final int nbChildren = pNode.getNbActions();
+        final LinkedActionTreeNode<?, Chances>[] children = node.getChildren();
+        final int[][][] lanesChancesOffsets = this.lanesChancesOffsets;
+        final int[] regretIndexes = depthRegretIndexes[depth];
+        final double[] oldReal = depthOldReal[depth];
+        final double[] strategy = depthStrategy[depth];
+        final double[] util = depthUtil[depth];
+        final double[] actionsUtil = depthActionUtil[depth];
+        final double[] realizationWeights = this.realizationWeights;
+        for (int k = 0; k < count; k++) {
+          final int regretIndex =
+              regretIndexes[k] = lanesChancesOffsets[k][round][player] + nodeOffset;
+          final int stratIndex = regretIndex + nbChildren;
+          final int laneActions = k * maxNbActions;
+          final int lanePlayers = k * nbPlayers;
+          for (int p = 0; p < nbPlayers; p++) {
+            util[lanePlayers + p] = 0;
+          }
+          double totalRegret = 0;
+          for (int action = 0; action < nbChildren; action++) {
+            actionsUtil[laneActions + action] = 0;
+            double actionRegret = store.getRegret(round, player, regretIndex + action);
+            if (actionRegret < 0) {
+              store.setRegret(round, player, regretIndex + action, actionRegret = 0);
+            }
+            // Regret matching
+            totalRegret +=
+                strategy[laneActions + action] = (actionRegret > 0 ? actionRegret : 0);
+          }
+          final double playerRealWeight = realizationWeights[lanePlayers + player];
+          if (totalRegret > 0) {
+            for (int action = 0; action < nbChildren; action++) {
+              store.addStrategy(round, player, stratIndex + action,
+                  playerRealWeight * (strategy[laneActions + action] /= totalRegret));
+            }
+          } else {
+            for (int action = 0; action < nbChildren; action++) {
+              store.addStrategy(round, player, stratIndex + action,
+                  playerRealWeight * (strategy[laneActions + action] = (1.0d / nbChildren)));
+            }
+          }
+        }
+        visitedNodes += count;
+        final int nextDepth = depth + 1;
+        for (int action = 0; action < nbChildren; action++) {
+          for (int k = 0; k < count; k++) {
+            final int weightIndex = k * nbPlayers + player;
+            oldReal[k] = realizationWeights[weightIndex];
+            realizationWeights[weightIndex] *= strategy[k * maxNbActions + action];
+          }
+          final double[] childUtil = rec(nextDepth, children[action]);
+          for (int k = 0; k < count; k++) {
+            final int lanePlayers = k * nbPlayers;
+            final double actionProba = strategy[k * maxNbActions + action];
+            for (int p = 0; p < nbPlayers; p++) {
+              util[lanePlayers + p] += actionProba * childUtil[lanePlayers + p];
+            }
+            actionsUtil[k * maxNbActions + action] = childUtil[lanePlayers + player];
+            realizationWeights[lanePlayers + player] = oldReal[k];
+          }
+        }
+        for (int k = 0; k < count; k++) {
+          final int lanePlayers = k * nbPlayers;
+          final int laneActions = k * maxNbActions;
+          double weight = 1;
+          for (int p = 0; p < nbPlayers; p++) {
+            if (p != player) {
+              weight *= realizationWeights[lanePlayers + p];
+            }
+          }
+          final double playerUtil = util[lanePlayers + player];
+          final int regretIndex = regretIndexes[k];
+          for (int action = 0; action < nbChildren; action++) {
+            store.addRegret(round, player, regretIndex + action,
+                weight * (actionsUtil[laneActions + action] - playerUtil));
+          }
+        }
+        return util;
+    }
+    return null;
+  }
+
+}
@@ -0,0 +1,299 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import lombok.Getter;
+import net.funkyjava.gametheory.extensiveformgame.ActionTree;
+import net.funkyjava.gametheory.extensiveformgame.LinkedActionTreeNode;
+import net.funkyjava.gametheory.extensiveformgame.PlayerNode;
+
+/**
+ * Best response and exploitability of the average strategies for games with a single chances
+ * round. For each player, the other players' reach vectors are propagated down the action tree
+ * with their average strategies, and the player's counterfactual values take the best action at
+ * its nodes. Terminal nodes are evaluated by a {@link CSCFRMVectorEvaluator}.
+ * 
+ * The computation is split across each player's chances with fork-join tasks. It works on a
+ * {@link CSCFRMStrategySnapshot} so that trainers can keep running meanwhile.
+ * 
+ * @author Pierre Mardon
+ *
+ * @param <Chances> the chances class
+ */
+public class CSCFRMBestResponse<Chances> {
+
+  /**
+   * Default number of the best responding player's chances walked by a fork-join leaf task
+   */
+  public static final int defaultChancesPerTask = 8;
+
+  /**
+   * Best response computation result
+   */
+  public static final class Result {
+    /**
+     * Number of iterations of the snapshot
+     */
+    @Getter
+    private final long iterations;
+    /**
+     * Each player's best response value against the other players' average strategies
+     */
+    @Getter
+    private final double[] bestResponseValues;
+    /**
+     * Each player's value when all players play their average strategies
+     */
+    @Getter
+    private final double[] profileValues;
+    /**
+     * Sum of the players' best response gains, the sum of the best response values for zero-sum
+     * games
+     */
+    @Getter
+    private final double exploitability;
+
+    Result(final long iterations, final double[] bestResponseValues,
+        final double[] profileValues) {
+      this.iterations = iterations;
+      this.bestResponseValues = bestResponseValues;
+      this.profileValues = profileValues;
+      double exploitability = 0;
+      for (int player = 0; player < bestResponseValues.length; player++) {
+        exploitability += bestResponseValues[player] - profileValues[player];
+      }
+      this.exploitability = exploitability;
+    }
+  }
+
+  private final int nbPlayers;
+  private final int[] chancesSizes;
+  private final int[][] nodesOffsets;
+  private final int[] chancesStrides;
+  private final int maxDepth;
+  private final LinkedActionTreeNode<?, Chances> rootNode;
+  private final CSCFRMVectorEvaluator<Chances> evaluator;
+  private final ForkJoinPool pool;
+  private final int chancesPerTask;
+
+  /**
+   * Constructor using the common fork-join pool
+   * 
+   * @param data the CSCFRM data of a single chances round game
+   * @param evaluator the terminal nodes evaluator
+   */
+  public CSCFRMBestResponse(final CSCFRMData<?, Chances> data,
+      final CSCFRMVectorEvaluator<Chances> evaluator) {
+    this(data, evaluator, ForkJoinPool.commonPool(), defaultChancesPerTask);
+  }
+
+  /**
+   * Constructor
+   * 
+   * @param data the CSCFRM data of a single chances round game
+   * @param evaluator the terminal nodes evaluator
+   * @param pool the fork-join pool executing the tasks
+   * @param chancesPerTask the number of the best responding player's chances walked by a leaf task
+   */
+  public CSCFRMBestResponse(final CSCFRMData<?, Chances> data,
+      final CSCFRMVectorEvaluator<Chances> evaluator, final ForkJoinPool pool,
+      final int chancesPerTask) {
+    final int[][] roundChancesSizes = data.getRoundChancesSizes();
+    checkArgument(roundChancesSizes.length == 1,
+        "Best response is only implemented for games with one chances round");
+    checkArgument(chancesPerTask > 0, "The number of chances per task must be > 0");
+    final ActionTree<?, Chances> actionTree = data.getGameActionTree();
+    this.nbPlayers = data.getNbPlayers();
+    this.chancesSizes = roundChancesSizes[0];
+    final CSCFRMStore store = data.getStore();
+    this.nodesOffsets = store.getNodesOffsets()[0];
+    this.chancesStrides = store.getChancesStrides()[0];
+    // Terminal nodes may be one level deeper than the deepest player nodes
+    this.maxDepth = actionTree.getMaxDepth() + 1;
+    this.rootNode = actionTree.getRoot();
+    this.evaluator = evaluator;
+    this.pool = pool;
+    this.chancesPerTask = chancesPerTask;
+  }
+
+  /**
+   * Compute the best response values, the profile values and the exploitability of a snapshot
+   * 
+   * @param snapshot the average strategies snapshot
+   * @return the result
+   */
+  public Result compute(final CSCFRMStrategySnapshot snapshot) {
+    final int nbPlayers = this.nbPlayers;
+    final double[][] avgStrategies = snapshot.getAvgStrategies()[0];
+    final List<ForkJoinTask<double[]>> tasks = new ArrayList<>(nbPlayers);
+    for (int player = 0; player < nbPlayers; player++) {
+      tasks.add(pool.submit(new ChancesTask(avgStrategies, player, 0, chancesSizes[player])));
+    }
+    final double[] bestResponseValues = new double[nbPlayers];
+    final double[] profileValues = new double[nbPlayers];
+    for (int player = 0; player < nbPlayers; player++) {
+      final double[] values = tasks.get(player).join();
+      bestResponseValues[player] = values[0];
+      profileValues[player] = values[1];
+    }
+    return new Result(snapshot.getIterations(), bestResponseValues, profileValues);
+  }
+
+  /**
+   * Computes the sums over a range of a player's chances of its best response and profile
+   * counterfactual values
+   */
+  private final class ChancesTask extends RecursiveTask<double[]> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final double[][] avgStrategies;
+    private final int player;
+    private final int fromChance;
+    private final int toChance;
+
+    ChancesTask(final double[][] avgStrategies, final int player, final int fromChance,
+        final int toChance) {
+      this.avgStrategies = avgStrategies;
+      this.player = player;
+      this.fromChance = fromChance;
+      this.toChance = toChance;
+    }
+
+    @Override
+    protected double[] compute() {
+      if (toChance - fromChance > chancesPerTask) {
+        final int middle = (fromChance + toChance) >>> 1;
+        final ChancesTask left = new ChancesTask(avgStrategies, player, fromChance, middle);
+        left.fork();
+        final double[] right = new ChancesTask(avgStrategies, player, middle, toChance).compute();
+        final double[] res = left.join();
+        res[0] += right[0];
+        res[1] += right[1];
+        return res;
+      }
+      return new Walker(avgStrategies, player, fromChance, toChance).walk();
+    }
+  }
+
+  /**
+   * Depth-first walk for a range of the best responding player's chances, with depth indexed
+   * reusable arrays
+   */
+  private final class Walker {
+
+    private final double[][] avgStrategies;
+    private final int player;
+    private final int fromChance;
+    private final int nbRangeChances;
+    private final double[][][] depthReach;
+    private final double[][][] depthOtherReach;
+    private final double[][] depthBestResponse;
+    private final double[][] depthProfile;
+
+    Walker(final double[][] avgStrategies, final int player, final int fromChance,
+        final int toChance) {
+      final int nbPlayers = CSCFRMBestResponse.this.nbPlayers;
+      final int[] chancesSizes = CSCFRMBestResponse.this.chancesSizes;
+      final int maxDepth = CSCFRMBestResponse.this.maxDepth;
+      this.avgStrategies = avgStrategies;
+      this.player = player;
+      this.fromChance = fromChance;
+      final int nbRangeChances = this.nbRangeChances = toChance - fromChance;
+      depthReach = new double[maxDepth][nbPlayers][];
+      depthOtherReach = new double[maxDepth][nbPlayers][];
+      for (int p = 0; p < nbPlayers; p++) {
+        Arrays.fill(depthReach[0][p] = new double[chancesSizes[p]], 1);
+        for (int depth = 1; depth < maxDepth; depth++) {
+          depthOtherReach[depth][p] = new double[chancesSizes[p]];
+        }
+      }
+      depthBestResponse = new double[maxDepth][nbRangeChances];
+      depthProfile = new double[maxDepth][nbRangeChances];
+    }
+
+    double[] walk() {
+      rec(0, rootNode, depthReach[0]);
+      double bestResponse = 0;
+      double profile = 0;
+      // With the other players' full reach, summing the counterfactual values gives the values
+      for (int chance = 0; chance < nbRangeChances; chance++) {
+        bestResponse += depthBestResponse[0][chance];
+        profile += depthProfile[0][chance];
+      }
+      return new double[] {bestResponse, profile};
+    }
+
+    private void rec(final int depth, final LinkedActionTreeNode<?, Chances> node,
+        final double[][] reach) {
+      final int nbRangeChances = this.nbRangeChances;
+      final double[] bestResponse = depthBestResponse[depth];
+      final double[] profile = depthProfile[depth];
+      switch (node.getNodeType()) {
+
+        case PAYOUTS_NO_CHANCE:
+        case CHANCES_PAYOUTS:
+          evaluator.evaluate(node, reach, player, fromChance, fromChance + nbRangeChances,
+              bestResponse);
+          System.arraycopy(bestResponse, 0, profile, 0, nbRangeChances);
+          return;
+
+        case PLAYER:
+          final PlayerNode<?> pNode = node.getPlayerNode();
+          final int nodePlayer = pNode.getPlayer();
+          final int nbChildren = pNode.getNbActions();
+          final int stride = chancesStrides[nodePlayer];
+          final int nodeOffset = nodesOffsets[nodePlayer][node.getPlayerRoundActionIndex()];
+          final double[] strategies = avgStrategies[nodePlayer];
+          final LinkedActionTreeNode<?, Chances>[] children = node.getChildren();
+          final int nextDepth = depth + 1;
+          final double[] childBestResponse = depthBestResponse[nextDepth];
+          final double[] childProfile = depthProfile[nextDepth];
+          if (nodePlayer == player) {
+            Arrays.fill(bestResponse, 0, nbRangeChances, Double.NEGATIVE_INFINITY);
+            Arrays.fill(profile, 0, nbRangeChances, 0);
+            final int fromChance = this.fromChance;
+            for (int action = 0; action < nbChildren; action++) {
+              rec(nextDepth, children[action], reach);
+              for (int chance = 0; chance < nbRangeChances; chance++) {
+                final int index = ((fromChance + chance) * stride + nodeOffset) / 2 + action;
+                profile[chance] += strategies[index] * childProfile[chance];
+                if (childBestResponse[chance] > bestResponse[chance]) {
+                  bestResponse[chance] = childBestResponse[chance];
+                }
+              }
+            }
+            return;
+          }
+          Arrays.fill(bestResponse, 0, nbRangeChances, 0);
+          Arrays.fill(profile, 0, nbRangeChances, 0);
+          // Only the acting player's reach changes in the children
+          final double[][] childReach = depthReach[nextDepth];
+          System.arraycopy(reach, 0, childReach, 0, nbPlayers);
+          final double[] playerReach = reach[nodePlayer];
+          final double[] childPlayerReach = childReach[nodePlayer] =
+              depthOtherReach[nextDepth][nodePlayer];
+          final int nbChances = chancesSizes[nodePlayer];
+          for (int action = 0; action < nbChildren; action++) {
+            for (int chance = 0; chance < nbChances; chance++) {
+              childPlayerReach[chance] =
+                  playerReach[chance] * strategies[(chance * stride + nodeOffset) / 2 + action];
+            }
+            rec(nextDepth, children[action], childReach);
+            for (int chance = 0; chance < nbRangeChances; chance++) {
+              bestResponse[chance] += childBestResponse[chance];
+              profile[chance] += childProfile[chance];
+            }
+          }
+          return;
+      }
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import lombok.Getter;
+
+/**
+ * Partition of the chances space between trainer threads over a cycle of epochs. Each (round,
+ * player) chances range is split in as many blocks as there are threads, a chance belonging to the
+ * block of index chance modulo the number of threads. During an epoch, each thread owns one block
+ * per (round, player) and two threads never own the same block : no chances collision can happen
+ * inside an epoch.
+ *
+ * The first player's block of the first round gives the thread, the offsets of the other (round,
+ * player) blocks relatively to this one give the epoch, so that each combination of blocks is owned
+ * exactly once during a cycle. The number of epochs is the number of threads to the power of the
+ * number of (round, player) ranges minus one : configurations needing more than
+ * {@link #MAX_EPOCHS} epochs are rejected.
+ *
+ * @author Pierre Mardon
+ *
+ */
+public final class CSCFRMChancesPartition {
+
+  /**
+   * Maximum number of epochs in a cycle
+   */
+  public static final int MAX_EPOCHS = 1 << 12;
+
+  /**
+   * Number of threads sharing the chances space
+   */
+  @Getter
+  private final int nbThreads;
+  /**
+   * Number of epochs in a cycle
+   */
+  @Getter
+  private final int nbEpochs;
+  private final int nbRounds;
+
+  /**
+   * Constructor
+   *
+   * @param chancesSizes chances sizes indexed by round, player
+   * @param nbThreads number of threads
+   * @throws IllegalArgumentException when the cycle would have more than {@link #MAX_EPOCHS}
+   *         epochs
+   */
+  public CSCFRMChancesPartition(final int[][] chancesSizes, final int nbThreads) {
+    checkArgument(nbThreads > 0, "The number of threads must be > 0");
+    this.nbThreads = nbThreads;
+    final int nbRounds = this.nbRounds = chancesSizes.length;
+    long nbEpochs = 1;
+    for (int round = 0; round < nbRounds; round++) {
+      final int[] roundSizes = chancesSizes[round];
+      for (int player = 0; player < roundSizes.length; player++) {
+        checkArgument(roundSizes[player] >= nbThreads,
+            "Round %s player %s has less chances than threads", round, player);
+        if (round > 0 || player > 0) {
+          nbEpochs *= nbThreads;
+          checkArgument(nbEpochs <= MAX_EPOCHS,
+              "%s threads need more than %s epochs per cycle for %s rounds, use less threads",
+              nbThreads, MAX_EPOCHS, nbRounds);
+        }
+      }
+    }
+    this.nbEpochs = (int) nbEpochs;
+  }
+
+  /**
+   * Get the thread owning the chances
+   *
+   * @param chances the chances indexed by round, player
+   * @return the owner thread index
+   */
+  public int thread(final int[][] chances) {
+    return chances[0][0] % nbThreads;
+  }
+
+  /**
+   * Get the epoch of the cycle during which the chances are owned
+   *
+   * @param chances the chances indexed by round, player
+   * @return the epoch index
+   */
+  public int epoch(final int[][] chances) {
+    final int nbThreads = this.nbThreads;
+    final int nbRounds = this.nbRounds;
+    final int firstBlock = chances[0][0] % nbThreads;
+    int epoch = 0;
+    for (int round = 0; round < nbRounds; round++) {
+      final int[] roundChances = chances[round];
+      final int nbPlayers = roundChances.length;
+      for (int player = round == 0 ? 1 : 0; player < nbPlayers; player++) {
+        epoch = epoch * nbThreads
+            + (roundChances[player] % nbThreads - firstBlock + nbThreads) % nbThreads;
+      }
+    }
+    return epoch;
+  }
+}
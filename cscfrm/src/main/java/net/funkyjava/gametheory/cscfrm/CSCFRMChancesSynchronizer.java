@@ -33,6 +33,45 @@ public interface CSCFRMChancesSynchronizer<Chances extends CSCFRMChances> {
    */
   void endUsing(final Chances chances) throws InterruptedException;
 
+  /**
+   * Get up to maxCount produced chances that don't collide with each other nor with any chances in
+   * use, so that a trainer can train them back to back. Blocks until at least one chances is
+   * available, but returns less than maxCount chances rather than waiting for more. By default,
+   * returns a batch of the chances of a single {@link #getChances()} call : a second blocking call
+   * could wait for the end of the chances already in the batch.
+   * 
+   * @param batch the array to fill with the chances, from its first index
+   * @param maxCount the maximum number of chances to get
+   * @return the number of chances put in the batch, 0 if called after {@link #stop()}
+   * @throws InterruptedException
+   */
+  default int getChances(final Chances[] batch, final int maxCount) throws InterruptedException {
+    if (maxCount <= 0) {
+      return 0;
+    }
+    final Chances chances = getChances();
+    if (chances == null) {
+      return 0;
+    }
+    batch[0] = chances;
+    return 1;
+  }
+
+  /**
+   * The CSCFRM algorithm ended using a batch of chances obtained by
+   * {@link #getChances(CSCFRMChances[], int)}, they can be recycled. By default, ends using them
+   * one after the other.
+   * 
+   * @param batch the batch of chances
+   * @param count the number of chances in the batch
+   * @throws InterruptedException
+   */
+  default void endUsing(final Chances[] batch, final int count) throws InterruptedException {
+    for (int i = 0; i < count; i++) {
+      endUsing(batch[i]);
+    }
+  }
+
   /**
    * CSCFRM algorithm will stop running, stop producing chances, stop runnables provided by
    * {@link #getProducers()}.
@@ -51,4 +90,33 @@ public interface CSCFRMChancesSynchronizer<Chances extends CSCFRMChances> {
    * @return the producers
    */
   List<Runnable> getProducers();
+
+  /**
+   * Get the number of drawn chances waiting for the end of a colliding iteration. Meant for
+   * monitoring, the value may be stale. 0 by default.
+   * 
+   * @return the collision backlog size
+   */
+  default int getBacklog() {
+    return 0;
+  }
+
+  /**
+   * Get the number of chances drawn from the producers so far. 0 by default, when not counted.
+   * 
+   * @return the number of produced chances
+   */
+  default long getProducedChances() {
+    return 0;
+  }
+
+  /**
+   * Get an estimation of the time spent in the producers so far. Implementations may only time a
+   * sample of the calls. 0 by default, when not timed.
+   * 
+   * @return the estimated producers time in nanoseconds
+   */
+  default long getProducerNanos() {
+    return 0;
+  }
 }
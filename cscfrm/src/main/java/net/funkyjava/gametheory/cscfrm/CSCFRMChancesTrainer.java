@@ -0,0 +1,28 @@
+package net.funkyjava.gametheory.cscfrm;
+
+/**
+ * Performs CSCFRM iterations for sampled chances, assuming that there will be no chances collision
+ * 
+ * @author Pierre Mardon
+ *
+ * @param <Chances> the chances class
+ */
+public interface CSCFRMChancesTrainer<Chances extends CSCFRMChances> {
+
+  /**
+   * Iterates CSCFRM for given chances
+   * 
+   * @param chances the chances
+   */
+  void train(Chances chances);
+
+  /**
+   * Get the number of player nodes visited by this trainer since its creation. 0 by default, when
+   * not counted.
+   * 
+   * @return the number of visited player nodes
+   */
+  default long getVisitedNodes() {
+    return 0;
+  }
+}
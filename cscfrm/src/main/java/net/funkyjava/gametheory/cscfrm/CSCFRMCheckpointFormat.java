@@ -0,0 +1,594 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import lombok.Getter;
+import lombok.NonNull;
+import net.funkyjava.gametheory.extensiveformgame.ActionTree;
+import net.funkyjava.gametheory.io.Fillable;
+import net.funkyjava.gametheory.io.IOUtils;
+
+/**
+ * Checkpoint container of a {@link CSCFRMData}. Unlike the raw serialized form of the data, it is
+ * self-describing and checked at load time :
+ * <ul>
+ * <li>a header with a magic number, the format version, the sections compression, the fingerprint
+ * of the action tree (see {@link ActionTree#fingerprint()}), the store sizes, the iterations, the
+ * utility sums and whether discount stamps follow, followed by its CRC32</li>
+ * <li>the store values of each round and player in serialization order, split in sections of at
+ * most {@link #sectionSize} values. Each section is written as its stored length, the CRC32 of its
+ * raw bytes and its stored bytes, optionally deflated.</li>
+ * <li>when the data has discount stamps (see {@link CSCFRMData#getDiscountStamps()}), the stamps
+ * of each round and player, split in sections of at most {@link #sectionSize} stamps encoded like
+ * the values sections</li>
+ * </ul>
+ * Sections are encoded and decoded in parallel in an executor while the calling thread does the
+ * I/O and reads the store values in serialization order. A tree mismatch is reported as an
+ * {@link IllegalArgumentException}, a corrupted file as an {@link IOException}. Loading first
+ * verifies the header and the CRCs of all sections, then reads the checkpoint again and decodes it
+ * straight into the store, so that a failed load leaves the data untouched without holding the
+ * whole checkpoint in memory. Channels and streams that are not seekable are spooled to a
+ * temporary file.
+ *
+ * @author Pierre Mardon
+ *
+ */
+public class CSCFRMCheckpointFormat implements Fillable {
+
+  /**
+   * Compression of the sections
+   */
+  public static enum Compression {
+    /**
+     * Raw big-endian values
+     */
+    NONE,
+    /**
+     * Deflated big-endian values
+     */
+    DEFLATE
+  }
+
+  /**
+   * Magic number at the start of checkpoint files
+   */
+  public static final long magic = 0x43534346524D434BL;
+  /**
+   * Current format version
+   */
+  public static final int version = 2;
+  /**
+   * Maximum number of values of a section
+   */
+  public static final int sectionSize = 1 << 20;
+  /**
+   * Size of the magic number, version, compression, fingerprint and shape at the start of the
+   * header
+   */
+  private static final int headerPrefixSize = 2 * Long.BYTES + 4 * Integer.BYTES;
+  /**
+   * Bound of the number of rounds times the number of players read from a header
+   */
+  private static final int maxHeaderCells = 1 << 16;
+  /**
+   * Number of bytes copied at once when spooling a channel that is not seekable
+   */
+  private static final long spoolChunkSize = 1 << 24;
+
+  /**
+   * The data read or written
+   */
+  @Getter
+  private final CSCFRMData<?, ?> data;
+  /**
+   * Compression used to write the sections
+   */
+  @Getter
+  private final Compression compression;
+  private final ForkJoinPool pool;
+
+  /**
+   * Constructor using the common fork join pool to encode and decode sections
+   *
+   * @param data the data to read or write
+   * @param compression the compression used to write the sections
+   */
+  public CSCFRMCheckpointFormat(final CSCFRMData<?, ?> data, final Compression compression) {
+    this(data, compression, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param data the data to read or write
+   * @param compression the compression used to write the sections
+   * @param pool the pool that encodes and decodes sections
+   */
+  public CSCFRMCheckpointFormat(@NonNull final CSCFRMData<?, ?> data,
+      @NonNull final Compression compression, @NonNull final ForkJoinPool pool) {
+    this.data = data;
+    this.compression = compression;
+    this.pool = pool;
+  }
+
+  /**
+   * Check whether a file starts with the checkpoint magic number
+   *
+   * @param path the file path
+   * @return true when the file is a checkpoint container
+   * @throws IOException
+   */
+  public static boolean isCheckpoint(final Path path) throws IOException {
+    if (!Files.exists(path) || Files.size(path) < Long.BYTES) {
+      return false;
+    }
+    try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+      IOUtils.readFully(channel, buffer);
+      buffer.flip();
+      return buffer.getLong() == magic;
+    }
+  }
+
+  private final int headerSize() {
+    final CSCFRMStore store = data.getStore();
+    return headerSize(store.getNbRounds(), store.getNbPlayers());
+  }
+
+  private static final int headerSize(final int nbRounds, final int nbPlayers) {
+    return headerPrefixSize + nbRounds * nbPlayers * Integer.BYTES + Long.BYTES
+        + nbPlayers * Double.BYTES + Integer.BYTES;
+  }
+
+  private final long treeFingerprint() {
+    return data.getGameActionTree().fingerprint();
+  }
+
+  @Override
+  public void write(final WritableByteChannel channel) throws IOException {
+    final CSCFRMData<?, ?> data = this.data;
+    final CSCFRMStore store = data.getStore();
+    final int nbRounds = store.getNbRounds();
+    final int nbPlayers = store.getNbPlayers();
+    final int[][] sizes = store.getSizes();
+    final ByteBuffer header = ByteBuffer.allocate(headerSize() + Long.BYTES);
+    header.putLong(magic).putInt(version).putInt(compression.ordinal()).putLong(treeFingerprint());
+    header.putInt(nbRounds).putInt(nbPlayers);
+    for (int round = 0; round < nbRounds; round++) {
+      for (int player = 0; player < nbPlayers; player++) {
+        header.putInt(sizes[round][player]);
+      }
+    }
+    header.putLong(data.getIterations().get());
+    for (int i = 0; i < data.getNbPlayers(); i++) {
+      header.putDouble(data.getUtilitySum().get(i));
+    }
+    final int[][][] stamps = data.existingDiscountStamps();
+    header.putInt(stamps == null ? 0 : 1);
+    header.putLong(crc(header.array(), 0, header.position()));
+    header.flip();
+    IOUtils.writeFully(channel, header);
+    final ArrayDeque<Future<ByteBuffer>> pending = new ArrayDeque<>();
+    final int window = 2 * pool.getParallelism();
+    for (int round = 0; round < nbRounds; round++) {
+      for (int player = 0; player < nbPlayers; player++) {
+        final int size = sizes[round][player];
+        for (int from = 0; from < size; from += sectionSize) {
+          // Values are read in order by the calling thread, only the encoding is parallel
+          final ByteBuffer raw =
+              rawValues(store, round, player, from, Math.min(sectionSize, size - from));
+          pending.add(pool.submit(() -> encode(raw)));
+          if (pending.size() >= window) {
+            IOUtils.writeFully(channel, await(pending.poll()));
+          }
+        }
+      }
+    }
+    if (stamps != null) {
+      for (int round = 0; round < nbRounds; round++) {
+        for (int player = 0; player < nbPlayers; player++) {
+          final int[] playerStamps = stamps[round][player];
+          for (int from = 0; from < playerStamps.length; from += sectionSize) {
+            final int f = from, length = Math.min(sectionSize, playerStamps.length - from);
+            pending.add(pool.submit(() -> encode(rawStamps(playerStamps, f, length))));
+            if (pending.size() >= window) {
+              IOUtils.writeFully(channel, await(pending.poll()));
+            }
+          }
+        }
+      }
+    }
+    while (!pending.isEmpty()) {
+      IOUtils.writeFully(channel, await(pending.poll()));
+    }
+  }
+
+  @Override
+  public void fill(final ReadableByteChannel channel) throws IOException {
+    if (!(channel instanceof SeekableByteChannel)) {
+      // The checkpoint is read twice
+      final Path spool = Files.createTempFile("cscfrm-checkpoint", ".tmp");
+      try {
+        try (final FileChannel out = FileChannel.open(spool, StandardOpenOption.WRITE)) {
+          long position = 0;
+          for (long n; (n = out.transferFrom(channel, position, spoolChunkSize)) > 0;) {
+            position += n;
+          }
+        }
+        try (final FileChannel in = FileChannel.open(spool, StandardOpenOption.READ)) {
+          fill(in);
+        }
+      } finally {
+        Files.deleteIfExists(spool);
+      }
+      return;
+    }
+    final SeekableByteChannel seekable = (SeekableByteChannel) channel;
+    final long start = seekable.position();
+    // Verify everything before writing to the data, then decode straight into the store
+    final Header verified = readHeader(seekable);
+    readSections(seekable, verified, false);
+    seekable.position(start);
+    final Header header = readHeader(seekable);
+    final int[][][] stamps = readSections(seekable, header, true);
+    data.setDiscountStamps(stamps);
+    data.getIterations().set(header.iterations);
+    for (int i = 0; i < header.utilitySums.length; i++) {
+      data.getUtilitySum().set(i, header.utilitySums[i]);
+    }
+  }
+
+  /**
+   * Fields of a verified checkpoint header
+   */
+  private static final class Header {
+    private final Compression compression;
+    private final long iterations;
+    private final double[] utilitySums;
+    private final boolean stamped;
+
+    private Header(final Compression compression, final long iterations,
+        final double[] utilitySums, final boolean stamped) {
+      this.compression = compression;
+      this.iterations = iterations;
+      this.utilitySums = utilitySums;
+      this.stamped = stamped;
+    }
+  }
+
+  private final Header readHeader(final ReadableByteChannel channel) throws IOException {
+    final CSCFRMStore store = data.getStore();
+    final int nbRounds = store.getNbRounds();
+    final int nbPlayers = store.getNbPlayers();
+    final int[][] sizes = store.getSizes();
+    final ByteBuffer prefix = ByteBuffer.allocate(headerPrefixSize);
+    IOUtils.readFully(channel, prefix);
+    prefix.flip();
+    if (prefix.getLong() != magic) {
+      throw new IOException("Not a CSCFRM checkpoint");
+    }
+    final int fileVersion = prefix.getInt();
+    if (fileVersion != version) {
+      throw new IOException("Unsupported CSCFRM checkpoint version " + fileVersion);
+    }
+    final int compressionOrdinal = prefix.getInt();
+    final long fingerprint = prefix.getLong();
+    final int fileNbRounds = prefix.getInt();
+    final int fileNbPlayers = prefix.getInt();
+    if (fileNbRounds <= 0 || fileNbPlayers <= 0
+        || (long) fileNbRounds * fileNbPlayers > maxHeaderCells) {
+      throw new IOException("The CSCFRM checkpoint header is corrupted");
+    }
+    // Check the whole header before trusting any of its fields
+    final ByteBuffer header =
+        ByteBuffer.allocate(headerSize(fileNbRounds, fileNbPlayers) + Long.BYTES);
+    header.put(prefix.array());
+    IOUtils.readFully(channel, header);
+    final int crcPosition = header.capacity() - Long.BYTES;
+    if (header.getLong(crcPosition) != crc(header.array(), 0, crcPosition)) {
+      throw new IOException("The CSCFRM checkpoint header is corrupted");
+    }
+    if (compressionOrdinal < 0 || compressionOrdinal >= Compression.values().length) {
+      throw new IOException("Unknown CSCFRM checkpoint compression " + compressionOrdinal);
+    }
+    checkArgument(
+        fileNbRounds == nbRounds && fileNbPlayers == nbPlayers
+            && fingerprint == treeFingerprint(),
+        "The checkpoint was written for another action tree");
+    header.flip();
+    header.position(headerPrefixSize);
+    for (int round = 0; round < nbRounds; round++) {
+      for (int player = 0; player < nbPlayers; player++) {
+        checkArgument(header.getInt() == sizes[round][player],
+            "The checkpoint was written for other chances sizes");
+      }
+    }
+    final long iterations = header.getLong();
+    final double[] utilitySums = new double[data.getNbPlayers()];
+    for (int i = 0; i < utilitySums.length; i++) {
+      utilitySums[i] = header.getDouble();
+    }
+    final boolean stamped = header.getInt() != 0;
+    return new Header(Compression.values()[compressionOrdinal], iterations, utilitySums,
+        stamped);
+  }
+
+  /**
+   * Values section being decoded
+   */
+  private static final class PendingValues {
+    private final int round;
+    private final int player;
+    private final int from;
+    private final Future<double[]> values;
+
+    private PendingValues(final int round, final int player, final int from,
+        final Future<double[]> values) {
+      this.round = round;
+      this.player = player;
+      this.from = from;
+      this.values = values;
+    }
+  }
+
+  /**
+   * Read the sections following the header. They are only verified when not committed. When
+   * committed, the values are set in the store in serialization order by the calling thread.
+   *
+   * @param channel the channel positioned after the header
+   * @param header the header
+   * @param commit whether to write the values to the store and return the stamps
+   * @return the decoded discount stamps when committed and the checkpoint has stamps, else null
+   * @throws IOException when a section is corrupted
+   */
+  private final int[][][] readSections(final ReadableByteChannel channel, final Header header,
+      final boolean commit) throws IOException {
+    final CSCFRMStore store = data.getStore();
+    final int nbRounds = store.getNbRounds();
+    final int nbPlayers = store.getNbPlayers();
+    final int[][] sizes = store.getSizes();
+    final Compression compression = header.compression;
+    final ArrayDeque<PendingValues> pendingValues = new ArrayDeque<>();
+    final int window = 2 * pool.getParallelism();
+    final ByteBuffer sectionHeader = ByteBuffer.allocate(Integer.BYTES + Long.BYTES);
+    for (int round = 0; round < nbRounds; round++) {
+      for (int player = 0; player < nbPlayers; player++) {
+        final int size = sizes[round][player];
+        for (int from = 0; from < size; from += sectionSize) {
+          final int length = Math.min(sectionSize, size - from);
+          sectionHeader.clear();
+          IOUtils.readFully(channel, sectionHeader);
+          sectionHeader.flip();
+          final int storedLength = sectionHeader.getInt();
+          final long crc = sectionHeader.getLong();
+          final String section = round + " " + player + " " + from;
+          final byte[] stored = readSection(channel, compression, storedLength,
+              length * Double.BYTES, section);
+          pendingValues.add(new PendingValues(round, player, from, pool.submit(() -> {
+            final ByteBuffer raw = decode(compression, stored, length * Double.BYTES, crc, section);
+            if (!commit) {
+              return null;
+            }
+            final double[] sectionValues = new double[length];
+            IOUtils.fill(raw, sectionValues);
+            return sectionValues;
+          })));
+          if (pendingValues.size() >= window) {
+            setValues(store, pendingValues.poll());
+          }
+        }
+      }
+    }
+    while (!pendingValues.isEmpty()) {
+      setValues(store, pendingValues.poll());
+    }
+    if (!header.stamped) {
+      return null;
+    }
+    final int[][] roundChancesSizes = store.getRoundChancesSizes();
+    final int[][][] nodesNbActions = store.getNodesNbActions();
+    final int[][][] stamps = commit ? data.newDiscountStamps() : null;
+    final ArrayDeque<Future<Void>> pending = new ArrayDeque<>();
+    for (int round = 0; round < nbRounds; round++) {
+      for (int player = 0; player < nbPlayers; player++) {
+        final int[] playerStamps = commit ? stamps[round][player] : null;
+        final int nbStamps =
+            roundChancesSizes[round][player] * nodesNbActions[round][player].length;
+        for (int from = 0; from < nbStamps; from += sectionSize) {
+          final int length = Math.min(sectionSize, nbStamps - from);
+          sectionHeader.clear();
+          IOUtils.readFully(channel, sectionHeader);
+          sectionHeader.flip();
+          final int storedLength = sectionHeader.getInt();
+          final long crc = sectionHeader.getLong();
+          final String section = "stamps " + round + " " + player + " " + from;
+          final byte[] stored = readSection(channel, compression, storedLength,
+              length * Integer.BYTES, section);
+          final int f = from;
+          pending.add(pool.submit(() -> {
+            final ByteBuffer raw =
+                decode(compression, stored, length * Integer.BYTES, crc, section);
+            if (commit) {
+              raw.asIntBuffer().get(playerStamps, f, length);
+            }
+            return null;
+          }));
+          if (pending.size() >= window) {
+            await(pending.poll());
+          }
+        }
+      }
+    }
+    while (!pending.isEmpty()) {
+      await(pending.poll());
+    }
+    return stamps;
+  }
+
+  private static final void setValues(final CSCFRMStore store, final PendingValues section)
+      throws IOException {
+    final double[] values = await(section.values);
+    if (values != null) {
+      store.setValues(section.round, section.player, section.from, values, values.length);
+    }
+  }
+
+  private static final ByteBuffer rawValues(final CSCFRMStore store, final int round,
+      final int player, final int from, final int length) {
+    final double[] values = new double[length];
+    store.getValues(round, player, from, values, length);
+    final ByteBuffer raw = ByteBuffer.allocate(length * Double.BYTES);
+    IOUtils.write(raw, values);
+    return raw;
+  }
+
+  private static final ByteBuffer rawStamps(final int[] stamps, final int from, final int length) {
+    final ByteBuffer raw = ByteBuffer.allocate(length * Integer.BYTES);
+    raw.asIntBuffer().put(stamps, from, length);
+    return raw;
+  }
+
+  private final ByteBuffer encode(final ByteBuffer raw) throws IOException {
+    final long crc = crc(raw.array(), 0, raw.capacity());
+    final byte[] stored;
+    final int storedLength;
+    switch (compression) {
+      case DEFLATE:
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream(raw.capacity() / 2);
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (final DeflaterOutputStream dos = new DeflaterOutputStream(bos, deflater)) {
+          dos.write(raw.array());
+        } finally {
+          deflater.end();
+        }
+        stored = bos.toByteArray();
+        storedLength = stored.length;
+        break;
+      default:
+        stored = raw.array();
+        storedLength = stored.length;
+        break;
+    }
+    final ByteBuffer res = ByteBuffer.allocate(Integer.BYTES + Long.BYTES + storedLength);
+    res.putInt(storedLength).putLong(crc).put(stored, 0, storedLength);
+    res.flip();
+    return res;
+  }
+
+  private static final byte[] readSection(final ReadableByteChannel channel,
+      final Compression compression, final int storedLength, final int rawLength,
+      final String section) throws IOException {
+    if (storedLength < 0 || (compression == Compression.NONE && storedLength != rawLength)
+        || storedLength > maxDeflatedLength(rawLength)) {
+      throw new IOException("Invalid length of CSCFRM checkpoint section " + section);
+    }
+    final ByteBuffer stored = ByteBuffer.allocate(storedLength);
+    IOUtils.readFully(channel, stored);
+    return stored.array();
+  }
+
+  /**
+   * Bound the deflated length of raw bytes, above the worst case of stored deflate blocks
+   *
+   * @param rawLength the raw length
+   * @return the maximum stored length
+   */
+  private static final int maxDeflatedLength(final int rawLength) {
+    return rawLength + (rawLength >> 8) + 64;
+  }
+
+  private static final ByteBuffer decode(final Compression compression, final byte[] stored,
+      final int rawLength, final long crc, final String section) throws IOException {
+    final byte[] raw;
+    switch (compression) {
+      case DEFLATE:
+        raw = new byte[rawLength];
+        try (final InputStream is = new InflaterInputStream(new ByteArrayInputStream(stored))) {
+          int read = 0;
+          while (read < raw.length) {
+            final int n = is.read(raw, read, raw.length - read);
+            if (n < 0) {
+              throw new EOFException();
+            }
+            read += n;
+          }
+          if (is.read() >= 0) {
+            throw new IOException("CSCFRM checkpoint section is too long");
+          }
+        } catch (IOException e) {
+          throw new IOException("Failed to inflate CSCFRM checkpoint section " + section, e);
+        }
+        break;
+      default:
+        raw = stored;
+        break;
+    }
+    if (crc(raw, 0, raw.length) != crc) {
+      throw new IOException("CSCFRM checkpoint section " + section + " is corrupted");
+    }
+    return ByteBuffer.wrap(raw);
+  }
+
+  private static final long crc(final byte[] bytes, final int offset, final int length) {
+    final CRC32 crc = new CRC32();
+    crc.update(bytes, offset, length);
+    return crc.getValue();
+  }
+
+  private static final <T> T await(final Future<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while processing a CSCFRM checkpoint section", e);
+    } catch (ExecutionException e) {
+      // Fork join tasks wrap the checked exceptions of callables in runtime exceptions
+      for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  @Override
+  public void fill(final InputStream is) throws IOException {
+    // File streams are read twice through their channel rather than spooled
+    fill(is instanceof FileInputStream ? ((FileInputStream) is).getChannel()
+        : Channels.newChannel(is));
+  }
+
+  @Override
+  public void write(final OutputStream os) throws IOException {
+    write(Channels.newChannel(os));
+  }
+}
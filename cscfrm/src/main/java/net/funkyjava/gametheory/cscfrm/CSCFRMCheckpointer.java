@@ -0,0 +1,332 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.io.IOUtils;
+
+/**
+ * Writes checkpoints of the data of a {@link CSCFRMRunner} while it keeps training. Trainers are
+ * only paused while the data is copied in memory, see {@link CSCFRMRunner#copyData()}, then the
+ * copy is written by the checkpointer's thread. Files are written atomically, see
+ * {@link IOUtils#writeAtomically(net.funkyjava.gametheory.io.Fillable, Path)}.
+ *
+ * A {@link CSCFRMMappedStore} may not fit in the heap, so it is never copied at once : its values
+ * and discount stamps are copied one shard of at most {@link #shardSize} values at a time, each
+ * during a short pause, while the checkpoint is written. The iterations and utility sums are the
+ * ones of the first pause, and the shards copied later may include a few more iterations, like the
+ * concurrent updates of a hogwild training.
+ *
+ * Checkpoints can be triggered manually, periodically or every given number of iterations. They are
+ * written in the raw serialized form of the data, or in a {@link CSCFRMCheckpointFormat} container
+ * when a compression is provided. Only containers keep the discount stamps of a discounted
+ * training, see {@link CSCFRMData#getDiscountStamps()}.
+ *
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public class CSCFRMCheckpointer {
+
+  /**
+   * Maximum number of values of a mapped store copied during one training pause
+   */
+  public static final int shardSize = 1 << 22;
+  private static final long iterationsPollMillis = 1000;
+
+  private final CSCFRMRunner<?> runner;
+  /**
+   * Path of the checkpoint file
+   */
+  @Getter
+  private final Path path;
+  /**
+   * Compression of the checkpoint container, null to write the raw serialized data without the
+   * discount stamps
+   */
+  @Getter
+  private final CSCFRMCheckpointFormat.Compression compression;
+  private ScheduledExecutorService scheduler;
+  private long lastCheckpointIterations = -1;
+  /**
+   * Number of checkpoints written
+   */
+  @Getter
+  private volatile long nbCheckpoints;
+  /**
+   * Duration of the training pauses of the last checkpoint in milliseconds, including the waits for
+   * the trainers to reach a safe point
+   */
+  @Getter
+  private volatile long lastPauseMillis;
+  /**
+   * Number of training pauses of the last checkpoint, more than one for a mapped store
+   */
+  @Getter
+  private volatile long lastNbPauses;
+  /**
+   * Duration of the write of the last checkpoint in milliseconds, including the pauses copying the
+   * shards of a mapped store
+   */
+  @Getter
+  private volatile long lastWriteMillis;
+
+  /**
+   * Constructor
+   *
+   * @param runner the runner whose data will be written
+   * @param path the checkpoint file path
+   */
+  public CSCFRMCheckpointer(@NonNull final CSCFRMRunner<?> runner, @NonNull final Path path) {
+    this(runner, path, null);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param runner the runner whose data will be written
+   * @param path the checkpoint file path
+   * @param compression the compression of the checkpoint container, null to write the raw
+   *        serialized data without the discount stamps
+   */
+  public CSCFRMCheckpointer(@NonNull final CSCFRMRunner<?> runner, @NonNull final Path path,
+      final CSCFRMCheckpointFormat.Compression compression) {
+    this.runner = runner;
+    this.path = path;
+    this.compression = compression;
+  }
+
+  /**
+   * Write a checkpoint now, in the calling thread
+   *
+   * @throws IOException when the write fails, the previous checkpoint is then left untouched
+   * @throws InterruptedException
+   */
+  public synchronized void checkpoint() throws IOException, InterruptedException {
+    final long start = System.currentTimeMillis();
+    final CSCFRMData<?, ?> copy = runner.whilePaused(data -> {
+      if (!(data.getStore() instanceof CSCFRMMappedStore)) {
+        return data.copy();
+      }
+      final PausedShardsStore shards = new PausedShardsStore(runner, data);
+      final CSCFRMData<?, ?> res = data.withStore(shards);
+      shards.stamps = res.existingDiscountStamps();
+      return res;
+    });
+    final long copied = System.currentTimeMillis();
+    try {
+      IOUtils.writeAtomically(
+          compression == null ? copy : new CSCFRMCheckpointFormat(copy, compression), path);
+    } catch (UncheckedIOException e) {
+      if (e.getCause() instanceof InterruptedIOException) {
+        throw new InterruptedException(e.getCause().getMessage());
+      }
+      throw e.getCause();
+    }
+    lastWriteMillis = System.currentTimeMillis() - copied;
+    long pauseMillis = copied - start;
+    long nbPauses = 1;
+    if (copy.getStore() instanceof PausedShardsStore) {
+      final PausedShardsStore shards = (PausedShardsStore) copy.getStore();
+      pauseMillis += shards.pauseMillis;
+      nbPauses += shards.nbPauses;
+    }
+    lastPauseMillis = pauseMillis;
+    lastNbPauses = nbPauses;
+    lastCheckpointIterations = copy.getIterations().get();
+    nbCheckpoints++;
+    log.info("Checkpoint of {} iterations written to {}, training paused {}ms in {} pauses, "
+        + "written in {}ms", lastCheckpointIterations, path, lastPauseMillis, lastNbPauses,
+        lastWriteMillis);
+  }
+
+  /**
+   * Write checkpoints periodically in a daemon thread
+   *
+   * @param period the checkpoints period
+   * @param unit the period's time unit
+   */
+  public synchronized void startPeriodic(final long period, final TimeUnit unit) {
+    checkArgument(period > 0, "The checkpoints period must be > 0");
+    createScheduler().scheduleWithFixedDelay(this::checkpointSafely, period, period, unit);
+  }
+
+  /**
+   * Write a checkpoint in a daemon thread each time the given number of iterations was trained
+   * since the last checkpoint. The iterations are polled every second.
+   *
+   * @param nbIterations the number of iterations between checkpoints
+   */
+  public synchronized void startEveryIterations(final long nbIterations) {
+    checkArgument(nbIterations > 0, "The number of iterations between checkpoints must be > 0");
+    final CSCFRMRunnerMetrics metrics = runner.getMetrics();
+    lastCheckpointIterations = metrics.getIterations();
+    createScheduler().scheduleWithFixedDelay(() -> {
+      final long last;
+      synchronized (this) {
+        last = lastCheckpointIterations;
+      }
+      if (metrics.getIterations() - last >= nbIterations) {
+        checkpointSafely();
+      }
+    }, iterationsPollMillis, iterationsPollMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private final ScheduledExecutorService createScheduler() {
+    checkState(scheduler == null, "Checkpoints are already scheduled");
+    return scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      final Thread thread = new Thread(r, "cscfrm-checkpoints");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  private final void checkpointSafely() {
+    try {
+      checkpoint();
+    } catch (IOException e) {
+      log.error("Failed to write the checkpoint to {}", path, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Stop scheduling checkpoints and wait for the termination of a running one
+   *
+   * @throws InterruptedException
+   */
+  public void stop() throws InterruptedException {
+    final ScheduledExecutorService scheduler;
+    synchronized (this) {
+      scheduler = this.scheduler;
+      this.scheduler = null;
+    }
+    if (scheduler != null) {
+      scheduler.shutdown();
+      scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    }
+  }
+
+  /**
+   * Read-only view of a running mapped store that copies its values and discount stamps one shard
+   * of chances at a time, each during a training pause, when they are first read. Meant to be read
+   * in serialization order by a single thread.
+   */
+  private static final class PausedShardsStore extends CSCFRMStore {
+
+    private final CSCFRMRunner<?> runner;
+    private final CSCFRMStore store;
+    private final int[][][] storeStamps;
+    // Stamps of the copy, filled shard by shard, null when the data has no stamps
+    private int[][][] stamps;
+    private double[] values = new double[0];
+    private int round = -1;
+    private int player = -1;
+    private int from = 0;
+    private int to = 0;
+    private long pauseMillis = 0;
+    private long nbPauses = 0;
+
+    PausedShardsStore(final CSCFRMRunner<?> runner, final CSCFRMData<?, ?> data) {
+      super(data.getStore());
+      this.runner = runner;
+      this.store = data.getStore();
+      this.storeStamps = data.existingDiscountStamps();
+    }
+
+    private final double value(final int round, final int player, final int index) {
+      if (round != this.round || player != this.player || index < from || index >= to) {
+        copyShard(round, player, index);
+      }
+      return values[index - from];
+    }
+
+    private final void copyShard(final int round, final int player, final int index) {
+      final int stride = getChancesStrides()[round][player];
+      final int nbNodes = getNodesNbActions()[round][player].length;
+      final int firstChance = index / stride;
+      final int nbChances = Math.min(getRoundChancesSizes()[round][player] - firstChance,
+          Math.max(1, shardSize / stride));
+      final int from = firstChance * stride;
+      final int length = nbChances * stride;
+      if (values.length < length) {
+        values = new double[length];
+      }
+      final double[] values = this.values;
+      final long start = System.currentTimeMillis();
+      try {
+        runner.whilePaused(data -> {
+          store.getValues(round, player, from, values, length);
+          if (stamps != null) {
+            System.arraycopy(storeStamps[round][player], firstChance * nbNodes,
+                stamps[round][player], firstChance * nbNodes, nbChances * nbNodes);
+          }
+          return null;
+        });
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new UncheckedIOException(
+            new InterruptedIOException("Interrupted while copying a checkpoint shard"));
+      }
+      pauseMillis += System.currentTimeMillis() - start;
+      nbPauses++;
+      this.round = round;
+      this.player = player;
+      this.from = from;
+      this.to = from + length;
+    }
+
+    @Override
+    public CSCFRMStore copy() {
+      throw new UnsupportedOperationException("Checkpoint shards can't be copied");
+    }
+
+    @Override
+    public double getRegret(final int round, final int player, final int index) {
+      return value(round, player, index);
+    }
+
+    @Override
+    public void setRegret(final int round, final int player, final int index,
+        final double value) {
+      throw new UnsupportedOperationException("Checkpoint shards are read-only");
+    }
+
+    @Override
+    public void addRegret(final int round, final int player, final int index,
+        final double value) {
+      throw new UnsupportedOperationException("Checkpoint shards are read-only");
+    }
+
+    @Override
+    public double getStrategy(final int round, final int player, final int index) {
+      return value(round, player, index);
+    }
+
+    @Override
+    public void setStrategy(final int round, final int player, final int index,
+        final double value) {
+      throw new UnsupportedOperationException("Checkpoint shards are read-only");
+    }
+
+    @Override
+    public void addStrategy(final int round, final int player, final int index,
+        final double value) {
+      throw new UnsupportedOperationException("Checkpoint shards are read-only");
+    }
+  }
+}
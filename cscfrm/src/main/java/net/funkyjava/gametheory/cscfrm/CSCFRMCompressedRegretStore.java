@@ -0,0 +1,153 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import lombok.Getter;
+import net.funkyjava.gametheory.extensiveformgame.ActionTree;
+
+/**
+ * {@link CSCFRMStore} holding each value on 32 bits in a single int array per round and player.
+ * Regret sums are stored as scaled integers : the stored value is the regret sum multiplied by the
+ * scale and rounded to an integer, saturating at the int bounds. Strategy sums, that grow
+ * with the number of iterations, are stored as float bits.
+ *
+ * Regret increments are stochastically rounded : a scaled increment falling between two integers
+ * is rounded up with a probability equal to its fractional part, so that increments smaller than
+ * the resolution 1 / scale are kept on average instead of being lost, as they would be with round
+ * to nearest. The rounding is drawn from {@link ThreadLocalRandom}, so trainings on this store are
+ * not reproducible, see {@link CSCFRMRunner} deterministic mode. The scale should still be chosen
+ * so that most regret increments are large compared to the resolution, as the rounding adds noise
+ * of up to one resolution per increment.
+ *
+ * @author Pierre Mardon
+ *
+ */
+public final class CSCFRMCompressedRegretStore extends CSCFRMStore {
+
+  /**
+   * Default regret scale
+   */
+  public static final double defaultScale = 1000;
+
+  private final int[][][] values;
+  /**
+   * The regret scale
+   */
+  @Getter
+  private final double scale;
+  private final double invScale;
+
+  /**
+   * Constructor
+   *
+   * @param actionTree the action tree from which the nodes layout is computed
+   * @param roundChancesSizes the chances sizes indexed by round, player
+   * @param scale the regret scale
+   */
+  public CSCFRMCompressedRegretStore(final ActionTree<?, ?> actionTree,
+      final int[][] roundChancesSizes, final double scale) {
+    super(actionTree, roundChancesSizes);
+    if (!(scale > 0)) {
+      throw new IllegalArgumentException("The regret scale must be > 0");
+    }
+    this.scale = scale;
+    this.invScale = 1 / scale;
+    final int[][] sizes = getSizes();
+    final int nbRounds = getNbRounds();
+    final int nbPlayers = getNbPlayers();
+    final int[][][] values = this.values = new int[nbRounds][nbPlayers][];
+    for (int round = 0; round < nbRounds; round++) {
+      for (int player = 0; player < nbPlayers; player++) {
+        values[round][player] = new int[sizes[round][player]];
+      }
+    }
+  }
+
+  /**
+   * Constructor with the default scale
+   *
+   * @param actionTree the action tree from which the nodes layout is computed
+   * @param roundChancesSizes the chances sizes indexed by round, player
+   */
+  public CSCFRMCompressedRegretStore(final ActionTree<?, ?> actionTree,
+      final int[][] roundChancesSizes) {
+    this(actionTree, roundChancesSizes, defaultScale);
+  }
+
+  private static final int saturatedRound(final double value) {
+    if (value >= Integer.MAX_VALUE) {
+      return Integer.MAX_VALUE;
+    }
+    if (value <= Integer.MIN_VALUE) {
+      return Integer.MIN_VALUE;
+    }
+    return (int) Math.rint(value);
+  }
+
+  private static final int saturatedStochasticRound(final double value) {
+    if (value >= Integer.MAX_VALUE) {
+      return Integer.MAX_VALUE;
+    }
+    if (value <= Integer.MIN_VALUE) {
+      return Integer.MIN_VALUE;
+    }
+    final double floor = Math.floor(value);
+    final double rounded =
+        ThreadLocalRandom.current().nextDouble() < value - floor ? floor + 1 : floor;
+    return rounded >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) rounded;
+  }
+
+  private CSCFRMCompressedRegretStore(final CSCFRMCompressedRegretStore src) {
+    super(src);
+    this.scale = src.scale;
+    this.invScale = src.invScale;
+    final int[][][] values = this.values = new int[src.values.length][][];
+    for (int round = 0; round < values.length; round++) {
+      final int[][] roundValues = src.values[round];
+      values[round] = new int[roundValues.length][];
+      for (int player = 0; player < roundValues.length; player++) {
+        values[round][player] = roundValues[player].clone();
+      }
+    }
+  }
+
+  @Override
+  public CSCFRMCompressedRegretStore copy() {
+    return new CSCFRMCompressedRegretStore(this);
+  }
+
+  @Override
+  public double getRegret(final int round, final int player, final int index) {
+    return values[round][player][index] * invScale;
+  }
+
+  @Override
+  public void setRegret(final int round, final int player, final int index, final double value) {
+    values[round][player][index] = saturatedRound(value * scale);
+  }
+
+  @Override
+  public void addRegret(final int round, final int player, final int index, final double value) {
+    final int[] playerValues = values[round][player];
+    playerValues[index] = saturatedStochasticRound(playerValues[index] + value * scale);
+  }
+
+  @Override
+  public double getStrategy(final int round, final int player, final int index) {
+    return Float.intBitsToFloat(values[round][player][index]);
+  }
+
+  @Override
+  public void setStrategy(final int round, final int player, final int index,
+      final double value) {
+    values[round][player][index] = Float.floatToRawIntBits((float) value);
+  }
+
+  @Override
+  public void addStrategy(final int round, final int player, final int index,
+      final double value) {
+    final int[] playerValues = values[round][player];
+    playerValues[index] =
+        Float.floatToRawIntBits((float) (Float.intBitsToFloat(playerValues[index]) + value));
+  }
+}
@@ -1,12 +1,17 @@
 package net.funkyjava.gametheory.cscfrm;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
@@ -14,9 +19,9 @@ import java.util.concurrent.atomic.AtomicLong;
 import com.google.common.util.concurrent.AtomicDoubleArray;
 
 import lombok.Getter;
-import net.funkyjava.gametheory.extensiveformgame.ActionChancesData;
 import net.funkyjava.gametheory.extensiveformgame.ActionTree;
 import net.funkyjava.gametheory.extensiveformgame.ActionTreeNodeState.NodeType;
+import net.funkyjava.gametheory.extensiveformgame.FlatActionTree;
 import net.funkyjava.gametheory.extensiveformgame.Game;
 import net.funkyjava.gametheory.extensiveformgame.LinkedActionTreeNode;
 import net.funkyjava.gametheory.extensiveformgame.PlayerNode;
@@ -42,10 +47,10 @@ public class CSCFRMData<Id, Chances> implements Fillable {
   @Getter
   private final AtomicDoubleArray utilitySum;
   /**
-   * The CSCFRM nodes of the game indexed by round, player, chance, actions tate
+   * The regret and strategy sums of the game, laid out by round, player, chance, action node
    */
   @Getter
-  private final CSCFRMNode[][][][] nodes;
+  private final CSCFRMStore store;
   /**
    * Chances sizes indexed by round, player
    */
@@ -61,20 +66,152 @@ public class CSCFRMData<Id, Chances> implements Fillable {
    */
   @Getter
   private final ActionTree<Id, Chances> gameActionTree;
+  private int[][][] discountStamps;
+  private FlatActionTree<Chances> flatActionTree;
+  /**
+   * Data whose store and trees this data shares, or null
+   */
+  private final CSCFRMData<Id, Chances> owner;
 
   /**
-   * Constructor. Builds the action tree from the game and generates the CSCFRM nodes.
+   * Constructor. Builds the action tree from the game and allocates a double precision CSCFRM
+   * store.
    * 
    * @param game
    */
   public CSCFRMData(final Game<Id, Chances> game) {
+    this(game, CSCFRMStorePrecision.DOUBLE);
+  }
+
+  /**
+   * Constructor. Builds the action tree from the game and allocates the CSCFRM store with the
+   * provided precision.
+   * 
+   * @param game
+   * @param precision the regret and strategy sums storage precision
+   */
+  public CSCFRMData(final Game<Id, Chances> game, final CSCFRMStorePrecision precision) {
     this.nbPlayers = game.getNbPlayers();
     this.roundChancesSizes = game.roundChancesSizes();
     final ActionTree<Id, Chances> actionTree = this.gameActionTree = new ActionTree<>(game);
-    this.nodes = ActionChancesData.createRoundPlayerChanceNodeData(actionTree, game,
-        new CSCFRMNodeProvider<Id>());
+    this.store = precision.createStore(actionTree, roundChancesSizes);
     final int nbPlayers = game.getNbPlayers();
     this.utilitySum = new AtomicDoubleArray(nbPlayers);
+    this.owner = null;
+  }
+
+  /**
+   * Constructor. Builds the action tree from the game and maps the CSCFRM store on a file, see
+   * {@link CSCFRMMappedStore}. When the file exists, the iterations, utility sums and discount
+   * stamps recorded by the last {@link #force()} are restored.
+   * 
+   * @param game
+   * @param path the mapped file path
+   * @throws IOException
+   */
+  public CSCFRMData(final Game<Id, Chances> game, final Path path) throws IOException {
+    this.nbPlayers = game.getNbPlayers();
+    this.roundChancesSizes = game.roundChancesSizes();
+    final ActionTree<Id, Chances> actionTree = this.gameActionTree = new ActionTree<>(game);
+    final CSCFRMMappedStore store = new CSCFRMMappedStore(actionTree, roundChancesSizes, path);
+    this.store = store;
+    final int nbPlayers = game.getNbPlayers();
+    final AtomicDoubleArray utilitySum = this.utilitySum = new AtomicDoubleArray(nbPlayers);
+    iterations.set(store.getStoredIterations());
+    final double[] storedSums = store.getStoredUtilitySums();
+    for (int i = 0; i < nbPlayers; i++) {
+      utilitySum.set(i, storedSums[i]);
+    }
+    this.discountStamps = store.readDiscountStamps();
+    this.owner = null;
+  }
+
+  private CSCFRMData(final CSCFRMData<Id, Chances> src, final CSCFRMStore store,
+      final int[][][] discountStamps) {
+    this.nbPlayers = src.nbPlayers;
+    this.roundChancesSizes = src.roundChancesSizes;
+    this.gameActionTree = src.gameActionTree;
+    this.store = store;
+    this.iterations.set(src.iterations.get());
+    final int nbPlayers = src.nbPlayers;
+    final AtomicDoubleArray utilitySum = this.utilitySum = new AtomicDoubleArray(nbPlayers);
+    for (int i = 0; i < nbPlayers; i++) {
+      utilitySum.set(i, src.utilitySum.get(i));
+    }
+    this.discountStamps = discountStamps;
+    this.owner = null;
+  }
+
+  private CSCFRMData(final CSCFRMData<Id, Chances> owner, final CSCFRMStore store) {
+    this.nbPlayers = owner.nbPlayers;
+    this.roundChancesSizes = owner.roundChancesSizes;
+    this.gameActionTree = owner.gameActionTree;
+    this.store = store;
+    this.utilitySum = new AtomicDoubleArray(nbPlayers);
+    this.owner = owner;
+  }
+
+  /**
+   * Create data sharing this data's store and trees, but with its own iterations and utility sums
+   * starting at zero. Trainers working on it can be accounted separately, see
+   * {@link CSCFRMRunner} deterministic mode.
+   * 
+   * @return the sharing data
+   */
+  public CSCFRMData<Id, Chances> sharingStore() {
+    final CSCFRMData<Id, Chances> owner = this.owner == null ? this : this.owner;
+    return new CSCFRMData<>(owner, owner.store);
+  }
+
+  /**
+   * Copy the iterations, utility sums, discount stamps and store into new data sharing the action
+   * tree. The copy is
+   * not synchronized with running trainers, see {@link CSCFRMRunner#copyData()}.
+   * 
+   * @return the copy
+   */
+  public CSCFRMData<Id, Chances> copy() {
+    final int[][][] srcStamps = existingDiscountStamps();
+    int[][][] stamps = null;
+    if (srcStamps != null) {
+      stamps = new int[srcStamps.length][][];
+      for (int round = 0; round < srcStamps.length; round++) {
+        stamps[round] = new int[srcStamps[round].length][];
+        for (int player = 0; player < srcStamps[round].length; player++) {
+          stamps[round][player] = srcStamps[round][player].clone();
+        }
+      }
+    }
+    return new CSCFRMData<>(this, store.copy(), stamps);
+  }
+
+  /**
+   * Create data sharing the action tree, with a copy of the iterations and utility sums of this
+   * data and the provided store. When this data has discount stamps, the new data gets zeroed
+   * stamps for the caller to fill. Not synchronized with running trainers.
+   * 
+   * @param store the store of the new data, with the same layout as this data's store
+   * @return the new data
+   */
+  CSCFRMData<Id, Chances> withStore(final CSCFRMStore store) {
+    return new CSCFRMData<>(this, store,
+        existingDiscountStamps() == null ? null : newDiscountStamps());
+  }
+
+  /**
+   * Durability point of a mapped store : record the iterations, utility sums and discount stamps in
+   * the file and force the values to the disk. The data must have been created with a path.
+   * 
+   * @throws IOException when the discount stamps can't be written
+   */
+  public void force() throws IOException {
+    checkState(store instanceof CSCFRMMappedStore, "The CSCFRM store is not memory-mapped");
+    final int nbPlayers = this.nbPlayers;
+    final double[] utilitySums = new double[nbPlayers];
+    for (int i = 0; i < nbPlayers; i++) {
+      utilitySums[i] = utilitySum.get(i);
+    }
+    ((CSCFRMMappedStore) store).force(iterations.get(), utilitySums, existingDiscountStamps());
   }
 
   @Override
@@ -86,7 +223,9 @@ public class CSCFRMData<Id, Chances> implements Fillable {
     for (int i = 0; i < nbPlayers; i++) {
       utilitySum.set(i, dis.readDouble());
     }
-    IOUtils.fill(is, nodes);
+    store.fill(is);
+    // The raw serialized form has no discount stamps
+    setDiscountStamps(null);
   }
 
   @Override
@@ -97,7 +236,115 @@ public class CSCFRMData<Id, Chances> implements Fillable {
     for (int i = 0; i < nbPlayers; i++) {
       dos.writeDouble(utilitySum.get(i));
     }
-    IOUtils.write(os, nodes);
+    dos.flush();
+    store.write(os);
+  }
+
+  @Override
+  public void fill(ReadableByteChannel channel) throws IOException {
+    final int nbPlayers = this.nbPlayers;
+    final ByteBuffer header = ByteBuffer.allocate(Long.BYTES + nbPlayers * Double.BYTES);
+    IOUtils.readFully(channel, header);
+    header.flip();
+    iterations.set(header.getLong());
+    final AtomicDoubleArray utilitySum = this.utilitySum;
+    for (int i = 0; i < nbPlayers; i++) {
+      utilitySum.set(i, header.getDouble());
+    }
+    store.fill(channel);
+    // The raw serialized form has no discount stamps
+    setDiscountStamps(null);
+  }
+
+  @Override
+  public void write(WritableByteChannel channel) throws IOException {
+    final int nbPlayers = this.nbPlayers;
+    final ByteBuffer header = ByteBuffer.allocate(Long.BYTES + nbPlayers * Double.BYTES);
+    header.putLong(iterations.longValue());
+    final AtomicDoubleArray utilitySum = this.utilitySum;
+    for (int i = 0; i < nbPlayers; i++) {
+      header.putDouble(utilitySum.get(i));
+    }
+    header.flip();
+    IOUtils.writeFully(channel, header);
+    store.write(channel);
+  }
+
+  /**
+   * Get the discount stamps used by {@link CSCFRMTrainer} with a {@link CSCFRMDiscounting} : the
+   * last discount epoch each action node was visited in, indexed by round, player, chance * number
+   * of nodes + node index. Stamps are created on the first call. Once created, they are copied
+   * with the data and saved by {@link CSCFRMCheckpointFormat} and {@link CSCFRMMappedStore}, so
+   * that a resumed discounted training catches up the discounts of the nodes it didn't visit since
+   * the last epoch. The raw serialized form of the data keeps the layout written before the stamps
+   * existed and doesn't include them : filling the data from it drops the stamps.
+   * 
+   * @return the discount stamps
+   */
+  public synchronized int[][][] getDiscountStamps() {
+    if (owner != null) {
+      return owner.getDiscountStamps();
+    }
+    if (discountStamps == null) {
+      discountStamps = newDiscountStamps();
+    }
+    return discountStamps;
+  }
+
+  /**
+   * Create zeroed discount stamps shaped like the ones of this data, without setting them
+   * 
+   * @return the new discount stamps
+   */
+  int[][][] newDiscountStamps() {
+    final int nbRounds = roundChancesSizes.length;
+    final int[][][] nodesOffsets = store.getNodesOffsets();
+    final int[][][] stamps = new int[nbRounds][nbPlayers][];
+    for (int round = 0; round < nbRounds; round++) {
+      for (int player = 0; player < nbPlayers; player++) {
+        stamps[round][player] =
+            new int[roundChancesSizes[round][player] * nodesOffsets[round][player].length];
+      }
+    }
+    return stamps;
+  }
+
+  /**
+   * Get the discount stamps when they were created
+   * 
+   * @return the discount stamps or null
+   */
+  synchronized int[][][] existingDiscountStamps() {
+    return owner != null ? owner.existingDiscountStamps() : discountStamps;
+  }
+
+  /**
+   * Replace the discount stamps
+   * 
+   * @param stamps the new discount stamps, shaped like {@link #newDiscountStamps()}, or null
+   */
+  synchronized void setDiscountStamps(final int[][][] stamps) {
+    if (owner != null) {
+      owner.setDiscountStamps(stamps);
+      return;
+    }
+    discountStamps = stamps;
+  }
+
+  /**
+   * Get the compiled action tree used by {@link CSCFRMFlatTrainer}. It is built on the first call
+   * and shared by all trainers.
+   * 
+   * @return the flat action tree
+   */
+  public synchronized FlatActionTree<Chances> getFlatActionTree() {
+    if (owner != null) {
+      return owner.getFlatActionTree();
+    }
+    if (flatActionTree == null) {
+      flatActionTree = new FlatActionTree<>(gameActionTree);
+    }
+    return flatActionTree;
   }
 
   /**
@@ -118,10 +365,10 @@ public class CSCFRMData<Id, Chances> implements Fillable {
   }
 
   /**
-   * Get all CSCFRM nodes for a specified action node
+   * Get views on the CSCFRM nodes of a specified action node for all chances
    * 
    * @param node the action node
-   * @return array of CSCFRM nodes for all chances
+   * @return array of CSCFRM node views for all chances
    */
   public CSCFRMNode[] nodesFor(final LinkedActionTreeNode<Id, ?> node) {
     checkArgument(node.getNodeType() == NodeType.PLAYER, "CSCFRM data only for player nodes");
@@ -131,9 +378,9 @@ public class CSCFRMData<Id, Chances> implements Fillable {
     final int index = node.getPlayerRoundActionIndex();
     final int nbChances = roundChancesSizes[round][player];
     final CSCFRMNode[] res = new CSCFRMNode[nbChances];
-    final CSCFRMNode[][] playerNodes = nodes[round][player];
+    final CSCFRMStore store = this.store;
     for (int i = 0; i < nbChances; i++) {
-      res[i] = playerNodes[i][index];
+      res[i] = store.node(round, player, i, index);
     }
     return res;
   }
@@ -0,0 +1,100 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import lombok.Getter;
+
+/**
+ * Discounted CFR parameters. At the end of each discount epoch t, positive regret sums are
+ * multiplied by t^alpha / (t^alpha + 1), negative regret sums by t^beta / (t^beta + 1) and
+ * strategy sums by (t / (t + 1))^gamma. With chances sampling, an iteration only visits a few
+ * nodes, so an epoch is made of a fixed number of iterations.
+ *
+ * Discounting is lazy : each node remembers the last epoch it was visited in, and catches up the
+ * missed epochs discounts on its next visit.
+ *
+ * An infinite alpha never discounts positive regrets, a negative infinite beta resets negative
+ * regrets.
+ *
+ * @author Pierre Mardon
+ *
+ */
+public final class CSCFRMDiscounting {
+
+  /**
+   * Positive regrets discount exponent
+   */
+  @Getter
+  private final double alpha;
+  /**
+   * Negative regrets discount exponent
+   */
+  @Getter
+  private final double beta;
+  /**
+   * Strategy sums discount exponent
+   */
+  @Getter
+  private final double gamma;
+  /**
+   * Number of iterations of a discount epoch
+   */
+  @Getter
+  private final long epochIterations;
+
+  /**
+   * Constructor
+   *
+   * @param alpha positive regrets discount exponent
+   * @param beta negative regrets discount exponent
+   * @param gamma strategy sums discount exponent
+   * @param epochIterations number of iterations of a discount epoch
+   */
+  public CSCFRMDiscounting(final double alpha, final double beta, final double gamma,
+      final long epochIterations) {
+    checkArgument(!Double.isNaN(alpha) && !Double.isNaN(beta), "Exponents can't be NaN");
+    checkArgument(gamma >= 0 && !Double.isInfinite(gamma), "Gamma must be finite and >= 0");
+    checkArgument(epochIterations > 0, "The number of iterations per epoch must be > 0");
+    this.alpha = alpha;
+    this.beta = beta;
+    this.gamma = gamma;
+    this.epochIterations = epochIterations;
+  }
+
+  /**
+   * Linear CFR : alpha = beta = gamma = 1
+   *
+   * @param epochIterations number of iterations of a discount epoch
+   * @return the linear CFR discounting
+   */
+  public static CSCFRMDiscounting linear(final long epochIterations) {
+    return new CSCFRMDiscounting(1, 1, 1, epochIterations);
+  }
+
+  /**
+   * Discounted CFR with the recommended parameters : alpha = 1.5, beta = 0, gamma = 2
+   *
+   * @param epochIterations number of iterations of a discount epoch
+   * @return the DCFR discounting
+   */
+  public static CSCFRMDiscounting discounted(final long epochIterations) {
+    return new CSCFRMDiscounting(1.5, 0, 2, epochIterations);
+  }
+
+  /**
+   * Log of the regret discount factor at the end of an epoch
+   *
+   * @param epoch the epoch, starting from 1
+   * @param exponent alpha or beta
+   * @return log(epoch^exponent / (epoch^exponent + 1))
+   */
+  static double logRegretDiscount(final int epoch, final double exponent) {
+    if (exponent == Double.POSITIVE_INFINITY) {
+      return 0;
+    }
+    if (exponent == Double.NEGATIVE_INFINITY) {
+      return Double.NEGATIVE_INFINITY;
+    }
+    return -Math.log1p(Math.pow(epoch, -exponent));
+  }
+}
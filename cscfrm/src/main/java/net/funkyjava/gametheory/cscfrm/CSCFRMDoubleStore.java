@@ -0,0 +1,121 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import net.funkyjava.gametheory.extensiveformgame.ActionTree;
+import net.funkyjava.gametheory.io.IOUtils;
+
+/**
+ * {@link CSCFRMStore} holding regret and strategy sums as doubles. The serialized form is the
+ * values arrays in round, player order so they are read and written in bulk.
+ *
+ * @author Pierre Mardon
+ *
+ */
+public final class CSCFRMDoubleStore extends CSCFRMStore {
+
+  private final double[][][] values;
+
+  /**
+   * Constructor
+   *
+   * @param actionTree the action tree from which the nodes layout is computed
+   * @param roundChancesSizes the chances sizes indexed by round, player
+   */
+  public CSCFRMDoubleStore(final ActionTree<?, ?> actionTree, final int[][] roundChancesSizes) {
+    super(actionTree, roundChancesSizes);
+    final int[][] sizes = getSizes();
+    final int nbRounds = getNbRounds();
+    final int nbPlayers = getNbPlayers();
+    final double[][][] values = this.values = new double[nbRounds][nbPlayers][];
+    for (int round = 0; round < nbRounds; round++) {
+      for (int player = 0; player < nbPlayers; player++) {
+        values[round][player] = new double[sizes[round][player]];
+      }
+    }
+  }
+
+  /**
+   * Constructor wrapping values laid out like another store
+   *
+   * @param layout the store whose layout is shared
+   * @param values the values indexed by round, player, value index
+   */
+  CSCFRMDoubleStore(final CSCFRMStore layout, final double[][][] values) {
+    super(layout);
+    this.values = values;
+  }
+
+  private CSCFRMDoubleStore(final CSCFRMDoubleStore src) {
+    super(src);
+    final double[][][] values = this.values = new double[src.values.length][][];
+    for (int round = 0; round < values.length; round++) {
+      final double[][] roundValues = src.values[round];
+      values[round] = new double[roundValues.length][];
+      for (int player = 0; player < roundValues.length; player++) {
+        values[round][player] = roundValues[player].clone();
+      }
+    }
+  }
+
+  @Override
+  public CSCFRMDoubleStore copy() {
+    return new CSCFRMDoubleStore(this);
+  }
+
+  @Override
+  public double getRegret(final int round, final int player, final int index) {
+    return values[round][player][index];
+  }
+
+  @Override
+  public void setRegret(final int round, final int player, final int index, final double value) {
+    values[round][player][index] = value;
+  }
+
+  @Override
+  public void addRegret(final int round, final int player, final int index, final double value) {
+    values[round][player][index] += value;
+  }
+
+  @Override
+  public double getStrategy(final int round, final int player, final int index) {
+    return values[round][player][index];
+  }
+
+  @Override
+  public void setStrategy(final int round, final int player, final int index,
+      final double value) {
+    values[round][player][index] = value;
+  }
+
+  @Override
+  public void addStrategy(final int round, final int player, final int index,
+      final double value) {
+    values[round][player][index] += value;
+  }
+
+  @Override
+  public void fill(InputStream is) throws IOException {
+    IOUtils.fill(is, values);
+  }
+
+  @Override
+  public void write(OutputStream os) throws IOException {
+    IOUtils.write(os, values);
+  }
+
+  @Override
+  public void fill(ReadableByteChannel channel) throws IOException {
+    IOUtils.fill(channel, values);
+  }
+
+  @Override
+  public void write(WritableByteChannel channel) throws IOException {
+    IOUtils.write(channel, values);
+  }
+}
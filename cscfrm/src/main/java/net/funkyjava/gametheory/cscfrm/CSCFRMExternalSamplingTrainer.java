@@ -0,0 +1,183 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.AtomicDoubleArray;
+
+import net.funkyjava.gametheory.extensiveformgame.ActionTree;
+import net.funkyjava.gametheory.extensiveformgame.LinkedActionTreeNode;
+import net.funkyjava.gametheory.extensiveformgame.PlayerNode;
+
+/**
+ * External sampling MCCFR trainer. On top of the provided chances, each iteration samples the
+ * actions of all players but one, the traverser, which changes at each iteration. All actions of
+ * the traverser are walked and its regrets are updated, while the other players' strategy sums are
+ * updated at the nodes they sample.
+ *
+ * It shares the {@link CSCFRMStore} layout of {@link CSCFRMTrainer}. Regrets are not floored.
+ *
+ * @author Pierre Mardon
+ *
+ * @param <Chances> the chances class
+ */
+public class CSCFRMExternalSamplingTrainer<Chances extends CSCFRMChances>
+    implements CSCFRMChancesTrainer<Chances> {
+
+  private final int nbRounds;
+  private final int nbPlayers;
+  private final LinkedActionTreeNode<?, Chances> rootNode;
+  private final CSCFRMStore store;
+  private final int[][][] nodesOffsets;
+  private final int[][] chancesStrides;
+  private final int[][] chancesOffsets;
+  private final AtomicDoubleArray utilitySum;
+  private final AtomicLong iterations;
+  private final double[][] depthUtil;
+  private final double[][] depthActionUtil;
+  private final double[][] depthStrategy;
+  private final double[] zero;
+  private final SplittableRandom random;
+  private int traverser = 0;
+  private long visitedNodes;
+
+  /**
+   * Constructor
+   *
+   * @param data the CSCFRM data
+   */
+  public CSCFRMExternalSamplingTrainer(final CSCFRMData<?, Chances> data) {
+    this(data, System.nanoTime());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param data the CSCFRM data
+   * @param seed the actions sampling seed
+   */
+  public CSCFRMExternalSamplingTrainer(final CSCFRMData<?, Chances> data, final long seed) {
+    final ActionTree<?, Chances> actionTree = data.getGameActionTree();
+    final int maxDepth = actionTree.getMaxDepth();
+    final int maxNbActions = actionTree.getMaxNbActions();
+    final int nbRounds = this.nbRounds = data.getRoundChancesSizes().length;
+    final int nbPlayers = this.nbPlayers = data.getNbPlayers();
+    this.utilitySum = data.getUtilitySum();
+    this.iterations = data.getIterations();
+    rootNode = actionTree.getRoot();
+    final CSCFRMStore store = this.store = data.getStore();
+    nodesOffsets = store.getNodesOffsets();
+    chancesStrides = store.getChancesStrides();
+    chancesOffsets = new int[nbRounds][nbPlayers];
+    zero = new double[Math.max(nbPlayers, maxNbActions)];
+    depthUtil = new double[maxDepth][nbPlayers];
+    depthActionUtil = new double[maxDepth][maxNbActions];
+    depthStrategy = new double[maxDepth][maxNbActions];
+    random = new SplittableRandom(seed);
+  }
+
+  @Override
+  public final void train(final Chances chances) {
+    final int nbRounds = this.nbRounds;
+    final int nbPlayers = this.nbPlayers;
+    final int[][] chancesStrides = this.chancesStrides;
+    final int[][] chancesOffsets = this.chancesOffsets;
+    final int[][] playersChances = chances.getPlayersChances();
+    for (int round = 0; round < nbRounds; round++) {
+      final int[] roundChances = playersChances[round];
+      final int[] roundStrides = chancesStrides[round];
+      final int[] roundOffsets = chancesOffsets[round];
+      for (int player = 0; player < nbPlayers; player++) {
+        roundOffsets[player] = roundChances[player] * roundStrides[player];
+      }
+    }
+    final double[] utility = rec(0, rootNode, chances);
+    final AtomicDoubleArray utilitySum = this.utilitySum;
+    for (int i = 0; i < nbPlayers; i++) {
+      utilitySum.addAndGet(i, utility[i]);
+    }
+    iterations.incrementAndGet();
+    if (++traverser == nbPlayers) {
+      traverser = 0;
+    }
+  }
+
+  @Override
+  public long getVisitedNodes() {
+    return visitedNodes;
+  }
+
+  private final double[] rec(final int depth, final LinkedActionTreeNode<?, Chances> node,
+      final Chances chances) {
+    switch (node.getNodeType()) {
+
+      case PAYOUTS_NO_CHANCE:
+        return node.getPayoutsNoChance();
+
+      case CHANCES_PAYOUTS:
+        return node.getChancesPayouts().getPayouts(chances);
+
+      case PLAYER:
+        visitedNodes++;
+        final PlayerNode<?> pNode = node.getPlayerNode();
+        final int index = node.getPlayerRoundActionIndex();
+        final int round = pNode.getRound();
+        final int player = pNode.getPlayer();
+        final CSCFRMStore store = this.store;
+        final int regretIndex = chancesOffsets[round][player] + nodesOffsets[round][player][index];
+        final int nbChildren = pNode.getNbActions();
+        final int stratIndex = regretIndex + nbChildren;
+        final LinkedActionTreeNode<?, Chances>[] children = node.getChildren();
+        final double[] strategy = depthStrategy[depth];
+        double totalRegret = 0;
+        for (int action = 0; action < nbChildren; action++) {
+          final double actionRegret = store.getRegret(round, player, regretIndex + action);
+          // Regret matching
+          totalRegret += strategy[action] = (actionRegret > 0 ? actionRegret : 0);
+        }
+        if (totalRegret > 0) {
+          for (int action = 0; action < nbChildren; action++) {
+            strategy[action] /= totalRegret;
+          }
+        } else {
+          for (int action = 0; action < nbChildren; action++) {
+            strategy[action] = 1.0d / nbChildren;
+          }
+        }
+        final int nextDepth = depth + 1;
+        if (player != traverser) {
+          // Sample one action, and average the strategy of the player
+          final double rand = random.nextDouble();
+          double cumulated = 0;
+          int sampled = -1;
+          for (int action = 0; action < nbChildren; action++) {
+            store.addStrategy(round, player, stratIndex + action, strategy[action]);
+            if (sampled < 0 && rand < (cumulated += strategy[action])) {
+              sampled = action;
+            }
+          }
+          // Rounding may leave the last action unselected
+          return rec(nextDepth, children[sampled < 0 ? nbChildren - 1 : sampled], chances);
+        }
+        final int nbPlayers = this.nbPlayers;
+        final double[] zero = this.zero;
+        final double[] util = depthUtil[depth];
+        System.arraycopy(zero, 0, util, 0, nbPlayers);
+        final double[] actionsUtil = depthActionUtil[depth];
+        for (int action = 0; action < nbChildren; action++) {
+          final double[] childUtil = rec(nextDepth, children[action], chances);
+          for (int p = 0; p < nbPlayers; p++) {
+            util[p] += strategy[action] * childUtil[p];
+          }
+          actionsUtil[action] = childUtil[player];
+        }
+        final double playerUtil = util[player];
+        for (int action = 0; action < nbChildren; action++) {
+          store.addRegret(round, player, regretIndex + action, actionsUtil[action] - playerUtil);
+        }
+        return util;
+    }
+    return null;
+  }
+
+}
@@ -0,0 +1,261 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.AtomicDoubleArray;
+
+import net.funkyjava.gametheory.extensiveformgame.ChancesPayouts;
+import net.funkyjava.gametheory.extensiveformgame.FlatActionTree;
+
+/**
+ * CFR+ chances sampling trainer walking the {@link FlatActionTree} of the data with explicit
+ * depth-indexed stacks instead of recursion. It performs exactly the same floating point
+ * operations in the same order as a {@link CSCFRMTrainer} without discounting nor pruning, so both
+ * produce identical data.
+ *
+ * Node attributes are read from flat arrays and the regret offset of each node is precomputed, so
+ * a visit doesn't dereference any tree node object. Discounting and pruning are only provided by
+ * {@link CSCFRMTrainer}.
+ *
+ * @author Pierre Mardon
+ *
+ * @param <Chances> the chances class
+ */
+public class CSCFRMFlatTrainer<Chances extends CSCFRMChances>
+    implements CSCFRMChancesTrainer<Chances> {
+
+  private final int nbRounds;
+  private final int nbPlayers;
+  private final CSCFRMStore store;
+  private final byte[] types;
+  private final int[] players;
+  private final int[] rounds;
+  private final int[] nbActions;
+  private final int[] firstChildren;
+  private final int[] payoutIndexes;
+  private final int[] regretOffsets;
+  private final double[][] payoutsNoChance;
+  private final ChancesPayouts<Chances>[] chancesPayouts;
+  private final int[][] chancesStrides;
+  private final int[][] chancesOffsets;
+  private final AtomicDoubleArray utilitySum;
+  private final AtomicLong iterations;
+  private final double[] realizationWeights;
+  private final int[] depthNode;
+  private final int[] depthAction;
+  private final int[] depthRegretIndex;
+  private final double[] depthOldReal;
+  private final double[][] depthUtil;
+  private final double[][] depthActionUtil;
+  private final double[][] depthStrategy;
+  private long visitedNodes;
+
+  /**
+   * Constructor
+   *
+   * @param data the CSCFRM data
+   */
+  public CSCFRMFlatTrainer(final CSCFRMData<?, Chances> data) {
+    final FlatActionTree<Chances> tree = data.getFlatActionTree();
+    final int maxDepth = tree.getMaxDepth();
+    final int maxNbActions = tree.getMaxNbActions();
+    final int nbRounds = this.nbRounds = data.getRoundChancesSizes().length;
+    final int nbPlayers = this.nbPlayers = data.getNbPlayers();
+    this.utilitySum = data.getUtilitySum();
+    this.iterations = data.getIterations();
+    final CSCFRMStore store = this.store = data.getStore();
+    types = tree.getTypes();
+    final int[] players = this.players = tree.getPlayers();
+    final int[] rounds = this.rounds = tree.getRounds();
+    nbActions = tree.getNbActions();
+    firstChildren = tree.getFirstChildren();
+    payoutIndexes = tree.getPayoutIndexes();
+    payoutsNoChance = tree.getPayoutsNoChance();
+    chancesPayouts = tree.getChancesPayouts();
+    final int[] actionIndexes = tree.getActionIndexes();
+    final int[][][] nodesOffsets = store.getNodesOffsets();
+    final int nbNodes = tree.getNbNodes();
+    final int[] regretOffsets = this.regretOffsets = new int[nbNodes];
+    for (int node = 0; node < nbNodes; node++) {
+      if (types[node] == FlatActionTree.playerType) {
+        regretOffsets[node] = nodesOffsets[rounds[node]][players[node]][actionIndexes[node]];
+      }
+    }
+    chancesStrides = store.getChancesStrides();
+    chancesOffsets = new int[nbRounds][nbPlayers];
+    realizationWeights = new double[nbPlayers];
+    depthNode = new int[maxDepth];
+    depthAction = new int[maxDepth];
+    depthRegretIndex = new int[maxDepth];
+    depthOldReal = new double[maxDepth];
+    depthUtil = new double[maxDepth][nbPlayers];
+    depthActionUtil = new double[maxDepth][maxNbActions];
+    depthStrategy = new double[maxDepth][maxNbActions];
+  }
+
+  @Override
+  public final void train(final Chances chances) {
+    final int nbRounds = this.nbRounds;
+    final int nbPlayers = this.nbPlayers;
+    final int[][] chancesStrides = this.chancesStrides;
+    final int[][] chancesOffsets = this.chancesOffsets;
+    final int[][] playersChances = chances.getPlayersChances();
+    for (int round = 0; round < nbRounds; round++) {
+      final int[] roundChances = playersChances[round];
+      final int[] roundStrides = chancesStrides[round];
+      final int[] roundOffsets = chancesOffsets[round];
+      for (int player = 0; player < nbPlayers; player++) {
+        roundOffsets[player] = roundChances[player] * roundStrides[player];
+      }
+    }
+    final double[] realizationWeights = this.realizationWeights;
+    for (int i = 0; i < nbPlayers; i++) {
+      realizationWeights[i] = 1;
+    }
+    final double[] utility = walk(chances);
+    final AtomicDoubleArray utilitySum = this.utilitySum;
+    for (int i = 0; i < nbPlayers; i++) {
+      utilitySum.addAndGet(i, utility[i]);
+    }
+    iterations.incrementAndGet();
+  }
+
+  @Override
+  public long getVisitedNodes() {
+    return visitedNodes;
+  }
+
+  private final double[] terminalPayouts(final int node, final Chances chances) {
+    if (types[node] == FlatActionTree.payoutsNoChanceType) {
+      return payoutsNoChance[payoutIndexes[node]];
+    }
+    return chancesPayouts[payoutIndexes[node]].getPayouts(chances);
+  }
+
+  private final double[] walk(final Chances chances) {
+    if (types[0] != FlatActionTree.playerType) {
+      return terminalPayouts(0, chances);
+    }
+    final int nbPlayers = this.nbPlayers;
+    final byte[] types = this.types;
+    final int[] players = this.players;
+    final int[] nbActions = this.nbActions;
+    final int[] firstChildren = this.firstChildren;
+    final int[] depthNode = this.depthNode;
+    final int[] depthAction = this.depthAction;
+    final int[] depthRegretIndex = this.depthRegretIndex;
+    final double[] depthOldReal = this.depthOldReal;
+    final double[][] depthUtil = this.depthUtil;
+    final double[][] depthActionUtil = this.depthActionUtil;
+    final double[][] depthStrategy = this.depthStrategy;
+    final double[] realizationWeights = this.realizationWeights;
+    int depth = 0;
+    enter(0, 0);
+    while (true) {
+      final int node = depthNode[depth];
+      final int action = depthAction[depth];
+      final int player = players[node];
+      final double[] strategy = depthStrategy[depth];
+      if (action < nbActions[node]) {
+        final int child = firstChildren[node] + action;
+        realizationWeights[player] *= strategy[action];
+        if (types[child] == FlatActionTree.playerType) {
+          enter(child, ++depth);
+          continue;
+        }
+        final double[] childUtil = terminalPayouts(child, chances);
+        final double[] util = depthUtil[depth];
+        for (int p = 0; p < nbPlayers; p++) {
+          util[p] += strategy[action] * childUtil[p];
+        }
+        depthActionUtil[depth][action] = childUtil[player];
+        realizationWeights[player] = depthOldReal[depth];
+        depthAction[depth]++;
+        continue;
+      }
+      // All actions were walked, update the regrets and go back to the parent
+      final double[] util = depthUtil[depth];
+      updateRegrets(node, depthRegretIndex[depth], util, depthActionUtil[depth]);
+      if (depth == 0) {
+        return util;
+      }
+      depth--;
+      final int parent = depthNode[depth];
+      final int parentAction = depthAction[depth];
+      final int parentPlayer = players[parent];
+      final double[] parentStrategy = depthStrategy[depth];
+      final double[] parentUtil = depthUtil[depth];
+      for (int p = 0; p < nbPlayers; p++) {
+        parentUtil[p] += parentStrategy[parentAction] * util[p];
+      }
+      depthActionUtil[depth][parentAction] = util[parentPlayer];
+      realizationWeights[parentPlayer] = depthOldReal[depth];
+      depthAction[depth]++;
+    }
+  }
+
+  private final void enter(final int node, final int depth) {
+    final int nbPlayers = this.nbPlayers;
+    final int round = rounds[node];
+    final int player = players[node];
+    final int nbChildren = nbActions[node];
+    final CSCFRMStore store = this.store;
+    final int regretIndex = chancesOffsets[round][player] + regretOffsets[node];
+    final int stratIndex = regretIndex + nbChildren;
+    final double[] strategy = depthStrategy[depth];
+    final double[] util = depthUtil[depth];
+    for (int p = 0; p < nbPlayers; p++) {
+      util[p] = 0;
+    }
+    final double[] actionsUtil = depthActionUtil[depth];
+    double totalRegret = 0;
+    for (int action = 0; action < nbChildren; action++) {
+      actionsUtil[action] = 0;
+      double actionRegret = store.getRegret(round, player, regretIndex + action);
+      if (actionRegret < 0) {
+        store.setRegret(round, player, regretIndex + action, actionRegret = 0);
+      }
+      // Regret matching
+      totalRegret += strategy[action] = (actionRegret > 0 ? actionRegret : 0);
+    }
+    visitedNodes++;
+    final double playerRealWeight = realizationWeights[player];
+    if (totalRegret > 0) {
+      for (int action = 0; action < nbChildren; action++) {
+        store.addStrategy(round, player, stratIndex + action,
+            playerRealWeight * (strategy[action] /= totalRegret));
+      }
+    } else {
+      for (int action = 0; action < nbChildren; action++) {
+        store.addStrategy(round, player, stratIndex + action,
+            playerRealWeight * (strategy[action] = (1.0d / nbChildren)));
+      }
+    }
+    depthNode[depth] = node;
+    depthAction[depth] = 0;
+    depthRegretIndex[depth] = regretIndex;
+    depthOldReal[depth] = playerRealWeight;
+  }
+
+  private final void updateRegrets(final int node, final int regretIndex, final double[] util,
+      final double[] actionsUtil) {
+    final int nbPlayers = this.nbPlayers;
+    final int round = rounds[node];
+    final int player = players[node];
+    final int nbChildren = nbActions[node];
+    final double[] realizationWeights = this.realizationWeights;
+    final CSCFRMStore store = this.store;
+    double weight = 1;
+    for (int p = 0; p < nbPlayers; p++) {
+      if (p != player) {
+        weight *= realizationWeights[p];
+      }
+    }
+    final double playerUtil = util[player];
+    for (int action = 0; action < nbChildren; action++) {
+      store.addRegret(round, player, regretIndex + action,
+          weight * (actionsUtil[action] - playerUtil));
+    }
+  }
+
+}
@@ -0,0 +1,83 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import net.funkyjava.gametheory.extensiveformgame.ActionTree;
+
+/**
+ * {@link CSCFRMStore} holding regret and strategy sums as floats, halving the memory of
+ * {@link CSCFRMDoubleStore}
+ *
+ * @author Pierre Mardon
+ *
+ */
+public final class CSCFRMFloatStore extends CSCFRMStore {
+
+  private final float[][][] values;
+
+  /**
+   * Constructor
+   *
+   * @param actionTree the action tree from which the nodes layout is computed
+   * @param roundChancesSizes the chances sizes indexed by round, player
+   */
+  public CSCFRMFloatStore(final ActionTree<?, ?> actionTree, final int[][] roundChancesSizes) {
+    super(actionTree, roundChancesSizes);
+    final int[][] sizes = getSizes();
+    final int nbRounds = getNbRounds();
+    final int nbPlayers = getNbPlayers();
+    final float[][][] values = this.values = new float[nbRounds][nbPlayers][];
+    for (int round = 0; round < nbRounds; round++) {
+      for (int player = 0; player < nbPlayers; player++) {
+        values[round][player] = new float[sizes[round][player]];
+      }
+    }
+  }
+
+  private CSCFRMFloatStore(final CSCFRMFloatStore src) {
+    super(src);
+    final float[][][] values = this.values = new float[src.values.length][][];
+    for (int round = 0; round < values.length; round++) {
+      final float[][] roundValues = src.values[round];
+      values[round] = new float[roundValues.length][];
+      for (int player = 0; player < roundValues.length; player++) {
+        values[round][player] = roundValues[player].clone();
+      }
+    }
+  }
+
+  @Override
+  public CSCFRMFloatStore copy() {
+    return new CSCFRMFloatStore(this);
+  }
+
+  @Override
+  public double getRegret(final int round, final int player, final int index) {
+    return values[round][player][index];
+  }
+
+  @Override
+  public void setRegret(final int round, final int player, final int index, final double value) {
+    values[round][player][index] = (float) value;
+  }
+
+  @Override
+  public void addRegret(final int round, final int player, final int index, final double value) {
+    values[round][player][index] += value;
+  }
+
+  @Override
+  public double getStrategy(final int round, final int player, final int index) {
+    return values[round][player][index];
+  }
+
+  @Override
+  public void setStrategy(final int round, final int player, final int index,
+      final double value) {
+    values[round][player][index] = (float) value;
+  }
+
+  @Override
+  public void addStrategy(final int round, final int player, final int index,
+      final double value) {
+    values[round][player][index] += value;
+  }
+}
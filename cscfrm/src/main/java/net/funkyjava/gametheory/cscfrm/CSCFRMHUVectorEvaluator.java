@@ -0,0 +1,128 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import net.funkyjava.gametheory.extensiveformgame.ChancesPayouts;
+import net.funkyjava.gametheory.extensiveformgame.LinkedActionTreeNode;
+
+/**
+ * Dense {@link CSCFRMVectorEvaluator} for two players games with one chances round. Showdown
+ * payouts of each terminal node are read once for all chances couples and premultiplied by the
+ * chances probabilities, so that each evaluation is a couple of matrix-vector products.
+ * 
+ * @author Pierre Mardon
+ *
+ * @param <Chances> the chances class
+ */
+public class CSCFRMHUVectorEvaluator<Chances> implements CSCFRMVectorEvaluator<Chances> {
+
+  private final int nbChances0;
+  private final int nbChances1;
+  private final double[][] probabilities;
+  private final double[][] transposedProbabilities;
+  private final Function<int[][], Chances> chancesFactory;
+  // Action tree nodes have identity equality
+  private final Map<LinkedActionTreeNode<?, Chances>, double[][][]> showdowns =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Constructor
+   * 
+   * @param probabilities the probability of each couple of chances, indexed by the first player's
+   *        chance then the second player's chance
+   * @param chancesFactory builds the chances for given players chances, used to read the showdown
+   *        payouts
+   */
+  public CSCFRMHUVectorEvaluator(final double[][] probabilities,
+      final Function<int[][], Chances> chancesFactory) {
+    final int nbChances0 = this.nbChances0 = probabilities.length;
+    checkArgument(nbChances0 > 0, "No chances");
+    final int nbChances1 = this.nbChances1 = probabilities[0].length;
+    this.probabilities = probabilities;
+    this.chancesFactory = chancesFactory;
+    final double[][] transposed = transposedProbabilities = new double[nbChances1][nbChances0];
+    for (int i = 0; i < nbChances0; i++) {
+      checkArgument(probabilities[i].length == nbChances1, "Probabilities must be a matrix");
+      for (int j = 0; j < nbChances1; j++) {
+        transposed[j][i] = probabilities[i][j];
+      }
+    }
+  }
+
+  @Override
+  public void evaluate(final LinkedActionTreeNode<?, Chances> node, final double[][] reach,
+      final double[][] utilities) {
+    switch (node.getNodeType()) {
+      case PAYOUTS_NO_CHANCE:
+        final double[] payouts = node.getPayoutsNoChance();
+        product(probabilities, reach[1], payouts[0], 0, nbChances0, utilities[0]);
+        product(transposedProbabilities, reach[0], payouts[1], 0, nbChances1, utilities[1]);
+        return;
+      case CHANCES_PAYOUTS:
+        final double[][][] showdown = showdowns.computeIfAbsent(node, this::showdown);
+        product(showdown[0], reach[1], 1, 0, nbChances0, utilities[0]);
+        product(showdown[1], reach[0], 1, 0, nbChances1, utilities[1]);
+        return;
+      default:
+        throw new IllegalArgumentException("Can only evaluate terminal nodes");
+    }
+  }
+
+  @Override
+  public void evaluate(final LinkedActionTreeNode<?, Chances> node, final double[][] reach,
+      final int player, final int fromChance, final int toChance, final double[] utilities) {
+    checkArgument(player == 0 || player == 1, "Only two players");
+    switch (node.getNodeType()) {
+      case PAYOUTS_NO_CHANCE:
+        product(player == 0 ? probabilities : transposedProbabilities, reach[1 - player],
+            node.getPayoutsNoChance()[player], fromChance, toChance, utilities);
+        return;
+      case CHANCES_PAYOUTS:
+        product(showdowns.computeIfAbsent(node, this::showdown)[player], reach[1 - player], 1,
+            fromChance, toChance, utilities);
+        return;
+      default:
+        throw new IllegalArgumentException("Can only evaluate terminal nodes");
+    }
+  }
+
+  private static final void product(final double[][] matrix, final double[] vector,
+      final double factor, final int fromRow, final int toRow, final double[] result) {
+    final int nbColumns = vector.length;
+    for (int i = fromRow; i < toRow; i++) {
+      final double[] row = matrix[i];
+      double sum = 0;
+      for (int j = 0; j < nbColumns; j++) {
+        sum += row[j] * vector[j];
+      }
+      result[i - fromRow] = factor * sum;
+    }
+  }
+
+  private final double[][][] showdown(final LinkedActionTreeNode<?, Chances> node) {
+    final int nbChances0 = this.nbChances0;
+    final int nbChances1 = this.nbChances1;
+    final double[][] probabilities = this.probabilities;
+    final ChancesPayouts<Chances> chancesPayouts = node.getChancesPayouts();
+    // First player's utilities matrix, then the second player's one transposed
+    final double[][] utilities0 = new double[nbChances0][nbChances1];
+    final double[][] utilities1 = new double[nbChances1][nbChances0];
+    for (int i = 0; i < nbChances0; i++) {
+      for (int j = 0; j < nbChances1; j++) {
+        final double probability = probabilities[i][j];
+        if (probability == 0) {
+          continue;
+        }
+        final double[] payouts =
+            chancesPayouts.getPayouts(chancesFactory.apply(new int[][] {{i, j}}));
+        utilities0[i][j] = probability * payouts[0];
+        utilities1[j][i] = probability * payouts[1];
+      }
+    }
+    return new double[][][] {utilities0, utilities1};
+  }
+}
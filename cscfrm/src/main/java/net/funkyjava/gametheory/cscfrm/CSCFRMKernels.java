@@ -0,0 +1,105 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Dense loops of the trainers that walk all chances at once, over arrays indexed by chance. All
+ * implementations must compute each element with the same IEEE operations in the same order as
+ * {@link CSCFRMScalarKernels}, so that the trained data doesn't depend on the implementation.
+ *
+ * {@link #get()} loads the first implementation registered as a {@link ServiceLoader} service that
+ * can be instantiated by the running JVM, for example the Vector API implementation of the
+ * cscfrm.vector artifact, and falls back to {@link CSCFRMScalarKernels}.
+ *
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public abstract class CSCFRMKernels {
+
+  private static CSCFRMKernels instance;
+
+  /**
+   * Get the kernels implementation
+   *
+   * @return the best available kernels
+   */
+  public static synchronized CSCFRMKernels get() {
+    if (instance == null) {
+      instance = load();
+      log.info("Using {}", instance.getClass().getSimpleName());
+    }
+    return instance;
+  }
+
+  private static CSCFRMKernels load() {
+    try {
+      final Iterator<CSCFRMKernels> it = ServiceLoader.load(CSCFRMKernels.class).iterator();
+      while (it.hasNext()) {
+        try {
+          return it.next();
+        } catch (Throwable e) {
+          // Compiled for a newer JVM, or its modules are missing
+          log.debug("Skipping unavailable kernels", e);
+        }
+      }
+    } catch (Throwable e) {
+      log.debug("Kernels services lookup failed", e);
+    }
+    return new CSCFRMScalarKernels();
+  }
+
+  /**
+   * CFR+ regret matching for each chance. The regrets must be non-negative.
+   *
+   * @param regrets the regrets indexed by action then chance
+   * @param strategy the strategy to fill, indexed by action then chance. Each chance's strategy is
+   *        proportional to its regrets, or uniform when they are all zero.
+   * @param nbActions the number of actions
+   * @param length the number of chances
+   */
+  public abstract void regretMatching(double[][] regrets, double[][] strategy, int nbActions,
+      int length);
+
+  /**
+   * dst[i] = a[i] * b[i]
+   *
+   * @param a the first factors
+   * @param b the second factors
+   * @param dst the products
+   * @param length the number of elements
+   */
+  public abstract void multiply(double[] a, double[] b, double[] dst, int length);
+
+  /**
+   * acc[i] += a[i] * b[i], rounding the product before the sum
+   *
+   * @param a the first factors
+   * @param b the second factors
+   * @param acc the accumulators
+   * @param length the number of elements
+   */
+  public abstract void multiplyAdd(double[] a, double[] b, double[] acc, int length);
+
+  /**
+   * acc[i] += src[i]
+   *
+   * @param src the values to add
+   * @param acc the accumulators
+   * @param length the number of elements
+   */
+  public abstract void add(double[] src, double[] acc, int length);
+
+  /**
+   * dst[i] = a[i] - b[i]
+   *
+   * @param a the minuends
+   * @param b the subtrahends
+   * @param dst the differences
+   * @param length the number of elements
+   */
+  public abstract void subtract(double[] a, double[] b, double[] dst, int length);
+}
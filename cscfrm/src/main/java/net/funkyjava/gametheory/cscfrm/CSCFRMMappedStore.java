@@ -0,0 +1,362 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import lombok.Getter;
+import net.funkyjava.gametheory.extensiveformgame.ActionTree;
+import net.funkyjava.gametheory.io.IOUtils;
+
+/**
+ * {@link CSCFRMStore} holding regret and strategy sums as doubles in a memory-mapped file. The
+ * values are laid out by round, player, chance, action node and action like in
+ * {@link CSCFRMDoubleStore}, so resuming a training is only a matter of mapping the file again
+ * while the OS pages the values in on demand.
+ *
+ * The file starts with a big-endian header recording the byte order of the values, the tree shape
+ * (chances sizes and number of actions of each action node for each round and player), the number
+ * of iterations, the utility sums and whether discount stamps were stored. New files store their
+ * values in the native byte order, and existing files are mapped with the byte order they were
+ * written with, so they stay readable on a machine of another byte order. The values are followed
+ * by a region holding the discount stamps of {@link CSCFRMData#getDiscountStamps()}, which stays
+ * sparse until stamps are forced. When an existing file is opened, its shape is checked against
+ * the action tree. Values are only guaranteed to be on disk after a call to
+ * {@link #force(long, double[], int[][][])}.
+ *
+ * @author Pierre Mardon
+ *
+ */
+public final class CSCFRMMappedStore extends CSCFRMStore implements Closeable {
+
+  private static final long magic = 0x43534346524D4D31L;
+  private static final int version = 3;
+  private static final long pageSize = 4096;
+  private static final int chunkShift = 27;
+  private static final int chunkMask = (1 << chunkShift) - 1;
+  private static final int doubleBytes = Double.BYTES;
+  private static final int bigEndian = 0;
+  private static final int littleEndian = 1;
+  private static final int iterationsOffset = Long.BYTES + Integer.BYTES * 4;
+
+  /**
+   * Path of the mapped file
+   */
+  @Getter
+  private final Path path;
+  private final FileChannel channel;
+  private final MappedByteBuffer header;
+  private final MappedByteBuffer[] mappings;
+  private final DoubleBuffer[][][] chunks;
+  private final int stampedOffset;
+  private final long stampsOffset;
+  /**
+   * Number of iterations stored in the file's header
+   */
+  @Getter
+  private final long storedIterations;
+  private final double[] storedUtilitySums;
+
+  /**
+   * Open or create a mapped store. When the file exists, its header is validated against the tree
+   * shape and its values are kept.
+   *
+   * @param actionTree the action tree from which the nodes layout is computed
+   * @param roundChancesSizes the chances sizes indexed by round, player
+   * @param path the file path
+   * @throws IOException
+   */
+  public CSCFRMMappedStore(final ActionTree<?, ?> actionTree, final int[][] roundChancesSizes,
+      final Path path) throws IOException {
+    super(actionTree, roundChancesSizes);
+    this.path = path;
+    final int nbRounds = getNbRounds();
+    final int nbPlayers = getNbPlayers();
+    final int[][][] nodesNbActions = getNodesNbActions();
+    final int stampedOffset =
+        this.stampedOffset = iterationsOffset + Long.BYTES + nbPlayers * doubleBytes;
+    int headerSize = stampedOffset + Integer.BYTES;
+    for (int round = 0; round < nbRounds; round++) {
+      for (int player = 0; player < nbPlayers; player++) {
+        headerSize += Integer.BYTES * (2 + nodesNbActions[round][player].length);
+      }
+    }
+    final long dataOffset = (headerSize + pageSize - 1) / pageSize * pageSize;
+    final int[][] sizes = getSizes();
+    long fileSize = dataOffset;
+    for (int round = 0; round < nbRounds; round++) {
+      for (int player = 0; player < nbPlayers; player++) {
+        fileSize += (long) sizes[round][player] * doubleBytes;
+      }
+    }
+    this.stampsOffset = fileSize;
+    for (int round = 0; round < nbRounds; round++) {
+      for (int player = 0; player < nbPlayers; player++) {
+        fileSize += (long) roundChancesSizes[round][player]
+            * nodesNbActions[round][player].length * Integer.BYTES;
+      }
+    }
+    final FileChannel channel = this.channel = FileChannel.open(path, StandardOpenOption.READ,
+        StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+    try {
+      final boolean exists = channel.size() > 0;
+      if (exists) {
+        checkArgument(channel.size() == fileSize,
+            "Mapped store file %s has size %s, expected %s", path, channel.size(), fileSize);
+      }
+      final MappedByteBuffer header = this.header = channel.map(MapMode.READ_WRITE, 0, headerSize);
+      final ByteOrder order;
+      final double[] utilitySums = this.storedUtilitySums = new double[nbPlayers];
+      if (exists) {
+        order = checkHeader(header);
+        storedIterations = header.getLong(iterationsOffset);
+        for (int i = 0; i < nbPlayers; i++) {
+          utilitySums[i] = header.getDouble(iterationsOffset + Long.BYTES + i * doubleBytes);
+        }
+      } else {
+        order = ByteOrder.nativeOrder();
+        writeHeader(header, order);
+        storedIterations = 0;
+        channel.write(ByteBuffer.allocate(1), fileSize - 1);
+      }
+      int nbMappings = 0;
+      for (int round = 0; round < nbRounds; round++) {
+        for (int player = 0; player < nbPlayers; player++) {
+          nbMappings += nbChunks(sizes[round][player]);
+        }
+      }
+      final MappedByteBuffer[] mappings = this.mappings = new MappedByteBuffer[nbMappings];
+      final DoubleBuffer[][][] chunks = this.chunks = new DoubleBuffer[nbRounds][nbPlayers][];
+      long offset = dataOffset;
+      int mapping = 0;
+      for (int round = 0; round < nbRounds; round++) {
+        for (int player = 0; player < nbPlayers; player++) {
+          final int size = sizes[round][player];
+          final int nbChunks = nbChunks(size);
+          final DoubleBuffer[] playerChunks = chunks[round][player] = new DoubleBuffer[nbChunks];
+          for (int chunk = 0; chunk < nbChunks; chunk++) {
+            final int chunkSize = Math.min(size - (chunk << chunkShift), 1 << chunkShift);
+            final long bytes = (long) chunkSize * doubleBytes;
+            final MappedByteBuffer buffer =
+                mappings[mapping++] = channel.map(MapMode.READ_WRITE, offset, bytes);
+            buffer.order(order);
+            playerChunks[chunk] = buffer.asDoubleBuffer();
+            offset += bytes;
+          }
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private static final int nbChunks(final int size) {
+    return (int) (((long) size + chunkMask) >>> chunkShift);
+  }
+
+  private final void writeHeader(final ByteBuffer header, final ByteOrder order) {
+    final int nbRounds = getNbRounds();
+    final int nbPlayers = getNbPlayers();
+    final int[][] roundChancesSizes = getRoundChancesSizes();
+    final int[][][] nodesNbActions = getNodesNbActions();
+    header.position(0);
+    header.putLong(magic).putInt(version)
+        .putInt(order == ByteOrder.BIG_ENDIAN ? bigEndian : littleEndian).putInt(nbRounds)
+        .putInt(nbPlayers).putLong(0);
+    for (int i = 0; i < nbPlayers; i++) {
+      header.putDouble(0);
+    }
+    header.putInt(0);
+    for (int round = 0; round < nbRounds; round++) {
+      for (int player = 0; player < nbPlayers; player++) {
+        final int[] nbActions = nodesNbActions[round][player];
+        header.putInt(roundChancesSizes[round][player]).putInt(nbActions.length);
+        for (int node = 0; node < nbActions.length; node++) {
+          header.putInt(nbActions[node]);
+        }
+      }
+    }
+  }
+
+  private final ByteOrder checkHeader(final ByteBuffer header) {
+    final int nbRounds = getNbRounds();
+    final int nbPlayers = getNbPlayers();
+    final int[][] roundChancesSizes = getRoundChancesSizes();
+    final int[][][] nodesNbActions = getNodesNbActions();
+    header.position(0);
+    final long fileMagic = header.getLong();
+    // Older versions wrote their header in the native byte order
+    checkArgument(fileMagic == magic || fileMagic == Long.reverseBytes(magic),
+        "%s is not a CSCFRM mapped store", path);
+    final int fileVersion =
+        fileMagic == magic ? header.getInt() : Integer.reverseBytes(header.getInt());
+    checkArgument(fileVersion == version, "Unsupported mapped store version %s", fileVersion);
+    final int fileOrder = header.getInt();
+    checkArgument(fileOrder == bigEndian || fileOrder == littleEndian,
+        "Mapped store %s has an unknown byte order %s", path, fileOrder);
+    checkArgument(header.getInt() == nbRounds && header.getInt() == nbPlayers,
+        "Mapped store %s doesn't match the number of rounds and players", path);
+    header.position(stampedOffset + Integer.BYTES);
+    for (int round = 0; round < nbRounds; round++) {
+      for (int player = 0; player < nbPlayers; player++) {
+        final int[] nbActions = nodesNbActions[round][player];
+        checkArgument(
+            header.getInt() == roundChancesSizes[round][player]
+                && header.getInt() == nbActions.length,
+            "Mapped store %s doesn't match the tree for round %s player %s", path, round, player);
+        for (int node = 0; node < nbActions.length; node++) {
+          checkArgument(header.getInt() == nbActions[node],
+              "Mapped store %s doesn't match the tree for round %s player %s node %s", path, round,
+              player, node);
+        }
+      }
+    }
+    return fileOrder == bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+  }
+
+  /**
+   * Get the utility sums stored in the file's header
+   *
+   * @return a copy of the stored utility sums
+   */
+  public double[] getStoredUtilitySums() {
+    return storedUtilitySums.clone();
+  }
+
+  /**
+   * Read the discount stamps stored by the last {@link #force(long, double[], int[][][])}
+   *
+   * @return the discount stamps indexed by round, player, chance * number of nodes + node index,
+   *         or null when none were stored
+   * @throws IOException
+   */
+  public synchronized int[][][] readDiscountStamps() throws IOException {
+    if (header.getInt(stampedOffset) == 0) {
+      return null;
+    }
+    final int nbRounds = getNbRounds();
+    final int nbPlayers = getNbPlayers();
+    final int[][] roundChancesSizes = getRoundChancesSizes();
+    final int[][][] nodesNbActions = getNodesNbActions();
+    final int[][][] stamps = new int[nbRounds][nbPlayers][];
+    for (int round = 0; round < nbRounds; round++) {
+      for (int player = 0; player < nbPlayers; player++) {
+        stamps[round][player] =
+            new int[roundChancesSizes[round][player] * nodesNbActions[round][player].length];
+      }
+    }
+    channel.position(stampsOffset);
+    IOUtils.fill(channel, stamps);
+    return stamps;
+  }
+
+  /**
+   * Durability point : force all values and the discount stamps to the disk, then write the
+   * counters in the header and force it. Values updated concurrently may or may not be part of the
+   * forced state.
+   *
+   * @param iterations the number of iterations to record
+   * @param utilitySums the utility sums to record
+   * @param discountStamps the discount stamps to record, or null when there are none
+   * @throws IOException when the discount stamps can't be written
+   */
+  public synchronized void force(final long iterations, final double[] utilitySums,
+      final int[][][] discountStamps) throws IOException {
+    final int nbPlayers = getNbPlayers();
+    checkArgument(utilitySums.length == nbPlayers, "Wrong number of utility sums");
+    for (MappedByteBuffer mapping : mappings) {
+      mapping.force();
+    }
+    if (discountStamps != null) {
+      channel.position(stampsOffset);
+      IOUtils.write(channel, discountStamps);
+      channel.force(false);
+    }
+    final MappedByteBuffer header = this.header;
+    header.putLong(iterationsOffset, iterations);
+    for (int i = 0; i < nbPlayers; i++) {
+      header.putDouble(iterationsOffset + Long.BYTES + i * doubleBytes, utilitySums[i]);
+    }
+    header.putInt(stampedOffset, discountStamps == null ? 0 : 1);
+    header.force();
+  }
+
+  /**
+   * Close the file channel. Mappings stay valid until they are garbage collected, but nothing is
+   * forced to the disk.
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Copy the values into an on-heap {@link CSCFRMDoubleStore}
+   */
+  @Override
+  public CSCFRMDoubleStore copy() {
+    final int nbRounds = getNbRounds();
+    final int nbPlayers = getNbPlayers();
+    final int[][] sizes = getSizes();
+    final DoubleBuffer[][][] chunks = this.chunks;
+    final double[][][] values = new double[nbRounds][nbPlayers][];
+    for (int round = 0; round < nbRounds; round++) {
+      for (int player = 0; player < nbPlayers; player++) {
+        final double[] playerValues = values[round][player] = new double[sizes[round][player]];
+        final DoubleBuffer[] playerChunks = chunks[round][player];
+        for (int chunk = 0; chunk < playerChunks.length; chunk++) {
+          final DoubleBuffer src = playerChunks[chunk].duplicate();
+          src.clear();
+          src.get(playerValues, chunk << chunkShift, src.remaining());
+        }
+      }
+    }
+    return new CSCFRMDoubleStore(this, values);
+  }
+
+  @Override
+  public double getRegret(final int round, final int player, final int index) {
+    return chunks[round][player][index >>> chunkShift].get(index & chunkMask);
+  }
+
+  @Override
+  public void setRegret(final int round, final int player, final int index, final double value) {
+    chunks[round][player][index >>> chunkShift].put(index & chunkMask, value);
+  }
+
+  @Override
+  public void addRegret(final int round, final int player, final int index, final double value) {
+    final DoubleBuffer chunk = chunks[round][player][index >>> chunkShift];
+    final int i = index & chunkMask;
+    chunk.put(i, chunk.get(i) + value);
+  }
+
+  @Override
+  public double getStrategy(final int round, final int player, final int index) {
+    return chunks[round][player][index >>> chunkShift].get(index & chunkMask);
+  }
+
+  @Override
+  public void setStrategy(final int round, final int player, final int index,
+      final double value) {
+    chunks[round][player][index >>> chunkShift].put(index & chunkMask, value);
+  }
+
+  @Override
+  public void addStrategy(final int round, final int player, final int index,
+      final double value) {
+    final DoubleBuffer chunk = chunks[round][player][index >>> chunkShift];
+    final int i = index & chunkMask;
+    chunk.put(i, chunk.get(i) + value);
+  }
+}
@@ -12,6 +12,10 @@ import com.google.common.util.concurrent.Monitor;
  * Chances synchronizer with no additional thread required. Each consumer produces the requested
  * chances.
  * 
+ * Consumers draw while holding the monitor until they get non-colliding chances, so the chances
+ * sizes must exceed the number of chances the other consumers can hold at once, that is the number
+ * of threads minus one times the batch size.
+ * 
  * @author Pierre Mardon
  *
  * @param <Chances>
@@ -26,6 +30,10 @@ public class CSCFRMMutexChancesSynchronizer<Chances extends CSCFRMChances>
   private final List<Chances> collisionChances = new ArrayList<>();
   private final List<Chances> availableChances = new LinkedList<>();
   private boolean stop = false;
+  // Only written while holding the monitor, volatile for monitoring reads
+  private volatile int backlog = 0;
+  private volatile long producedChances = 0;
+  private volatile long producerNanos = 0;
 
   /**
    * Constructor
@@ -63,10 +71,11 @@ public class CSCFRMMutexChancesSynchronizer<Chances extends CSCFRMChances>
       }
       final List<Chances> collisionChances = this.collisionChances;
       while (true) {
-        final Chances chances = producer.produceChances();
+        final Chances chances = produce();
         final int[][] playersChances = chances.getPlayersChances();
         if (hasCollision(playersChances)) {
           collisionChances.add(chances);
+          backlog = collisionChances.size();
           continue;
         }
         reserve(playersChances);
@@ -81,8 +90,6 @@ public class CSCFRMMutexChancesSynchronizer<Chances extends CSCFRMChances>
   public void endUsing(final Chances used) throws InterruptedException {
     final Monitor monitor = this.monitor;
     final CSCFRMChancesProducer<Chances> producer = this.producer;
-    final List<Chances> collisionChances = this.collisionChances;
-    final List<Chances> availableChances = this.availableChances;
     final int[][] playersChances = used.getPlayersChances();
     monitor.enter();
     try {
@@ -91,24 +98,95 @@ public class CSCFRMMutexChancesSynchronizer<Chances extends CSCFRMChances>
       if (stop) {
         return;
       }
-      int nbCollision = collisionChances.size();
-      for (int i = 0; i < nbCollision;) {
-        final Chances chances = collisionChances.get(i);
-        final int[][] pChances = chances.getPlayersChances();
-        if (!hasCollision(pChances)) {
-          availableChances.add(chances);
-          reserve(pChances);
-          collisionChances.remove(i);
-          nbCollision--;
-        } else {
-          i++;
+      retryCollisions();
+    } finally {
+      monitor.leave();
+    }
+  }
+
+  @Override
+  public int getChances(final Chances[] batch, final int maxCount) throws InterruptedException {
+    final List<Chances> availableChances = this.availableChances;
+    final Monitor monitor = this.monitor;
+    monitor.enter();
+    try {
+      if (stop) {
+        return 0;
+      }
+      int count = 0;
+      while (count < maxCount && !availableChances.isEmpty()) {
+        batch[count++] = availableChances.remove(0);
+      }
+      final List<Chances> collisionChances = this.collisionChances;
+      // Once the batch isn't empty, draws are bounded so that the backlog can't grow indefinitely
+      for (int draws = 0; count < maxCount && (count == 0 || draws < maxCount); draws++) {
+        final Chances chances = produce();
+        final int[][] playersChances = chances.getPlayersChances();
+        if (hasCollision(playersChances)) {
+          collisionChances.add(chances);
+          continue;
         }
+        reserve(playersChances);
+        batch[count++] = chances;
+      }
+      backlog = collisionChances.size();
+      return count;
+    } finally {
+      monitor.leave();
+    }
+  }
+
+  @Override
+  public void endUsing(final Chances[] batch, final int count) throws InterruptedException {
+    final Monitor monitor = this.monitor;
+    final CSCFRMChancesProducer<Chances> producer = this.producer;
+    monitor.enter();
+    try {
+      for (int i = 0; i < count; i++) {
+        final Chances used = batch[i];
+        endReserving(used.getPlayersChances());
+        producer.endedUsing(used);
+      }
+      if (stop) {
+        return;
       }
+      retryCollisions();
     } finally {
       monitor.leave();
     }
   }
 
+  private final void retryCollisions() {
+    final List<Chances> collisionChances = this.collisionChances;
+    final List<Chances> availableChances = this.availableChances;
+    int nbCollision = collisionChances.size();
+    for (int i = 0; i < nbCollision;) {
+      final Chances chances = collisionChances.get(i);
+      final int[][] pChances = chances.getPlayersChances();
+      if (!hasCollision(pChances)) {
+        availableChances.add(chances);
+        reserve(pChances);
+        collisionChances.remove(i);
+        nbCollision--;
+      } else {
+        i++;
+      }
+    }
+    backlog = nbCollision;
+  }
+
+  private final Chances produce() {
+    final long produced = producedChances + 1;
+    producedChances = produced;
+    if ((produced & CSCFRMRunnerMetrics.samplingMask) != 0) {
+      return producer.produceChances();
+    }
+    final long start = System.nanoTime();
+    final Chances chances = producer.produceChances();
+    producerNanos += (System.nanoTime() - start) * CSCFRMRunnerMetrics.samplingInterval;
+    return chances;
+  }
+
   private final void reserve(final int[][] usedChances) {
     final int nbRounds = this.nbRounds;
     final BitSet[][] inUseBits = this.inUseBits;
@@ -163,6 +241,7 @@ public class CSCFRMMutexChancesSynchronizer<Chances extends CSCFRMChances>
       producer.endedUsing(chances);
     }
     collisionChances.clear();
+    backlog = 0;
     for (Chances chances : availableChances) {
       endReserving(chances.getPlayersChances());
       producer.endedUsing(chances);
@@ -187,4 +266,19 @@ public class CSCFRMMutexChancesSynchronizer<Chances extends CSCFRMChances>
     return Collections.emptyList();
   }
 
+  @Override
+  public int getBacklog() {
+    return backlog;
+  }
+
+  @Override
+  public long getProducedChances() {
+    return producedChances;
+  }
+
+  @Override
+  public long getProducerNanos() {
+    return producerNanos;
+  }
+
 }
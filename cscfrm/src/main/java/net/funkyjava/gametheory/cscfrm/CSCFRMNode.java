@@ -5,83 +5,164 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 
 import lombok.Getter;
 import net.funkyjava.gametheory.io.Fillable;
+import net.funkyjava.gametheory.io.IOUtils;
 
 /**
- * CSCFRM node : holds the regret sum and the strategy sum of a player infoset
- * 
+ * CSCFRM node : view on the regret sum and the strategy sum of a player infoset stored in a
+ * {@link CSCFRMStore}
+ *
  * @author Pierre Mardon
  *
  */
 public class CSCFRMNode implements Fillable {
 
+  private final CSCFRMStore store;
+  private final int round;
+  private final int player;
+  private final int regretIndex;
   /**
-   * The regret sum
+   * Number of actions of the node
    */
   @Getter
-  private final double[] regretSum;
+  private final int nbActions;
+
   /**
-   * The strategy sum
+   * Create a view on a node of the store
+   *
+   * @param store the store
+   * @param round the node's round
+   * @param player the node's player
+   * @param regretIndex index of the first regret sum of the node in the store
+   * @param nbActions number of actions of the node
    */
-  @Getter
-  private final double[] strategySum;
+  public CSCFRMNode(final CSCFRMStore store, final int round, final int player,
+      final int regretIndex, final int nbActions) {
+    this.store = store;
+    this.round = round;
+    this.player = player;
+    this.regretIndex = regretIndex;
+    this.nbActions = nbActions;
+  }
 
   /**
-   * Create a node for a given number of actions
-   * 
-   * @param nbActions
+   * Copy the regret sum
+   *
+   * @return a copy of the regret sum
    */
-  public CSCFRMNode(final int nbActions) {
-    regretSum = new double[nbActions];
-    strategySum = new double[nbActions];
+  public double[] getRegretSum() {
+    final CSCFRMStore store = this.store;
+    final int round = this.round;
+    final int player = this.player;
+    final int start = this.regretIndex;
+    final int nbActions = this.nbActions;
+    final double[] res = new double[nbActions];
+    for (int i = 0; i < nbActions; i++) {
+      res[i] = store.getRegret(round, player, start + i);
+    }
+    return res;
+  }
+
+  /**
+   * Copy the strategy sum
+   *
+   * @return a copy of the strategy sum
+   */
+  public double[] getStrategySum() {
+    final CSCFRMStore store = this.store;
+    final int round = this.round;
+    final int player = this.player;
+    final int nbActions = this.nbActions;
+    final int start = this.regretIndex + nbActions;
+    final double[] res = new double[nbActions];
+    for (int i = 0; i < nbActions; i++) {
+      res[i] = store.getStrategy(round, player, start + i);
+    }
+    return res;
   }
 
   /**
    * Compute the average strategy of the node
-   * 
+   *
    * @return the average strategy
    */
   public double[] getAvgStrategy() {
-    final double[] strategySum = this.strategySum;
-    final int nbActions = strategySum.length;
+    final double[] res = getStrategySum();
+    final int nbActions = res.length;
     double tot = 0;
     for (int i = 0; i < nbActions; i++) {
-      tot += strategySum[i];
+      tot += res[i];
     }
-    final double[] res = new double[nbActions];
     for (int i = 0; i < nbActions; i++) {
-      res[i] = strategySum[i] / tot;
+      res[i] /= tot;
     }
     return res;
   }
 
   @Override
   public void fill(InputStream is) throws IOException {
-    final double[] regretSum = this.regretSum;
-    final double[] strategySum = this.strategySum;
-    final int nbActions = strategySum.length;
+    final CSCFRMStore store = this.store;
+    final int round = this.round;
+    final int player = this.player;
+    final int start = this.regretIndex;
+    final int nbActions = this.nbActions;
     final DataInputStream dis = new DataInputStream(is);
     for (int i = 0; i < nbActions; i++) {
-      regretSum[i] = dis.readDouble();
+      store.setRegret(round, player, start + i, dis.readDouble());
     }
     for (int i = 0; i < nbActions; i++) {
-      strategySum[i] = dis.readDouble();
+      store.setStrategy(round, player, start + nbActions + i, dis.readDouble());
     }
   }
 
   @Override
   public void write(OutputStream os) throws IOException {
+    final CSCFRMStore store = this.store;
+    final int round = this.round;
+    final int player = this.player;
+    final int start = this.regretIndex;
+    final int nbActions = this.nbActions;
     final DataOutputStream dos = new DataOutputStream(os);
-    final double[] regretSum = this.regretSum;
-    final double[] strategySum = this.strategySum;
-    final int nbActions = strategySum.length;
     for (int i = 0; i < nbActions; i++) {
-      dos.writeDouble(regretSum[i]);
+      dos.writeDouble(store.getRegret(round, player, start + i));
+    }
+    for (int i = 0; i < nbActions; i++) {
+      dos.writeDouble(store.getStrategy(round, player, start + nbActions + i));
     }
+  }
+
+  @Override
+  public void fill(ReadableByteChannel channel) throws IOException {
+    final int nbActions = this.nbActions;
+    final ByteBuffer buffer = ByteBuffer.allocate(2 * nbActions * Double.BYTES);
+    IOUtils.readFully(channel, buffer);
+    buffer.flip();
+    final double[] regretSum = new double[nbActions];
+    final double[] strategySum = new double[nbActions];
+    IOUtils.fill(buffer, regretSum);
+    IOUtils.fill(buffer, strategySum);
+    final CSCFRMStore store = this.store;
+    final int round = this.round;
+    final int player = this.player;
+    final int start = this.regretIndex;
     for (int i = 0; i < nbActions; i++) {
-      dos.writeDouble(strategySum[i]);
+      store.setRegret(round, player, start + i, regretSum[i]);
+      store.setStrategy(round, player, start + nbActions + i, strategySum[i]);
     }
   }
+
+  @Override
+  public void write(WritableByteChannel channel) throws IOException {
+    final int nbActions = this.nbActions;
+    final ByteBuffer buffer = ByteBuffer.allocate(2 * nbActions * Double.BYTES);
+    IOUtils.write(buffer, getRegretSum());
+    IOUtils.write(buffer, getStrategySum());
+    buffer.flip();
+    IOUtils.writeFully(channel, buffer);
+  }
 }
@@ -0,0 +1,237 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.AtomicDoubleArray;
+
+import net.funkyjava.gametheory.extensiveformgame.ActionTree;
+import net.funkyjava.gametheory.extensiveformgame.LinkedActionTreeNode;
+import net.funkyjava.gametheory.extensiveformgame.PlayerNode;
+
+/**
+ * Outcome sampling MCCFR trainer. On top of the provided chances, each iteration samples a single
+ * terminal history : the traverser, which changes at each iteration, samples its actions with an
+ * epsilon-exploration of its current strategy, the other players with their current strategy.
+ * Regrets of the traverser's visited nodes are updated with importance sampling, and the other
+ * players' strategy sums are updated with stochastically weighted averaging.
+ *
+ * It shares the {@link CSCFRMStore} layout of {@link CSCFRMTrainer}. Regrets are not floored. The
+ * utility sum is updated with an unbiased estimate of the current strategy profile's utility.
+ *
+ * @author Pierre Mardon
+ *
+ * @param <Chances> the chances class
+ */
+public class CSCFRMOutcomeSamplingTrainer<Chances extends CSCFRMChances>
+    implements CSCFRMChancesTrainer<Chances> {
+
+  /**
+   * Default exploration probability of the traverser
+   */
+  public static final double defaultExploration = 0.6;
+
+  private final int nbRounds;
+  private final int nbPlayers;
+  private final LinkedActionTreeNode<?, Chances> rootNode;
+  private final CSCFRMStore store;
+  private final int[][][] nodesOffsets;
+  private final int[][] chancesStrides;
+  private final int[][] chancesOffsets;
+  private final AtomicDoubleArray utilitySum;
+  private final AtomicLong iterations;
+  private final double[] realizationWeights;
+  private final double[][] depthStrategy;
+  private final double[] utility;
+  private final double exploration;
+  private final SplittableRandom random;
+  private int traverser = 0;
+  // Values returned by the recursion : the traverser's utility divided by the terminal history
+  // sampling probability, and the probability of the tail of the history under the strategies
+  private double sampledUtil;
+  private double tailProbability;
+  private long visitedNodes;
+
+  /**
+   * Constructor with the default exploration
+   *
+   * @param data the CSCFRM data
+   */
+  public CSCFRMOutcomeSamplingTrainer(final CSCFRMData<?, Chances> data) {
+    this(data, defaultExploration, System.nanoTime());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param data the CSCFRM data
+   * @param exploration the exploration probability of the traverser, in ]0, 1]
+   * @param seed the actions sampling seed
+   */
+  public CSCFRMOutcomeSamplingTrainer(final CSCFRMData<?, Chances> data,
+      final double exploration, final long seed) {
+    checkArgument(exploration > 0 && exploration <= 1, "The exploration must be in ]0, 1]");
+    final ActionTree<?, Chances> actionTree = data.getGameActionTree();
+    final int maxDepth = actionTree.getMaxDepth();
+    final int maxNbActions = actionTree.getMaxNbActions();
+    final int nbRounds = this.nbRounds = data.getRoundChancesSizes().length;
+    final int nbPlayers = this.nbPlayers = data.getNbPlayers();
+    this.utilitySum = data.getUtilitySum();
+    this.iterations = data.getIterations();
+    rootNode = actionTree.getRoot();
+    final CSCFRMStore store = this.store = data.getStore();
+    nodesOffsets = store.getNodesOffsets();
+    chancesStrides = store.getChancesStrides();
+    chancesOffsets = new int[nbRounds][nbPlayers];
+    depthStrategy = new double[maxDepth][maxNbActions];
+    realizationWeights = new double[nbPlayers];
+    utility = new double[nbPlayers];
+    this.exploration = exploration;
+    random = new SplittableRandom(seed);
+  }
+
+  @Override
+  public final void train(final Chances chances) {
+    final int nbRounds = this.nbRounds;
+    final int nbPlayers = this.nbPlayers;
+    final int[][] chancesStrides = this.chancesStrides;
+    final int[][] chancesOffsets = this.chancesOffsets;
+    final int[][] playersChances = chances.getPlayersChances();
+    for (int round = 0; round < nbRounds; round++) {
+      final int[] roundChances = playersChances[round];
+      final int[] roundStrides = chancesStrides[round];
+      final int[] roundOffsets = chancesOffsets[round];
+      for (int player = 0; player < nbPlayers; player++) {
+        roundOffsets[player] = roundChances[player] * roundStrides[player];
+      }
+    }
+    final double[] realizationWeights = this.realizationWeights;
+    for (int i = 0; i < nbPlayers; i++) {
+      realizationWeights[i] = 1;
+    }
+    rec(0, rootNode, chances, 1);
+    final double[] utility = this.utility;
+    final AtomicDoubleArray utilitySum = this.utilitySum;
+    for (int i = 0; i < nbPlayers; i++) {
+      utilitySum.addAndGet(i, utility[i]);
+    }
+    iterations.incrementAndGet();
+    if (++traverser == nbPlayers) {
+      traverser = 0;
+    }
+  }
+
+  private final void terminal(final double[] payouts, final double sampleProbability) {
+    final int nbPlayers = this.nbPlayers;
+    final double[] realizationWeights = this.realizationWeights;
+    double historyProbability = 1;
+    for (int p = 0; p < nbPlayers; p++) {
+      historyProbability *= realizationWeights[p];
+    }
+    final double weight = historyProbability / sampleProbability;
+    final double[] utility = this.utility;
+    for (int p = 0; p < nbPlayers; p++) {
+      utility[p] = payouts[p] * weight;
+    }
+    sampledUtil = payouts[traverser] / sampleProbability;
+    tailProbability = 1;
+  }
+
+  @Override
+  public long getVisitedNodes() {
+    return visitedNodes;
+  }
+
+  private final void rec(final int depth, final LinkedActionTreeNode<?, Chances> node,
+      final Chances chances, final double sampleProbability) {
+    switch (node.getNodeType()) {
+
+      case PAYOUTS_NO_CHANCE:
+        terminal(node.getPayoutsNoChance(), sampleProbability);
+        return;
+
+      case CHANCES_PAYOUTS:
+        terminal(node.getChancesPayouts().getPayouts(chances), sampleProbability);
+        return;
+
+      case PLAYER:
+        visitedNodes++;
+        final PlayerNode<?> pNode = node.getPlayerNode();
+        final int index = node.getPlayerRoundActionIndex();
+        final int round = pNode.getRound();
+        final int player = pNode.getPlayer();
+        final CSCFRMStore store = this.store;
+        final int regretIndex = chancesOffsets[round][player] + nodesOffsets[round][player][index];
+        final int nbChildren = pNode.getNbActions();
+        final int stratIndex = regretIndex + nbChildren;
+        final double[] strategy = depthStrategy[depth];
+        double totalRegret = 0;
+        for (int action = 0; action < nbChildren; action++) {
+          final double actionRegret = store.getRegret(round, player, regretIndex + action);
+          // Regret matching
+          totalRegret += strategy[action] = (actionRegret > 0 ? actionRegret : 0);
+        }
+        if (totalRegret > 0) {
+          for (int action = 0; action < nbChildren; action++) {
+            strategy[action] /= totalRegret;
+          }
+        } else {
+          for (int action = 0; action < nbChildren; action++) {
+            strategy[action] = 1.0d / nbChildren;
+          }
+        }
+        final double[] realizationWeights = this.realizationWeights;
+        final boolean isTraverser = player == traverser;
+        final double exploration = isTraverser ? this.exploration : 0;
+        final double uniform = exploration / nbChildren;
+        final double rand = random.nextDouble();
+        double cumulated = 0;
+        int sampled = -1;
+        for (int action = 0; action < nbChildren; action++) {
+          if (rand < (cumulated += uniform + (1 - exploration) * strategy[action])) {
+            sampled = action;
+            break;
+          }
+        }
+        if (sampled < 0) {
+          // Rounding may leave the last action unselected
+          sampled = nbChildren - 1;
+        }
+        final double sampledStrategy = strategy[sampled];
+        if (!isTraverser) {
+          // Stochastically weighted averaging
+          final double avgWeight = realizationWeights[player] / sampleProbability;
+          for (int action = 0; action < nbChildren; action++) {
+            store.addStrategy(round, player, stratIndex + action, avgWeight * strategy[action]);
+          }
+        }
+        final double oldReal = realizationWeights[player];
+        realizationWeights[player] *= sampledStrategy;
+        rec(depth + 1, node.getChildren()[sampled], chances,
+            sampleProbability * (uniform + (1 - exploration) * sampledStrategy));
+        realizationWeights[player] = oldReal;
+        if (isTraverser) {
+          double othersWeight = 1;
+          final int nbPlayers = this.nbPlayers;
+          for (int p = 0; p < nbPlayers; p++) {
+            if (p != player) {
+              othersWeight *= realizationWeights[p];
+            }
+          }
+          final double weight = sampledUtil * othersWeight * tailProbability;
+          for (int action = 0; action < nbChildren; action++) {
+            if (action == sampled) {
+              store.addRegret(round, player, regretIndex + action, weight * (1 - sampledStrategy));
+            } else {
+              store.addRegret(round, player, regretIndex + action, -weight * sampledStrategy);
+            }
+          }
+        }
+        tailProbability *= sampledStrategy;
+        return;
+    }
+  }
+
+}
@@ -0,0 +1,81 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.Getter;
+
+/**
+ * Regret-based pruning settings and statistics. When the regret matching gives a null probability
+ * to an action whose regret is strictly lower than the threshold and that leads to a player node,
+ * its subtree is skipped and its regret is left untouched. Every given number of iterations, each
+ * trainer performs a full-width iteration that visits all subtrees so that pruned actions can
+ * recover.
+ *
+ * Pruning requires a {@link CSCFRMDiscounting} : CFR+ floors regrets to zero, so any action without
+ * probability would look prunable and could only recover during full-width iterations.
+ *
+ * @author Pierre Mardon
+ *
+ */
+public final class CSCFRMPruning {
+
+  /**
+   * Regret threshold under which an action without probability is pruned
+   */
+  @Getter
+  private final double threshold;
+  /**
+   * One iteration out of this number is full-width for each trainer
+   */
+  @Getter
+  private final int fullWidthInterval;
+  private final LongAdder visitedNodes = new LongAdder();
+  private final LongAdder prunedSubtrees = new LongAdder();
+
+  /**
+   * Constructor
+   *
+   * @param threshold regret threshold under which an action without probability is pruned, must
+   *        be lower than zero
+   * @param fullWidthInterval one iteration out of this number is full-width for each trainer
+   */
+  public CSCFRMPruning(final double threshold, final int fullWidthInterval) {
+    checkArgument(threshold < 0, "The pruning threshold must be < 0");
+    checkArgument(fullWidthInterval > 0, "The full-width interval must be > 0");
+    this.threshold = threshold;
+    this.fullWidthInterval = fullWidthInterval;
+  }
+
+  /**
+   * Get the number of player nodes visited by the trainers
+   *
+   * @return the number of visited player nodes
+   */
+  public long getVisitedNodes() {
+    return visitedNodes.sum();
+  }
+
+  /**
+   * Get the number of action subtrees skipped by the trainers
+   *
+   * @return the number of pruned subtrees
+   */
+  public long getPrunedSubtrees() {
+    return prunedSubtrees.sum();
+  }
+
+  /**
+   * Reset the statistics
+   */
+  public void resetStatistics() {
+    visitedNodes.reset();
+    prunedSubtrees.reset();
+  }
+
+  void addStatistics(final long visited, final long pruned) {
+    visitedNodes.add(visited);
+    prunedSubtrees.add(pruned);
+  }
+}
@@ -0,0 +1,349 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Chances synchronizer with dedicated producer threads. Each producer thread draws chances from
+ * its own {@link CSCFRMChancesProducer}, reserves them in atomic bit sets and publishes the
+ * collision-free chances in a bounded lock-free ring. Trainers claim and release chances with CAS
+ * operations only.
+ *
+ * Chances that collide with reserved ones are kept in a producer-local backlog and retried later,
+ * so that no drawn chance is discarded. Used chances are recycled by any of the producer threads,
+ * so all producers must accept chances drawn by the others. They go through a second bounded ring :
+ * when it is full, trainers wait for the producers to drain it, which they also do while waiting
+ * for room in the ring of ready chances. Chances left in the rings when the producers stop are
+ * handed back to the first producer on {@link #reset()}.
+ *
+ * @author Pierre Mardon
+ *
+ * @param <Chances>
+ */
+public class CSCFRMRingChancesSynchronizer<Chances extends CSCFRMChances>
+    implements CSCFRMChancesSynchronizer<Chances> {
+
+  /**
+   * Default capacity of the ring of ready chances
+   */
+  public static final int defaultCapacity = 1024;
+
+  private final List<CSCFRMChancesProducer<Chances>> producers;
+  private final int nbRounds;
+  private final AtomicBitSet[][] inUseBits;
+  private final MPMCRing<Chances> readyChances;
+  private final MPMCRing<Chances> usedChances;
+  // Used chances that didn't fit in the ring once the producers stopped draining it
+  private final ConcurrentLinkedQueue<Chances> stoppedChances = new ConcurrentLinkedQueue<>();
+  private final int maxBacklog;
+  private volatile boolean stop = false;
+  private final LongAdder backlog = new LongAdder();
+  private final LongAdder producedChances = new LongAdder();
+  private final LongAdder producerNanos = new LongAdder();
+
+  private final class ProducerRunnable implements Runnable {
+
+    private final CSCFRMChancesProducer<Chances> producer;
+    private final ArrayDeque<Chances> backlog = new ArrayDeque<>();
+    private long produced = 0;
+
+    ProducerRunnable(final CSCFRMChancesProducer<Chances> producer) {
+      this.producer = producer;
+    }
+
+    @Override
+    public void run() {
+      final CSCFRMChancesProducer<Chances> producer = this.producer;
+      final ArrayDeque<Chances> backlog = this.backlog;
+      final int maxBacklog = CSCFRMRingChancesSynchronizer.this.maxBacklog;
+      final LongAdder backlogSize = CSCFRMRingChancesSynchronizer.this.backlog;
+      int idle = 0;
+      while (!stop) {
+        recycleUsed();
+        Chances chances;
+        boolean progressed = false;
+        for (int i = backlog.size(); i > 0; i--) {
+          chances = backlog.poll();
+          if (tryReserve(chances.getPlayersChances())) {
+            backlogSize.decrement();
+            publish(chances);
+            progressed = true;
+          } else {
+            backlog.add(chances);
+          }
+        }
+        if (backlog.size() < maxBacklog) {
+          chances = produce();
+          if (tryReserve(chances.getPlayersChances())) {
+            publish(chances);
+          } else {
+            backlog.add(chances);
+            backlogSize.increment();
+          }
+          progressed = true;
+        }
+        if (progressed) {
+          idle = 0;
+        } else {
+          backOff(idle++);
+        }
+      }
+      Chances chances;
+      while ((chances = backlog.poll()) != null) {
+        backlogSize.decrement();
+        producer.endedUsing(chances);
+      }
+    }
+
+    private final void recycleUsed() {
+      final CSCFRMChancesProducer<Chances> producer = this.producer;
+      final MPMCRing<Chances> usedChances = CSCFRMRingChancesSynchronizer.this.usedChances;
+      Chances chances;
+      while ((chances = usedChances.poll()) != null) {
+        producer.endedUsing(chances);
+      }
+    }
+
+    private final Chances produce() {
+      producedChances.increment();
+      if ((++produced & CSCFRMRunnerMetrics.samplingMask) != 0) {
+        return producer.produceChances();
+      }
+      final long start = System.nanoTime();
+      final Chances chances = producer.produceChances();
+      producerNanos.add((System.nanoTime() - start) * CSCFRMRunnerMetrics.samplingInterval);
+      return chances;
+    }
+
+    private final void publish(final Chances chances) {
+      final MPMCRing<Chances> readyChances = CSCFRMRingChancesSynchronizer.this.readyChances;
+      int idle = 0;
+      while (!readyChances.offer(chances)) {
+        if (stop) {
+          release(chances.getPlayersChances());
+          producer.endedUsing(chances);
+          return;
+        }
+        // Trainers may be waiting for room in the used ring
+        recycleUsed();
+        backOff(idle++);
+      }
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param producers the chances producers, each one will be run by a dedicated thread
+   * @param chancesSizes the size of the chances for each round and player
+   * @param capacity the minimum capacity of the ring of ready chances
+   */
+  public CSCFRMRingChancesSynchronizer(final List<CSCFRMChancesProducer<Chances>> producers,
+      final int[][] chancesSizes, final int capacity) {
+    checkArgument(!producers.isEmpty(), "At least one chances producer is required");
+    this.producers = new ArrayList<>(producers);
+    final int nbRounds = this.nbRounds = chancesSizes.length;
+    this.inUseBits = new AtomicBitSet[nbRounds][];
+    for (int i = 0; i < nbRounds; i++) {
+      final int[] playersChances = chancesSizes[i];
+      final int nbPlayers = playersChances.length;
+      final AtomicBitSet[] roundBits = inUseBits[i] = new AtomicBitSet[nbPlayers];
+      for (int j = 0; j < nbPlayers; j++) {
+        roundBits[j] = new AtomicBitSet(playersChances[j]);
+      }
+    }
+    this.readyChances = new MPMCRing<>(capacity);
+    this.usedChances = new MPMCRing<>(capacity);
+    this.maxBacklog = readyChances.capacity();
+  }
+
+  /**
+   * Constructor with one producer thread and the default capacity
+   *
+   * @param producer the chances producer
+   * @param chancesSizes the size of the chances for each round and player
+   */
+  public CSCFRMRingChancesSynchronizer(final CSCFRMChancesProducer<Chances> producer,
+      final int[][] chancesSizes) {
+    this(Collections.singletonList(producer), chancesSizes, defaultCapacity);
+  }
+
+  @Override
+  public Chances getChances() throws InterruptedException {
+    final MPMCRing<Chances> readyChances = this.readyChances;
+    int idle = 0;
+    while (!stop) {
+      final Chances chances = readyChances.poll();
+      if (chances != null) {
+        return chances;
+      }
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      backOff(idle++);
+    }
+    return null;
+  }
+
+  @Override
+  public void endUsing(final Chances chances) throws InterruptedException {
+    release(chances.getPlayersChances());
+    recycle(chances);
+  }
+
+  @Override
+  public int getChances(final Chances[] batch, final int maxCount) throws InterruptedException {
+    final MPMCRing<Chances> readyChances = this.readyChances;
+    int idle = 0;
+    while (!stop) {
+      int count = 0;
+      Chances chances;
+      while (count < maxCount && (chances = readyChances.poll()) != null) {
+        batch[count++] = chances;
+      }
+      if (count > 0) {
+        return count;
+      }
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      backOff(idle++);
+    }
+    return 0;
+  }
+
+  @Override
+  public void endUsing(final Chances[] batch, final int count) throws InterruptedException {
+    for (int i = 0; i < count; i++) {
+      final Chances chances = batch[i];
+      release(chances.getPlayersChances());
+      recycle(chances);
+    }
+  }
+
+  private final void recycle(final Chances chances) throws InterruptedException {
+    final MPMCRing<Chances> usedChances = this.usedChances;
+    int idle = 0;
+    while (!usedChances.offer(chances)) {
+      if (stop) {
+        // Stopped producers don't drain the ring anymore, reset() will recycle the chances
+        stoppedChances.add(chances);
+        return;
+      }
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      backOff(idle++);
+    }
+  }
+
+  private final boolean tryReserve(final int[][] chances) {
+    final int nbRounds = this.nbRounds;
+    final AtomicBitSet[][] inUseBits = this.inUseBits;
+    for (int i = 0; i < nbRounds; i++) {
+      final AtomicBitSet[] roundBits = inUseBits[i];
+      final int[] roundChances = chances[i];
+      final int nbPlayers = roundChances.length;
+      for (int j = 0; j < nbPlayers; j++) {
+        if (!roundBits[j].trySet(roundChances[j])) {
+          rollback(chances, i, j);
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private final void rollback(final int[][] chances, final int failedRound,
+      final int failedPlayer) {
+    final AtomicBitSet[][] inUseBits = this.inUseBits;
+    for (int i = 0; i <= failedRound; i++) {
+      final AtomicBitSet[] roundBits = inUseBits[i];
+      final int[] roundChances = chances[i];
+      final int nbPlayers = i == failedRound ? failedPlayer : roundChances.length;
+      for (int j = 0; j < nbPlayers; j++) {
+        roundBits[j].clear(roundChances[j]);
+      }
+    }
+  }
+
+  private final void release(final int[][] chances) {
+    final int nbRounds = this.nbRounds;
+    final AtomicBitSet[][] inUseBits = this.inUseBits;
+    for (int i = 0; i < nbRounds; i++) {
+      final AtomicBitSet[] roundBits = inUseBits[i];
+      final int[] roundChances = chances[i];
+      final int nbPlayers = roundChances.length;
+      for (int j = 0; j < nbPlayers; j++) {
+        roundBits[j].clear(roundChances[j]);
+      }
+    }
+  }
+
+  private static final void backOff(final int idle) {
+    if (idle < 64) {
+      Thread.yield();
+    } else {
+      LockSupport.parkNanos(10000);
+    }
+  }
+
+  @Override
+  public void stop() {
+    stop = true;
+  }
+
+  @Override
+  public void reset() {
+    // The producer threads are done, the chances left are handed back to a producer
+    final CSCFRMChancesProducer<Chances> producer = producers.get(0);
+    Chances chances;
+    while ((chances = readyChances.poll()) != null) {
+      producer.endedUsing(chances);
+    }
+    while ((chances = usedChances.poll()) != null) {
+      producer.endedUsing(chances);
+    }
+    while ((chances = stoppedChances.poll()) != null) {
+      producer.endedUsing(chances);
+    }
+    for (AtomicBitSet[] roundBits : inUseBits) {
+      for (AtomicBitSet bits : roundBits) {
+        bits.clearAll();
+      }
+    }
+    stop = false;
+  }
+
+  @Override
+  public List<Runnable> getProducers() {
+    final List<Runnable> res = new ArrayList<>();
+    for (CSCFRMChancesProducer<Chances> producer : producers) {
+      res.add(new ProducerRunnable(producer));
+    }
+    return res;
+  }
+
+  @Override
+  public int getBacklog() {
+    return backlog.intValue();
+  }
+
+  @Override
+  public long getProducedChances() {
+    return producedChances.sum();
+  }
+
+  @Override
+  public long getProducerNanos() {
+    return producerNanos.sum();
+  }
+
+}
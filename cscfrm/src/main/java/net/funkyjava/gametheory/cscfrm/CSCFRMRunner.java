@@ -3,18 +3,51 @@ package net.funkyjava.gametheory.cscfrm;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.SplittableRandom;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
 
+import com.google.common.util.concurrent.AtomicDoubleArray;
+
+import lombok.Getter;
 import lombok.NonNull;
+import net.funkyjava.gametheory.cscfrm.CSCFRMRunnerMetrics.ThreadMetrics;
 
 /**
- * Runs the CSCFRM algorithm using {@link CSCFRMTrainer} executed in a {@link Executor}
+ * Runs the CSCFRM algorithm using {@link CSCFRMTrainer} executed in a {@link Executor}.
+ * 
+ * Five modes are available :
+ * <ul>
+ * <li>synchronized : trainers get their chances from a {@link CSCFRMChancesSynchronizer} that
+ * avoids collisions, in batches of {@link #setBatchSize(int)} chances</li>
+ * <li>partitioned : each trainer thread draws chances with its own producer, and the chances are
+ * trained in epochs following a {@link CSCFRMChancesPartition} so that no synchronizer is
+ * needed</li>
+ * <li>deterministic : the partitioned mode with seeded producers and trainers, whose runs can be
+ * replayed, see {@link #CSCFRMRunner(CSCFRMData, long, int, LongFunction, int)}</li>
+ * <li>hogwild : each trainer thread draws chances with its own producer and trains them right away.
+ * Concurrent updates of the same nodes rows may race, except for the rows guarded by optional
+ * {@link CSCFRMStripedLocks}. Overlapping iterations can be counted, see
+ * {@link #setCountOverlaps(boolean)}.</li>
+ * <li>vectorized : a single thread runs {@link CSCFRMVectorTrainer} iterations that walk all the
+ * chances of one round games at once</li>
+ * </ul>
+ * 
+ * In the sampling modes, the CFR variant is CFR+ unless a {@link CSCFRMDiscounting} is provided,
+ * and regret-based pruning can be enabled with {@link #setPruning(CSCFRMPruning)}. Trainers sample
+ * chances only unless another {@link CSCFRMSampling} is set.
  * 
  * @author Pierre Mardon
  *
@@ -22,40 +55,419 @@ import lombok.NonNull;
  */
 public class CSCFRMRunner<Chances extends CSCFRMChances> {
 
+  /**
+   * Maximum number of chances a partitioned trainer thread draws per cycle
+   */
+  public static final int MAX_CYCLE_SAMPLES = 1 << 22;
+
   private final CSCFRMData<?, Chances> data;
   private final int nbTrainerThreads;
+  private final CSCFRMDiscounting discounting;
+  /**
+   * Regret-based pruning settings used by the trainers, null when not pruning
+   */
+  @Getter
+  private CSCFRMPruning pruning = null;
+  /**
+   * Sampling scheme of the trainers
+   */
+  @Getter
+  private CSCFRMSampling sampling = CSCFRMSampling.CHANCES;
+  /**
+   * Number of chances a synchronized trainer thread acquires and releases at once
+   */
+  @Getter
+  private int batchSize = 1;
+  /**
+   * Whether the hogwild trainers count their overlapping iterations
+   */
+  @Getter
+  private boolean countOverlaps = false;
 
   private ExecutorService executor = null;
   private final CSCFRMChancesSynchronizer<Chances> chancesSynchronizer;
-  private boolean stop = false;
+  private final CSCFRMChancesPartition partition;
+  private final List<Chances>[][][] partitionedChances;
+  private final int samplesPerThread;
+  private final CSCFRMData<?, Chances>[] threadsData;
+  private final long[] trainerSeeds;
+  /**
+   * Number of iterations after which the deterministic mode trainers stop by themselves at the end
+   * of a cycle, 0 for no limit
+   */
+  @Getter
+  private long maxIterations = 0;
+  private Phaser phaser;
+  private final CSCFRMStripedLocks stripedLocks;
+  private final AtomicIntegerArray[][] inUseChances;
+  private final CSCFRMVectorEvaluator<Chances> vectorEvaluator;
+  /**
+   * Number of hogwild iterations that were trained while another iteration was using one of their
+   * chances whose rows are not guarded by the striped locks, when counted
+   */
+  @Getter
+  private final AtomicLong overlaps = new AtomicLong();
+  /**
+   * Training metrics of the trainer threads and chances producers
+   */
+  @Getter
+  private final CSCFRMRunnerMetrics metrics;
+  private volatile boolean stop = false;
+  private volatile boolean pauseRequested = false;
+  // Partitioned trainers pause together, when the pause was requested before their cycle's end
+  private volatile boolean cyclePaused = false;
+  private final Object pauseLock = new Object();
+  // Guarded by pauseLock
+  private int nbLiveTrainers = 0;
+  private int nbPausedTrainers = 0;
   private Runnable[] trainerRunnables;
   private final List<Exception> exceptions =
       Collections.synchronizedList(new LinkedList<Exception>());
 
+  /**
+   * Task run on the data while the trainers are paused, see
+   * {@link CSCFRMRunner#whilePaused(PausedTask)}
+   *
+   * @param <T> the result class
+   */
+  public static interface PausedTask<T> {
+
+    /**
+     * Run the task
+     *
+     * @param data the runner's data, not modified by any trainer during the task
+     * @return the result
+     * @throws IOException
+     */
+    T run(CSCFRMData<?, ?> data) throws IOException;
+  }
+
+  /**
+   * Safe point of the trainer threads, where they hold no chances and aren't training : wait there
+   * while a pause is requested
+   */
+  private final void pausePoint() throws InterruptedException {
+    if (!pauseRequested) {
+      return;
+    }
+    final Object pauseLock = this.pauseLock;
+    synchronized (pauseLock) {
+      nbPausedTrainers++;
+      pauseLock.notifyAll();
+      try {
+        while (pauseRequested && !stop) {
+          pauseLock.wait();
+        }
+      } finally {
+        nbPausedTrainers--;
+      }
+    }
+  }
+
+  private final void trainerTerminated() {
+    synchronized (pauseLock) {
+      nbLiveTrainers--;
+      pauseLock.notifyAll();
+    }
+  }
+
   private final class TrainerRunnable implements Runnable {
 
-    private final CSCFRMTrainer<Chances> trainer = new CSCFRMTrainer<>(data);
+    private final int threadIndex;
+
+    TrainerRunnable(final int threadIndex) {
+      this.threadIndex = threadIndex;
+    }
 
     @Override
     public void run() {
-      final CSCFRMTrainer<Chances> trainer = this.trainer;
+      final CSCFRMChancesTrainer<Chances> trainer =
+          sampling.createTrainer(data, discounting, pruning);
       final CSCFRMChancesSynchronizer<Chances> chancesSynchronizer =
           CSCFRMRunner.this.chancesSynchronizer;
+      final int batchSize = CSCFRMRunner.this.batchSize;
+      @SuppressWarnings("unchecked")
+      final Chances[] batch = (Chances[]) new CSCFRMChances[batchSize];
+      @SuppressWarnings("unchecked")
+      final CSCFRMBatchChancesTrainer<Chances> batchTrainer =
+          trainer instanceof CSCFRMBatchChancesTrainer
+              ? (CSCFRMBatchChancesTrainer<Chances>) trainer : null;
+      final ThreadMetrics threadMetrics = metrics.thread(threadIndex);
+      threadMetrics.resetVisitedNodes();
       try {
         while (!stop) {
-          final Chances chances = chancesSynchronizer.getChances();
-          if (chances == null) {
+          pausePoint();
+          final boolean sampled = threadMetrics.sampleAcquire();
+          final long start = sampled ? System.nanoTime() : 0;
+          final int count = chancesSynchronizer.getChances(batch, batchSize);
+          if (count == 0) {
             return;
           }
-          trainer.train(chances);
-          chancesSynchronizer.endUsing(chances);
+          if (sampled) {
+            threadMetrics.addSampledBlockedNanos(System.nanoTime() - start);
+          }
+          if (batchTrainer != null) {
+            batchTrainer.train(batch, count);
+            for (int i = 0; i < count; i++) {
+              threadMetrics.sampleIteration();
+            }
+          } else {
+            for (int i = 0; i < count; i++) {
+              threadMetrics.sampleIteration();
+              trainer.train(batch[i]);
+            }
+          }
+          chancesSynchronizer.endUsing(batch, count);
+          if (sampled) {
+            threadMetrics.publish(trainer.getVisitedNodes());
+          }
+        }
+      } catch (Exception e) {
+        e.printStackTrace();
+        exceptions.add(e);
+      } finally {
+        threadMetrics.publish(trainer.getVisitedNodes());
+        trainerTerminated();
+      }
+    }
+
+  }
+
+  private final class PartitionedTrainerRunnable implements Runnable {
+
+    private final CSCFRMChancesProducer<Chances> producer;
+    private final int threadIndex;
+    private CSCFRMChancesTrainer<Chances> trainer;
+    private CSCFRMSampling trainerSampling;
+
+    PartitionedTrainerRunnable(final CSCFRMChancesProducer<Chances> producer,
+        final int threadIndex) {
+      this.producer = producer;
+      this.threadIndex = threadIndex;
+    }
+
+    @Override
+    public void run() {
+      final ThreadMetrics threadMetrics = metrics.thread(threadIndex);
+      if (threadsData == null || trainer == null || trainerSampling != sampling) {
+        // Deterministic trainers keep their actions sampling state from one start to the next
+        trainer = threadsData == null ? sampling.createTrainer(data, discounting, pruning)
+            : sampling.createTrainer(threadsData[threadIndex], discounting, pruning,
+                trainerSeeds[threadIndex]);
+        trainerSampling = sampling;
+        threadMetrics.resetVisitedNodes();
+      }
+      final CSCFRMChancesTrainer<Chances> trainer = this.trainer;
+      final CSCFRMChancesProducer<Chances> producer = this.producer;
+      final CSCFRMChancesPartition partition = CSCFRMRunner.this.partition;
+      final List<Chances>[][][] partitionedChances = CSCFRMRunner.this.partitionedChances;
+      final List<Chances>[][] ownChances = partitionedChances[threadIndex];
+      final Phaser phaser = CSCFRMRunner.this.phaser;
+      final int threadIndex = this.threadIndex;
+      final int nbThreads = nbTrainerThreads;
+      final int nbEpochs = partition.getNbEpochs();
+      final int samplesPerThread = CSCFRMRunner.this.samplesPerThread;
+      try {
+        cycles: while (true) {
+          // All threads reach this point together, after the merge of the deterministic mode
+          if (cyclePaused) {
+            pausePoint();
+          }
+          // Draw this cycle's chances and route them to their epoch and owner thread
+          for (int i = 0; i < samplesPerThread; i++) {
+            final boolean sampled = threadMetrics.sampleProduction();
+            final long start = sampled ? System.nanoTime() : 0;
+            final Chances chances = producer.produceChances();
+            if (sampled) {
+              threadMetrics.addSampledProducerNanos(System.nanoTime() - start);
+            }
+            final int[][] playersChances = chances.getPlayersChances();
+            ownChances[partition.epoch(playersChances)][partition.thread(playersChances)]
+                .add(chances);
+          }
+          if (!awaitAdvance(phaser, threadMetrics)) {
+            break;
+          }
+          for (int epoch = 0; epoch < nbEpochs; epoch++) {
+            for (int src = 0; src < nbThreads; src++) {
+              final List<Chances> chancesList = partitionedChances[src][epoch][threadIndex];
+              final int size = chancesList.size();
+              for (int i = 0; i < size; i++) {
+                threadMetrics.sampleIteration();
+                trainer.train(chancesList.get(i));
+              }
+            }
+            if (!awaitAdvance(phaser, threadMetrics)) {
+              break cycles;
+            }
+          }
+          threadMetrics.publish(trainer.getVisitedNodes());
+          recycle(ownChances);
+        }
+        recycle(ownChances);
+      } catch (Exception e) {
+        e.printStackTrace();
+        exceptions.add(e);
+        phaser.forceTermination();
+      } finally {
+        threadMetrics.publish(trainer.getVisitedNodes());
+        trainerTerminated();
+      }
+    }
+
+    private final boolean awaitAdvance(final Phaser phaser, final ThreadMetrics threadMetrics) {
+      // Waits happen once per epoch, they are all timed
+      final long start = System.nanoTime();
+      final boolean advanced = phaser.arriveAndAwaitAdvance() >= 0;
+      threadMetrics.addBlockedNanos(System.nanoTime() - start);
+      return advanced;
+    }
+
+    private final void recycle(final List<Chances>[][] ownChances) {
+      final CSCFRMChancesProducer<Chances> producer = this.producer;
+      for (List<Chances>[] epochChances : ownChances) {
+        for (List<Chances> chancesList : epochChances) {
+          final int size = chancesList.size();
+          for (int i = 0; i < size; i++) {
+            producer.endedUsing(chancesList.get(i));
+          }
+          chancesList.clear();
+        }
+      }
+    }
+  }
+
+  private final class HogwildTrainerRunnable implements Runnable {
+
+    private final CSCFRMChancesProducer<Chances> producer;
+    private final int threadIndex;
+    private final int[] locksBuffer = stripedLocks == null ? null : stripedLocks.createBuffer();
+
+    HogwildTrainerRunnable(final CSCFRMChancesProducer<Chances> producer, final int threadIndex) {
+      this.producer = producer;
+      this.threadIndex = threadIndex;
+    }
+
+    @Override
+    public void run() {
+      final CSCFRMChancesTrainer<Chances> trainer =
+          sampling.createTrainer(data, discounting, pruning);
+      final CSCFRMChancesProducer<Chances> producer = this.producer;
+      final CSCFRMStripedLocks stripedLocks = CSCFRMRunner.this.stripedLocks;
+      final int[] locksBuffer = this.locksBuffer;
+      final boolean countOverlaps = CSCFRMRunner.this.countOverlaps;
+      final ThreadMetrics threadMetrics = metrics.thread(threadIndex);
+      threadMetrics.resetVisitedNodes();
+      try {
+        while (!stop) {
+          pausePoint();
+          // Productions and iterations are one to one, they are sampled together
+          threadMetrics.sampleProduction();
+          final boolean sampled = threadMetrics.sampleIteration();
+          long start = sampled ? System.nanoTime() : 0;
+          final Chances chances = producer.produceChances();
+          if (sampled) {
+            threadMetrics.addSampledProducerNanos(System.nanoTime() - start);
+          }
+          final int[][] playersChances = chances.getPlayersChances();
+          if (countOverlaps && acquire(playersChances)) {
+            overlaps.incrementAndGet();
+          }
+          if (stripedLocks == null) {
+            try {
+              trainer.train(chances);
+            } finally {
+              if (countOverlaps) {
+                release(playersChances);
+              }
+            }
+          } else {
+            if (sampled) {
+              start = System.nanoTime();
+            }
+            final int nbLocked = stripedLocks.lock(playersChances, locksBuffer);
+            if (sampled) {
+              threadMetrics.addSampledBlockedNanos(System.nanoTime() - start);
+            }
+            try {
+              trainer.train(chances);
+            } finally {
+              stripedLocks.unlock(locksBuffer, nbLocked);
+              if (countOverlaps) {
+                release(playersChances);
+              }
+            }
+          }
+          producer.endedUsing(chances);
+          if (sampled) {
+            threadMetrics.publish(trainer.getVisitedNodes());
+          }
         }
       } catch (Exception e) {
         e.printStackTrace();
         exceptions.add(e);
+      } finally {
+        threadMetrics.publish(trainer.getVisitedNodes());
+        trainerTerminated();
+      }
+    }
+
+    private final boolean acquire(final int[][] playersChances) {
+      final AtomicIntegerArray[][] inUseChances = CSCFRMRunner.this.inUseChances;
+      final int nbRounds = playersChances.length;
+      boolean overlap = false;
+      for (int round = 0; round < nbRounds; round++) {
+        final AtomicIntegerArray[] roundInUse = inUseChances[round];
+        final int[] roundChances = playersChances[round];
+        final int nbPlayers = roundChances.length;
+        for (int player = 0; player < nbPlayers; player++) {
+          if (roundInUse[player] != null
+              && roundInUse[player].getAndIncrement(roundChances[player]) > 0) {
+            overlap = true;
+          }
+        }
+      }
+      return overlap;
+    }
+
+    private final void release(final int[][] playersChances) {
+      final AtomicIntegerArray[][] inUseChances = CSCFRMRunner.this.inUseChances;
+      final int nbRounds = playersChances.length;
+      for (int round = 0; round < nbRounds; round++) {
+        final AtomicIntegerArray[] roundInUse = inUseChances[round];
+        final int[] roundChances = playersChances[round];
+        final int nbPlayers = roundChances.length;
+        for (int player = 0; player < nbPlayers; player++) {
+          if (roundInUse[player] != null) {
+            roundInUse[player].decrementAndGet(roundChances[player]);
+          }
+        }
       }
     }
+  }
+
+  private final class VectorTrainerRunnable implements Runnable {
 
+    @Override
+    public void run() {
+      final CSCFRMVectorTrainer<Chances> trainer = new CSCFRMVectorTrainer<>(data, vectorEvaluator);
+      final ThreadMetrics threadMetrics = metrics.thread(0);
+      threadMetrics.resetVisitedNodes();
+      try {
+        while (!stop) {
+          pausePoint();
+          threadMetrics.sampleIteration();
+          trainer.train();
+          // Iterations are long enough to publish them all
+          threadMetrics.publish(trainer.getVisitedNodes());
+        }
+      } catch (Exception e) {
+        e.printStackTrace();
+        exceptions.add(e);
+      } finally {
+        trainerTerminated();
+      }
+    }
   }
 
   /**
@@ -68,16 +480,332 @@ public class CSCFRMRunner<Chances extends CSCFRMChances> {
   public CSCFRMRunner(@NonNull final CSCFRMData<?, Chances> data,
       @NonNull final CSCFRMChancesSynchronizer<Chances> chancesSynchronizer,
       final int nbTrainerThreads) {
+    this(data, chancesSynchronizer, nbTrainerThreads, null);
+  }
+
+  /**
+   * Constructor
+   * 
+   * @param data the data containing the game action tree and CSCFRM nodes
+   * @param chancesSynchronizer the chances synchronizer that avoids collisions
+   * @param nbTrainerThreads the number of threads to use for training
+   * @param discounting the discounting parameters, or null for CFR+
+   */
+  public CSCFRMRunner(@NonNull final CSCFRMData<?, Chances> data,
+      @NonNull final CSCFRMChancesSynchronizer<Chances> chancesSynchronizer,
+      final int nbTrainerThreads, final CSCFRMDiscounting discounting) {
     checkArgument(nbTrainerThreads > 0, "The number of trainer threads must be > 0");
     this.data = data;
     this.nbTrainerThreads = nbTrainerThreads;
+    this.discounting = discounting;
     this.chancesSynchronizer = chancesSynchronizer;
+    this.partition = null;
+    this.partitionedChances = null;
+    this.samplesPerThread = 0;
+    this.threadsData = null;
+    this.trainerSeeds = null;
+    this.stripedLocks = null;
+    this.inUseChances = null;
+    this.vectorEvaluator = null;
+    this.metrics = new CSCFRMRunnerMetrics(data, chancesSynchronizer, nbTrainerThreads);
     final Runnable[] trainerRunnables = this.trainerRunnables = new Runnable[nbTrainerThreads];
     for (int i = 0; i < nbTrainerThreads; i++) {
-      trainerRunnables[i] = new TrainerRunnable();
+      trainerRunnables[i] = new TrainerRunnable(i);
     }
   }
 
+  /**
+   * Constructor for the partitioned mode. There will be one trainer thread per producer. Each
+   * cycle, each thread draws samplesPerCell chances per epoch, then all threads train the chances
+   * they own epoch after epoch. Threads only wait for each other between epochs. The number of
+   * epochs grows as the number of threads to the power of the number of (round, player) chances
+   * ranges minus one : configurations with more than {@link CSCFRMChancesPartition#MAX_EPOCHS}
+   * epochs, or more than {@link #MAX_CYCLE_SAMPLES} chances per thread and cycle, are rejected.
+   * 
+   * @param data the data containing the game action tree and CSCFRM nodes
+   * @param producers one chances producer per trainer thread
+   * @param samplesPerCell the average number of chances a thread will train per epoch
+   */
+  public CSCFRMRunner(@NonNull final CSCFRMData<?, Chances> data,
+      @NonNull final List<CSCFRMChancesProducer<Chances>> producers, final int samplesPerCell) {
+    this(data, producers, samplesPerCell, null);
+  }
+
+  /**
+   * Constructor for the partitioned mode, see
+   * {@link #CSCFRMRunner(CSCFRMData, List, int)}
+   * 
+   * @param data the data containing the game action tree and CSCFRM nodes
+   * @param producers one chances producer per trainer thread
+   * @param samplesPerCell the average number of chances a thread will train per epoch
+   * @param discounting the discounting parameters, or null for CFR+
+   */
+  public CSCFRMRunner(@NonNull final CSCFRMData<?, Chances> data,
+      @NonNull final List<CSCFRMChancesProducer<Chances>> producers, final int samplesPerCell,
+      final CSCFRMDiscounting discounting) {
+    this(data, producers, samplesPerCell, discounting, null);
+  }
+
+  /**
+   * Constructor for the deterministic mode : the partitioned mode, see
+   * {@link #CSCFRMRunner(CSCFRMData, List, int)}, with the producers and the actions sampling of
+   * the trainers seeded from one seed. Each thread sums its utilities and iterations separately,
+   * and they are added to the data in threads order at the end of each cycle. Trainers only stop at
+   * the end of a cycle. So runs with the same seed, number of threads and samples per cell produce
+   * bit-identical data at the end of each cycle, see {@link #setMaxIterations(long)}. CFR+ only, as
+   * discounting and pruning depend on the global iterations count, and not on a
+   * {@link CSCFRMCompressedRegretStore} whose rounding is random.
+   * 
+   * @param data the data containing the game action tree and CSCFRM nodes
+   * @param seed the run seed
+   * @param nbTrainerThreads the number of trainer threads
+   * @param producers creates the chances producer of a trainer thread from its seed
+   * @param samplesPerCell the average number of chances a thread will train per epoch
+   */
+  public CSCFRMRunner(@NonNull final CSCFRMData<?, Chances> data, final long seed,
+      final int nbTrainerThreads,
+      @NonNull final LongFunction<CSCFRMChancesProducer<Chances>> producers,
+      final int samplesPerCell) {
+    this(data, seededProducers(producers, streamSeeds(seed, nbTrainerThreads)), samplesPerCell,
+        null, streamSeeds(~seed, nbTrainerThreads));
+  }
+
+  @SuppressWarnings("unchecked")
+  private CSCFRMRunner(final CSCFRMData<?, Chances> data,
+      final List<CSCFRMChancesProducer<Chances>> producers, final int samplesPerCell,
+      final CSCFRMDiscounting discounting, final long[] trainerSeeds) {
+    final int nbTrainerThreads = producers.size();
+    checkArgument(nbTrainerThreads > 0, "The number of trainer threads must be > 0");
+    checkArgument(samplesPerCell > 0, "The number of samples per cell must be > 0");
+    this.data = data;
+    this.nbTrainerThreads = nbTrainerThreads;
+    this.discounting = discounting;
+    this.chancesSynchronizer = null;
+    final CSCFRMChancesPartition partition = this.partition =
+        new CSCFRMChancesPartition(data.getRoundChancesSizes(), nbTrainerThreads);
+    final int nbEpochs = partition.getNbEpochs();
+    checkArgument((long) samplesPerCell * nbEpochs <= MAX_CYCLE_SAMPLES,
+        "%s samples per cell with %s epochs exceed the maximum of %s chances per thread and cycle",
+        samplesPerCell, nbEpochs, MAX_CYCLE_SAMPLES);
+    this.samplesPerThread = samplesPerCell * nbEpochs;
+    this.trainerSeeds = trainerSeeds;
+    checkArgument(
+        trainerSeeds == null || !(data.getStore() instanceof CSCFRMCompressedRegretStore),
+        "The deterministic mode doesn't support compressed regrets");
+    if (trainerSeeds == null) {
+      this.threadsData = null;
+    } else {
+      final CSCFRMData<?, Chances>[] threadsData =
+          this.threadsData = new CSCFRMData[nbTrainerThreads];
+      for (int i = 0; i < nbTrainerThreads; i++) {
+        threadsData[i] = data.sharingStore();
+      }
+    }
+    this.stripedLocks = null;
+    this.inUseChances = null;
+    this.vectorEvaluator = null;
+    this.metrics = new CSCFRMRunnerMetrics(data, null, nbTrainerThreads);
+    final List<Chances>[][][] partitionedChances =
+        this.partitionedChances = new List[nbTrainerThreads][nbEpochs][nbTrainerThreads];
+    final Runnable[] trainerRunnables = this.trainerRunnables = new Runnable[nbTrainerThreads];
+    for (int i = 0; i < nbTrainerThreads; i++) {
+      for (int j = 0; j < nbEpochs; j++) {
+        for (int k = 0; k < nbTrainerThreads; k++) {
+          partitionedChances[i][j][k] = new ArrayList<>(2 * samplesPerCell / nbTrainerThreads + 1);
+        }
+      }
+      trainerRunnables[i] = new PartitionedTrainerRunnable(producers.get(i), i);
+    }
+  }
+
+  private static long[] streamSeeds(final long seed, final int count) {
+    final SplittableRandom random = new SplittableRandom(seed);
+    final long[] seeds = new long[count];
+    for (int i = 0; i < count; i++) {
+      seeds[i] = random.nextLong();
+    }
+    return seeds;
+  }
+
+  private static <Chances extends CSCFRMChances> List<CSCFRMChancesProducer<Chances>>
+      seededProducers(final LongFunction<CSCFRMChancesProducer<Chances>> producers,
+          final long[] seeds) {
+    final List<CSCFRMChancesProducer<Chances>> res = new ArrayList<>(seeds.length);
+    for (long seed : seeds) {
+      res.add(producers.apply(seed));
+    }
+    return res;
+  }
+
+  /**
+   * Constructor for the hogwild mode without any lock and with CFR+. There will be one trainer
+   * thread per producer.
+   * 
+   * @param data the data containing the game action tree and CSCFRM nodes
+   * @param producers one chances producer per trainer thread
+   */
+  public CSCFRMRunner(@NonNull final CSCFRMData<?, Chances> data,
+      @NonNull final List<CSCFRMChancesProducer<Chances>> producers) {
+    this(data, producers, (CSCFRMStripedLocks) null);
+  }
+
+  /**
+   * Constructor for the hogwild mode with CFR+. There will be one trainer thread per producer.
+   * 
+   * @param data the data containing the game action tree and CSCFRM nodes
+   * @param producers one chances producer per trainer thread
+   * @param stripedLocks the locks guarding the nodes rows that must stay consistent, or null
+   */
+  public CSCFRMRunner(@NonNull final CSCFRMData<?, Chances> data,
+      @NonNull final List<CSCFRMChancesProducer<Chances>> producers,
+      final CSCFRMStripedLocks stripedLocks) {
+    this(data, producers, stripedLocks, null);
+  }
+
+  /**
+   * Constructor for the hogwild mode. There will be one trainer thread per producer.
+   * 
+   * @param data the data containing the game action tree and CSCFRM nodes
+   * @param producers one chances producer per trainer thread
+   * @param stripedLocks the locks guarding the nodes rows that must stay consistent, or null
+   * @param discounting the discounting parameters, or null for CFR+
+   */
+  public CSCFRMRunner(@NonNull final CSCFRMData<?, Chances> data,
+      @NonNull final List<CSCFRMChancesProducer<Chances>> producers,
+      final CSCFRMStripedLocks stripedLocks, final CSCFRMDiscounting discounting) {
+    final int nbTrainerThreads = producers.size();
+    checkArgument(nbTrainerThreads > 0, "The number of trainer threads must be > 0");
+    this.data = data;
+    this.nbTrainerThreads = nbTrainerThreads;
+    this.discounting = discounting;
+    this.chancesSynchronizer = null;
+    this.partition = null;
+    this.partitionedChances = null;
+    this.samplesPerThread = 0;
+    this.threadsData = null;
+    this.trainerSeeds = null;
+    this.stripedLocks = stripedLocks;
+    this.vectorEvaluator = null;
+    this.metrics = new CSCFRMRunnerMetrics(data, null, nbTrainerThreads);
+    final int[][] chancesSizes = data.getRoundChancesSizes();
+    final int nbRounds = chancesSizes.length;
+    final AtomicIntegerArray[][] inUseChances =
+        this.inUseChances = new AtomicIntegerArray[nbRounds][];
+    for (int round = 0; round < nbRounds; round++) {
+      final int nbPlayers = chancesSizes[round].length;
+      inUseChances[round] = new AtomicIntegerArray[nbPlayers];
+      for (int player = 0; player < nbPlayers; player++) {
+        // Guarded rows can't race, no need to track them
+        if (stripedLocks == null || !stripedLocks.isGuarded(round, player)) {
+          inUseChances[round][player] = new AtomicIntegerArray(chancesSizes[round][player]);
+        }
+      }
+    }
+    final Runnable[] trainerRunnables = this.trainerRunnables = new Runnable[nbTrainerThreads];
+    for (int i = 0; i < nbTrainerThreads; i++) {
+      trainerRunnables[i] = new HogwildTrainerRunnable(producers.get(i), i);
+    }
+  }
+
+  /**
+   * Constructor for the vectorized mode with CFR+, for games with one chances round. There will be
+   * one trainer thread.
+   * 
+   * @param data the data containing the game action tree and CSCFRM nodes
+   * @param evaluator the terminal nodes evaluator for all chances
+   */
+  public CSCFRMRunner(@NonNull final CSCFRMData<?, Chances> data,
+      @NonNull final CSCFRMVectorEvaluator<Chances> evaluator) {
+    checkArgument(data.getRoundChancesSizes().length == 1,
+        "The vectorized mode is only available for games with one chances round");
+    this.data = data;
+    this.nbTrainerThreads = 1;
+    this.discounting = null;
+    this.chancesSynchronizer = null;
+    this.partition = null;
+    this.partitionedChances = null;
+    this.samplesPerThread = 0;
+    this.threadsData = null;
+    this.trainerSeeds = null;
+    this.stripedLocks = null;
+    this.inUseChances = null;
+    this.vectorEvaluator = evaluator;
+    this.metrics = new CSCFRMRunnerMetrics(data, null, 1);
+    this.trainerRunnables = new Runnable[] {new VectorTrainerRunnable()};
+  }
+
+  /**
+   * Set the regret-based pruning settings the trainers will use from the next start
+   * 
+   * @param pruning the pruning settings, or null to disable pruning. Requires a runner built with
+   *        a {@link CSCFRMDiscounting}.
+   */
+  public synchronized final void setPruning(final CSCFRMPruning pruning) {
+    checkState(executor == null, "Can't change the pruning settings while running");
+    checkArgument(pruning == null || discounting != null,
+        "Pruning requires discounting, CFR+ regrets are never negative");
+    checkArgument(pruning == null || vectorEvaluator == null,
+        "The vectorized mode doesn't support pruning");
+    checkArgument(pruning == null || threadsData == null,
+        "The deterministic mode doesn't support pruning");
+    sampling.checkSupported(discounting, pruning);
+    this.pruning = pruning;
+  }
+
+  /**
+   * Set the sampling scheme the trainers will use from the next start
+   * 
+   * @param sampling the sampling scheme
+   */
+  public synchronized final void setSampling(@NonNull final CSCFRMSampling sampling) {
+    checkState(executor == null, "Can't change the sampling scheme while running");
+    checkArgument(sampling == CSCFRMSampling.CHANCES || vectorEvaluator == null,
+        "The vectorized mode doesn't sample");
+    sampling.checkSupported(discounting, pruning);
+    this.sampling = sampling;
+  }
+
+  /**
+   * Set the number of chances each trainer thread acquires from the synchronizer and releases at
+   * once, from the next start. Larger batches amortize the synchronization cost over more
+   * iterations but reserve more chances at once, see {@link CSCFRMMutexChancesSynchronizer}. Only
+   * used in the synchronized mode.
+   *
+   * @param batchSize the maximum number of chances per batch
+   */
+  public synchronized final void setBatchSize(final int batchSize) {
+    checkState(executor == null, "Can't change the batch size while running");
+    checkArgument(batchSize > 0, "The batch size must be > 0");
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Set whether the hogwild trainers count their overlapping iterations from the next start, see
+   * {@link #getOverlaps()}. Counting marks the chances in use with contended atomic increments and
+   * decrements on every iteration, so it is disabled by default. Only used in the hogwild mode.
+   *
+   * @param countOverlaps true to count the overlaps
+   */
+  public synchronized final void setCountOverlaps(final boolean countOverlaps) {
+    checkState(executor == null, "Can't change the overlaps counting while running");
+    checkArgument(!countOverlaps || inUseChances != null,
+        "Overlaps are only counted in the hogwild mode");
+    this.countOverlaps = countOverlaps;
+  }
+
+  /**
+   * Set the number of iterations after which the deterministic mode trainers stop by themselves, at
+   * the end of the first cycle reaching it. The runner must still be stopped.
+   *
+   * @param maxIterations the maximum number of iterations, 0 for no limit
+   */
+  public synchronized final void setMaxIterations(final long maxIterations) {
+    checkState(executor == null, "Can't change the maximum iterations while running");
+    checkArgument(threadsData != null, "Only the deterministic mode has a maximum iterations");
+    checkArgument(maxIterations >= 0, "The maximum iterations must be >= 0");
+    this.maxIterations = maxIterations;
+  }
+
   /**
    * Non blocking start
    */
@@ -87,10 +815,42 @@ public class CSCFRMRunner<Chances extends CSCFRMChances> {
     this.stop = false;
     final int nbTrainerThreads = this.nbTrainerThreads;
     final Runnable[] trainerRunnables = this.trainerRunnables;
-    chancesSynchronizer.reset();
-    final ExecutorService executor =
-        this.executor = Executors.newFixedThreadPool(nbTrainerThreads + 1);
-    for (Runnable producer : chancesSynchronizer.getProducers()) {
+    final CSCFRMChancesSynchronizer<Chances> chancesSynchronizer = this.chancesSynchronizer;
+    List<Runnable> producers = Collections.emptyList();
+    if (chancesSynchronizer != null) {
+      chancesSynchronizer.reset();
+      producers = chancesSynchronizer.getProducers();
+    } else if (partition != null) {
+      final int cyclePhases = partition.getNbEpochs() + 1;
+      this.cyclePaused = false;
+      this.phaser = new Phaser(nbTrainerThreads) {
+        @Override
+        protected boolean onAdvance(int phase, int registeredParties) {
+          if (registeredParties == 0) {
+            return true;
+          }
+          final boolean cycleEnd = (phase + 1) % cyclePhases == 0;
+          if (cycleEnd) {
+            cyclePaused = pauseRequested;
+          }
+          if (threadsData == null) {
+            return stop;
+          }
+          // Deterministic trainers wait for each other at the end of a cycle
+          if (!cycleEnd) {
+            return false;
+          }
+          mergeThreadsData();
+          return stop || (maxIterations > 0 && data.getIterations().get() >= maxIterations);
+        }
+      };
+    }
+    synchronized (pauseLock) {
+      nbLiveTrainers = nbTrainerThreads;
+    }
+    final ExecutorService executor = this.executor =
+        Executors.newFixedThreadPool(nbTrainerThreads + Math.max(producers.size(), 1));
+    for (Runnable producer : producers) {
       executor.execute(producer);
     }
     for (int i = 0; i < nbTrainerThreads; i++) {
@@ -98,6 +858,19 @@ public class CSCFRMRunner<Chances extends CSCFRMChances> {
     }
   }
 
+  private final void mergeThreadsData() {
+    final AtomicDoubleArray utilitySum = data.getUtilitySum();
+    final AtomicLong iterations = data.getIterations();
+    final int nbPlayers = data.getNbPlayers();
+    for (CSCFRMData<?, Chances> threadData : threadsData) {
+      final AtomicDoubleArray threadUtilitySum = threadData.getUtilitySum();
+      for (int i = 0; i < nbPlayers; i++) {
+        utilitySum.addAndGet(i, threadUtilitySum.getAndSet(i, 0));
+      }
+      iterations.addAndGet(threadData.getIterations().getAndSet(0));
+    }
+  }
+
   /**
    * Blocking stop
    * 
@@ -117,10 +890,89 @@ public class CSCFRMRunner<Chances extends CSCFRMChances> {
   public synchronized final void stop() {
     checkState(executor != null, "No executor is running");
     stop = true;
-    chancesSynchronizer.stop();
+    synchronized (pauseLock) {
+      pauseLock.notifyAll();
+    }
+    if (chancesSynchronizer != null) {
+      chancesSynchronizer.stop();
+    }
     executor.shutdown();
   }
 
+  /**
+   * Take a consistent snapshot of the average strategies. When running, trainers are paused during
+   * the copy, see {@link #whilePaused(PausedTask)}.
+   *
+   * @return the snapshot
+   * @throws InterruptedException
+   */
+  public synchronized final CSCFRMStrategySnapshot snapshot() throws InterruptedException {
+    return whilePausedUnchecked(() -> new CSCFRMStrategySnapshot(data));
+  }
+
+  /**
+   * Take a consistent copy of the data. When running, trainers are paused during the copy, see
+   * {@link #whilePaused(PausedTask)}.
+   *
+   * @return the copy
+   * @throws InterruptedException
+   */
+  public synchronized final CSCFRMData<?, Chances> copyData() throws InterruptedException {
+    return whilePausedUnchecked(data::copy);
+  }
+
+  /**
+   * Run a task on the data while no trainer modifies it, for instance to copy it for a
+   * checkpoint. When running, trainer threads are paused at their next safe point : between two
+   * iterations or batches, or at the end of a cycle in the partitioned modes. They resume after
+   * the task, keeping their threads, chances producers and synchronizer state. Trainer threads
+   * that failed or terminated are not waited for.
+   *
+   * @param task the task
+   * @return the task's result
+   * @throws IOException when the task fails
+   * @throws InterruptedException
+   */
+  public synchronized final <T> T whilePaused(@NonNull final PausedTask<T> task)
+      throws IOException, InterruptedException {
+    if (executor == null) {
+      return task.run(data);
+    }
+    final Object pauseLock = this.pauseLock;
+    synchronized (pauseLock) {
+      pauseRequested = true;
+      try {
+        while (nbPausedTrainers < nbLiveTrainers) {
+          pauseLock.wait();
+        }
+        return task.run(data);
+      } finally {
+        pauseRequested = false;
+        pauseLock.notifyAll();
+      }
+    }
+  }
+
+  private final <T> T whilePausedUnchecked(final Supplier<T> supplier)
+      throws InterruptedException {
+    try {
+      return whilePaused(data -> supplier.get());
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Get the exceptions thrown by the trainer threads since the last start, without stopping them
+   * 
+   * @return a copy of the trainer thread exceptions
+   */
+  public List<Exception> getExceptions() {
+    synchronized (exceptions) {
+      return new ArrayList<>(exceptions);
+    }
+  }
+
   /**
    * Is the CSCFRM running
    * 
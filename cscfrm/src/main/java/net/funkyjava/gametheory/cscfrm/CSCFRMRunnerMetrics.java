@@ -0,0 +1,415 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Training metrics of a {@link CSCFRMRunner}. Each trainer thread publishes its counters in its
+ * own cache lines with ordered writes only, and times one iteration and one chances production
+ * out of {@link #samplingInterval}, so that metrics can stay enabled in production.
+ *
+ * Rates and ratios are computed by {@link #update()} over the window since the previous update.
+ * Updates happen on each periodic log line, see {@link #startLogging(long, TimeUnit)}, and on JMX
+ * reads at most once per second, see {@link #registerMBean(String)}.
+ *
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public final class CSCFRMRunnerMetrics implements CSCFRMRunnerMetricsMXBean {
+
+  /**
+   * One iteration and one chances production out of this number are timed
+   */
+  public static final int samplingInterval = 16;
+  static final int samplingMask = samplingInterval - 1;
+  private static final long minJmxWindowNanos = TimeUnit.SECONDS.toNanos(1);
+
+  // Counters of a thread, 16 longs apart to avoid false sharing
+  private static final int slotSize = 16;
+  private static final int iterationsCounter = 0;
+  private static final int visitedNodesCounter = 1;
+  private static final int blockedNanosCounter = 2;
+  private static final int producedCounter = 3;
+  private static final int producerNanosCounter = 4;
+  private static final int acquiresCounter = 5;
+  private static final int nbCounters = 6;
+
+  private final CSCFRMData<?, ?> data;
+  private final CSCFRMChancesSynchronizer<?> synchronizer;
+  /**
+   * Number of trainer threads
+   */
+  @Getter
+  private final int nbThreads;
+  private final AtomicLongArray counters;
+  private final ThreadMetrics[] threadsMetrics;
+
+  // Window state, guarded by this
+  private long lastUpdateNanos;
+  private long lastIterations;
+  private final long[] lastCounters;
+  private long lastSynchronizerProduced;
+  private long lastSynchronizerNanos;
+  private ScheduledExecutorService scheduler;
+  private ObjectName objectName;
+
+  private volatile double iterationsPerSecond;
+  private volatile double[] threadsIterationsPerSecond;
+  private volatile double[] threadsBlockedRatios;
+  private volatile double producerLatencyMicros;
+  private volatile double visitedNodesPerSecond;
+  private volatile double chancesPerAcquire;
+
+  /**
+   * Counters publisher of a trainer thread. Only its thread may use it.
+   */
+  final class ThreadMetrics {
+
+    private final int offset;
+    private long iterations;
+    private long publishedIterations;
+    private long produced;
+    private long publishedProduced;
+    private long acquires;
+    private long publishedAcquires;
+    private long publishedVisitedNodes;
+
+    private ThreadMetrics(final int thread) {
+      this.offset = thread * slotSize;
+    }
+
+    /**
+     * Count an iteration
+     *
+     * @return true when the iteration should be timed
+     */
+    boolean sampleIteration() {
+      return (++iterations & samplingMask) == 0;
+    }
+
+    /**
+     * Count an acquisition of a batch of chances from the synchronizer
+     *
+     * @return true when the acquisition should be timed
+     */
+    boolean sampleAcquire() {
+      return (++acquires & samplingMask) == 0;
+    }
+
+    /**
+     * Count a chances production
+     *
+     * @return true when the production should be timed
+     */
+    boolean sampleProduction() {
+      return (++produced & samplingMask) == 0;
+    }
+
+    /**
+     * Add the blocked time of a timed iteration
+     *
+     * @param nanos the blocked time in nanoseconds
+     */
+    void addSampledBlockedNanos(final long nanos) {
+      add(blockedNanosCounter, nanos * samplingInterval);
+    }
+
+    /**
+     * Add a blocked time that is always measured
+     *
+     * @param nanos the blocked time in nanoseconds
+     */
+    void addBlockedNanos(final long nanos) {
+      add(blockedNanosCounter, nanos);
+    }
+
+    /**
+     * Add the duration of a timed chances production
+     *
+     * @param nanos the production time in nanoseconds
+     */
+    void addSampledProducerNanos(final long nanos) {
+      add(producerNanosCounter, nanos * samplingInterval);
+    }
+
+    /**
+     * Publish the iterations and productions counts, and the visited nodes of the thread's trainer
+     *
+     * @param visitedNodes the number of nodes visited by the current trainer since its creation
+     */
+    void publish(final long visitedNodes) {
+      add(iterationsCounter, iterations - publishedIterations);
+      publishedIterations = iterations;
+      add(producedCounter, produced - publishedProduced);
+      publishedProduced = produced;
+      add(acquiresCounter, acquires - publishedAcquires);
+      publishedAcquires = acquires;
+      add(visitedNodesCounter, visitedNodes - publishedVisitedNodes);
+      publishedVisitedNodes = visitedNodes;
+    }
+
+    /**
+     * The thread's trainer is replaced, its visited nodes count will restart from zero
+     */
+    void resetVisitedNodes() {
+      publishedVisitedNodes = 0;
+    }
+
+    private final void add(final int counter, final long value) {
+      final AtomicLongArray counters = CSCFRMRunnerMetrics.this.counters;
+      final int index = offset + counter;
+      // Single writer : no need for an atomic add
+      counters.lazySet(index, counters.get(index) + value);
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param data the data the runner trains
+   * @param synchronizer the runner's chances synchronizer, or null when its threads produce their
+   *        chances
+   * @param nbThreads the number of trainer threads
+   */
+  CSCFRMRunnerMetrics(final CSCFRMData<?, ?> data,
+      final CSCFRMChancesSynchronizer<?> synchronizer, final int nbThreads) {
+    this.data = data;
+    this.synchronizer = synchronizer;
+    this.nbThreads = nbThreads;
+    this.counters = new AtomicLongArray(nbThreads * slotSize);
+    this.lastCounters = new long[nbThreads * nbCounters];
+    this.threadsIterationsPerSecond = new double[nbThreads];
+    this.threadsBlockedRatios = new double[nbThreads];
+    final ThreadMetrics[] threadsMetrics = this.threadsMetrics = new ThreadMetrics[nbThreads];
+    for (int thread = 0; thread < nbThreads; thread++) {
+      threadsMetrics[thread] = new ThreadMetrics(thread);
+    }
+    this.lastUpdateNanos = System.nanoTime();
+    this.lastIterations = data.getIterations().get();
+  }
+
+  ThreadMetrics thread(final int thread) {
+    return threadsMetrics[thread];
+  }
+
+  private final long sum(final int counter) {
+    final AtomicLongArray counters = this.counters;
+    long res = 0;
+    for (int thread = 0; thread < nbThreads; thread++) {
+      res += counters.get(thread * slotSize + counter);
+    }
+    return res;
+  }
+
+  /**
+   * Compute the rates and ratios over the window since the previous update
+   */
+  public synchronized void update() {
+    final long now = System.nanoTime();
+    final long windowNanos = now - lastUpdateNanos;
+    if (windowNanos <= 0) {
+      return;
+    }
+    final double windowSeconds = windowNanos / 1e9;
+    lastUpdateNanos = now;
+    final long iterations = data.getIterations().get();
+    iterationsPerSecond = (iterations - lastIterations) / windowSeconds;
+    lastIterations = iterations;
+    final int nbThreads = this.nbThreads;
+    final AtomicLongArray counters = this.counters;
+    final long[] lastCounters = this.lastCounters;
+    final double[] threadsIterations = new double[nbThreads];
+    final double[] threadsBlocked = new double[nbThreads];
+    final long[] deltas = new long[nbCounters];
+    for (int thread = 0; thread < nbThreads; thread++) {
+      final int offset = thread * slotSize;
+      final int lastOffset = thread * nbCounters;
+      final long[] threadDeltas = new long[nbCounters];
+      for (int counter = 0; counter < nbCounters; counter++) {
+        final long value = counters.get(offset + counter);
+        threadDeltas[counter] = value - lastCounters[lastOffset + counter];
+        deltas[counter] += threadDeltas[counter];
+        lastCounters[lastOffset + counter] = value;
+      }
+      threadsIterations[thread] = threadDeltas[iterationsCounter] / windowSeconds;
+      threadsBlocked[thread] =
+          Math.min(1, (double) threadDeltas[blockedNanosCounter] / windowNanos);
+    }
+    threadsIterationsPerSecond = threadsIterations;
+    threadsBlockedRatios = threadsBlocked;
+    visitedNodesPerSecond = deltas[visitedNodesCounter] / windowSeconds;
+    final long acquires = deltas[acquiresCounter];
+    chancesPerAcquire = acquires == 0 ? 0 : (double) deltas[iterationsCounter] / acquires;
+    long produced = deltas[producedCounter];
+    long producerNanos = deltas[producerNanosCounter];
+    final CSCFRMChancesSynchronizer<?> synchronizer = this.synchronizer;
+    if (synchronizer != null) {
+      final long synchronizerProduced = synchronizer.getProducedChances();
+      final long synchronizerNanos = synchronizer.getProducerNanos();
+      produced += synchronizerProduced - lastSynchronizerProduced;
+      producerNanos += synchronizerNanos - lastSynchronizerNanos;
+      lastSynchronizerProduced = synchronizerProduced;
+      lastSynchronizerNanos = synchronizerNanos;
+    }
+    producerLatencyMicros = produced == 0 ? 0 : producerNanos / (produced * 1e3);
+  }
+
+  private synchronized final void updateForJmx() {
+    if (System.nanoTime() - lastUpdateNanos >= minJmxWindowNanos) {
+      update();
+    }
+  }
+
+  /**
+   * Log one line with the metrics in key=value form
+   */
+  public void log() {
+    log.info(
+        "cscfrm.metrics iterations={} itPerSec={} nodesPerSec={} backlog={} produced={} "
+            + "producerMicros={} chancesPerAcquire={} threadsItPerSec={} threadsBlocked={}",
+        data.getIterations().get(), String.format("%.1f", iterationsPerSecond),
+        String.format("%.1f", visitedNodesPerSecond), getCollisionBacklog(),
+        getProducedChances(), String.format("%.3f", producerLatencyMicros),
+        String.format("%.2f", chancesPerAcquire),
+        format(threadsIterationsPerSecond, "%.1f"), format(threadsBlockedRatios, "%.3f"));
+  }
+
+  private static final String format(final double[] values, final String format) {
+    final String[] res = new String[values.length];
+    for (int i = 0; i < values.length; i++) {
+      res[i] = String.format(format, values[i]);
+    }
+    return String.join(",", Arrays.asList(res));
+  }
+
+  /**
+   * Update and log the metrics periodically in a daemon thread
+   *
+   * @param period the logging period
+   * @param unit the period's time unit
+   */
+  public synchronized void startLogging(final long period, final TimeUnit unit) {
+    checkArgument(period > 0, "The logging period must be > 0");
+    checkState(scheduler == null, "Already logging");
+    final ScheduledExecutorService scheduler =
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+          final Thread thread = new Thread(r, "cscfrm-metrics");
+          thread.setDaemon(true);
+          return thread;
+        });
+    scheduler.scheduleAtFixedRate(() -> {
+      update();
+      log();
+    }, period, period, unit);
+  }
+
+  /**
+   * Stop the periodic logging
+   */
+  public synchronized void stopLogging() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+  }
+
+  /**
+   * Register these metrics in the platform MBean server with the object name
+   * net.funkyjava.gametheory.cscfrm:type=CSCFRMRunner,name=&lt;name&gt;
+   *
+   * @param name the name of the runner
+   * @throws JMException when the registration fails
+   */
+  public synchronized void registerMBean(final String name) throws JMException {
+    checkState(objectName == null, "Already registered");
+    final ObjectName objectName =
+        new ObjectName("net.funkyjava.gametheory.cscfrm:type=CSCFRMRunner,name=" + name);
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    this.objectName = objectName;
+  }
+
+  /**
+   * Unregister these metrics from the platform MBean server
+   *
+   * @throws JMException when the unregistration fails
+   */
+  public synchronized void unregisterMBean() throws JMException {
+    if (objectName != null) {
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      server.unregisterMBean(objectName);
+      objectName = null;
+    }
+  }
+
+  @Override
+  public long getIterations() {
+    return data.getIterations().get();
+  }
+
+  @Override
+  public double getIterationsPerSecond() {
+    updateForJmx();
+    return iterationsPerSecond;
+  }
+
+  @Override
+  public double[] getThreadsIterationsPerSecond() {
+    updateForJmx();
+    return threadsIterationsPerSecond.clone();
+  }
+
+  @Override
+  public double[] getThreadsBlockedRatios() {
+    updateForJmx();
+    return threadsBlockedRatios.clone();
+  }
+
+  @Override
+  public int getCollisionBacklog() {
+    return synchronizer == null ? 0 : synchronizer.getBacklog();
+  }
+
+  @Override
+  public long getProducedChances() {
+    final long produced = sum(producedCounter);
+    return synchronizer == null ? produced : produced + synchronizer.getProducedChances();
+  }
+
+  @Override
+  public double getProducerLatencyMicros() {
+    updateForJmx();
+    return producerLatencyMicros;
+  }
+
+  @Override
+  public double getChancesPerAcquire() {
+    updateForJmx();
+    return chancesPerAcquire;
+  }
+
+  @Override
+  public long getVisitedNodes() {
+    return sum(visitedNodesCounter);
+  }
+
+  @Override
+  public double getVisitedNodesPerSecond() {
+    updateForJmx();
+    return visitedNodesPerSecond;
+  }
+}
@@ -0,0 +1,83 @@
+package net.funkyjava.gametheory.cscfrm;
+
+/**
+ * Monitoring interface of a {@link CSCFRMRunner}, see {@link CSCFRMRunnerMetrics}. Rates and
+ * ratios are computed over the window between the two last updates.
+ * 
+ * @author Pierre Mardon
+ *
+ */
+public interface CSCFRMRunnerMetricsMXBean {
+
+  /**
+   * Get the number of iterations of the CSCFRM data
+   * 
+   * @return the number of iterations
+   */
+  long getIterations();
+
+  /**
+   * Get the number of iterations per second of all trainer threads
+   * 
+   * @return the iterations per second
+   */
+  double getIterationsPerSecond();
+
+  /**
+   * Get the number of iterations per second of each trainer thread
+   * 
+   * @return the iterations per second indexed by trainer thread
+   */
+  double[] getThreadsIterationsPerSecond();
+
+  /**
+   * Get the ratio of time each trainer thread spent waiting for chances or for the other threads
+   * 
+   * @return the blocked time ratios indexed by trainer thread
+   */
+  double[] getThreadsBlockedRatios();
+
+  /**
+   * Get the number of drawn chances waiting for the end of a colliding iteration, 0 when there is
+   * no synchronizer
+   * 
+   * @return the collision backlog size
+   */
+  int getCollisionBacklog();
+
+  /**
+   * Get the number of chances drawn from the producers
+   * 
+   * @return the number of produced chances
+   */
+  long getProducedChances();
+
+  /**
+   * Get the average time needed to produce chances
+   * 
+   * @return the producer latency in microseconds
+   */
+  double getProducerLatencyMicros();
+
+  /**
+   * Get the average number of chances trained per acquisition of a batch from the chances
+   * synchronizer, 0 when there is no synchronizer
+   * 
+   * @return the average batch size
+   */
+  double getChancesPerAcquire();
+
+  /**
+   * Get the number of player nodes visited by the trainers
+   * 
+   * @return the number of visited nodes
+   */
+  long getVisitedNodes();
+
+  /**
+   * Get the number of player nodes visited per second by the trainers
+   * 
+   * @return the visited nodes per second
+   */
+  double getVisitedNodesPerSecond();
+}
@@ -0,0 +1,119 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Sampling scheme of the CSCFRM trainers. All schemes share the {@link CSCFRMData} layout.
+ *
+ * @author Pierre Mardon
+ *
+ */
+public enum CSCFRMSampling {
+  /**
+   * Chances sampling only, all actions are walked, see {@link CSCFRMTrainer}
+   */
+  CHANCES {
+    @Override
+    public <Chances extends CSCFRMChances> CSCFRMChancesTrainer<Chances> createTrainer(
+        final CSCFRMData<?, Chances> data, final CSCFRMDiscounting discounting,
+        final CSCFRMPruning pruning, final long seed) {
+      return new CSCFRMTrainer<>(data, discounting, pruning);
+    }
+  },
+  /**
+   * Chances sampling with CFR+ only, all actions are walked on the flattened action tree, see
+   * {@link CSCFRMFlatTrainer}
+   */
+  CHANCES_FLAT {
+    @Override
+    public <Chances extends CSCFRMChances> CSCFRMChancesTrainer<Chances> createTrainer(
+        final CSCFRMData<?, Chances> data, final CSCFRMDiscounting discounting,
+        final CSCFRMPruning pruning, final long seed) {
+      checkSupported(discounting, pruning);
+      return new CSCFRMFlatTrainer<>(data);
+    }
+  },
+  /**
+   * Chances sampling with CFR+ only, the batches of chances of the synchronized mode are walked at
+   * once, see {@link CSCFRMBatchTrainer} and {@link CSCFRMRunner#setBatchSize(int)}
+   */
+  CHANCES_BATCH {
+    @Override
+    public <Chances extends CSCFRMChances> CSCFRMChancesTrainer<Chances> createTrainer(
+        final CSCFRMData<?, Chances> data, final CSCFRMDiscounting discounting,
+        final CSCFRMPruning pruning, final long seed) {
+      checkSupported(discounting, pruning);
+      return new CSCFRMBatchTrainer<>(data);
+    }
+  },
+  /**
+   * Chances and non-traverser actions sampling, see {@link CSCFRMExternalSamplingTrainer}
+   */
+  EXTERNAL {
+    @Override
+    public <Chances extends CSCFRMChances> CSCFRMChancesTrainer<Chances> createTrainer(
+        final CSCFRMData<?, Chances> data, final CSCFRMDiscounting discounting,
+        final CSCFRMPruning pruning, final long seed) {
+      checkSupported(discounting, pruning);
+      return new CSCFRMExternalSamplingTrainer<>(data, seed);
+    }
+  },
+  /**
+   * Chances and actions sampling, one terminal history per iteration, see
+   * {@link CSCFRMOutcomeSamplingTrainer}
+   */
+  OUTCOME {
+    @Override
+    public <Chances extends CSCFRMChances> CSCFRMChancesTrainer<Chances> createTrainer(
+        final CSCFRMData<?, Chances> data, final CSCFRMDiscounting discounting,
+        final CSCFRMPruning pruning, final long seed) {
+      checkSupported(discounting, pruning);
+      return new CSCFRMOutcomeSamplingTrainer<>(data,
+          CSCFRMOutcomeSamplingTrainer.defaultExploration, seed);
+    }
+  };
+
+  /**
+   * Create a trainer for this sampling scheme, with an unpredictable actions sampling seed
+   *
+   * @param data the CSCFRM data
+   * @param discounting the discounting parameters, or null for CFR+. Only supported by
+   *        {@link #CHANCES}.
+   * @param pruning the regret-based pruning settings, or null to never prune. Only supported by
+   *        {@link #CHANCES}.
+   * @return the trainer
+   */
+  public <Chances extends CSCFRMChances> CSCFRMChancesTrainer<Chances> createTrainer(
+      final CSCFRMData<?, Chances> data, final CSCFRMDiscounting discounting,
+      final CSCFRMPruning pruning) {
+    return createTrainer(data, discounting, pruning, System.nanoTime());
+  }
+
+  /**
+   * Create a trainer for this sampling scheme
+   *
+   * @param data the CSCFRM data
+   * @param discounting the discounting parameters, or null for CFR+. Only supported by
+   *        {@link #CHANCES}.
+   * @param pruning the regret-based pruning settings, or null to never prune. Only supported by
+   *        {@link #CHANCES}.
+   * @param seed the actions sampling seed, unused by the schemes walking all actions
+   * @return the trainer
+   */
+  public abstract <Chances extends CSCFRMChances> CSCFRMChancesTrainer<Chances> createTrainer(
+      CSCFRMData<?, Chances> data, CSCFRMDiscounting discounting, CSCFRMPruning pruning,
+      long seed);
+
+  /**
+   * Check that the sampling scheme supports the provided options
+   *
+   * @param discounting the discounting parameters, or null
+   * @param pruning the pruning settings, or null
+   */
+  public void checkSupported(final CSCFRMDiscounting discounting, final CSCFRMPruning pruning) {
+    if (this != CHANCES) {
+      checkArgument(discounting == null, "%s sampling doesn't support discounting", this);
+      checkArgument(pruning == null, "%s sampling doesn't support pruning", this);
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package net.funkyjava.gametheory.cscfrm;
+
+/**
+ * Plain Java 8 loops implementation of {@link CSCFRMKernels}, the reference of all implementations
+ *
+ * @author Pierre Mardon
+ *
+ */
+public final class CSCFRMScalarKernels extends CSCFRMKernels {
+
+  @Override
+  public void regretMatching(final double[][] regrets, final double[][] strategy,
+      final int nbActions, final int length) {
+    final double uniform = 1.0d / nbActions;
+    for (int i = 0; i < length; i++) {
+      double totalRegret = 0;
+      for (int action = 0; action < nbActions; action++) {
+        totalRegret += regrets[action][i];
+      }
+      if (totalRegret > 0) {
+        for (int action = 0; action < nbActions; action++) {
+          strategy[action][i] = regrets[action][i] / totalRegret;
+        }
+      } else {
+        for (int action = 0; action < nbActions; action++) {
+          strategy[action][i] = uniform;
+        }
+      }
+    }
+  }
+
+  @Override
+  public void multiply(final double[] a, final double[] b, final double[] dst, final int length) {
+    for (int i = 0; i < length; i++) {
+      dst[i] = a[i] * b[i];
+    }
+  }
+
+  @Override
+  public void multiplyAdd(final double[] a, final double[] b, final double[] acc,
+      final int length) {
+    for (int i = 0; i < length; i++) {
+      acc[i] += a[i] * b[i];
+    }
+  }
+
+  @Override
+  public void add(final double[] src, final double[] acc, final int length) {
+    for (int i = 0; i < length; i++) {
+      acc[i] += src[i];
+    }
+  }
+
+  @Override
+  public void subtract(final double[] a, final double[] b, final double[] dst, final int length) {
+    for (int i = 0; i < length; i++) {
+      dst[i] = a[i] - b[i];
+    }
+  }
+}
@@ -0,0 +1,384 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import lombok.Getter;
+import net.funkyjava.gametheory.extensiveformgame.ActionTree;
+import net.funkyjava.gametheory.extensiveformgame.LinkedActionTreeNode;
+import net.funkyjava.gametheory.io.Fillable;
+import net.funkyjava.gametheory.io.IOUtils;
+
+/**
+ * Flat storage of the CSCFRM regret sums and strategy sums. For each (round, player) couple, all
+ * values are stored in one contiguous primitive array laid out by chance, then action node, then
+ * regret sums followed by strategy sums of the node's actions. Implementations choose the primitive
+ * type, see {@link CSCFRMStorePrecision}.
+ *
+ * Whatever the implementation, the serialized form is made of doubles and is the same as the one
+ * of the former CSCFRMNode[round][player][chance][node] representation.
+ *
+ * @author Pierre Mardon
+ *
+ */
+public abstract class CSCFRMStore implements Fillable {
+
+  /**
+   * Number of rounds
+   */
+  @Getter
+  private final int nbRounds;
+  /**
+   * Number of players
+   */
+  @Getter
+  private final int nbPlayers;
+  /**
+   * Chances sizes indexed by round, player
+   */
+  @Getter
+  private final int[][] roundChancesSizes;
+  /**
+   * Number of actions of each action node indexed by round, player, node index
+   */
+  @Getter
+  private final int[][][] nodesNbActions;
+  /**
+   * Offset of each action node inside a chance block, indexed by round, player, node index
+   */
+  @Getter
+  private final int[][][] nodesOffsets;
+  /**
+   * Size of a chance block indexed by round, player
+   */
+  @Getter
+  private final int[][] chancesStrides;
+  /**
+   * Number of stored values indexed by round, player
+   */
+  @Getter
+  private final int[][] sizes;
+  /**
+   * Whether each value of a chance block is a regret sum, indexed by round, player, position in the
+   * block
+   */
+  private final boolean[][][] regretFlags;
+
+  /**
+   * Constructor
+   *
+   * @param actionTree the action tree from which the nodes layout is computed
+   * @param roundChancesSizes the chances sizes indexed by round, player
+   */
+  public CSCFRMStore(final ActionTree<?, ?> actionTree, final int[][] roundChancesSizes) {
+    final int nbRounds = this.nbRounds = roundChancesSizes.length;
+    final LinkedActionTreeNode<?, ?>[][][] actionNodes = actionTree.getActionNodes();
+    final int nbPlayers = this.nbPlayers = actionNodes[0].length;
+    this.roundChancesSizes = roundChancesSizes;
+    final int[][][] nodesNbActions = this.nodesNbActions = new int[nbRounds][nbPlayers][];
+    final int[][][] nodesOffsets = this.nodesOffsets = new int[nbRounds][nbPlayers][];
+    final int[][] chancesStrides = this.chancesStrides = new int[nbRounds][nbPlayers];
+    final int[][] sizes = this.sizes = new int[nbRounds][nbPlayers];
+    final boolean[][][] regretFlags = this.regretFlags = new boolean[nbRounds][nbPlayers][];
+    for (int round = 0; round < nbRounds; round++) {
+      for (int player = 0; player < nbPlayers; player++) {
+        final LinkedActionTreeNode<?, ?>[] playerNodes = actionNodes[round][player];
+        final int nbNodes = playerNodes.length;
+        final int[] nbActions = nodesNbActions[round][player] = new int[nbNodes];
+        final int[] offsets = nodesOffsets[round][player] = new int[nbNodes];
+        int stride = 0;
+        for (int node = 0; node < nbNodes; node++) {
+          offsets[node] = stride;
+          stride += 2 * (nbActions[node] = playerNodes[node].getPlayerNode().getNbActions());
+        }
+        chancesStrides[round][player] = stride;
+        final boolean[] flags = regretFlags[round][player] = new boolean[stride];
+        for (int node = 0; node < nbNodes; node++) {
+          Arrays.fill(flags, offsets[node], offsets[node] + nbActions[node], true);
+        }
+        final long size = (long) stride * roundChancesSizes[round][player];
+        if (size > Integer.MAX_VALUE) {
+          throw new IllegalArgumentException(
+              "Too many values for round " + round + " and player " + player + " : " + size);
+        }
+        sizes[round][player] = (int) size;
+      }
+    }
+  }
+
+  /**
+   * Constructor sharing the layout of another store
+   *
+   * @param layout the store whose layout is shared
+   */
+  protected CSCFRMStore(final CSCFRMStore layout) {
+    this.nbRounds = layout.nbRounds;
+    this.nbPlayers = layout.nbPlayers;
+    this.roundChancesSizes = layout.roundChancesSizes;
+    this.nodesNbActions = layout.nodesNbActions;
+    this.nodesOffsets = layout.nodesOffsets;
+    this.chancesStrides = layout.chancesStrides;
+    this.sizes = layout.sizes;
+    this.regretFlags = layout.regretFlags;
+  }
+
+  /**
+   * Copy the store values into a new store with the same layout and precision. The copy is made of
+   * primitive arrays clones, it is not synchronized with concurrent updates.
+   *
+   * @return the copy
+   */
+  public abstract CSCFRMStore copy();
+
+  /**
+   * Get the index of the first regret sum of a node for a given chance. Strategy sums start at the
+   * returned index plus the number of actions of the node.
+   *
+   * @param round the round
+   * @param player the player
+   * @param chance the player's chance for this round
+   * @param nodeIndex the player's round node index
+   * @return the index of the node's first regret sum
+   */
+  public final int regretIndex(final int round, final int player, final int chance,
+      final int nodeIndex) {
+    return chance * chancesStrides[round][player] + nodesOffsets[round][player][nodeIndex];
+  }
+
+  /**
+   * Get a regret sum
+   *
+   * @param round the round
+   * @param player the player
+   * @param index the value index
+   * @return the regret sum
+   */
+  public abstract double getRegret(final int round, final int player, final int index);
+
+  /**
+   * Set a regret sum
+   *
+   * @param round the round
+   * @param player the player
+   * @param index the value index
+   * @param value the new regret sum
+   */
+  public abstract void setRegret(final int round, final int player, final int index,
+      final double value);
+
+  /**
+   * Add to a regret sum
+   *
+   * @param round the round
+   * @param player the player
+   * @param index the value index
+   * @param value the value to add
+   */
+  public abstract void addRegret(final int round, final int player, final int index,
+      final double value);
+
+  /**
+   * Get a strategy sum
+   *
+   * @param round the round
+   * @param player the player
+   * @param index the value index
+   * @return the strategy sum
+   */
+  public abstract double getStrategy(final int round, final int player, final int index);
+
+  /**
+   * Set a strategy sum
+   *
+   * @param round the round
+   * @param player the player
+   * @param index the value index
+   * @param value the new strategy sum
+   */
+  public abstract void setStrategy(final int round, final int player, final int index,
+      final double value);
+
+  /**
+   * Add to a strategy sum
+   *
+   * @param round the round
+   * @param player the player
+   * @param index the value index
+   * @param value the value to add
+   */
+  public abstract void addStrategy(final int round, final int player, final int index,
+      final double value);
+
+  /**
+   * Get the node view for an action node and a chance
+   *
+   * @param round the round
+   * @param player the player
+   * @param chance the chance
+   * @param nodeIndex the player's round node index
+   * @return the node view
+   */
+  public CSCFRMNode node(final int round, final int player, final int chance,
+      final int nodeIndex) {
+    return new CSCFRMNode(this, round, player, regretIndex(round, player, chance, nodeIndex),
+        nodesNbActions[round][player][nodeIndex]);
+  }
+
+  @Override
+  public void fill(InputStream is) throws IOException {
+    final DataInputStream dis = new DataInputStream(is);
+    final int nbRounds = this.nbRounds;
+    final int nbPlayers = this.nbPlayers;
+    for (int round = 0; round < nbRounds; round++) {
+      for (int player = 0; player < nbPlayers; player++) {
+        final int nbChances = roundChancesSizes[round][player];
+        final int[] nbActions = nodesNbActions[round][player];
+        final int nbNodes = nbActions.length;
+        int index = 0;
+        for (int chance = 0; chance < nbChances; chance++) {
+          for (int node = 0; node < nbNodes; node++) {
+            final int nodeNbActions = nbActions[node];
+            for (int i = 0; i < nodeNbActions; i++, index++) {
+              setRegret(round, player, index, dis.readDouble());
+            }
+            for (int i = 0; i < nodeNbActions; i++, index++) {
+              setStrategy(round, player, index, dis.readDouble());
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public void write(OutputStream os) throws IOException {
+    final DataOutputStream dos = new DataOutputStream(os);
+    final int nbRounds = this.nbRounds;
+    final int nbPlayers = this.nbPlayers;
+    for (int round = 0; round < nbRounds; round++) {
+      for (int player = 0; player < nbPlayers; player++) {
+        final int nbChances = roundChancesSizes[round][player];
+        final int[] nbActions = nodesNbActions[round][player];
+        final int nbNodes = nbActions.length;
+        int index = 0;
+        for (int chance = 0; chance < nbChances; chance++) {
+          for (int node = 0; node < nbNodes; node++) {
+            final int nodeNbActions = nbActions[node];
+            for (int i = 0; i < nodeNbActions; i++, index++) {
+              dos.writeDouble(getRegret(round, player, index));
+            }
+            for (int i = 0; i < nodeNbActions; i++, index++) {
+              dos.writeDouble(getStrategy(round, player, index));
+            }
+          }
+        }
+      }
+    }
+    dos.flush();
+  }
+
+  /**
+   * Copy values in serialization order : regret sums and strategy sums as they are laid out
+   *
+   * @param round the round
+   * @param player the player
+   * @param from index of the first value
+   * @param dest the destination array
+   * @param length number of values to copy
+   */
+  final void getValues(final int round, final int player, final int from, final double[] dest,
+      final int length) {
+    final boolean[] regrets = regretFlags[round][player];
+    final int stride = regrets.length;
+    int position = from % stride;
+    for (int i = 0, index = from; i < length; i++, index++) {
+      dest[i] = regrets[position] ? getRegret(round, player, index)
+          : getStrategy(round, player, index);
+      if (++position == stride) {
+        position = 0;
+      }
+    }
+  }
+
+  /**
+   * Set values in serialization order : regret sums and strategy sums as they are laid out
+   *
+   * @param round the round
+   * @param player the player
+   * @param from index of the first value
+   * @param src the source array
+   * @param length number of values to set
+   */
+  final void setValues(final int round, final int player, final int from, final double[] src,
+      final int length) {
+    final boolean[] regrets = regretFlags[round][player];
+    final int stride = regrets.length;
+    int position = from % stride;
+    for (int i = 0, index = from; i < length; i++, index++) {
+      if (regrets[position]) {
+        setRegret(round, player, index, src[i]);
+      } else {
+        setStrategy(round, player, index, src[i]);
+      }
+      if (++position == stride) {
+        position = 0;
+      }
+    }
+  }
+
+  @Override
+  public void fill(ReadableByteChannel channel) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(IOUtils.bufferSize);
+    final DoubleBuffer doubles = buffer.asDoubleBuffer();
+    final double[] values = new double[doubles.capacity()];
+    final int nbRounds = this.nbRounds;
+    final int nbPlayers = this.nbPlayers;
+    for (int round = 0; round < nbRounds; round++) {
+      for (int player = 0; player < nbPlayers; player++) {
+        final int size = sizes[round][player];
+        for (int index = 0; index < size;) {
+          final int n = Math.min(size - index, values.length);
+          buffer.clear();
+          buffer.limit(n * Double.BYTES);
+          IOUtils.readFully(channel, buffer);
+          doubles.clear();
+          doubles.get(values, 0, n);
+          setValues(round, player, index, values, n);
+          index += n;
+        }
+      }
+    }
+  }
+
+  @Override
+  public void write(WritableByteChannel channel) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(IOUtils.bufferSize);
+    final DoubleBuffer doubles = buffer.asDoubleBuffer();
+    final double[] values = new double[doubles.capacity()];
+    final int nbRounds = this.nbRounds;
+    final int nbPlayers = this.nbPlayers;
+    for (int round = 0; round < nbRounds; round++) {
+      for (int player = 0; player < nbPlayers; player++) {
+        final int size = sizes[round][player];
+        for (int index = 0; index < size;) {
+          final int n = Math.min(size - index, values.length);
+          getValues(round, player, index, values, n);
+          doubles.clear();
+          doubles.put(values, 0, n);
+          buffer.clear();
+          buffer.limit(n * Double.BYTES);
+          IOUtils.writeFully(channel, buffer);
+          index += n;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import net.funkyjava.gametheory.extensiveformgame.ActionTree;
+
+/**
+ * Storage precision of the CSCFRM regret and strategy sums
+ *
+ * @author Pierre Mardon
+ *
+ */
+public enum CSCFRMStorePrecision {
+  /**
+   * 64 bits per value, see {@link CSCFRMDoubleStore}
+   */
+  DOUBLE {
+    @Override
+    public CSCFRMStore createStore(final ActionTree<?, ?> actionTree,
+        final int[][] roundChancesSizes) {
+      return new CSCFRMDoubleStore(actionTree, roundChancesSizes);
+    }
+  },
+  /**
+   * 32 bits per value, see {@link CSCFRMFloatStore}
+   */
+  FLOAT {
+    @Override
+    public CSCFRMStore createStore(final ActionTree<?, ?> actionTree,
+        final int[][] roundChancesSizes) {
+      return new CSCFRMFloatStore(actionTree, roundChancesSizes);
+    }
+  },
+  /**
+   * 32 bits per value, regrets as scaled integers with the default scale, see
+   * {@link CSCFRMCompressedRegretStore}
+   */
+  COMPRESSED_REGRET {
+    @Override
+    public CSCFRMStore createStore(final ActionTree<?, ?> actionTree,
+        final int[][] roundChancesSizes) {
+      return new CSCFRMCompressedRegretStore(actionTree, roundChancesSizes);
+    }
+  };
+
+  /**
+   * Create a store of this precision
+   *
+   * @param actionTree the action tree from which the nodes layout is computed
+   * @param roundChancesSizes the chances sizes indexed by round, player
+   * @return the created store
+   */
+  public abstract CSCFRMStore createStore(final ActionTree<?, ?> actionTree,
+      final int[][] roundChancesSizes);
+}
@@ -0,0 +1,74 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import lombok.Getter;
+
+/**
+ * Copy of the average strategies of a {@link CSCFRMData}. For each (round, player) couple, the
+ * average strategies are laid out like the {@link CSCFRMStore} values without the regret sums : the
+ * average strategy of an action is at index regretIndex / 2 + action where regretIndex is the
+ * store index of the node's first regret sum. Nodes without strategy sum get a uniform strategy.
+ * 
+ * Take snapshots while no trainer runs, or with {@link CSCFRMRunner#snapshot()}, to get a
+ * consistent strategy profile.
+ * 
+ * @author Pierre Mardon
+ *
+ */
+public final class CSCFRMStrategySnapshot {
+
+  /**
+   * Number of iterations of the data when the snapshot was taken
+   */
+  @Getter
+  private final long iterations;
+  /**
+   * Average strategies indexed by round, player, then strategy index
+   */
+  @Getter
+  private final double[][][] avgStrategies;
+
+  /**
+   * Constructor
+   * 
+   * @param data the data to copy the average strategies from
+   */
+  public CSCFRMStrategySnapshot(final CSCFRMData<?, ?> data) {
+    this.iterations = data.getIterations().get();
+    final CSCFRMStore store = data.getStore();
+    final int nbRounds = store.getNbRounds();
+    final int nbPlayers = store.getNbPlayers();
+    final int[][] roundChancesSizes = store.getRoundChancesSizes();
+    final int[][][] nodesNbActions = store.getNodesNbActions();
+    final int[][][] nodesOffsets = store.getNodesOffsets();
+    final int[][] chancesStrides = store.getChancesStrides();
+    final double[][][] avgStrategies = this.avgStrategies = new double[nbRounds][nbPlayers][];
+    for (int round = 0; round < nbRounds; round++) {
+      for (int player = 0; player < nbPlayers; player++) {
+        final double[] strategies =
+            avgStrategies[round][player] = new double[store.getSizes()[round][player] / 2];
+        final int[] nbActions = nodesNbActions[round][player];
+        final int[] offsets = nodesOffsets[round][player];
+        final int nbNodes = nbActions.length;
+        final int nbChances = roundChancesSizes[round][player];
+        final int stride = chancesStrides[round][player];
+        for (int chance = 0; chance < nbChances; chance++) {
+          for (int node = 0; node < nbNodes; node++) {
+            final int nodeNbActions = nbActions[node];
+            final int regretIndex = chance * stride + offsets[node];
+            final int stratIndex = regretIndex + nodeNbActions;
+            final int index = regretIndex / 2;
+            double total = 0;
+            for (int action = 0; action < nodeNbActions; action++) {
+              total += strategies[index + action] =
+                  store.getStrategy(round, player, stratIndex + action);
+            }
+            for (int action = 0; action < nodeNbActions; action++) {
+              strategies[index + action] =
+                  total > 0 ? strategies[index + action] / total : 1.0d / nodeNbActions;
+            }
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks guarding the CSCFRM nodes rows of some (round, player) chances. Used by the hogwild
+ * mode of {@link CSCFRMRunner} for the rows that must stay consistent. A row is identified by its
+ * round, player and chance, and is mapped to one of a fixed number of locks. Locks are always
+ * acquired in ascending order so that no deadlock can occur.
+ *
+ * @author Pierre Mardon
+ *
+ */
+public final class CSCFRMStripedLocks {
+
+  private final ReentrantLock[] locks;
+  private final int nbRounds;
+  private final boolean[][] lockedRows;
+  private final int[][] rowsOffsets;
+  private final int maxLocks;
+
+  /**
+   * Constructor guarding all rows
+   *
+   * @param chancesSizes chances sizes indexed by round, player
+   * @param nbStripes number of locks
+   */
+  public CSCFRMStripedLocks(final int[][] chancesSizes, final int nbStripes) {
+    this(chancesSizes, allRows(chancesSizes), nbStripes);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param chancesSizes chances sizes indexed by round, player
+   * @param lockedRows for each round and player, true when the rows of this round and player must
+   *        be guarded
+   * @param nbStripes number of locks
+   */
+  public CSCFRMStripedLocks(final int[][] chancesSizes, final boolean[][] lockedRows,
+      final int nbStripes) {
+    checkArgument(nbStripes > 0, "The number of stripes must be > 0");
+    final int nbRounds = this.nbRounds = chancesSizes.length;
+    checkArgument(lockedRows.length == nbRounds, "Locked rows must be indexed by round, player");
+    final ReentrantLock[] locks = this.locks = new ReentrantLock[nbStripes];
+    for (int i = 0; i < nbStripes; i++) {
+      locks[i] = new ReentrantLock();
+    }
+    this.lockedRows = new boolean[nbRounds][];
+    this.rowsOffsets = new int[nbRounds][];
+    int offset = 0;
+    int maxLocks = 0;
+    for (int round = 0; round < nbRounds; round++) {
+      final int[] roundSizes = chancesSizes[round];
+      final int nbPlayers = roundSizes.length;
+      checkArgument(lockedRows[round].length == nbPlayers,
+          "Locked rows must be indexed by round, player");
+      this.lockedRows[round] = lockedRows[round].clone();
+      final int[] roundOffsets = rowsOffsets[round] = new int[nbPlayers];
+      for (int player = 0; player < nbPlayers; player++) {
+        roundOffsets[player] = offset;
+        offset += roundSizes[player];
+        if (lockedRows[round][player]) {
+          maxLocks++;
+        }
+      }
+    }
+    this.maxLocks = maxLocks;
+  }
+
+  private static boolean[][] allRows(final int[][] chancesSizes) {
+    final int nbRounds = chancesSizes.length;
+    final boolean[][] res = new boolean[nbRounds][];
+    for (int round = 0; round < nbRounds; round++) {
+      Arrays.fill(res[round] = new boolean[chancesSizes[round].length], true);
+    }
+    return res;
+  }
+
+  /**
+   * Check if the rows of a round and player are guarded
+   *
+   * @param round the round
+   * @param player the player
+   * @return true when the rows are guarded
+   */
+  public boolean isGuarded(final int round, final int player) {
+    return lockedRows[round][player];
+  }
+
+  /**
+   * Create a buffer suitable for {@link #lock(int[][], int[])}
+   *
+   * @return the buffer
+   */
+  public int[] createBuffer() {
+    return new int[maxLocks];
+  }
+
+  /**
+   * Acquire the locks of the guarded rows the chances will use
+   *
+   * @param chances the chances indexed by round, player
+   * @param buffer buffer created by {@link #createBuffer()} that will contain the acquired stripes
+   * @return the number of acquired stripes to provide to {@link #unlock(int[], int)}
+   */
+  public int lock(final int[][] chances, final int[] buffer) {
+    final int nbRounds = this.nbRounds;
+    final boolean[][] lockedRows = this.lockedRows;
+    final int[][] rowsOffsets = this.rowsOffsets;
+    final int nbStripes = locks.length;
+    int nb = 0;
+    for (int round = 0; round < nbRounds; round++) {
+      final boolean[] roundLocked = lockedRows[round];
+      final int[] roundOffsets = rowsOffsets[round];
+      final int[] roundChances = chances[round];
+      final int nbPlayers = roundChances.length;
+      for (int player = 0; player < nbPlayers; player++) {
+        if (roundLocked[player]) {
+          buffer[nb++] = (roundOffsets[player] + roundChances[player]) % nbStripes;
+        }
+      }
+    }
+    Arrays.sort(buffer, 0, nb);
+    int nbDistinct = 0;
+    for (int i = 0; i < nb; i++) {
+      if (nbDistinct == 0 || buffer[nbDistinct - 1] != buffer[i]) {
+        buffer[nbDistinct++] = buffer[i];
+      }
+    }
+    final ReentrantLock[] locks = this.locks;
+    for (int i = 0; i < nbDistinct; i++) {
+      locks[buffer[i]].lock();
+    }
+    return nbDistinct;
+  }
+
+  /**
+   * Release the locks acquired by {@link #lock(int[][], int[])}
+   *
+   * @param buffer the buffer filled by the lock call
+   * @param nbLocked the number of acquired stripes
+   */
+  public void unlock(final int[] buffer, final int nbLocked) {
+    final ReentrantLock[] locks = this.locks;
+    for (int i = nbLocked - 1; i >= 0; i--) {
+      locks[buffer[i]].unlock();
+    }
+  }
+}
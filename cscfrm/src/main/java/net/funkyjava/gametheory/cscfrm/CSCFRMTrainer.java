@@ -1,28 +1,41 @@
 package net.funkyjava.gametheory.cscfrm;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.util.concurrent.AtomicDoubleArray;
 
 import net.funkyjava.gametheory.extensiveformgame.ActionTree;
+import net.funkyjava.gametheory.extensiveformgame.ActionTreeNodeState.NodeType;
 import net.funkyjava.gametheory.extensiveformgame.LinkedActionTreeNode;
 import net.funkyjava.gametheory.extensiveformgame.PlayerNode;
 
 /**
  * A trainer performs CSCFRM iterations, assuming that there will be no chances collision. It
- * internally holds depth indexed reusable arrays to avoid creating them at each iteration
+ * internally holds depth indexed reusable arrays to avoid creating them at each iteration.
+ * 
+ * Without discounting, the trainer runs CFR+ : regrets are floored to zero and the strategy sums
+ * are uniformly weighted. With a {@link CSCFRMDiscounting}, the regret and strategy sums of a node
+ * are discounted on its visits, using the discount stamps of {@link CSCFRMData}. With a
+ * {@link CSCFRMPruning}, subtrees of actions with a low enough regret are skipped except during
+ * periodic full-width iterations.
  * 
  * @author Pierre Mardon
  *
  * @param <Chances> the chances class
  */
-public class CSCFRMTrainer<Chances extends CSCFRMChances> {
+public class CSCFRMTrainer<Chances extends CSCFRMChances>
+    implements CSCFRMChancesTrainer<Chances> {
 
   private final int nbRounds;
   private final int nbPlayers;
   private final LinkedActionTreeNode<?, Chances> rootNode;
-  private final CSCFRMNode[][][][] nodes;
-  private final CSCFRMNode[][][] chancesNodes;
+  private final CSCFRMStore store;
+  private final int[][][] nodesOffsets;
+  private final int[][] chancesStrides;
+  private final int[][] chancesOffsets;
   private final AtomicDoubleArray utilitySum;
   private final AtomicLong iterations;
   private final double[] realizationWeights;
@@ -31,13 +44,55 @@ public class CSCFRMTrainer<Chances extends CSCFRMChances> {
   private final double[][] depthStrategy;
   private final double[] zero;
   private final double[] one;
+  private final CSCFRMDiscounting discounting;
+  private final long epochIterations;
+  private final int[][][] stamps;
+  private final int[][] nbNodes;
+  private final int[][] stampsOffsets;
+  private int epoch;
+  private double[] alphaLogSums = {0, 0};
+  private double[] betaLogSums = {0, 0};
+  private final CSCFRMPruning pruning;
+  private final double pruningThreshold;
+  private final int fullWidthInterval;
+  private final boolean[][] depthPruned;
+  private int untilFullWidth;
+  private boolean prune;
+  private long visitedNodes;
+  private long reportedVisitedNodes;
+  private long prunedSubtrees;
 
   /**
-   * Constructor
+   * Constructor for a CFR+ trainer
    * 
    * @param data the CSCFRM data
    */
   public CSCFRMTrainer(final CSCFRMData<?, Chances> data) {
+    this(data, null);
+  }
+
+  /**
+   * Constructor
+   * 
+   * @param data the CSCFRM data
+   * @param discounting the discounting parameters, or null for CFR+
+   */
+  public CSCFRMTrainer(final CSCFRMData<?, Chances> data, final CSCFRMDiscounting discounting) {
+    this(data, discounting, null);
+  }
+
+  /**
+   * Constructor
+   * 
+   * @param data the CSCFRM data
+   * @param discounting the discounting parameters, or null for CFR+
+   * @param pruning the regret-based pruning settings, or null to never prune. Requires
+   *        discounting.
+   */
+  public CSCFRMTrainer(final CSCFRMData<?, Chances> data, final CSCFRMDiscounting discounting,
+      final CSCFRMPruning pruning) {
+    checkArgument(pruning == null || discounting != null,
+        "Pruning requires discounting, CFR+ regrets are never negative");
     final ActionTree<?, Chances> actionTree = data.getGameActionTree();
     final int maxDepth = actionTree.getMaxDepth();
     final int maxNbActions = actionTree.getMaxNbActions();
@@ -46,8 +101,10 @@ public class CSCFRMTrainer<Chances extends CSCFRMChances> {
     this.utilitySum = data.getUtilitySum();
     this.iterations = data.getIterations();
     rootNode = actionTree.getRoot();
-    nodes = data.getNodes();
-    chancesNodes = new CSCFRMNode[nbRounds][nbPlayers][];
+    final CSCFRMStore store = this.store = data.getStore();
+    nodesOffsets = store.getNodesOffsets();
+    chancesStrides = store.getChancesStrides();
+    chancesOffsets = new int[nbRounds][nbPlayers];
     zero = new double[Math.max(nbPlayers, maxNbActions)];
     one = new double[nbPlayers];
     for (int i = 0; i < nbPlayers; i++) {
@@ -57,31 +114,72 @@ public class CSCFRMTrainer<Chances extends CSCFRMChances> {
     depthActionUtil = new double[maxDepth][maxNbActions];
     depthStrategy = new double[maxDepth][maxNbActions];
     realizationWeights = new double[nbPlayers];
+    this.discounting = discounting;
+    if (discounting != null) {
+      epochIterations = discounting.getEpochIterations();
+      stamps = data.getDiscountStamps();
+      nbNodes = new int[nbRounds][nbPlayers];
+      for (int round = 0; round < nbRounds; round++) {
+        for (int player = 0; player < nbPlayers; player++) {
+          nbNodes[round][player] = nodesOffsets[round][player].length;
+        }
+      }
+      stampsOffsets = new int[nbRounds][nbPlayers];
+    } else {
+      epochIterations = 0;
+      stamps = null;
+      nbNodes = null;
+      stampsOffsets = null;
+    }
+    this.pruning = pruning;
+    if (pruning != null) {
+      pruningThreshold = pruning.getThreshold();
+      fullWidthInterval = pruning.getFullWidthInterval();
+      depthPruned = new boolean[maxDepth][maxNbActions];
+    } else {
+      pruningThreshold = 0;
+      fullWidthInterval = 0;
+      depthPruned = null;
+    }
   }
 
-  /**
-   * Iterates CSCFRM for given chances
-   * 
-   * @param chances the chances
-   */
+  @Override
   public final void train(final Chances chances) {
-    // Get the nodes we need for this iteration given the provided chances
+    // Get the store offsets we need for this iteration given the provided chances
     final int nbRounds = this.nbRounds;
     final int nbPlayers = this.nbPlayers;
-    final CSCFRMNode[][][][] nodes = this.nodes;
-    final CSCFRMNode[][][] chancesNodes = this.chancesNodes;
+    final int[][] chancesStrides = this.chancesStrides;
+    final int[][] chancesOffsets = this.chancesOffsets;
     final int[][] playersChances = chances.getPlayersChances();
     for (int round = 0; round < nbRounds; round++) {
       final int[] roundChances = playersChances[round];
-      final CSCFRMNode[][][] roundNodes = nodes[round];
-      final CSCFRMNode[][] roundChancesNodes = chancesNodes[round];
+      final int[] roundStrides = chancesStrides[round];
+      final int[] roundOffsets = chancesOffsets[round];
       for (int player = 0; player < nbPlayers; player++) {
-        roundChancesNodes[player] = roundNodes[player][roundChances[player]];
+        roundOffsets[player] = roundChances[player] * roundStrides[player];
       }
     }
+    if (discounting != null) {
+      prepareDiscounting(playersChances);
+    }
+    final CSCFRMPruning pruning = this.pruning;
+    if (pruning != null) {
+      if (untilFullWidth == 0) {
+        untilFullWidth = fullWidthInterval;
+        prune = false;
+      } else {
+        prune = true;
+      }
+      untilFullWidth--;
+    }
     final double[] realizationWeights = this.realizationWeights;
     System.arraycopy(one, 0, realizationWeights, 0, nbPlayers);
     final double[] utility = rec(0, rootNode, chances, realizationWeights);
+    if (pruning != null) {
+      pruning.addStatistics(visitedNodes - reportedVisitedNodes, prunedSubtrees);
+      reportedVisitedNodes = visitedNodes;
+      prunedSubtrees = 0;
+    }
     final AtomicDoubleArray utilitySum = this.utilitySum;
     for (int i = 0; i < nbPlayers; i++) {
       utilitySum.addAndGet(i, utility[i]);
@@ -89,6 +187,11 @@ public class CSCFRMTrainer<Chances extends CSCFRMChances> {
     iterations.incrementAndGet();
   }
 
+  @Override
+  public long getVisitedNodes() {
+    return visitedNodes;
+  }
+
   private final double[] rec(final int depth, final LinkedActionTreeNode<?, Chances> node,
       final Chances chances, final double[] realizationWeights) {
     switch (node.getNodeType()) {
@@ -105,12 +208,26 @@ public class CSCFRMTrainer<Chances extends CSCFRMChances> {
         final int index = node.getPlayerRoundActionIndex();
         final int round = pNode.getRound();
         final int player = pNode.getPlayer();
-        final CSCFRMNode csNode = chancesNodes[round][player][index];
+        final CSCFRMStore store = this.store;
+        final int regretIndex = chancesOffsets[round][player] + nodesOffsets[round][player][index];
 
         final int nbChildren = pNode.getNbActions();
+        final int stratIndex = regretIndex + nbChildren;
+        final int[][][] stamps = this.stamps;
+        if (stamps != null) {
+          final int[] rowStamps = stamps[round][player];
+          final int stampIndex = stampsOffsets[round][player] + index;
+          final int stamp = rowStamps[stampIndex];
+          final int epoch = this.epoch;
+          if (stamp != epoch) {
+            // A zero stamp means that the node was never visited with discounting
+            if (stamp != 0 && stamp < epoch) {
+              discount(round, player, regretIndex, nbChildren, stamp);
+            }
+            rowStamps[stampIndex] = epoch;
+          }
+        }
         final LinkedActionTreeNode<?, Chances>[] children = node.getChildren();
-        final double[] stratSum = csNode.getStrategySum();
-        final double[] regretSum = csNode.getRegretSum();
         final double[] zero = this.zero;
         final double[] strategy = depthStrategy[depth];
         System.arraycopy(zero, 0, strategy, 0, nbChildren);
@@ -119,27 +236,44 @@ public class CSCFRMTrainer<Chances extends CSCFRMChances> {
         final double[] actionsUtil = depthActionUtil[depth];
         System.arraycopy(zero, 0, actionsUtil, 0, nbChildren);
 
+        final boolean prune = this.prune;
+        final boolean[] pruned = prune ? depthPruned[depth] : null;
+        final double pruningThreshold = this.pruningThreshold;
         double totalRegret = 0;
         for (int action = 0; action < nbChildren; action++) {
-          double actionRegret = regretSum[action];
-          if (actionRegret < 0) {
-            actionRegret = regretSum[action] = 0;
+          double actionRegret = store.getRegret(round, player, regretIndex + action);
+          if (actionRegret < 0 && stamps == null) {
+            store.setRegret(round, player, regretIndex + action, actionRegret = 0);
+          }
+          if (prune) {
+            // Only subtrees are worth pruning, terminal nodes are cheap
+            pruned[action] = actionRegret < pruningThreshold
+                && children[action].getNodeType() == NodeType.PLAYER;
           }
-          // CFR+ regret matching
+          // Regret matching
           totalRegret += strategy[action] = (actionRegret > 0 ? actionRegret : 0);
         }
+        // With no positive regret, the strategy is uniform and nothing can be pruned
+        final boolean pruneNode = prune && totalRegret > 0;
+        visitedNodes++;
         final double playerRealWeight = realizationWeights[player];
         if (totalRegret > 0) {
           for (int action = 0; action < nbChildren; action++) {
-            stratSum[action] += playerRealWeight * (strategy[action] /= totalRegret);
+            store.addStrategy(round, player, stratIndex + action,
+                playerRealWeight * (strategy[action] /= totalRegret));
           }
         } else {
           for (int action = 0; action < nbChildren; action++) {
-            stratSum[action] += playerRealWeight * (strategy[action] = (1.0d / nbChildren));
+            store.addStrategy(round, player, stratIndex + action,
+                playerRealWeight * (strategy[action] = (1.0d / nbChildren)));
           }
         }
         final int nextDepth = depth + 1;
         for (int action = 0; action < nbChildren; action++) {
+          if (pruneNode && pruned[action]) {
+            prunedSubtrees++;
+            continue;
+          }
           final double oldReal = realizationWeights[player];
           realizationWeights[player] *= strategy[action];
           final double[] childUtil = rec(nextDepth, children[action], chances, realizationWeights);
@@ -157,11 +291,80 @@ public class CSCFRMTrainer<Chances extends CSCFRMChances> {
         }
         final double playerUtil = util[player];
         for (int action = 0; action < nbChildren; action++) {
-          regretSum[action] += weight * (actionsUtil[action] - playerUtil);
+          if (pruneNode && pruned[action]) {
+            continue;
+          }
+          store.addRegret(round, player, regretIndex + action,
+              weight * (actionsUtil[action] - playerUtil));
         }
         return util;
     }
     return null;
   }
 
+  private final void prepareDiscounting(final int[][] playersChances) {
+    final int epoch = this.epoch = (int) (iterations.get() / epochIterations) + 1;
+    if (epoch >= alphaLogSums.length) {
+      alphaLogSums = logSums(alphaLogSums, epoch, discounting.getAlpha());
+      betaLogSums = logSums(betaLogSums, epoch, discounting.getBeta());
+    }
+    final int nbRounds = this.nbRounds;
+    final int nbPlayers = this.nbPlayers;
+    final int[][] nbNodes = this.nbNodes;
+    final int[][] stampsOffsets = this.stampsOffsets;
+    for (int round = 0; round < nbRounds; round++) {
+      final int[] roundChances = playersChances[round];
+      final int[] roundNbNodes = nbNodes[round];
+      final int[] roundOffsets = stampsOffsets[round];
+      for (int player = 0; player < nbPlayers; player++) {
+        roundOffsets[player] = roundChances[player] * roundNbNodes[player];
+      }
+    }
+  }
+
+  /**
+   * Grow the cumulated regret discounts logs so that it contains the provided epoch. logSums[t] is
+   * the log of the product of the discounts of the epochs 1 to t - 1.
+   */
+  private static double[] logSums(final double[] logSums, final int epoch,
+      final double exponent) {
+    final int oldLength = logSums.length;
+    final double[] res = Arrays.copyOf(logSums, Math.max(2 * oldLength, epoch + 1));
+    for (int t = oldLength; t < res.length; t++) {
+      res[t] = res[t - 1] + CSCFRMDiscounting.logRegretDiscount(t - 1, exponent);
+    }
+    return res;
+  }
+
+  private static double regretFactor(final double[] logSums, final double exponent,
+      final int from, final int to) {
+    if (exponent == Double.NEGATIVE_INFINITY) {
+      return 0;
+    }
+    return Math.exp(logSums[to] - logSums[from]);
+  }
+
+  private final void discount(final int round, final int player, final int regretIndex,
+      final int nbActions, final int stamp) {
+    final CSCFRMDiscounting discounting = this.discounting;
+    final CSCFRMStore store = this.store;
+    final int epoch = this.epoch;
+    final double positiveFactor =
+        regretFactor(alphaLogSums, discounting.getAlpha(), stamp, epoch);
+    final double negativeFactor = regretFactor(betaLogSums, discounting.getBeta(), stamp, epoch);
+    // Product of (t / (t + 1))^gamma for t from stamp to epoch - 1
+    final double strategyFactor = Math.pow((double) stamp / epoch, discounting.getGamma());
+    final int stratIndex = regretIndex + nbActions;
+    for (int action = 0; action < nbActions; action++) {
+      final double regret = store.getRegret(round, player, regretIndex + action);
+      if (regret > 0) {
+        store.setRegret(round, player, regretIndex + action, regret * positiveFactor);
+      } else if (regret < 0) {
+        store.setRegret(round, player, regretIndex + action, regret * negativeFactor);
+      }
+      store.setStrategy(round, player, stratIndex + action,
+          store.getStrategy(round, player, stratIndex + action) * strategyFactor);
+    }
+  }
+
 }
@@ -0,0 +1,40 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import net.funkyjava.gametheory.extensiveformgame.LinkedActionTreeNode;
+
+/**
+ * Evaluates the terminal nodes of a one round game for all chances at once, see
+ * {@link CSCFRMVectorTrainer}
+ * 
+ * @author Pierre Mardon
+ *
+ * @param <Chances> the chances class
+ */
+public interface CSCFRMVectorEvaluator<Chances> {
+
+  /**
+   * Compute each player's counterfactual utilities of a terminal node for all its chances : for a
+   * player and its chance, the sum over the other players' chances of the chances probability
+   * times the other players' reach times the player's payout.
+   * 
+   * @param node the terminal node, of type PAYOUTS_NO_CHANCE or CHANCES_PAYOUTS
+   * @param reach the reach probability of each player for each of its chances
+   * @param utilities the counterfactual utilities to fill for each player and each of its chances
+   */
+  void evaluate(LinkedActionTreeNode<?, Chances> node, double[][] reach, double[][] utilities);
+
+  /**
+   * Compute one player's counterfactual utilities of a terminal node for a range of its chances.
+   * Must be thread-safe, see {@link CSCFRMBestResponse}.
+   * 
+   * @param node the terminal node, of type PAYOUTS_NO_CHANCE or CHANCES_PAYOUTS
+   * @param reach the reach probability of each player for each of its chances. The player's own
+   *        reach is ignored.
+   * @param player the player
+   * @param fromChance the first chance of the range, inclusive
+   * @param toChance the last chance of the range, exclusive
+   * @param utilities the counterfactual utilities to fill, indexed by chance minus fromChance
+   */
+  void evaluate(LinkedActionTreeNode<?, Chances> node, double[][] reach, int player,
+      int fromChance, int toChance, double[] utilities);
+}
@@ -0,0 +1,210 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.AtomicDoubleArray;
+
+import net.funkyjava.gametheory.extensiveformgame.ActionTree;
+import net.funkyjava.gametheory.extensiveformgame.LinkedActionTreeNode;
+import net.funkyjava.gametheory.extensiveformgame.PlayerNode;
+
+/**
+ * Vectorized CFR+ trainer for games with a single chances round. Instead of sampling chances, each
+ * iteration walks the action tree once while carrying each player's reach for all of its chances,
+ * and updates the nodes of all chances. Terminal nodes are evaluated for all chances at once by a
+ * {@link CSCFRMVectorEvaluator}.
+ * 
+ * It shares the {@link CSCFRMStore} layout of {@link CSCFRMTrainer}. The utility sum is updated
+ * with the exact utility of the current strategy profile. The loops over the chances of a node are
+ * performed by the {@link CSCFRMKernels}.
+ * 
+ * @author Pierre Mardon
+ *
+ * @param <Chances> the chances class
+ */
+public class CSCFRMVectorTrainer<Chances> {
+
+  private final int nbPlayers;
+  private final int[] chancesSizes;
+  private final LinkedActionTreeNode<?, Chances> rootNode;
+  private final CSCFRMStore store;
+  private final int[][] nodesOffsets;
+  private final int[] chancesStrides;
+  private final AtomicDoubleArray utilitySum;
+  private final AtomicLong iterations;
+  private final CSCFRMVectorEvaluator<Chances> evaluator;
+  private final double[][][] depthReach;
+  private final double[][][] depthPlayerReach;
+  private final double[][][] depthUtil;
+  private final double[][][] depthActionUtil;
+  private final double[][][] depthStrategy;
+  private final CSCFRMKernels kernels;
+  // Scratch buffers that are never used across a recursive call
+  private final double[][] regrets;
+  private final double[] values;
+  private long visitedNodes;
+
+  /**
+   * Constructor
+   * 
+   * @param data the CSCFRM data of a single chances round game
+   * @param evaluator the terminal nodes evaluator
+   */
+  public CSCFRMVectorTrainer(final CSCFRMData<?, Chances> data,
+      final CSCFRMVectorEvaluator<Chances> evaluator) {
+    final int[][] roundChancesSizes = data.getRoundChancesSizes();
+    checkArgument(roundChancesSizes.length == 1,
+        "Vectorized CFR is only implemented for games with one chances round");
+    final ActionTree<?, Chances> actionTree = data.getGameActionTree();
+    // Terminal nodes may be one level deeper than the deepest player nodes
+    final int maxDepth = actionTree.getMaxDepth() + 1;
+    final int maxNbActions = actionTree.getMaxNbActions();
+    final int nbPlayers = this.nbPlayers = data.getNbPlayers();
+    final int[] chancesSizes = this.chancesSizes = roundChancesSizes[0];
+    int maxNbChances = 0;
+    for (int player = 0; player < nbPlayers; player++) {
+      maxNbChances = Math.max(maxNbChances, chancesSizes[player]);
+    }
+    this.utilitySum = data.getUtilitySum();
+    this.iterations = data.getIterations();
+    this.evaluator = evaluator;
+    rootNode = actionTree.getRoot();
+    final CSCFRMStore store = this.store = data.getStore();
+    nodesOffsets = store.getNodesOffsets()[0];
+    chancesStrides = store.getChancesStrides()[0];
+    depthReach = new double[maxDepth][nbPlayers][];
+    final double[][] rootReach = depthReach[0];
+    for (int player = 0; player < nbPlayers; player++) {
+      Arrays.fill(rootReach[player] = new double[chancesSizes[player]], 1);
+    }
+    depthPlayerReach = new double[maxDepth][nbPlayers][];
+    depthUtil = new double[maxDepth][nbPlayers][];
+    for (int depth = 0; depth < maxDepth; depth++) {
+      for (int player = 0; player < nbPlayers; player++) {
+        depthPlayerReach[depth][player] = new double[chancesSizes[player]];
+        depthUtil[depth][player] = new double[chancesSizes[player]];
+      }
+    }
+    depthActionUtil = new double[maxDepth][maxNbActions][maxNbChances];
+    depthStrategy = new double[maxDepth][maxNbActions][maxNbChances];
+    kernels = CSCFRMKernels.get();
+    regrets = new double[maxNbActions][maxNbChances];
+    values = new double[maxNbChances];
+  }
+
+  /**
+   * Performs one CFR+ iteration on all chances
+   */
+  public final void train() {
+    final double[][] utility = rec(0, rootNode, depthReach[0]);
+    final int nbPlayers = this.nbPlayers;
+    final AtomicDoubleArray utilitySum = this.utilitySum;
+    for (int player = 0; player < nbPlayers; player++) {
+      // With a full reach, summing the counterfactual utilities gives the expected utility
+      final double[] playerUtility = utility[player];
+      double sum = 0;
+      for (int chance = 0; chance < playerUtility.length; chance++) {
+        sum += playerUtility[chance];
+      }
+      utilitySum.addAndGet(player, sum);
+    }
+    iterations.incrementAndGet();
+  }
+
+  /**
+   * Get the number of player nodes visited by this trainer since its creation, all chances of a
+   * node being visited at once
+   * 
+   * @return the number of visited player nodes
+   */
+  public long getVisitedNodes() {
+    return visitedNodes;
+  }
+
+  private final double[][] rec(final int depth, final LinkedActionTreeNode<?, Chances> node,
+      final double[][] reach) {
+    final double[][] util = depthUtil[depth];
+    switch (node.getNodeType()) {
+
+      case PAYOUTS_NO_CHANCE:
+      case CHANCES_PAYOUTS:
+        evaluator.evaluate(node, reach, util);
+        return util;
+
+      case PLAYER:
+        visitedNodes++;
+        final int nbPlayers = this.nbPlayers;
+        final PlayerNode<?> pNode = node.getPlayerNode();
+        final int player = pNode.getPlayer();
+        final int nbChildren = pNode.getNbActions();
+        final int nbChances = chancesSizes[player];
+        final int stride = chancesStrides[player];
+        final int nodeOffset = nodesOffsets[player][node.getPlayerRoundActionIndex()];
+        final CSCFRMStore store = this.store;
+        final CSCFRMKernels kernels = this.kernels;
+        final double[] playerReach = reach[player];
+        final double[][] strategy = depthStrategy[depth];
+        final double[][] regrets = this.regrets;
+        final double[] values = this.values;
+        for (int chance = 0; chance < nbChances; chance++) {
+          final int regretIndex = chance * stride + nodeOffset;
+          for (int action = 0; action < nbChildren; action++) {
+            double actionRegret = store.getRegret(0, player, regretIndex + action);
+            if (actionRegret < 0) {
+              store.setRegret(0, player, regretIndex + action, actionRegret = 0);
+            }
+            regrets[action][chance] = actionRegret;
+          }
+        }
+        kernels.regretMatching(regrets, strategy, nbChildren, nbChances);
+        for (int action = 0; action < nbChildren; action++) {
+          kernels.multiply(playerReach, strategy[action], values, nbChances);
+          final int stratIndex = nodeOffset + nbChildren + action;
+          for (int chance = 0; chance < nbChances; chance++) {
+            store.addStrategy(0, player, chance * stride + stratIndex, values[chance]);
+          }
+        }
+        for (int p = 0; p < nbPlayers; p++) {
+          Arrays.fill(util[p], 0);
+        }
+        // Only the acting player's reach changes in the children
+        final int nextDepth = depth + 1;
+        final double[][] childReach = depthReach[nextDepth];
+        System.arraycopy(reach, 0, childReach, 0, nbPlayers);
+        final double[] childPlayerReach = childReach[player] = depthPlayerReach[nextDepth][player];
+        final double[][] actionsUtil = depthActionUtil[depth];
+        final LinkedActionTreeNode<?, Chances>[] children = node.getChildren();
+        for (int action = 0; action < nbChildren; action++) {
+          final double[] actionStrategy = strategy[action];
+          kernels.multiply(playerReach, actionStrategy, childPlayerReach, nbChances);
+          final double[][] childUtil = rec(nextDepth, children[action], childReach);
+          for (int p = 0; p < nbPlayers; p++) {
+            final double[] pUtil = util[p];
+            final double[] pChildUtil = childUtil[p];
+            if (p == player) {
+              final double[] actionUtil = actionsUtil[action];
+              System.arraycopy(pChildUtil, 0, actionUtil, 0, nbChances);
+              kernels.multiplyAdd(actionStrategy, actionUtil, pUtil, nbChances);
+            } else {
+              // The other players' utilities are already weighted by the acting player's reach
+              kernels.add(pChildUtil, pUtil, pUtil.length);
+            }
+          }
+        }
+        final double[] playerUtil = util[player];
+        for (int action = 0; action < nbChildren; action++) {
+          kernels.subtract(actionsUtil[action], playerUtil, values, nbChances);
+          final int regretIndex = nodeOffset + action;
+          for (int chance = 0; chance < nbChances; chance++) {
+            store.addRegret(0, player, chance * stride + regretIndex, values[chance]);
+          }
+        }
+        return util;
+    }
+    return null;
+  }
+
+}
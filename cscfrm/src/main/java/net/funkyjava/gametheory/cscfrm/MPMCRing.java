@@ -0,0 +1,111 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded multi-producers multi-consumers lock-free ring buffer. Each slot carries a sequence
+ * number telling whether it is ready to be written or read for a given turn, and producers and
+ * consumers claim positions with a CAS on the tail and head counters.
+ *
+ * @author Pierre Mardon
+ *
+ * @param <T> the elements type
+ */
+final class MPMCRing<T> {
+
+  private final int mask;
+  private final AtomicReferenceArray<T> elements;
+  private final AtomicLongArray sequences;
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLong tail = new AtomicLong();
+
+  /**
+   * Constructor
+   *
+   * @param minCapacity minimum capacity, rounded up to the next power of two
+   */
+  MPMCRing(final int minCapacity) {
+    if (minCapacity <= 0 || minCapacity > (1 << 30)) {
+      throw new IllegalArgumentException("Invalid ring capacity " + minCapacity);
+    }
+    final int capacity = minCapacity == 1 ? 1 : Integer.highestOneBit(minCapacity - 1) << 1;
+    mask = capacity - 1;
+    elements = new AtomicReferenceArray<>(capacity);
+    final AtomicLongArray sequences = this.sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * Capacity of the ring
+   *
+   * @return the capacity
+   */
+  int capacity() {
+    return mask + 1;
+  }
+
+  /**
+   * Try to add an element
+   *
+   * @param element the element
+   * @return false when the ring is full
+   */
+  boolean offer(final T element) {
+    final AtomicLongArray sequences = this.sequences;
+    final AtomicLong tail = this.tail;
+    final int mask = this.mask;
+    while (true) {
+      final long pos = tail.get();
+      final int index = (int) pos & mask;
+      final long diff = sequences.get(index) - pos;
+      if (diff == 0) {
+        if (tail.compareAndSet(pos, pos + 1)) {
+          elements.lazySet(index, element);
+          sequences.set(index, pos + 1);
+          return true;
+        }
+      } else if (diff < 0) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Try to remove an element
+   *
+   * @return the element or null when the ring is empty
+   */
+  T poll() {
+    final AtomicLongArray sequences = this.sequences;
+    final AtomicLong head = this.head;
+    final int mask = this.mask;
+    while (true) {
+      final long pos = head.get();
+      final int index = (int) pos & mask;
+      final long diff = sequences.get(index) - (pos + 1);
+      if (diff == 0) {
+        if (head.compareAndSet(pos, pos + 1)) {
+          final T element = elements.get(index);
+          elements.lazySet(index, null);
+          sequences.set(index, pos + mask + 1);
+          return element;
+        }
+      } else if (diff < 0) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Approximate number of elements in the ring
+   *
+   * @return the approximate size
+   */
+  int size() {
+    return (int) Math.max(0, Math.min(tail.get() - head.get(), mask + 1));
+  }
+}
@@ -0,0 +1,121 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChances;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChancesProducer;
+
+/**
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public class CSCFRMBatchTrainerTest {
+
+  private static final boolean testBenchmark = false;
+  private static final int nbCards = 169;
+  private static final int batchSize = 16;
+
+  private static byte[] bytes(final CSCFRMData<?, ?> data) throws IOException {
+    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    data.write(bos);
+    return bos.toByteArray();
+  }
+
+  private static CSCFRMChancesSynchronizer<KuhnChances> synchronizer() {
+    return new CSCFRMMutexChancesSynchronizer<>(new KuhnChancesProducer(1, nbCards),
+        new int[][] {{nbCards, nbCards}});
+  }
+
+  /**
+   * Training batches must produce the same data as training their chances one after the other
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testSameData() throws Exception {
+    final CSCFRMData<String, KuhnChances> sequential = new CSCFRMData<>(new KuhnPoker(nbCards));
+    final CSCFRMTrainer<KuhnChances> trainer = new CSCFRMTrainer<>(sequential);
+    final CSCFRMData<String, KuhnChances> batched = new CSCFRMData<>(new KuhnPoker(nbCards));
+    final CSCFRMBatchTrainer<KuhnChances> batchTrainer = new CSCFRMBatchTrainer<>(batched);
+    final CSCFRMChancesSynchronizer<KuhnChances> synchronizer = synchronizer();
+    final KuhnChances[] batch = new KuhnChances[batchSize];
+    for (int i = 0; i < 10000; i++) {
+      final int count = synchronizer.getChances(batch, batchSize);
+      for (int k = 0; k < count; k++) {
+        trainer.train(batch[k]);
+      }
+      batchTrainer.train(batch, count);
+      synchronizer.endUsing(batch, count);
+    }
+    assertEquals(sequential.getIterations().get(), batched.getIterations().get());
+    assertEquals(trainer.getVisitedNodes(), batchTrainer.getVisitedNodes());
+    assertArrayEquals(bytes(sequential), bytes(batched));
+  }
+
+  /**
+   * Compare the throughput of sequential and batched training
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testBenchmark() throws Exception {
+    if (!testBenchmark) {
+      return;
+    }
+    final KuhnChances[] batch = new KuhnChances[batchSize];
+    for (int run = 0; run < 3; run++) {
+      long sequentialNanos = 0;
+      long batchNanos = 0;
+      final CSCFRMTrainer<KuhnChances> trainer =
+          new CSCFRMTrainer<>(new CSCFRMData<>(new KuhnPoker(nbCards)));
+      final CSCFRMBatchTrainer<KuhnChances> batchTrainer =
+          new CSCFRMBatchTrainer<>(new CSCFRMData<>(new KuhnPoker(nbCards)));
+      final CSCFRMChancesSynchronizer<KuhnChances> synchronizer = synchronizer();
+      long nbIterations = 0;
+      for (int i = 0; i < 100000; i++) {
+        final int count = synchronizer.getChances(batch, batchSize);
+        long start = System.nanoTime();
+        for (int k = 0; k < count; k++) {
+          trainer.train(batch[k]);
+        }
+        sequentialNanos += System.nanoTime() - start;
+        start = System.nanoTime();
+        batchTrainer.train(batch, count);
+        batchNanos += System.nanoTime() - start;
+        synchronizer.endUsing(batch, count);
+        nbIterations += count;
+      }
+      log.info("Run {} : sequential {} it/s, batches of {} {} it/s, speedup {}", run,
+          nbIterations * 1e9 / sequentialNanos, batchSize, nbIterations * 1e9 / batchNanos,
+          (double) sequentialNanos / batchNanos);
+    }
+  }
+
+  /**
+   * Train Kuhn poker with the runner and batched trainers
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testRunner() throws Exception {
+    final CSCFRMData<String, KuhnChances> data = new CSCFRMData<>(new KuhnPoker(nbCards));
+    final CSCFRMRunner<KuhnChances> runner = new CSCFRMRunner<>(data, synchronizer(), 2);
+    runner.setSampling(CSCFRMSampling.CHANCES_BATCH);
+    runner.setBatchSize(batchSize);
+    runner.start();
+    Thread.sleep(1000);
+    assertTrue(runner.stopAndAwaitTermination().isEmpty());
+    log.info("Batched runner : {} iterations, utility {}", data.getIterations().get(),
+        data.getUtilityAvg()[0]);
+    assertTrue(data.getIterations().get() > 0);
+  }
+}
@@ -0,0 +1,92 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.cscfrm.CSCFRMBestResponse.Result;
+import net.funkyjava.gametheory.cscfrm.HUPushFold.PushFoldChances;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChances;
+
+/**
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public class CSCFRMBestResponseTest {
+
+  private static final int nbBuckets = 169;
+  private static final double stack = 10;
+
+  /**
+   * Compare the best response engine to the push or fold closed form exploitability
+   */
+  @Test
+  public void testPushFoldBestResponse() {
+    final HUPushFold game = new HUPushFold(nbBuckets, stack);
+    final CSCFRMData<String, PushFoldChances> data = new CSCFRMData<>(game);
+    final CSCFRMHUVectorEvaluator<PushFoldChances> evaluator =
+        CSCFRMVectorTest.pushFoldEvaluator();
+    final CSCFRMVectorTrainer<PushFoldChances> trainer =
+        new CSCFRMVectorTrainer<>(data, evaluator);
+    final CSCFRMBestResponse<PushFoldChances> bestResponse =
+        new CSCFRMBestResponse<>(data, evaluator, new ForkJoinPool(2), 4);
+    for (int i = 0; i < 50; i++) {
+      trainer.train();
+    }
+    final long start = System.currentTimeMillis();
+    final Result result = bestResponse.compute(new CSCFRMStrategySnapshot(data));
+    log.info("Push or fold best response in {}ms : exploitability {}",
+        System.currentTimeMillis() - start, result.getExploitability());
+    assertEquals(50, result.getIterations());
+    assertEquals(game.exploitability(data), result.getExploitability(), 1e-9);
+    assertEquals(0, result.getProfileValues()[0] + result.getProfileValues()[1], 1e-9);
+  }
+
+  /**
+   * Check that the exploitability of Kuhn poker snapshots decreases while the runner keeps
+   * training
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testKuhnRunnerSnapshots() throws Exception {
+    final int nbCards = 3;
+    final double[][] probabilities = new double[nbCards][nbCards];
+    for (int i = 0; i < nbCards; i++) {
+      for (int j = 0; j < nbCards; j++) {
+        probabilities[i][j] = i == j ? 0 : 1d / (nbCards * (nbCards - 1));
+      }
+    }
+    final CSCFRMHUVectorEvaluator<KuhnChances> evaluator =
+        new CSCFRMHUVectorEvaluator<>(probabilities, playersChances -> {
+          final KuhnChances chances = new KuhnChances();
+          chances.getPlayersChances()[0][0] = playersChances[0][0];
+          chances.getPlayersChances()[0][1] = playersChances[0][1];
+          return chances;
+        });
+    final CSCFRMData<String, KuhnChances> data = new CSCFRMData<>(new KuhnPoker());
+    final CSCFRMBestResponse<KuhnChances> bestResponse = new CSCFRMBestResponse<>(data, evaluator);
+    // Uniform strategies
+    final Result uniform = bestResponse.compute(new CSCFRMStrategySnapshot(data));
+    final CSCFRMRunner<KuhnChances> runner = new CSCFRMRunner<>(data, evaluator);
+    runner.start();
+    Thread.sleep(200);
+    final Result first = bestResponse.compute(runner.snapshot());
+    assertTrue(runner.isRunning());
+    Thread.sleep(500);
+    final Result second = bestResponse.compute(runner.snapshot());
+    assertTrue(runner.stopAndAwaitTermination().isEmpty());
+    log.info("Kuhn exploitability : uniform {}, {} iterations {}, {} iterations {}",
+        uniform.getExploitability(), first.getIterations(), first.getExploitability(),
+        second.getIterations(), second.getExploitability());
+    assertTrue(second.getIterations() > first.getIterations());
+    assertTrue(first.getExploitability() < uniform.getExploitability());
+    assertTrue(second.getExploitability() < 1e-2);
+    assertEquals(KuhnPoker.gameValue, second.getProfileValues()[0], 1e-2);
+  }
+}
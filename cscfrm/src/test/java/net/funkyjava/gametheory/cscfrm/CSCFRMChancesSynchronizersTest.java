@@ -0,0 +1,282 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChances;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChancesProducer;
+
+/**
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public class CSCFRMChancesSynchronizersTest {
+
+  private static final int nbThreads = 4;
+  // The mutex synchronizer needs more chances than threads to never starve
+  private static final int nbCards = nbThreads + 1;
+
+  private static CSCFRMChancesSynchronizer<KuhnChances> mutex(final int nbCards) {
+    return new CSCFRMMutexChancesSynchronizer<>(new KuhnChancesProducer(1, nbCards),
+        new int[][] {{nbCards, nbCards}});
+  }
+
+  private static CSCFRMChancesSynchronizer<KuhnChances> ring(final int nbCards) {
+    final List<CSCFRMChancesProducer<KuhnChances>> producers = new ArrayList<>();
+    producers.add(new KuhnChancesProducer(1, nbCards));
+    producers.add(new KuhnChancesProducer(2, nbCards));
+    return new CSCFRMRingChancesSynchronizer<>(producers, new int[][] {{nbCards, nbCards}}, 16);
+  }
+
+  private static void checkNoCollision(final String name,
+      final CSCFRMChancesSynchronizer<KuhnChances> synchronizer, final int nbCards,
+      final int batchSize) throws Exception {
+    final AtomicIntegerArray inUse = new AtomicIntegerArray(2 * nbCards);
+    final AtomicBoolean collision = new AtomicBoolean();
+    final AtomicLong count = new AtomicLong();
+    final AtomicBoolean stop = new AtomicBoolean();
+    synchronizer.reset();
+    final List<Runnable> producers = synchronizer.getProducers();
+    final ExecutorService executor = Executors.newFixedThreadPool(nbThreads + producers.size());
+    for (Runnable producer : producers) {
+      executor.execute(producer);
+    }
+    for (int t = 0; t < nbThreads; t++) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            final KuhnChances[] batch = new KuhnChances[batchSize];
+            while (!stop.get()) {
+              final int nbChances;
+              if (batchSize == 1) {
+                if ((batch[0] = synchronizer.getChances()) == null) {
+                  return;
+                }
+                nbChances = 1;
+              } else if ((nbChances = synchronizer.getChances(batch, batchSize)) == 0) {
+                return;
+              }
+              for (int i = 0; i < nbChances; i++) {
+                final int[] cards = batch[i].getPlayersChances()[0];
+                if (inUse.incrementAndGet(cards[0]) > 1
+                    | inUse.incrementAndGet(nbCards + cards[1]) > 1) {
+                  collision.set(true);
+                }
+              }
+              for (int i = 0; i < nbChances; i++) {
+                final int[] cards = batch[i].getPlayersChances()[0];
+                inUse.decrementAndGet(cards[0]);
+                inUse.decrementAndGet(nbCards + cards[1]);
+              }
+              if (batchSize == 1) {
+                synchronizer.endUsing(batch[0]);
+              } else {
+                synchronizer.endUsing(batch, nbChances);
+              }
+              count.addAndGet(nbChances);
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+    }
+    Thread.sleep(1000);
+    stop.set(true);
+    synchronizer.stop();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    log.info("{} : {} chances used in one second by {} threads with batches of {}", name,
+        count.get(), nbThreads, batchSize);
+    assertTrue(name + " : no chances were produced", count.get() > 0);
+    assertTrue(name + " : chances collision", !collision.get());
+  }
+
+  /**
+   * Check that the synchronizers never provide colliding chances at the same time
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testNoCollision() throws Exception {
+    checkNoCollision("Mutex", mutex(nbCards), nbCards, 1);
+    checkNoCollision("Ring", ring(nbCards), nbCards, 1);
+  }
+
+  /**
+   * Check that chances of a batch never collide with each other nor with other batches
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testBatchNoCollision() throws Exception {
+    final int batchSize = 4;
+    // With batches, the mutex synchronizer needs more chances than the threads can hold
+    final int nbCards = nbThreads * batchSize + 1;
+    checkNoCollision("Mutex", mutex(nbCards), nbCards, batchSize);
+    checkNoCollision("Ring", ring(nbCards), nbCards, batchSize);
+  }
+
+  /**
+   * Synchronizer only implementing the single chances methods, relying on the default batch ones
+   */
+  private static final class SingleChancesSynchronizer
+      implements CSCFRMChancesSynchronizer<KuhnChances> {
+
+    private final CSCFRMChancesSynchronizer<KuhnChances> synchronizer;
+
+    SingleChancesSynchronizer(final CSCFRMChancesSynchronizer<KuhnChances> synchronizer) {
+      this.synchronizer = synchronizer;
+    }
+
+    @Override
+    public KuhnChances getChances() throws InterruptedException {
+      return synchronizer.getChances();
+    }
+
+    @Override
+    public void endUsing(final KuhnChances chances) throws InterruptedException {
+      synchronizer.endUsing(chances);
+    }
+
+    @Override
+    public void stop() {
+      synchronizer.stop();
+    }
+
+    @Override
+    public void reset() {
+      synchronizer.reset();
+    }
+
+    @Override
+    public List<Runnable> getProducers() {
+      return synchronizer.getProducers();
+    }
+  }
+
+  /**
+   * Check the default batch methods of synchronizers
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testDefaultBatch() throws Exception {
+    final SingleChancesSynchronizer synchronizer = new SingleChancesSynchronizer(mutex(nbCards));
+    checkNoCollision("Default batch", synchronizer, nbCards, 4);
+    assertEquals(0, synchronizer.getBacklog());
+    assertEquals(0, synchronizer.getProducedChances());
+  }
+
+  private static Set<KuhnChances> identitySet() {
+    return Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+  }
+
+  /**
+   * Kuhn chances producer remembering all the chances it provided, and the ones not handed back yet
+   */
+  private static final class TrackingProducer implements CSCFRMChancesProducer<KuhnChances> {
+
+    private final KuhnChancesProducer producer;
+    private final Set<KuhnChances> provided;
+    private final Set<KuhnChances> outstanding;
+
+    TrackingProducer(final long seed, final int nbCards, final Set<KuhnChances> provided,
+        final Set<KuhnChances> outstanding) {
+      this.producer = new KuhnChancesProducer(seed, nbCards);
+      this.provided = provided;
+      this.outstanding = outstanding;
+    }
+
+    @Override
+    public KuhnChances produceChances() {
+      final KuhnChances chances = producer.produceChances();
+      provided.add(chances);
+      outstanding.add(chances);
+      return chances;
+    }
+
+    @Override
+    public void endedUsing(final KuhnChances chances) {
+      outstanding.remove(chances);
+      producer.endedUsing(chances);
+    }
+  }
+
+  /**
+   * Check that the ring synchronizer recycles the used chances instead of dropping them when its
+   * ring of used chances is full
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testRingRecycling() throws Exception {
+    final int batchSize = 4;
+    final int nbCards = 64;
+    final Set<KuhnChances> provided = identitySet();
+    final Set<KuhnChances> outstanding = identitySet();
+    final List<CSCFRMChancesProducer<KuhnChances>> producers = new ArrayList<>();
+    producers.add(new TrackingProducer(1, nbCards, provided, outstanding));
+    producers.add(new TrackingProducer(2, nbCards, provided, outstanding));
+    checkNoCollision("Ring recycling", new CSCFRMRingChancesSynchronizer<>(producers,
+        new int[][] {{nbCards, nbCards}}, 16), nbCards, batchSize);
+    log.info("Ring recycling : {} distinct chances", provided.size());
+    // Ready and used rings, producers backlogs and trainers batches. Dropped chances would make
+    // producers allocate new ones all along the run.
+    final int maxInFlight = 16 + 16 + 2 * 16 + nbThreads * batchSize + 2;
+    assertTrue("Ring recycling : used chances were dropped", provided.size() <= 2 * maxInFlight);
+  }
+
+  /**
+   * Check that the ring synchronizer hands the chances left in its rings back to the producers
+   * when reset
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testRingReset() throws Exception {
+    final Set<KuhnChances> outstanding = identitySet();
+    final List<CSCFRMChancesProducer<KuhnChances>> producers = new ArrayList<>();
+    producers.add(new TrackingProducer(1, nbCards, identitySet(), outstanding));
+    producers.add(new TrackingProducer(2, nbCards, identitySet(), outstanding));
+    final CSCFRMChancesSynchronizer<KuhnChances> synchronizer =
+        new CSCFRMRingChancesSynchronizer<>(producers, new int[][] {{nbCards, nbCards}}, 16);
+    checkNoCollision("Ring reset", synchronizer, nbCards, 1);
+    synchronizer.reset();
+    assertEquals("Ring reset : chances were not handed back", 0, outstanding.size());
+  }
+
+  /**
+   * Train Kuhn poker with the runner using the ring synchronizer
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testRingRunner() throws Exception {
+    final CSCFRMData<String, KuhnChances> data = new CSCFRMData<>(new KuhnPoker());
+    final CSCFRMRunner<KuhnChances> runner = new CSCFRMRunner<>(data, ring(3), nbThreads);
+    runner.start();
+    Thread.sleep(2000);
+    assertTrue(runner.stopAndAwaitTermination().isEmpty());
+    log.info("Ring runner : {} iterations in 2 seconds, utility {}", data.getIterations().get(),
+        data.getUtilityAvg()[0]);
+    assertEquals(KuhnPoker.gameValue, data.getUtilityAvg()[0], 1e-2);
+  }
+}
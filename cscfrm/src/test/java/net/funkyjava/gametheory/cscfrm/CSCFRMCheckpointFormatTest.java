@@ -0,0 +1,200 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.cscfrm.CSCFRMCheckpointFormat.Compression;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChances;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChancesProducer;
+
+/**
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public class CSCFRMCheckpointFormatTest {
+
+  private static final int nbCards = 169;
+
+  private static CSCFRMData<String, KuhnChances> trained(final int nbIterations) {
+    final CSCFRMData<String, KuhnChances> data = new CSCFRMData<>(new KuhnPoker(nbCards));
+    CSCFRMTraining.train(new CSCFRMTrainer<>(data), new KuhnChancesProducer(1, nbCards),
+        nbIterations);
+    return data;
+  }
+
+  private static byte[] raw(final CSCFRMData<String, KuhnChances> data) throws IOException {
+    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    data.write(bos);
+    return bos.toByteArray();
+  }
+
+  private static byte[] checkpoint(final CSCFRMData<String, KuhnChances> data,
+      final Compression compression) throws IOException {
+    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    new CSCFRMCheckpointFormat(data, compression).write(bos);
+    return bos.toByteArray();
+  }
+
+  /**
+   * Write and read back checkpoints with each compression
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testRoundTrip() throws Exception {
+    final CSCFRMData<String, KuhnChances> data = trained(100000);
+    for (Compression compression : Compression.values()) {
+      final byte[] bytes = checkpoint(data, compression);
+      log.info("{} checkpoint : {} bytes, raw data : {} bytes", compression, bytes.length,
+          raw(data).length);
+      final CSCFRMData<String, KuhnChances> loaded = new CSCFRMData<>(new KuhnPoker(nbCards));
+      new CSCFRMCheckpointFormat(loaded, Compression.NONE).fill(new ByteArrayInputStream(bytes));
+      assertEquals(data.getIterations().get(), loaded.getIterations().get());
+      assertArrayEquals(raw(data), raw(loaded));
+    }
+    final CSCFRMData<String, KuhnChances> untrained = trained(0);
+    assertTrue(checkpoint(untrained, Compression.DEFLATE).length < raw(untrained).length / 10);
+  }
+
+  /**
+   * Corrupted sections and headers must be detected, and leave the filled data untouched
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testCorruption() throws Exception {
+    final CSCFRMData<String, KuhnChances> data = trained(10000);
+    final CSCFRMData<String, KuhnChances> loaded = trained(100);
+    final byte[] loadedRaw = raw(loaded);
+    for (Compression compression : Compression.values()) {
+      final byte[] bytes = checkpoint(data, compression);
+      for (int index : new int[] {20, bytes.length / 2, bytes.length - 1}) {
+        final byte[] corrupted = bytes.clone();
+        corrupted[index] ^= 0x10;
+        try {
+          new CSCFRMCheckpointFormat(loaded, compression)
+              .fill(new ByteArrayInputStream(corrupted));
+          fail("Corruption of byte " + index + " wasn't detected with " + compression);
+        } catch (IOException | IllegalArgumentException e) {
+          log.debug("Corruption detected : {}", e.getMessage());
+        }
+        assertArrayEquals(loadedRaw, raw(loaded));
+      }
+    }
+  }
+
+  /**
+   * Files are read twice through their channel from their position, and a corrupted last section
+   * leaves the data untouched
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testFileLoad() throws Exception {
+    final CSCFRMData<String, KuhnChances> data = trained(10000);
+    final byte[] bytes = checkpoint(data, Compression.DEFLATE);
+    final Path dir = Files.createTempDirectory("cscfrm-checkpoints");
+    final Path path = dir.resolve("kuhn.ckpt");
+    try {
+      final CSCFRMData<String, KuhnChances> loaded = trained(100);
+      final byte[] loadedRaw = raw(loaded);
+      final byte[] corrupted = bytes.clone();
+      corrupted[corrupted.length - 1] ^= 0x10;
+      Files.write(path, corrupted);
+      try (final FileInputStream fis = new FileInputStream(path.toFile())) {
+        new CSCFRMCheckpointFormat(loaded, Compression.DEFLATE).fill(fis);
+        fail("Corruption of the last section wasn't detected");
+      } catch (IOException e) {
+        log.debug("Corruption detected : {}", e.getMessage());
+      }
+      assertArrayEquals(loadedRaw, raw(loaded));
+      // The checkpoint follows other bytes of the file
+      final byte[] prefixed = new byte[bytes.length + 3];
+      System.arraycopy(bytes, 0, prefixed, 3, bytes.length);
+      Files.write(path, prefixed);
+      try (final FileInputStream fis = new FileInputStream(path.toFile())) {
+        assertEquals(3, fis.skip(3));
+        new CSCFRMCheckpointFormat(loaded, Compression.DEFLATE).fill(fis);
+        assertEquals(prefixed.length, fis.getChannel().position());
+      }
+      assertArrayEquals(raw(data), raw(loaded));
+    } finally {
+      Files.deleteIfExists(path);
+      Files.deleteIfExists(dir);
+    }
+  }
+
+  /**
+   * A section length above the bound of its compression must be rejected before allocating it
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testSectionLengthBound() throws Exception {
+    final CSCFRMData<String, KuhnChances> data = trained(1000);
+    final CSCFRMStore store = data.getStore();
+    final int nbPlayers = store.getNbPlayers();
+    final int firstSection = 2 * Long.BYTES + 4 * Integer.BYTES
+        + store.getNbRounds() * nbPlayers * Integer.BYTES + Long.BYTES + nbPlayers * Double.BYTES
+        + Integer.BYTES + Long.BYTES;
+    for (Compression compression : Compression.values()) {
+      final byte[] bytes = checkpoint(data, compression);
+      ByteBuffer.wrap(bytes).putInt(firstSection, Integer.MAX_VALUE);
+      try {
+        new CSCFRMCheckpointFormat(trained(0), compression).fill(new ByteArrayInputStream(bytes));
+        fail("The section length wasn't bounded with " + compression);
+      } catch (IOException e) {
+        assertTrue(e.getMessage().startsWith("Invalid length"));
+      }
+    }
+  }
+
+  /**
+   * Loading a checkpoint of another tree must fail, and the checkpointer writes containers
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testTreeMismatchAndCheckpointer() throws Exception {
+    final CSCFRMData<String, KuhnChances> data = trained(1000);
+    final byte[] bytes = checkpoint(data, Compression.DEFLATE);
+    final CSCFRMData<String, KuhnChances> other = new CSCFRMData<>(new KuhnPoker(nbCards - 1));
+    try {
+      new CSCFRMCheckpointFormat(other, Compression.NONE).fill(new ByteArrayInputStream(bytes));
+      fail("The tree mismatch wasn't detected");
+    } catch (IllegalArgumentException e) {
+      log.debug("Tree mismatch detected : {}", e.getMessage());
+    }
+    assertTrue(data.getGameActionTree().fingerprint() == new CSCFRMData<>(
+        new KuhnPoker(nbCards)).getGameActionTree().fingerprint());
+
+    final Path dir = Files.createTempDirectory("cscfrm-checkpoints");
+    final Path path = dir.resolve("kuhn.svg");
+    try {
+      final CSCFRMRunner<KuhnChances> runner = new CSCFRMRunner<>(data,
+          new CSCFRMMutexChancesSynchronizer<>(new KuhnChancesProducer(1, nbCards),
+              new KuhnPoker(nbCards).roundChancesSizes()),
+          1);
+      new CSCFRMCheckpointer(runner, path, Compression.DEFLATE).checkpoint();
+      assertTrue(CSCFRMCheckpointFormat.isCheckpoint(path));
+      assertArrayEquals(bytes, Files.readAllBytes(path));
+    } finally {
+      Files.deleteIfExists(path);
+      Files.deleteIfExists(dir);
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChances;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChancesProducer;
+
+/**
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public class CSCFRMCheckpointerTest {
+
+  private static final int nbCards = 169;
+
+  /**
+   * Kuhn chances producer remembering the threads that called it
+   */
+  private static final class ThreadsProducer implements CSCFRMChancesProducer<KuhnChances> {
+
+    private final KuhnChancesProducer producer;
+    private final Set<Thread> threads;
+
+    ThreadsProducer(final long seed, final Set<Thread> threads) {
+      this.producer = new KuhnChancesProducer(seed, nbCards);
+      this.threads = threads;
+    }
+
+    @Override
+    public KuhnChances produceChances() {
+      threads.add(Thread.currentThread());
+      return producer.produceChances();
+    }
+
+    @Override
+    public void endedUsing(final KuhnChances chances) {
+      producer.endedUsing(chances);
+    }
+  }
+
+  /**
+   * Write checkpoints while a runner trains and check they can be loaded, and that the trainer
+   * threads were paused rather than restarted
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testCheckpointWhileTraining() throws Exception {
+    final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    final List<CSCFRMChancesProducer<KuhnChances>> producers = new ArrayList<>();
+    producers.add(new ThreadsProducer(0, threads));
+    producers.add(new ThreadsProducer(1, threads));
+    final CSCFRMData<String, KuhnChances> data = new CSCFRMData<>(new KuhnPoker(nbCards));
+    final CSCFRMRunner<KuhnChances> runner = new CSCFRMRunner<>(data, producers, 64);
+    final Path dir = Files.createTempDirectory("cscfrm-checkpoints");
+    final Path path = dir.resolve("kuhn.svg");
+    final CSCFRMCheckpointer checkpointer = new CSCFRMCheckpointer(runner, path);
+    try {
+      runner.start();
+      Thread.sleep(300);
+      checkpointer.checkpoint();
+      assertTrue(runner.isRunning());
+      checkpointer.startEveryIterations(1);
+      Thread.sleep(2500);
+      checkpointer.stop();
+      assertTrue(runner.stopAndAwaitTermination().isEmpty());
+      log.info("{} checkpoints, last one paused training {}ms and was written in {}ms",
+          checkpointer.getNbCheckpoints(), checkpointer.getLastPauseMillis(),
+          checkpointer.getLastWriteMillis());
+      assertTrue(checkpointer.getNbCheckpoints() >= 2);
+      assertEquals(2, threads.size());
+      try (final Stream<Path> files = Files.list(dir)) {
+        assertEquals(Arrays.asList(path), files.collect(Collectors.toList()));
+      }
+      final CSCFRMData<String, KuhnChances> loaded = new CSCFRMData<>(new KuhnPoker(nbCards));
+      try (final FileInputStream fis = new FileInputStream(path.toFile())) {
+        loaded.fill(fis);
+      }
+      final long iterations = loaded.getIterations().get();
+      assertTrue(iterations > 0 && iterations <= data.getIterations().get());
+      // The final checkpoint matches the stopped data
+      checkpointer.checkpoint();
+      final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      data.write(expected);
+      assertTrue(Arrays.equals(expected.toByteArray(), Files.readAllBytes(path)));
+    } finally {
+      try (final Stream<Path> files = Files.list(dir)) {
+        for (final Path file : files.collect(Collectors.toList())) {
+          Files.delete(file);
+        }
+      }
+      Files.delete(dir);
+    }
+  }
+
+  /**
+   * Write container checkpoints of a mapped store while a runner trains, its shards being copied
+   * under their own pauses, and check the final one matches the stopped data
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testMappedCheckpointWhileTraining() throws Exception {
+    final Path dir = Files.createTempDirectory("cscfrm-checkpoints");
+    final Path mapPath = dir.resolve("kuhn.map");
+    final Path path = dir.resolve("kuhn.ckpt");
+    final CSCFRMData<String, KuhnChances> data =
+        new CSCFRMData<>(new KuhnPoker(nbCards), mapPath);
+    try {
+      final List<CSCFRMChancesProducer<KuhnChances>> producers = new ArrayList<>();
+      producers.add(new KuhnChancesProducer(0, nbCards));
+      producers.add(new KuhnChancesProducer(1, nbCards));
+      final CSCFRMRunner<KuhnChances> runner = new CSCFRMRunner<>(data, producers, 64);
+      final CSCFRMCheckpointer checkpointer =
+          new CSCFRMCheckpointer(runner, path, CSCFRMCheckpointFormat.Compression.DEFLATE);
+      runner.start();
+      Thread.sleep(300);
+      checkpointer.checkpoint();
+      assertTrue(runner.isRunning());
+      // One pause for the counters, one for the single shard of this small store
+      assertEquals(2, checkpointer.getLastNbPauses());
+      final CSCFRMData<String, KuhnChances> loaded = new CSCFRMData<>(new KuhnPoker(nbCards));
+      try (final FileInputStream fis = new FileInputStream(path.toFile())) {
+        new CSCFRMCheckpointFormat(loaded, CSCFRMCheckpointFormat.Compression.DEFLATE).fill(fis);
+      }
+      assertTrue(loaded.getIterations().get() > 0);
+      assertTrue(runner.stopAndAwaitTermination().isEmpty());
+      checkpointer.checkpoint();
+      try (final FileInputStream fis = new FileInputStream(path.toFile())) {
+        new CSCFRMCheckpointFormat(loaded, CSCFRMCheckpointFormat.Compression.DEFLATE).fill(fis);
+      }
+      final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      data.write(expected);
+      final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+      loaded.write(actual);
+      assertTrue(Arrays.equals(expected.toByteArray(), actual.toByteArray()));
+    } finally {
+      ((CSCFRMMappedStore) data.getStore()).close();
+      Files.deleteIfExists(path);
+      Files.deleteIfExists(mapPath);
+      Files.delete(dir);
+    }
+  }
+}
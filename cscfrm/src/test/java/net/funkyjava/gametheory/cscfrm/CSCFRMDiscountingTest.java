@@ -0,0 +1,155 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.cscfrm.HUPushFold.PushFoldChances;
+import net.funkyjava.gametheory.cscfrm.HUPushFold.PushFoldChancesProducer;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChances;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChancesProducer;
+
+/**
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public class CSCFRMDiscountingTest {
+
+  private static final int nbBuckets = 169;
+  private static final double stack = 10;
+  private static final int nbIterations = 2000000;
+  private static final long epochIterations = 10 * nbBuckets;
+
+  private static double pushFoldExploitability(final String name,
+      final CSCFRMDiscounting discounting) {
+    final HUPushFold game = new HUPushFold(nbBuckets, stack);
+    final CSCFRMData<String, PushFoldChances> data = new CSCFRMData<>(game);
+    final long nanos = CSCFRMTraining.train(new CSCFRMTrainer<>(data, discounting),
+        new PushFoldChancesProducer(0, nbBuckets), nbIterations);
+    final double exploitability = game.exploitability(data);
+    log.info("{} : {} iterations in {}ms, exploitability {}", name, nbIterations, nanos / 1000000,
+        exploitability);
+    return exploitability;
+  }
+
+  /**
+   * Check that lazily catching up several epochs gives the same factor as discounting at each
+   * epoch
+   */
+  @Test
+  public void testLazyFactor() {
+    final double alpha = 1.5;
+    double eager = 1;
+    double logSum = 0;
+    for (int t = 3; t < 50; t++) {
+      eager *= Math.pow(t, alpha) / (Math.pow(t, alpha) + 1);
+      logSum += CSCFRMDiscounting.logRegretDiscount(t, alpha);
+    }
+    assertEquals(eager, Math.exp(logSum), 1e-12);
+    assertEquals(0, CSCFRMDiscounting.logRegretDiscount(7, Double.POSITIVE_INFINITY), 0);
+  }
+
+  /**
+   * Compare CFR+, linear CFR and DCFR convergence on HU push or fold
+   */
+  @Test
+  public void testPushFoldConvergence() {
+    final double cfrPlus = pushFoldExploitability("CFR+", null);
+    final double linear =
+        pushFoldExploitability("Linear CFR", CSCFRMDiscounting.linear(epochIterations));
+    final double dcfr =
+        pushFoldExploitability("DCFR", CSCFRMDiscounting.discounted(epochIterations));
+    assertTrue(cfrPlus < 0.05);
+    assertTrue("Linear CFR should converge faster than CFR+", linear < cfrPlus);
+    assertTrue("DCFR should converge faster than CFR+", dcfr < cfrPlus);
+  }
+
+  /**
+   * Train Kuhn poker with DCFR in the partitioned runner
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testDiscountedRunner() throws Exception {
+    final CSCFRMData<String, KuhnChances> data = new CSCFRMData<>(new KuhnPoker());
+    final List<CSCFRMChancesProducer<KuhnChances>> producers = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      producers.add(new KuhnChancesProducer(i));
+    }
+    final CSCFRMRunner<KuhnChances> runner =
+        new CSCFRMRunner<>(data, producers, 64, CSCFRMDiscounting.discounted(1000));
+    runner.start();
+    Thread.sleep(2000);
+    assertTrue(runner.stopAndAwaitTermination().isEmpty());
+    log.info("DCFR partitioned runner : {} iterations, utility {}", data.getIterations().get(),
+        data.getUtilityAvg()[0]);
+    assertEquals(KuhnPoker.gameValue, data.getUtilityAvg()[0], 1e-2);
+  }
+
+  /**
+   * Check that the discount stamps are copied and saved with the data : copy, checkpoint container
+   * and mapped store. The raw serialized form doesn't have them.
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testStampsPersistence() throws Exception {
+    final CSCFRMDiscounting discounting = CSCFRMDiscounting.discounted(1000);
+    final CSCFRMData<String, KuhnChances> data = new CSCFRMData<>(new KuhnPoker());
+    CSCFRMTraining.train(new CSCFRMTrainer<>(data, discounting), new KuhnChancesProducer(1),
+        10000);
+    final int[][][] stamps = data.getDiscountStamps();
+    assertTrue(stamps[0][0][0] > 1);
+    assertTrue(Arrays.deepEquals(stamps, data.copy().getDiscountStamps()));
+
+    final ByteArrayOutputStream raw = new ByteArrayOutputStream();
+    data.write(raw);
+    final CSCFRMData<String, KuhnChances> filled = new CSCFRMData<>(new KuhnPoker());
+    filled.getDiscountStamps();
+    filled.fill(new ByteArrayInputStream(raw.toByteArray()));
+    assertNull(filled.existingDiscountStamps());
+
+    final ByteArrayOutputStream checkpoint = new ByteArrayOutputStream();
+    for (CSCFRMCheckpointFormat.Compression compression : CSCFRMCheckpointFormat.Compression
+        .values()) {
+      checkpoint.reset();
+      new CSCFRMCheckpointFormat(data, compression).write(checkpoint);
+      final CSCFRMData<String, KuhnChances> restored = new CSCFRMData<>(new KuhnPoker());
+      new CSCFRMCheckpointFormat(restored, compression)
+          .fill(new ByteArrayInputStream(checkpoint.toByteArray()));
+      assertTrue(Arrays.deepEquals(stamps, restored.getDiscountStamps()));
+    }
+
+    final Path dir = Files.createTempDirectory("cscfrm-stamps");
+    final Path path = dir.resolve("kuhn.map");
+    try {
+      final CSCFRMData<String, KuhnChances> mapped = new CSCFRMData<>(new KuhnPoker(), path);
+      mapped.force();
+      ((CSCFRMMappedStore) mapped.getStore()).close();
+      final CSCFRMData<String, KuhnChances> unstamped = new CSCFRMData<>(new KuhnPoker(), path);
+      assertNull(unstamped.existingDiscountStamps());
+      new CSCFRMCheckpointFormat(unstamped, CSCFRMCheckpointFormat.Compression.DEFLATE)
+          .fill(new ByteArrayInputStream(checkpoint.toByteArray()));
+      unstamped.force();
+      ((CSCFRMMappedStore) unstamped.getStore()).close();
+      final CSCFRMData<String, KuhnChances> remapped = new CSCFRMData<>(new KuhnPoker(), path);
+      assertTrue(Arrays.deepEquals(stamps, remapped.existingDiscountStamps()));
+      ((CSCFRMMappedStore) remapped.getStore()).close();
+    } finally {
+      Files.deleteIfExists(path);
+      Files.deleteIfExists(dir);
+    }
+  }
+}
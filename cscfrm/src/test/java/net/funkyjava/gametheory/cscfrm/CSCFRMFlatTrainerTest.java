@@ -0,0 +1,86 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.cscfrm.HUPushFold.PushFoldChances;
+import net.funkyjava.gametheory.cscfrm.HUPushFold.PushFoldChancesProducer;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChances;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChancesProducer;
+
+/**
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public class CSCFRMFlatTrainerTest {
+
+  private static final boolean testBenchmark = false;
+  private static final int nbCards = 169;
+  private static final int nbIterations = 1000000;
+  private static final int nbBenchRuns = 3;
+
+  private static byte[] bytes(final CSCFRMData<?, ?> data) throws IOException {
+    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    data.write(bos);
+    return bos.toByteArray();
+  }
+
+  private static long trainKuhn(final CSCFRMChancesTrainer<KuhnChances> trainer,
+      final int nbIterations) {
+    return CSCFRMTraining.train(trainer, new KuhnChancesProducer(1, nbCards), nbIterations);
+  }
+
+  /**
+   * The flat trainer must produce exactly the same data as the recursive one
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testSameData() throws Exception {
+    final CSCFRMData<String, KuhnChances> recursive = new CSCFRMData<>(new KuhnPoker(nbCards));
+    final CSCFRMTrainer<KuhnChances> recursiveTrainer = new CSCFRMTrainer<>(recursive);
+    trainKuhn(recursiveTrainer, 100000);
+    final CSCFRMData<String, KuhnChances> flat = new CSCFRMData<>(new KuhnPoker(nbCards));
+    final CSCFRMFlatTrainer<KuhnChances> flatTrainer = new CSCFRMFlatTrainer<>(flat);
+    trainKuhn(flatTrainer, 100000);
+    assertEquals(recursiveTrainer.getVisitedNodes(), flatTrainer.getVisitedNodes());
+    assertArrayEquals(bytes(recursive), bytes(flat));
+
+    final HUPushFold game = new HUPushFold(nbCards, 10);
+    final CSCFRMData<String, PushFoldChances> pushFold = new CSCFRMData<>(game);
+    final CSCFRMData<String, PushFoldChances> flatPushFold = new CSCFRMData<>(game);
+    final CSCFRMTrainer<PushFoldChances> pushFoldTrainer = new CSCFRMTrainer<>(pushFold);
+    final CSCFRMFlatTrainer<PushFoldChances> flatPushFoldTrainer =
+        new CSCFRMFlatTrainer<>(flatPushFold);
+    // Same seeds, same chances
+    CSCFRMTraining.train(pushFoldTrainer, new PushFoldChancesProducer(0, nbCards), 100000);
+    CSCFRMTraining.train(flatPushFoldTrainer, new PushFoldChancesProducer(0, nbCards), 100000);
+    assertArrayEquals(bytes(pushFold), bytes(flatPushFold));
+  }
+
+  /**
+   * Compare the throughput of the recursive and flat trainers on Kuhn poker
+   */
+  @Test
+  public void testBenchmark() {
+    if (!testBenchmark) {
+      return;
+    }
+    for (int run = 0; run < nbBenchRuns; run++) {
+      final long recursiveTime = trainKuhn(
+          new CSCFRMTrainer<>(new CSCFRMData<>(new KuhnPoker(nbCards))), nbIterations);
+      final long flatTime = trainKuhn(
+          new CSCFRMFlatTrainer<>(new CSCFRMData<>(new KuhnPoker(nbCards))), nbIterations);
+      log.info("Run {} : recursive {} it/s, flat {} it/s, speedup {}", run,
+          nbIterations * 1e9 / recursiveTime, nbIterations * 1e9 / flatTime,
+          (double) recursiveTime / flatTime);
+    }
+  }
+}
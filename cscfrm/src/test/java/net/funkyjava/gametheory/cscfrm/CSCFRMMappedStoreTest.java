@@ -0,0 +1,152 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Test;
+
+import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChances;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChancesProducer;
+
+/**
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public class CSCFRMMappedStoreTest {
+
+  private static final int nbIterations = 100000;
+
+  private static void train(final CSCFRMData<String, KuhnChances> data) {
+    CSCFRMTraining.train(new CSCFRMTrainer<>(data), new KuhnChancesProducer(1), nbIterations);
+  }
+
+  private static byte[] bytes(final CSCFRMData<String, KuhnChances> data) throws Exception {
+    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    data.write(bos);
+    return bos.toByteArray();
+  }
+
+  /**
+   * Train on a mapped store, force it, remap it and compare with an on-heap training
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testTrainForceAndRemap() throws Exception {
+    final Path dir = Files.createTempDirectory("cscfrm-mapped");
+    final Path path = dir.resolve("kuhn.map");
+    try {
+      final CSCFRMData<String, KuhnChances> baseline = new CSCFRMData<>(new KuhnPoker());
+      train(baseline);
+      final CSCFRMData<String, KuhnChances> mapped = new CSCFRMData<>(new KuhnPoker(), path);
+      assertEquals(0, mapped.getIterations().get());
+      train(mapped);
+      assertArrayEquals(bytes(baseline), bytes(mapped));
+      assertArrayEquals(bytes(baseline), bytes(mapped.copy()));
+      mapped.force();
+      ((CSCFRMMappedStore) mapped.getStore()).close();
+      log.info("Mapped Kuhn store file size : {} bytes", Files.size(path));
+
+      final CSCFRMData<String, KuhnChances> remapped = new CSCFRMData<>(new KuhnPoker(), path);
+      assertEquals(baseline.getIterations().get(), remapped.getIterations().get());
+      assertArrayEquals(bytes(baseline), bytes(remapped));
+      ((CSCFRMMappedStore) remapped.getStore()).close();
+    } finally {
+      Files.deleteIfExists(path);
+      Files.deleteIfExists(dir);
+    }
+  }
+
+  /**
+   * Mapping a file created for another tree must fail
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testTreeMismatch() throws Exception {
+    final Path dir = Files.createTempDirectory("cscfrm-mapped");
+    final Path path = dir.resolve("kuhn.map");
+    try {
+      final CSCFRMData<String, KuhnChances> data = new CSCFRMData<>(new KuhnPoker(), path);
+      data.force();
+      ((CSCFRMMappedStore) data.getStore()).close();
+      try {
+        new CSCFRMData<>(new KuhnPoker(4), path);
+        fail("The tree mismatch wasn't detected");
+      } catch (IllegalArgumentException e) {
+        assertTrue(e.getMessage().contains(path.toString()));
+      }
+    } finally {
+      Files.deleteIfExists(path);
+      Files.deleteIfExists(dir);
+    }
+  }
+
+  /**
+   * A file written on a machine of the other byte order must be mapped with the byte order
+   * recorded in its header
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testForeignByteOrder() throws Exception {
+    final Path dir = Files.createTempDirectory("cscfrm-mapped");
+    final Path path = dir.resolve("kuhn.map");
+    try {
+      final CSCFRMData<String, KuhnChances> mapped = new CSCFRMData<>(new KuhnPoker(), path);
+      train(mapped);
+      mapped.force();
+      final byte[] expected = bytes(mapped);
+      final int[][] sizes = mapped.getStore().getSizes();
+      ((CSCFRMMappedStore) mapped.getStore()).close();
+
+      long nbValues = 0;
+      for (int[] roundSizes : sizes) {
+        for (int size : roundSizes) {
+          nbValues += size;
+        }
+      }
+      try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ,
+          StandardOpenOption.WRITE)) {
+        // The big-endian header records the byte order after the magic number and the version
+        final ByteBuffer order = ByteBuffer.allocate(Integer.BYTES);
+        channel.read(order, Long.BYTES + Integer.BYTES);
+        final boolean nativeBig = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+        assertEquals(nativeBig ? 0 : 1, order.getInt(0));
+        order.clear();
+        order.putInt(0, nativeBig ? 1 : 0);
+        channel.write(order, Long.BYTES + Integer.BYTES);
+        // The values start on the first page following the header
+        final ByteBuffer values = ByteBuffer.allocate((int) nbValues * Double.BYTES);
+        channel.read(values, 4096);
+        values.flip();
+        final ByteBuffer swapped = ByteBuffer.allocate(values.capacity());
+        swapped.order(ByteOrder.LITTLE_ENDIAN);
+        while (values.hasRemaining()) {
+          swapped.putDouble(values.getDouble());
+        }
+        swapped.flip();
+        channel.write(swapped, 4096);
+      }
+
+      final CSCFRMData<String, KuhnChances> remapped = new CSCFRMData<>(new KuhnPoker(), path);
+      assertArrayEquals(expected, bytes(remapped));
+      ((CSCFRMMappedStore) remapped.getStore()).close();
+    } finally {
+      Files.deleteIfExists(path);
+      Files.deleteIfExists(dir);
+    }
+  }
+}
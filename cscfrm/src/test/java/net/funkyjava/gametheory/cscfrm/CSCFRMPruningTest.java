@@ -0,0 +1,102 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.cscfrm.HUPushFold.PushFoldChances;
+import net.funkyjava.gametheory.cscfrm.HUPushFold.PushFoldChancesProducer;
+
+/**
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public class CSCFRMPruningTest {
+
+  private static final int nbBuckets = 169;
+  private static final double stack = 10;
+  private static final int nbIterations = 2000000;
+  private static final double tolerance = 5e-3;
+
+  private static double exploitability(final String name, final CSCFRMDiscounting discounting,
+      final CSCFRMPruning pruning) {
+    final HUPushFold game = new HUPushFold(nbBuckets, stack);
+    final CSCFRMData<String, PushFoldChances> data = new CSCFRMData<>(game);
+    final long time = CSCFRMTraining.train(new CSCFRMTrainer<>(data, discounting, pruning),
+        new PushFoldChancesProducer(0, nbBuckets), nbIterations) / 1000000;
+    final double exploitability = game.exploitability(data);
+    if (pruning == null) {
+      log.info("{} : {}ms, exploitability {}", name, time, exploitability);
+    } else {
+      log.info("{} : {}ms, exploitability {}, {} visited nodes, {} pruned subtrees", name, time,
+          exploitability, pruning.getVisitedNodes(), pruning.getPrunedSubtrees());
+    }
+    return exploitability;
+  }
+
+  /**
+   * Check that pruning is rejected with CFR+, whose floored regrets would make any action without
+   * probability prunable
+   */
+  @Test
+  public void testCFRPlusRejected() {
+    final CSCFRMData<String, PushFoldChances> data =
+        new CSCFRMData<>(new HUPushFold(nbBuckets, stack));
+    try {
+      new CSCFRMPruning(0, 100);
+      fail("A zero pruning threshold was accepted");
+    } catch (IllegalArgumentException e) {
+      log.info("Rejected threshold : {}", e.getMessage());
+    }
+    try {
+      new CSCFRMTrainer<>(data, null, new CSCFRMPruning(-1, 100));
+      fail("Pruning was accepted with CFR+");
+    } catch (IllegalArgumentException e) {
+      log.info("Rejected trainer : {}", e.getMessage());
+    }
+    final CSCFRMRunner<PushFoldChances> runner = new CSCFRMRunner<>(data,
+        Collections.<CSCFRMChancesProducer<PushFoldChances>>singletonList(
+            new PushFoldChancesProducer(0, nbBuckets)),
+        1);
+    try {
+      runner.setPruning(new CSCFRMPruning(-1, 100));
+      fail("Pruning was accepted by a CFR+ runner");
+    } catch (IllegalArgumentException e) {
+      log.info("Rejected runner : {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Check that pruning skips subtrees without hurting convergence much on HU push or fold
+   */
+  @Test
+  public void testPushFoldPruning() {
+    final CSCFRMDiscounting discounting = CSCFRMDiscounting.linear(10 * nbBuckets);
+    final double linear = exploitability("Linear CFR", discounting, null);
+    final CSCFRMPruning linearPruning = new CSCFRMPruning(-1, 100);
+    final double linearPruned = exploitability("Linear CFR pruned", discounting, linearPruning);
+    assertTrue(linearPruning.getPrunedSubtrees() > 0);
+    assertTrue(linearPruned < linear + tolerance);
+  }
+
+  /**
+   * Check that every full-width interval iteration visits all nodes
+   */
+  @Test
+  public void testFullWidth() {
+    final HUPushFold game = new HUPushFold(nbBuckets, stack);
+    final CSCFRMData<String, PushFoldChances> data = new CSCFRMData<>(game);
+    final CSCFRMPruning pruning = new CSCFRMPruning(-1, 1);
+    CSCFRMTraining.train(
+        new CSCFRMTrainer<>(data, CSCFRMDiscounting.linear(10 * nbBuckets), pruning),
+        new PushFoldChancesProducer(0, nbBuckets), 100000);
+    assertEquals(0, pruning.getPrunedSubtrees());
+    assertEquals(200000, pruning.getVisitedNodes());
+  }
+}
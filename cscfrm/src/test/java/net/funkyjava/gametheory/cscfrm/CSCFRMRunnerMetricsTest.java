@@ -0,0 +1,120 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChances;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChancesProducer;
+
+/**
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public class CSCFRMRunnerMetricsTest {
+
+  private static final int nbThreads = 2;
+  private static final int nbCards = 169;
+
+  private static void checkMetrics(final CSCFRMData<String, KuhnChances> data,
+      final CSCFRMRunner<KuhnChances> runner) throws Exception {
+    final CSCFRMRunnerMetrics metrics = runner.getMetrics();
+    runner.start();
+    Thread.sleep(1000);
+    metrics.update();
+    assertTrue(runner.stopAndAwaitTermination().isEmpty());
+    metrics.log();
+    assertTrue(metrics.getIterationsPerSecond() > 0);
+    assertTrue(metrics.getVisitedNodes() > 0);
+    assertTrue(metrics.getProducedChances() > 0);
+    assertTrue(metrics.getProducerLatencyMicros() > 0);
+    for (double ratio : metrics.getThreadsBlockedRatios()) {
+      assertTrue(ratio >= 0 && ratio <= 1);
+    }
+    double threadsRate = 0;
+    for (double rate : metrics.getThreadsIterationsPerSecond()) {
+      assertTrue(rate > 0);
+      threadsRate += rate;
+    }
+    assertEquals(metrics.getIterationsPerSecond(), threadsRate,
+        0.01 * metrics.getIterationsPerSecond() + 100);
+  }
+
+  /**
+   * Check the metrics of a synchronized runner
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testSynchronizedMetrics() throws Exception {
+    final CSCFRMData<String, KuhnChances> data = new CSCFRMData<>(new KuhnPoker(nbCards));
+    final CSCFRMRunner<KuhnChances> runner = new CSCFRMRunner<>(data,
+        new CSCFRMMutexChancesSynchronizer<>(new KuhnChancesProducer(0, nbCards),
+            data.getRoundChancesSizes()),
+        nbThreads);
+    checkMetrics(data, runner);
+  }
+
+  /**
+   * Compare the synchronized runner's throughput and chances per acquire with several batch sizes
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testBatchMetrics() throws Exception {
+    for (int batchSize : new int[] {1, 4, 16}) {
+      final CSCFRMData<String, KuhnChances> data = new CSCFRMData<>(new KuhnPoker(nbCards));
+      final CSCFRMRunner<KuhnChances> runner = new CSCFRMRunner<>(data,
+          new CSCFRMMutexChancesSynchronizer<>(new KuhnChancesProducer(0, nbCards),
+              data.getRoundChancesSizes()),
+          nbThreads);
+      runner.setBatchSize(batchSize);
+      checkMetrics(data, runner);
+      final double chancesPerAcquire = runner.getMetrics().getChancesPerAcquire();
+      log.info("Batch size {} : {} it/s, {} chances per acquire", batchSize,
+          runner.getMetrics().getIterationsPerSecond(), chancesPerAcquire);
+      assertTrue(chancesPerAcquire >= 1 && chancesPerAcquire <= batchSize);
+      if (batchSize > 1) {
+        assertTrue(chancesPerAcquire > 1);
+      }
+    }
+  }
+
+  /**
+   * Check the metrics of a partitioned runner and their JMX exposition
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testPartitionedMetricsMBean() throws Exception {
+    final List<CSCFRMChancesProducer<KuhnChances>> producers = new ArrayList<>();
+    for (int i = 0; i < nbThreads; i++) {
+      producers.add(new KuhnChancesProducer(i, nbCards));
+    }
+    final CSCFRMData<String, KuhnChances> data = new CSCFRMData<>(new KuhnPoker(nbCards));
+    final CSCFRMRunner<KuhnChances> runner = new CSCFRMRunner<>(data, producers, 64);
+    checkMetrics(data, runner);
+    final CSCFRMRunnerMetrics metrics = runner.getMetrics();
+    metrics.registerMBean("test");
+    try {
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      final ObjectName name =
+          new ObjectName("net.funkyjava.gametheory.cscfrm:type=CSCFRMRunner,name=test");
+      assertEquals(data.getIterations().get(), server.getAttribute(name, "Iterations"));
+      assertEquals(nbThreads, ((double[]) server.getAttribute(name, "ThreadsBlockedRatios")).length);
+      assertEquals(0, server.getAttribute(name, "CollisionBacklog"));
+    } finally {
+      metrics.unregisterMBean();
+    }
+  }
+}
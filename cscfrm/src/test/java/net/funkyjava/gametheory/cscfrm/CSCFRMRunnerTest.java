@@ -0,0 +1,220 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.cscfrm.HUPushFold.PushFoldChances;
+import net.funkyjava.gametheory.cscfrm.HUPushFold.PushFoldChancesProducer;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChances;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChancesProducer;
+
+/**
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public class CSCFRMRunnerTest {
+
+  private static final boolean testPartitionedVersusMutexRate = false;
+  private static final int nbThreads = 4;
+  private static final int nbCards = 169;
+  private static final long runTime = 2000;
+  private static final int nbPushFoldBuckets = 169;
+  private static final double pushFoldStack = 10;
+  private static final double pushFoldTolerance = 0.005;
+  private static final long deterministicIterations = 200000;
+
+  private static List<CSCFRMChancesProducer<KuhnChances>> producers(final int nbProducers,
+      final int nbCards) {
+    final List<CSCFRMChancesProducer<KuhnChances>> producers = new ArrayList<>();
+    for (int i = 0; i < nbProducers; i++) {
+      producers.add(new KuhnChancesProducer(i, nbCards));
+    }
+    return producers;
+  }
+
+  private static double run(final String name, final CSCFRMData<String, KuhnChances> data,
+      final CSCFRMRunner<KuhnChances> runner, final int nbThreads) throws Exception {
+    runner.start();
+    Thread.sleep(runTime);
+    assertTrue(runner.stopAndAwaitTermination().isEmpty());
+    final double rate = data.getIterations().get() * 1000d / runTime;
+    log.info("{} : {} iterations per second with {} threads", name, rate, nbThreads);
+    return rate;
+  }
+
+  /**
+   * Check that the partition gives disjoint chances to the threads of each epoch and covers all
+   * chances combinations
+   */
+  @Test
+  public void testPartition() {
+    final int[][] sizes = {{7, 5}, {6}};
+    final CSCFRMChancesPartition partition = new CSCFRMChancesPartition(sizes, 3);
+    assertEquals(9, partition.getNbEpochs());
+    final int[][][][] owners = new int[9][][][];
+    for (int epoch = 0; epoch < 9; epoch++) {
+      owners[epoch] = new int[][][] {{new int[7], new int[5]}, {new int[6]}};
+    }
+    final int[][] chances = new int[][] {new int[2], new int[1]};
+    for (int a = 0; a < 7; a++) {
+      for (int b = 0; b < 5; b++) {
+        for (int c = 0; c < 6; c++) {
+          chances[0][0] = a;
+          chances[0][1] = b;
+          chances[1][0] = c;
+          final int epoch = partition.epoch(chances);
+          final int thread = partition.thread(chances) + 1;
+          final int[][][] epochOwners = owners[epoch];
+          for (int round = 0; round < 2; round++) {
+            for (int player = 0; player < chances[round].length; player++) {
+              final int owner = epochOwners[round][player][chances[round][player]];
+              assertTrue("Two threads own the same chance in an epoch",
+                  owner == 0 || owner == thread);
+              epochOwners[round][player][chances[round][player]] = thread;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Check that partitions whose number of epochs explodes with the number of threads are rejected
+   */
+  @Test
+  public void testPartitionTooManyEpochs() {
+    // Heads-up with four rounds : 16^7 epochs
+    final int[][] sizes = {{169, 169}, {1000, 1000}, {1000, 1000}, {1000, 1000}};
+    assertEquals(2 * 2 * 2 * 2 * 2 * 2 * 2, new CSCFRMChancesPartition(sizes, 2).getNbEpochs());
+    try {
+      new CSCFRMChancesPartition(sizes, 16);
+      fail("The number of epochs wasn't bounded");
+    } catch (IllegalArgumentException e) {
+      log.info("Rejected partition : {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Train Kuhn poker in partitioned mode
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testPartitionedKuhn() throws Exception {
+    final CSCFRMData<String, KuhnChances> data = new CSCFRMData<>(new KuhnPoker());
+    final CSCFRMRunner<KuhnChances> runner = new CSCFRMRunner<>(data, producers(3, 3), 64);
+    run("Partitioned Kuhn", data, runner, 3);
+    assertEquals(KuhnPoker.gameValue, data.getUtilityAvg()[0], 1e-2);
+  }
+
+  /**
+   * Compare the iteration rate of the partitioned mode with the mutex synchronizer on a 169 cards
+   * Kuhn poker
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testPartitionedVersusMutexRate() throws Exception {
+    if (!testPartitionedVersusMutexRate) {
+      return;
+    }
+    final int[][] chancesSizes = {{nbCards, nbCards}};
+    final CSCFRMData<String, KuhnChances> mutexData = new CSCFRMData<>(new KuhnPoker(nbCards));
+    final double mutexRate = run("Mutex", mutexData,
+        new CSCFRMRunner<>(mutexData, new CSCFRMMutexChancesSynchronizer<>(
+            new KuhnChancesProducer(0, nbCards), chancesSizes), nbThreads), nbThreads);
+    final CSCFRMData<String, KuhnChances> partitionedData =
+        new CSCFRMData<>(new KuhnPoker(nbCards));
+    final double partitionedRate = run("Partitioned", partitionedData,
+        new CSCFRMRunner<>(partitionedData, producers(nbThreads, nbCards), 256), nbThreads);
+    log.info("Partitioned / mutex iteration rate : {}", partitionedRate / mutexRate);
+  }
+
+  private static byte[] deterministicRun(final long seed) throws Exception {
+    final CSCFRMData<String, KuhnChances> data = new CSCFRMData<>(new KuhnPoker(nbCards));
+    final CSCFRMRunner<KuhnChances> runner = new CSCFRMRunner<>(data, seed, nbThreads,
+        producerSeed -> new KuhnChancesProducer(producerSeed, nbCards), 256);
+    runner.setSampling(CSCFRMSampling.EXTERNAL);
+    runner.setMaxIterations(deterministicIterations);
+    final long start = System.currentTimeMillis();
+    runner.start();
+    while (data.getIterations().get() < deterministicIterations) {
+      Thread.sleep(10);
+    }
+    assertTrue(runner.stopAndAwaitTermination().isEmpty());
+    final long iterations = data.getIterations().get();
+    log.info("Deterministic : {} iterations per second with {} threads",
+        iterations * 1000d / (System.currentTimeMillis() - start), nbThreads);
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    data.write(bytes);
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Check that deterministic runs with the same seed produce the same data, and different seeds
+   * different data
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testDeterministic() throws Exception {
+    final byte[] data = deterministicRun(42);
+    assertArrayEquals(data, deterministicRun(42));
+    assertFalse(Arrays.equals(data, deterministicRun(43)));
+  }
+
+  private static void checkHogwildPushFold(final String name, final boolean locked)
+      throws Exception {
+    final HUPushFold game = new HUPushFold(nbPushFoldBuckets, pushFoldStack);
+    final CSCFRMData<String, PushFoldChances> data = new CSCFRMData<>(game);
+    final List<CSCFRMChancesProducer<PushFoldChances>> producers = new ArrayList<>();
+    for (int i = 0; i < nbThreads; i++) {
+      producers.add(new PushFoldChancesProducer(i, nbPushFoldBuckets));
+    }
+    final CSCFRMStripedLocks locks =
+        locked ? new CSCFRMStripedLocks(data.getRoundChancesSizes(), 64) : null;
+    final CSCFRMRunner<PushFoldChances> runner = new CSCFRMRunner<>(data, producers, locks);
+    runner.setCountOverlaps(true);
+    runner.start();
+    Thread.sleep(runTime);
+    assertTrue(runner.stopAndAwaitTermination().isEmpty());
+    final long iterations = data.getIterations().get();
+    final double exploitability = game.exploitability(data);
+    log.info("{} : {} iterations, {} overlaps, exploitability {}", name, iterations,
+        runner.getOverlaps().get(), exploitability);
+    if (locked) {
+      assertEquals(0, runner.getOverlaps().get());
+    }
+    final CSCFRMData<String, PushFoldChances> seqData = new CSCFRMData<>(game);
+    CSCFRMTraining.train(new CSCFRMTrainer<>(seqData),
+        new PushFoldChancesProducer(0, nbPushFoldBuckets), iterations);
+    final double seqExploitability = game.exploitability(seqData);
+    log.info("Sequential : {} iterations, exploitability {}", iterations, seqExploitability);
+    assertTrue(name + " exploitability is out of tolerance",
+        exploitability < seqExploitability + pushFoldTolerance);
+  }
+
+  /**
+   * Check that the hogwild mode, with and without striped locks, reaches the same equilibrium
+   * quality as a sequential training with as many iterations on HU push or fold
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testHogwildPushFold() throws Exception {
+    checkHogwildPushFold("Hogwild", false);
+    checkHogwildPushFold("Hogwild with striped locks", true);
+  }
+}
@@ -0,0 +1,93 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.cscfrm.HUPushFold.PushFoldChances;
+import net.funkyjava.gametheory.cscfrm.HUPushFold.PushFoldChancesProducer;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChances;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChancesProducer;
+
+/**
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public class CSCFRMSamplingTest {
+
+  private static final int nbBuckets = 169;
+  private static final double stack = 10;
+  private static final int nbIterations = 2000000;
+  private static final long minRunnerIterations = 1000000;
+  private static final long runnerTimeoutMillis = 120000;
+
+  /**
+   * Wait until the data reached the minimum number of iterations
+   *
+   * @return false when the runner failed or the timeout expired first
+   */
+  private static boolean awaitIterations(final CSCFRMRunner<?> runner,
+      final CSCFRMData<?, ?> data) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + runnerTimeoutMillis;
+    while (data.getIterations().get() < minRunnerIterations) {
+      if (!runner.getExceptions().isEmpty() || System.currentTimeMillis() > deadline) {
+        return false;
+      }
+      Thread.sleep(100);
+    }
+    return true;
+  }
+
+  /**
+   * Compare the throughput and convergence of the sampling schemes on HU push or fold
+   */
+  @Test
+  public void testPushFoldSampling() {
+    for (CSCFRMSampling sampling : CSCFRMSampling.values()) {
+      final HUPushFold game = new HUPushFold(nbBuckets, stack);
+      final CSCFRMData<String, PushFoldChances> data = new CSCFRMData<>(game);
+      final CSCFRMChancesTrainer<PushFoldChances> trainer =
+          sampling.createTrainer(data, null, null);
+      final long time = CSCFRMTraining.train(trainer, new PushFoldChancesProducer(0, nbBuckets),
+          nbIterations) / 1000000;
+      final double exploitability = game.exploitability(data);
+      log.info("{} sampling : {} iterations per second, exploitability {} after {} iterations",
+          sampling, nbIterations * 1000d / time, exploitability, nbIterations);
+      assertTrue(sampling + " sampling didn't converge", exploitability < 0.05);
+    }
+  }
+
+  /**
+   * Train Kuhn poker with each sampling scheme in the runner
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testKuhnRunnerSampling() throws Exception {
+    for (CSCFRMSampling sampling : CSCFRMSampling.values()) {
+      final CSCFRMData<String, KuhnChances> data = new CSCFRMData<>(new KuhnPoker());
+      final List<CSCFRMChancesProducer<KuhnChances>> producers = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        producers.add(new KuhnChancesProducer(i));
+      }
+      final CSCFRMRunner<KuhnChances> runner = new CSCFRMRunner<>(data, producers, 64);
+      runner.setSampling(sampling);
+      runner.start();
+      // Slow machines need more than a second to converge
+      final boolean reached = awaitIterations(runner, data);
+      final List<Exception> exceptions = runner.stopAndAwaitTermination();
+      assertTrue(sampling + " sampling runner failed : " + exceptions, exceptions.isEmpty());
+      assertTrue(sampling + " sampling runner didn't reach " + minRunnerIterations
+          + " iterations in " + runnerTimeoutMillis + "ms", reached);
+      log.info("{} sampling runner : {} iterations, utility {}", sampling,
+          data.getIterations().get(), data.getUtilityAvg()[0]);
+      assertEquals(KuhnPoker.gameValue, data.getUtilityAvg()[0], 2e-2);
+    }
+  }
+}
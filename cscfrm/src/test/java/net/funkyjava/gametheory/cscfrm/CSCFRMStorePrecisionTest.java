@@ -0,0 +1,122 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+
+import org.junit.Test;
+
+import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChances;
+import net.funkyjava.gametheory.extensiveformgame.LinkedActionTreeNode;
+
+/**
+ * Compares the convergence of each storage precision against the double baseline
+ *
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public class CSCFRMStorePrecisionTest {
+
+  private static final boolean testPrecisionsConvergence = false;
+  private static final int nbIterations = 1000000;
+
+  private static CSCFRMData<String, KuhnChances> train(final CSCFRMStorePrecision precision,
+      final int nbIterations) {
+    final CSCFRMData<String, KuhnChances> data = new CSCFRMData<>(new KuhnPoker(), precision);
+    final long nanos = CSCFRMTraining.train(new CSCFRMTrainer<>(data),
+        new KuhnPoker.KuhnChancesProducer(1), nbIterations);
+    log.info("{} : {} Kuhn iterations in {}ms", precision, nbIterations, nanos / 1000000);
+    return data;
+  }
+
+  private static double maxStrategyDiff(final CSCFRMData<String, KuhnChances> baseline,
+      final CSCFRMData<String, KuhnChances> data) {
+    final Map<LinkedActionTreeNode<String, ?>, CSCFRMNode[]> baseNodes =
+        baseline.nodesForEachActionNode();
+    final Map<LinkedActionTreeNode<String, ?>, CSCFRMNode[]> nodes = data.nodesForEachActionNode();
+    double max = 0;
+    for (LinkedActionTreeNode<String, ?> node : baseNodes.keySet()) {
+      final String id = node.getPlayerNode().getId();
+      for (LinkedActionTreeNode<String, ?> other : nodes.keySet()) {
+        if (!other.getPlayerNode().getId().equals(id)) {
+          continue;
+        }
+        final CSCFRMNode[] base = baseNodes.get(node);
+        final CSCFRMNode[] compared = nodes.get(other);
+        for (int chance = 0; chance < base.length; chance++) {
+          final double[] baseStrat = base[chance].getAvgStrategy();
+          final double[] strat = compared[chance].getAvgStrategy();
+          for (int a = 0; a < baseStrat.length; a++) {
+            max = Math.max(max, Math.abs(baseStrat[a] - strat[a]));
+          }
+        }
+      }
+    }
+    return max;
+  }
+
+  /**
+   * Train Kuhn poker with each precision and compare with the double baseline
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testPrecisionsConvergence() throws Exception {
+    if (!testPrecisionsConvergence) {
+      return;
+    }
+    final CSCFRMData<String, KuhnChances> baseline =
+        train(CSCFRMStorePrecision.DOUBLE, nbIterations);
+    final double baseError = Math.abs(baseline.getUtilityAvg()[0] - KuhnPoker.gameValue);
+    log.info("DOUBLE : game value error {}", baseError);
+    for (CSCFRMStorePrecision precision : CSCFRMStorePrecision.values()) {
+      if (precision == CSCFRMStorePrecision.DOUBLE) {
+        continue;
+      }
+      final CSCFRMData<String, KuhnChances> data = train(precision, nbIterations);
+      final double error = Math.abs(data.getUtilityAvg()[0] - KuhnPoker.gameValue);
+      final double strategyDiff = maxStrategyDiff(baseline, data);
+      log.info("{} : game value error {}, max average strategy difference with DOUBLE {}",
+          precision, error, strategyDiff);
+      assertEquals(precision + " game value", KuhnPoker.gameValue, data.getUtilityAvg()[0], 5e-3);
+    }
+  }
+
+  /**
+   * Check that compressed regret increments smaller than the resolution are kept on average
+   */
+  @Test
+  public void testCompressedSmallIncrements() {
+    final CSCFRMStore store =
+        new CSCFRMData<>(new KuhnPoker(), CSCFRMStorePrecision.COMPRESSED_REGRET).getStore();
+    final double increment = 0.1 / CSCFRMCompressedRegretStore.defaultScale;
+    final int nbIncrements = 100000;
+    for (int i = 0; i < nbIncrements; i++) {
+      store.addRegret(0, 0, 0, increment);
+      store.addRegret(0, 0, 1, -increment);
+    }
+    final double expected = nbIncrements * increment;
+    assertEquals(expected, store.getRegret(0, 0, 0), expected / 20);
+    assertEquals(-expected, store.getRegret(0, 0, 1), expected / 20);
+  }
+
+  /**
+   * Check that data written with a precision can be read with another one
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testWriteFillAcrossPrecisions() throws Exception {
+    final CSCFRMData<String, KuhnChances> data = train(CSCFRMStorePrecision.FLOAT, 10000);
+    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    data.write(bos);
+    final CSCFRMData<String, KuhnChances> copy =
+        new CSCFRMData<>(new KuhnPoker(), CSCFRMStorePrecision.DOUBLE);
+    copy.fill(new ByteArrayInputStream(bos.toByteArray()));
+    assertEquals(0, maxStrategyDiff(data, copy), 0);
+  }
+}
@@ -0,0 +1,167 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChances;
+import net.funkyjava.gametheory.extensiveformgame.LinkedActionTreeNode;
+
+/**
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public class CSCFRMStoreTest {
+
+  /**
+   * Train Kuhn poker and check the utility average reaches the game value
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testKuhnTraining() throws Exception {
+    final CSCFRMData<String, KuhnChances> data = new CSCFRMData<>(new KuhnPoker());
+    final int nbIterations = 1000000;
+    final long nanos = CSCFRMTraining.train(new CSCFRMTrainer<>(data),
+        new KuhnPoker.KuhnChancesProducer(1), nbIterations);
+    log.info("{} Kuhn iterations in {}ms", nbIterations, nanos / 1000000);
+    final double[] utility = data.getUtilityAvg();
+    log.info("Utility average : {} {}", utility[0], utility[1]);
+    assertEquals(KuhnPoker.gameValue, utility[0], 5e-3);
+  }
+
+  /**
+   * Check that writing then filling the data restores the same values
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testWriteFill() throws Exception {
+    final CSCFRMData<String, KuhnChances> data = new CSCFRMData<>(new KuhnPoker());
+    CSCFRMTraining.train(new CSCFRMTrainer<>(data), new KuhnPoker.KuhnChancesProducer(1), 1000);
+    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    data.write(bos);
+    final CSCFRMData<String, KuhnChances> copy = new CSCFRMData<>(new KuhnPoker());
+    copy.fill(new ByteArrayInputStream(bos.toByteArray()));
+    assertEquals(data.getIterations().get(), copy.getIterations().get());
+    final List<LinkedActionTreeNode<String, ?>> nodes =
+        new ArrayList<>(data.nodesForEachActionNode().keySet());
+    final List<LinkedActionTreeNode<String, ?>> copyNodes =
+        new ArrayList<>(copy.nodesForEachActionNode().keySet());
+    for (int i = 0; i < nodes.size(); i++) {
+      final CSCFRMNode[] expected = data.nodesFor(nodes.get(i));
+      final CSCFRMNode[] actual = copy.nodesFor(copyNodes.get(i));
+      for (int chance = 0; chance < expected.length; chance++) {
+        final double[] expectedRegrets = expected[chance].getRegretSum();
+        final double[] actualRegrets = actual[chance].getRegretSum();
+        final double[] expectedStrat = expected[chance].getStrategySum();
+        final double[] actualStrat = actual[chance].getStrategySum();
+        for (int a = 0; a < expectedRegrets.length; a++) {
+          assertEquals(expectedRegrets[a], actualRegrets[a], 0);
+          assertEquals(expectedStrat[a], actualStrat[a], 0);
+        }
+      }
+    }
+  }
+
+  private static CSCFRMData<String, KuhnChances> trained(final CSCFRMStorePrecision precision) {
+    final CSCFRMData<String, KuhnChances> data = new CSCFRMData<>(new KuhnPoker(), precision);
+    CSCFRMTraining.train(new CSCFRMTrainer<>(data), new KuhnPoker.KuhnChancesProducer(1), 1000);
+    return data;
+  }
+
+  /**
+   * Check that the channel and stream serializations are the same for each precision, and that a
+   * channel fill reads back the written bytes
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testChannelWriteFill() throws Exception {
+    for (CSCFRMStorePrecision precision : CSCFRMStorePrecision.values()) {
+      final CSCFRMData<String, KuhnChances> data = trained(precision);
+      final ByteArrayOutputStream streamBytes = new ByteArrayOutputStream();
+      data.write(streamBytes);
+      final ByteArrayOutputStream channelBytes = new ByteArrayOutputStream();
+      data.write(Channels.newChannel(channelBytes));
+      assertArrayEquals(precision.toString(), streamBytes.toByteArray(),
+          channelBytes.toByteArray());
+
+      final CSCFRMData<String, KuhnChances> copy = new CSCFRMData<>(new KuhnPoker(), precision);
+      copy.fill(Channels.newChannel(new ByteArrayInputStream(channelBytes.toByteArray())));
+      final ByteArrayOutputStream copyBytes = new ByteArrayOutputStream();
+      copy.write(copyBytes);
+      assertArrayEquals(precision.toString(), streamBytes.toByteArray(), copyBytes.toByteArray());
+
+      final CSCFRMNode node = data.nodesForEachActionNode().values().iterator().next()[1];
+      final ByteArrayOutputStream nodeStream = new ByteArrayOutputStream();
+      node.write(nodeStream);
+      final ByteArrayOutputStream nodeChannel = new ByteArrayOutputStream();
+      node.write(Channels.newChannel(nodeChannel));
+      assertArrayEquals(nodeStream.toByteArray(), nodeChannel.toByteArray());
+    }
+  }
+
+  /**
+   * Write data the way it was written before the flat store : iterations, utility sums, then the
+   * nodes indexed by round, player, chance, node
+   */
+  private static byte[] baselineBytes(final CSCFRMData<String, KuhnChances> data)
+      throws Exception {
+    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    final DataOutputStream dos = new DataOutputStream(bos);
+    dos.writeLong(data.getIterations().get());
+    for (int i = 0; i < data.getNbPlayers(); i++) {
+      dos.writeDouble(data.getUtilitySum().get(i));
+    }
+    final CSCFRMStore store = data.getStore();
+    final int[][] chancesSizes = data.getRoundChancesSizes();
+    for (int round = 0; round < chancesSizes.length; round++) {
+      for (int player = 0; player < chancesSizes[round].length; player++) {
+        final int nbNodes = store.getNodesNbActions()[round][player].length;
+        for (int chance = 0; chance < chancesSizes[round][player]; chance++) {
+          for (int node = 0; node < nbNodes; node++) {
+            store.node(round, player, chance, node).write(dos);
+          }
+        }
+      }
+    }
+    dos.flush();
+    return bos.toByteArray();
+  }
+
+  /**
+   * Check that files written in the baseline raw form load from a stream and from a channel, and
+   * that the data is written back in the same form, even when it has discount stamps
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testBaselineFormat() throws Exception {
+    final CSCFRMData<String, KuhnChances> data = new CSCFRMData<>(new KuhnPoker());
+    CSCFRMTraining.train(new CSCFRMTrainer<>(data, CSCFRMDiscounting.discounted(100)),
+        new KuhnPoker.KuhnChancesProducer(1), 1000);
+    final byte[] baseline = baselineBytes(data);
+    final ByteArrayOutputStream written = new ByteArrayOutputStream();
+    data.write(written);
+    assertArrayEquals(baseline, written.toByteArray());
+
+    final CSCFRMData<String, KuhnChances> streamFilled = new CSCFRMData<>(new KuhnPoker());
+    streamFilled.fill(new ByteArrayInputStream(baseline));
+    assertArrayEquals(baseline, baselineBytes(streamFilled));
+    final CSCFRMData<String, KuhnChances> channelFilled = new CSCFRMData<>(new KuhnPoker());
+    channelFilled.fill(Channels.newChannel(new ByteArrayInputStream(baseline)));
+    assertArrayEquals(baseline, baselineBytes(channelFilled));
+    assertEquals(data.getIterations().get(), channelFilled.getIterations().get());
+  }
+}
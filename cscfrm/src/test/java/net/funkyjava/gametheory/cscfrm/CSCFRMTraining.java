@@ -0,0 +1,33 @@
+package net.funkyjava.gametheory.cscfrm;
+
+/**
+ * Sequential training loop of the tests : chances are drawn from a producer, trained and given
+ * back to the producer one after the other.
+ *
+ * @author Pierre Mardon
+ *
+ */
+public class CSCFRMTraining {
+
+  private CSCFRMTraining() {}
+
+  /**
+   * Train chances drawn from a producer one after the other
+   *
+   * @param trainer the trainer
+   * @param producer the chances producer
+   * @param nbIterations the number of iterations
+   * @return the training time in nanoseconds
+   */
+  public static <Chances extends CSCFRMChances> long train(
+      final CSCFRMChancesTrainer<Chances> trainer, final CSCFRMChancesProducer<Chances> producer,
+      final long nbIterations) {
+    final long start = System.nanoTime();
+    for (long i = 0; i < nbIterations; i++) {
+      final Chances chances = producer.produceChances();
+      trainer.train(chances);
+      producer.endedUsing(chances);
+    }
+    return System.nanoTime() - start;
+  }
+}
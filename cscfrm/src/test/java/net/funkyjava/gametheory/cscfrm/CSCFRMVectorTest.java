@@ -0,0 +1,99 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.cscfrm.HUPushFold.PushFoldChances;
+import net.funkyjava.gametheory.cscfrm.HUPushFold.PushFoldChancesProducer;
+import net.funkyjava.gametheory.cscfrm.KuhnPoker.KuhnChances;
+
+/**
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public class CSCFRMVectorTest {
+
+  private static final int nbBuckets = 169;
+  private static final double stack = 10;
+
+  static CSCFRMHUVectorEvaluator<PushFoldChances> pushFoldEvaluator() {
+    final double[][] probabilities = new double[nbBuckets][nbBuckets];
+    for (int i = 0; i < nbBuckets; i++) {
+      for (int j = 0; j < nbBuckets; j++) {
+        probabilities[i][j] = 1d / (nbBuckets * nbBuckets);
+      }
+    }
+    return new CSCFRMHUVectorEvaluator<>(probabilities, playersChances -> {
+      final PushFoldChances chances = new PushFoldChances();
+      chances.getPlayersChances()[0][0] = playersChances[0][0];
+      chances.getPlayersChances()[0][1] = playersChances[0][1];
+      return chances;
+    });
+  }
+
+  /**
+   * Compare vectorized CFR+ to chances-sampled CFR+ on HU push or fold
+   */
+  @Test
+  public void testPushFoldVector() {
+    final int nbVectorIterations = 2000;
+    final HUPushFold vectorGame = new HUPushFold(nbBuckets, stack);
+    final CSCFRMData<String, PushFoldChances> vectorData = new CSCFRMData<>(vectorGame);
+    final CSCFRMVectorTrainer<PushFoldChances> vectorTrainer =
+        new CSCFRMVectorTrainer<>(vectorData, pushFoldEvaluator());
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < nbVectorIterations; i++) {
+      vectorTrainer.train();
+    }
+    final long vectorTime = System.currentTimeMillis() - start;
+    final double vectorExploitability = vectorGame.exploitability(vectorData);
+    log.info("Vectorized CFR+ : {} iterations in {}ms, exploitability {}", nbVectorIterations,
+        vectorTime, vectorExploitability);
+
+    // The sampled trainer gets more time than the vectorized one
+    final int nbSampledIterations = 2000000;
+    final HUPushFold sampledGame = new HUPushFold(nbBuckets, stack);
+    final CSCFRMData<String, PushFoldChances> sampledData = new CSCFRMData<>(sampledGame);
+    final long sampledTime = CSCFRMTraining.train(new CSCFRMTrainer<>(sampledData),
+        new PushFoldChancesProducer(0, nbBuckets), nbSampledIterations) / 1000000;
+    final double sampledExploitability = sampledGame.exploitability(sampledData);
+    log.info("Sampled CFR+ : {} iterations in {}ms, exploitability {}", nbSampledIterations,
+        sampledTime, sampledExploitability);
+    assertTrue(vectorExploitability < 1e-3);
+    assertTrue(vectorExploitability < sampledExploitability);
+  }
+
+  /**
+   * Check the vectorized runner mode on Kuhn poker, whose chances are not independent
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testKuhnVectorRunner() throws Exception {
+    final int nbCards = 3;
+    final double[][] probabilities = new double[nbCards][nbCards];
+    for (int i = 0; i < nbCards; i++) {
+      for (int j = 0; j < nbCards; j++) {
+        probabilities[i][j] = i == j ? 0 : 1d / (nbCards * (nbCards - 1));
+      }
+    }
+    final CSCFRMData<String, KuhnChances> data = new CSCFRMData<>(new KuhnPoker());
+    final CSCFRMRunner<KuhnChances> runner =
+        new CSCFRMRunner<>(data, new CSCFRMHUVectorEvaluator<>(probabilities, playersChances -> {
+          final KuhnChances chances = new KuhnChances();
+          chances.getPlayersChances()[0][0] = playersChances[0][0];
+          chances.getPlayersChances()[0][1] = playersChances[0][1];
+          return chances;
+        }));
+    runner.start();
+    Thread.sleep(1000);
+    assertTrue(runner.stopAndAwaitTermination().isEmpty());
+    log.info("Vectorized runner : {} iterations, utility {}", data.getIterations().get(),
+        data.getUtilityAvg()[0]);
+    assertEquals(KuhnPoker.gameValue, data.getUtilityAvg()[0], 1e-3);
+  }
+}
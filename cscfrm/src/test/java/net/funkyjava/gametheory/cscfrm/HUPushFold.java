@@ -0,0 +1,182 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import net.funkyjava.gametheory.extensiveformgame.ActionTreeNode;
+import net.funkyjava.gametheory.extensiveformgame.ActionTreePlayerChoiceTransition;
+import net.funkyjava.gametheory.extensiveformgame.ChancesPayouts;
+import net.funkyjava.gametheory.extensiveformgame.Game;
+import net.funkyjava.gametheory.extensiveformgame.PlayerNode;
+
+/**
+ * Heads-up push or fold preflop game on bucketed hands : the small blind (0.5) pushes or folds, the
+ * big blind (1) calls or folds. Each player's bucket is drawn uniformly and the small blind's
+ * equity grows linearly with the difference between both buckets.
+ *
+ * @author Pierre Mardon
+ *
+ */
+public class HUPushFold implements Game<String, HUPushFold.PushFoldChances> {
+
+  /**
+   * Push or fold chances : one round, each player's bucket
+   */
+  public static class PushFoldChances implements CSCFRMChances {
+
+    private final int[][] playersChances = new int[1][2];
+
+    @Override
+    public int[][] getPlayersChances() {
+      return playersChances;
+    }
+  }
+
+  /**
+   * Push or fold chances producer
+   */
+  public static class PushFoldChancesProducer implements CSCFRMChancesProducer<PushFoldChances> {
+
+    private final Random random;
+    private final int nbBuckets;
+    private final List<PushFoldChances> cache = new LinkedList<>();
+
+    /**
+     * Constructor
+     *
+     * @param seed random seed
+     * @param nbBuckets number of hands buckets
+     */
+    public PushFoldChancesProducer(final long seed, final int nbBuckets) {
+      random = new Random(seed);
+      this.nbBuckets = nbBuckets;
+    }
+
+    @Override
+    public PushFoldChances produceChances() {
+      final PushFoldChances chances = cache.isEmpty() ? new PushFoldChances() : cache.remove(0);
+      final int[] buckets = chances.getPlayersChances()[0];
+      buckets[0] = random.nextInt(nbBuckets);
+      buckets[1] = random.nextInt(nbBuckets);
+      return chances;
+    }
+
+    @Override
+    public void endedUsing(PushFoldChances chances) {
+      cache.add(chances);
+    }
+  }
+
+  private final class Showdown implements ChancesPayouts<PushFoldChances> {
+
+    @Override
+    public double[] getPayouts(final PushFoldChances chances) {
+      final int[] buckets = chances.getPlayersChances()[0];
+      return showdownPayouts[buckets[0]][buckets[1]];
+    }
+  }
+
+  private final int nbBuckets;
+  private final double stack;
+  private final double[][] equity;
+  private final double[][][] showdownPayouts;
+  private final int[][] chancesSizes;
+
+  /**
+   * Constructor
+   *
+   * @param nbBuckets number of hands buckets
+   * @param stack effective stack in big blinds
+   */
+  public HUPushFold(final int nbBuckets, final double stack) {
+    this.nbBuckets = nbBuckets;
+    this.stack = stack;
+    chancesSizes = new int[][] {{nbBuckets, nbBuckets}};
+    equity = new double[nbBuckets][nbBuckets];
+    showdownPayouts = new double[nbBuckets][nbBuckets][];
+    for (int i = 0; i < nbBuckets; i++) {
+      for (int j = 0; j < nbBuckets; j++) {
+        final double eq = equity[i][j] = 0.5 + 0.35 * (i - j) / (nbBuckets - 1);
+        final double sbPayout = stack * (2 * eq - 1);
+        showdownPayouts[i][j] = new double[] {sbPayout, -sbPayout};
+      }
+    }
+  }
+
+  @Override
+  public int[][] roundChancesSizes() {
+    return chancesSizes;
+  }
+
+  @Override
+  public int getNbPlayers() {
+    return 2;
+  }
+
+  @Override
+  public ActionTreeNode<String, PushFoldChances> rootNode() {
+    // Actions are always ordered as fold then push/call
+    return node(0, "", new ActionTreePlayerChoiceTransition<String, PushFoldChances>() {
+      @Override
+      public ActionTreeNode<String, PushFoldChances> nodeForAction(int actionIndex) {
+        if (actionIndex == 0) {
+          return new ActionTreeNode<>(new double[] {-0.5, 0.5});
+        }
+        return node(1, "p", new ActionTreePlayerChoiceTransition<String, PushFoldChances>() {
+          @Override
+          public ActionTreeNode<String, PushFoldChances> nodeForAction(int actionIndex) {
+            if (actionIndex == 0) {
+              return new ActionTreeNode<>(new double[] {1, -1});
+            }
+            return new ActionTreeNode<>(new Showdown());
+          }
+        });
+      }
+    });
+  }
+
+  private static ActionTreeNode<String, PushFoldChances> node(final int player, final String id,
+      final ActionTreePlayerChoiceTransition<String, PushFoldChances> transition) {
+    return new ActionTreeNode<>(new PlayerNode<>(player, 0, 2, id), false, transition);
+  }
+
+  /**
+   * Compute the exploitability of the average strategies : the sum of both players' best response
+   * values, in big blinds per hand.
+   *
+   * @param data CSCFRM data trained on this game
+   * @return the exploitability
+   */
+  public double exploitability(final CSCFRMData<String, PushFoldChances> data) {
+    final int nbBuckets = this.nbBuckets;
+    final double stack = this.stack;
+    final double[][] equity = this.equity;
+    final CSCFRMStore store = data.getStore();
+    final double[] push = new double[nbBuckets];
+    final double[] call = new double[nbBuckets];
+    for (int i = 0; i < nbBuckets; i++) {
+      push[i] = store.node(0, 0, i, 0).getAvgStrategy()[1];
+      call[i] = store.node(0, 1, i, 0).getAvgStrategy()[1];
+    }
+    double sbValue = 0;
+    for (int i = 0; i < nbBuckets; i++) {
+      double pushValue = 0;
+      for (int j = 0; j < nbBuckets; j++) {
+        pushValue += (1 - call[j]) + call[j] * stack * (2 * equity[i][j] - 1);
+      }
+      sbValue += Math.max(-0.5, pushValue / nbBuckets);
+    }
+    double bbValue = 0;
+    for (int j = 0; j < nbBuckets; j++) {
+      double foldValue = 0;
+      double callValue = 0;
+      for (int i = 0; i < nbBuckets; i++) {
+        foldValue += (1 - push[i]) * 0.5 - push[i];
+        callValue += (1 - push[i]) * 0.5 + push[i] * stack * (1 - 2 * equity[i][j]);
+      }
+      bbValue += Math.max(foldValue, callValue) / nbBuckets;
+    }
+    return (sbValue + bbValue) / nbBuckets;
+  }
+}
@@ -0,0 +1,173 @@
+package net.funkyjava.gametheory.cscfrm;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import net.funkyjava.gametheory.extensiveformgame.ActionTreeNode;
+import net.funkyjava.gametheory.extensiveformgame.ActionTreePlayerChoiceTransition;
+import net.funkyjava.gametheory.extensiveformgame.ChancesPayouts;
+import net.funkyjava.gametheory.extensiveformgame.Game;
+import net.funkyjava.gametheory.extensiveformgame.PlayerNode;
+
+/**
+ * Kuhn poker : three cards deck, one card for each of the two players, one bet round with a single
+ * bet allowed. The first player's game value is -1/18. The deck size can be changed to get a bigger
+ * chances space.
+ *
+ * @author Pierre Mardon
+ *
+ */
+public class KuhnPoker implements Game<String, KuhnPoker.KuhnChances> {
+
+  /**
+   * First player's game value at equilibrium for the three cards deck
+   */
+  public static final double gameValue = -1d / 18;
+
+  /**
+   * Kuhn poker chances : one round, each player's card
+   */
+  public static class KuhnChances implements CSCFRMChances {
+
+    private final int[][] playersChances = new int[1][2];
+
+    @Override
+    public int[][] getPlayersChances() {
+      return playersChances;
+    }
+  }
+
+  /**
+   * Kuhn poker chances producer
+   */
+  public static class KuhnChancesProducer implements CSCFRMChancesProducer<KuhnChances> {
+
+    private final Random random;
+    private final int nbCards;
+    private final List<KuhnChances> cache = new LinkedList<>();
+
+    /**
+     * Constructor for a deck of three cards
+     *
+     * @param seed random seed
+     */
+    public KuhnChancesProducer(final long seed) {
+      this(seed, 3);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param seed random seed
+     * @param nbCards number of cards in the deck
+     */
+    public KuhnChancesProducer(final long seed, final int nbCards) {
+      random = new Random(seed);
+      this.nbCards = nbCards;
+    }
+
+    @Override
+    public KuhnChances produceChances() {
+      final KuhnChances chances = cache.isEmpty() ? new KuhnChances() : cache.remove(0);
+      final int[] cards = chances.getPlayersChances()[0];
+      final int nbCards = this.nbCards;
+      cards[0] = random.nextInt(nbCards);
+      cards[1] = (cards[0] + 1 + random.nextInt(nbCards - 1)) % nbCards;
+      return chances;
+    }
+
+    @Override
+    public void endedUsing(KuhnChances chances) {
+      cache.add(chances);
+    }
+  }
+
+  private static final class Showdown implements ChancesPayouts<KuhnChances> {
+
+    private final double[] firstWins;
+    private final double[] secondWins;
+
+    Showdown(final double stake) {
+      firstWins = new double[] {stake, -stake};
+      secondWins = new double[] {-stake, stake};
+    }
+
+    @Override
+    public double[] getPayouts(final KuhnChances chances) {
+      final int[] cards = chances.getPlayersChances()[0];
+      return cards[0] > cards[1] ? firstWins : secondWins;
+    }
+  }
+
+  private final int[][] chancesSizes;
+
+  /**
+   * Constructor for a deck of three cards
+   */
+  public KuhnPoker() {
+    this(3);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param nbCards number of cards in the deck
+   */
+  public KuhnPoker(final int nbCards) {
+    chancesSizes = new int[][] {{nbCards, nbCards}};
+  }
+
+  @Override
+  public int[][] roundChancesSizes() {
+    return chancesSizes;
+  }
+
+  @Override
+  public int getNbPlayers() {
+    return 2;
+  }
+
+  @Override
+  public ActionTreeNode<String, KuhnChances> rootNode() {
+    // Actions are always ordered as check/fold then bet/call
+    return node(0, "", new ActionTreePlayerChoiceTransition<String, KuhnChances>() {
+      @Override
+      public ActionTreeNode<String, KuhnChances> nodeForAction(int actionIndex) {
+        if (actionIndex == 0) {
+          return node(1, "c", new ActionTreePlayerChoiceTransition<String, KuhnChances>() {
+            @Override
+            public ActionTreeNode<String, KuhnChances> nodeForAction(int actionIndex) {
+              if (actionIndex == 0) {
+                return new ActionTreeNode<>(new Showdown(1));
+              }
+              return node(0, "cb", new ActionTreePlayerChoiceTransition<String, KuhnChances>() {
+                @Override
+                public ActionTreeNode<String, KuhnChances> nodeForAction(int actionIndex) {
+                  if (actionIndex == 0) {
+                    return new ActionTreeNode<>(new double[] {-1, 1});
+                  }
+                  return new ActionTreeNode<>(new Showdown(2));
+                }
+              });
+            }
+          });
+        }
+        return node(1, "b", new ActionTreePlayerChoiceTransition<String, KuhnChances>() {
+          @Override
+          public ActionTreeNode<String, KuhnChances> nodeForAction(int actionIndex) {
+            if (actionIndex == 0) {
+              return new ActionTreeNode<>(new double[] {1, -1});
+            }
+            return new ActionTreeNode<>(new Showdown(2));
+          }
+        });
+      }
+    });
+  }
+
+  private static ActionTreeNode<String, KuhnChances> node(final int player, final String id,
+      final ActionTreePlayerChoiceTransition<String, KuhnChances> transition) {
+    return new ActionTreeNode<>(new PlayerNode<>(player, 0, 2, id), false, transition);
+  }
+}
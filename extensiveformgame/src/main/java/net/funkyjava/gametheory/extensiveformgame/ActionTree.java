@@ -7,6 +7,9 @@ import java.util.List;
 
 import org.apache.commons.lang3.mutable.MutableInt;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
 /**
  * An action tree represents the full built tree of a game with all nodes stored as
  * {@link LinkedActionTreeNode}
@@ -144,4 +147,39 @@ public class ActionTree<Id, Chances> {
   public LinkedActionTreeNode<Id, Chances>[][][] getActionNodes() {
     return actionNodes;
   }
+
+  /**
+   * Fingerprint of the tree : a hash of a depth-first walk recording each node's type, the round,
+   * player, number of actions and index of player nodes and the payouts of terminal nodes with no
+   * chance. Two trees with the same fingerprint can share the same CSCFRM data.
+   * 
+   * @return the tree fingerprint
+   */
+  public long fingerprint() {
+    final Hasher hasher = Hashing.murmur3_128().newHasher();
+    fingerprint(root, hasher);
+    return hasher.hash().asLong();
+  }
+
+  private static final void fingerprint(final LinkedActionTreeNode<?, ?> node,
+      final Hasher hasher) {
+    hasher.putInt(node.getNodeType().ordinal());
+    switch (node.getNodeType()) {
+      case PLAYER:
+        final PlayerNode<?> playerNode = node.getPlayerNode();
+        hasher.putInt(playerNode.getRound()).putInt(playerNode.getPlayer())
+            .putInt(playerNode.getNbActions()).putInt(node.getPlayerRoundActionIndex());
+        for (LinkedActionTreeNode<?, ?> child : node.getChildren()) {
+          fingerprint(child, hasher);
+        }
+        break;
+      case PAYOUTS_NO_CHANCE:
+        for (double payout : node.getPayoutsNoChance()) {
+          hasher.putDouble(payout);
+        }
+        break;
+      default:
+        break;
+    }
+  }
 }
@@ -0,0 +1,157 @@
+package net.funkyjava.gametheory.extensiveformgame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+import net.funkyjava.gametheory.extensiveformgame.ActionTreeNodeState.NodeType;
+
+/**
+ * Compiled, struct-of-arrays representation of an {@link ActionTree}. Nodes are numbered in
+ * breadth-first order from the root, which is node 0, so the children of a player node are
+ * contiguous : child a of node n is node {@code firstChildren[n] + a}.
+ *
+ * Player nodes are described by their player, round, number of actions and index among the
+ * player's nodes of the round. Terminal nodes refer through their payout index to
+ * {@link #getPayoutsNoChance()} or {@link #getChancesPayouts()} depending on their type.
+ *
+ * @author Pierre Mardon
+ *
+ * @param <Chances> type of the game chances
+ */
+public class FlatActionTree<Chances> {
+
+  /**
+   * Node type of {@link NodeType#PLAYER} nodes
+   */
+  public static final byte playerType = 0;
+  /**
+   * Node type of {@link NodeType#PAYOUTS_NO_CHANCE} nodes
+   */
+  public static final byte payoutsNoChanceType = 1;
+  /**
+   * Node type of {@link NodeType#CHANCES_PAYOUTS} nodes
+   */
+  public static final byte chancesPayoutsType = 2;
+
+  /**
+   * Number of nodes
+   */
+  @Getter
+  private final int nbNodes;
+  /**
+   * Max depth of the tree in player nodes
+   */
+  @Getter
+  private final int maxDepth;
+  /**
+   * Max number of actions between all player nodes
+   */
+  @Getter
+  private final int maxNbActions;
+  /**
+   * Type of each node
+   */
+  @Getter
+  private final byte[] types;
+  /**
+   * Player of each player node, -1 for terminal nodes
+   */
+  @Getter
+  private final int[] players;
+  /**
+   * Round of each player node, -1 for terminal nodes
+   */
+  @Getter
+  private final int[] rounds;
+  /**
+   * Index of each player node among the nodes of its player for its round, -1 for terminal nodes
+   */
+  @Getter
+  private final int[] actionIndexes;
+  /**
+   * Number of actions of each player node, 0 for terminal nodes
+   */
+  @Getter
+  private final int[] nbActions;
+  /**
+   * Index of the first child of each player node, -1 for terminal nodes
+   */
+  @Getter
+  private final int[] firstChildren;
+  /**
+   * Payout index of each terminal node, -1 for player nodes
+   */
+  @Getter
+  private final int[] payoutIndexes;
+  /**
+   * Constant payouts indexed by payout index
+   */
+  @Getter
+  private final double[][] payoutsNoChance;
+  /**
+   * Chances dependent payouts indexed by payout index
+   */
+  @Getter
+  private final ChancesPayouts<Chances>[] chancesPayouts;
+
+  /**
+   * Compile an action tree
+   *
+   * @param actionTree the action tree
+   */
+  @SuppressWarnings("unchecked")
+  public FlatActionTree(final ActionTree<?, Chances> actionTree) {
+    this.maxDepth = actionTree.getMaxDepth();
+    this.maxNbActions = actionTree.getMaxNbActions();
+    final List<LinkedActionTreeNode<?, Chances>> nodes = new ArrayList<>();
+    nodes.add(actionTree.getRoot());
+    for (int i = 0; i < nodes.size(); i++) {
+      final LinkedActionTreeNode<?, Chances> node = nodes.get(i);
+      if (node.getNodeType() == NodeType.PLAYER) {
+        for (LinkedActionTreeNode<?, Chances> child : node.getChildren()) {
+          nodes.add(child);
+        }
+      }
+    }
+    final int nbNodes = this.nbNodes = nodes.size();
+    final byte[] types = this.types = new byte[nbNodes];
+    final int[] players = this.players = new int[nbNodes];
+    final int[] rounds = this.rounds = new int[nbNodes];
+    final int[] actionIndexes = this.actionIndexes = new int[nbNodes];
+    final int[] nbActions = this.nbActions = new int[nbNodes];
+    final int[] firstChildren = this.firstChildren = new int[nbNodes];
+    final int[] payoutIndexes = this.payoutIndexes = new int[nbNodes];
+    final List<double[]> payoutsNoChance = new ArrayList<>();
+    final List<ChancesPayouts<Chances>> chancesPayouts = new ArrayList<>();
+    int nextChild = 1;
+    for (int i = 0; i < nbNodes; i++) {
+      final LinkedActionTreeNode<?, Chances> node = nodes.get(i);
+      players[i] = rounds[i] = actionIndexes[i] = firstChildren[i] = payoutIndexes[i] = -1;
+      switch (node.getNodeType()) {
+        case PLAYER:
+          final PlayerNode<?> playerNode = node.getPlayerNode();
+          types[i] = playerType;
+          players[i] = playerNode.getPlayer();
+          rounds[i] = playerNode.getRound();
+          actionIndexes[i] = node.getPlayerRoundActionIndex();
+          nbActions[i] = playerNode.getNbActions();
+          firstChildren[i] = nextChild;
+          nextChild += nbActions[i];
+          break;
+        case PAYOUTS_NO_CHANCE:
+          types[i] = payoutsNoChanceType;
+          payoutIndexes[i] = payoutsNoChance.size();
+          payoutsNoChance.add(node.getPayoutsNoChance());
+          break;
+        case CHANCES_PAYOUTS:
+          types[i] = chancesPayoutsType;
+          payoutIndexes[i] = chancesPayouts.size();
+          chancesPayouts.add(node.getChancesPayouts());
+          break;
+      }
+    }
+    this.payoutsNoChance = payoutsNoChance.toArray(new double[payoutsNoChance.size()][]);
+    this.chancesPayouts = chancesPayouts.toArray(new ChancesPayouts[chancesPayouts.size()]);
+  }
+}
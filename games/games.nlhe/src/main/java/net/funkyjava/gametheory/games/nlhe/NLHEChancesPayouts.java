@@ -5,6 +5,7 @@ import static com.google.common.base.Preconditions.checkState;
 import java.util.LinkedList;
 import java.util.List;
 
+import lombok.Getter;
 import net.funkyjava.gametheory.extensiveformgame.ChancesPayouts;
 import net.funkyjava.gametheory.gameutil.poker.bets.NLHand;
 import net.funkyjava.gametheory.gameutil.poker.bets.pots.Pot;
@@ -24,8 +25,20 @@ public class NLHEChancesPayouts<PlayerId, Chances> implements ChancesPayouts<Cha
 
   private final int nbPots;
   private final int nbPlayers;
+  /**
+   * Payouts of each player before sharing the pots
+   */
+  @Getter
   private final double[] basePayouts;
+  /**
+   * For each pot, whether each player takes part in its sharing
+   */
+  @Getter
   private final boolean[][] potsPlayers;
+  /**
+   * Value of each pot
+   */
+  @Getter
   private final double[] pots;
   private final int betRoundIndex;
   private final NLHEEquityProvider<Chances> equityProvider;
@@ -5,7 +5,9 @@ import static com.google.common.base.Preconditions.checkArgument;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.List;
+import java.util.function.UnaryOperator;
 
+import lombok.Setter;
 import net.funkyjava.gametheory.extensiveformgame.ActionTreeNode;
 import net.funkyjava.gametheory.extensiveformgame.ActionTreePlayerChoiceTransition;
 import net.funkyjava.gametheory.extensiveformgame.ChancesPayouts;
@@ -36,6 +38,12 @@ public class NoLimitHoldEm<PlayerId, Chances> implements Game<NLBetTreeNode<Play
   private final NLAbstractedBetTree<PlayerId> betTree;
   private final NLHEEquityProvider<Chances> equityProvider;
   private final int[][] roundChancesSizes;
+  /**
+   * Optional decorator applied to the payouts of each showdown node when the game tree is built,
+   * for example to cache them. Must be set before the action tree is built.
+   */
+  @Setter
+  private UnaryOperator<ChancesPayouts<Chances>> showdownDecorator;
 
   /**
    * Constructor
@@ -138,7 +146,10 @@ public class NoLimitHoldEm<PlayerId, Chances> implements Game<NLBetTreeNode<Play
   }
 
   private final ChancesPayouts<Chances> getChancesPayouts(final NLBetTreeNode<PlayerId> node) {
-    return new NLHEChancesPayouts<>(node.getHand(), equityProvider);
+    final ChancesPayouts<Chances> payouts =
+        new NLHEChancesPayouts<>(node.getHand(), equityProvider);
+    final UnaryOperator<ChancesPayouts<Chances>> showdownDecorator = this.showdownDecorator;
+    return showdownDecorator == null ? payouts : showdownDecorator.apply(payouts);
   }
 
   private static final <PlayerId> PlayerNode<NLBetTreeNode<PlayerId>> getPlayerNode(
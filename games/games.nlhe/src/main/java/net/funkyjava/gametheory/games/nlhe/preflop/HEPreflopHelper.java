@@ -7,6 +7,7 @@ import java.util.Map;
 
 import lombok.extern.slf4j.Slf4j;
 import net.funkyjava.gametheory.cscfrm.CSCFRMData;
+import net.funkyjava.gametheory.cscfrm.CSCFRMHUVectorEvaluator;
 import net.funkyjava.gametheory.cscfrm.CSCFRMNode;
 import net.funkyjava.gametheory.extensiveformgame.LinkedActionTreeNode;
 import net.funkyjava.gametheory.gameutil.cards.IntCardsSpec;
@@ -75,6 +76,143 @@ public class HEPreflopHelper {
     return res;
   }
 
+  private static int[][] allHoleCards(final IntCardsSpec specs) {
+    final int[][] res = new int[52 * 51 / 2][];
+    int index = 0;
+    for (int c1 = 0; c1 < 52; c1++) {
+      for (int c2 = c1 + 1; c2 < 52; c2++) {
+        res[index++] = new int[] {specs.getCard(c1 / 4, c1 % 4), specs.getCard(c2 / 4, c2 % 4)};
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Get the probability of each couple of preflop chances when dealing two players from one deck
+   * 
+   * @param preflopIndexer the hole cards indexer defining the chances
+   * @return the probabilities indexed by the first player's chance then the second player's one
+   */
+  public static double[][] headsUpChancesProbabilities(final CardsGroupsIndexer preflopIndexer) {
+    final IntCardsSpec specs = preflopIndexer.getCardsSpec();
+    final int offset = specs.getOffset();
+    final int[][] holeCards = allHoleCards(specs);
+    final int nbHoleCards = holeCards.length;
+    final int[] chances = new int[nbHoleCards];
+    for (int i = 0; i < nbHoleCards; i++) {
+      chances[i] = preflopIndexer.indexOf(new int[][] {holeCards[i]});
+    }
+    final int nbChances = preflopIndexer.getIndexSize();
+    final double[][] res = new double[nbChances][nbChances];
+    long total = 0;
+    for (int i = 0; i < nbHoleCards; i++) {
+      final long mask = 1L << (holeCards[i][0] - offset) | 1L << (holeCards[i][1] - offset);
+      final double[] row = res[chances[i]];
+      for (int j = 0; j < nbHoleCards; j++) {
+        if ((mask & (1L << (holeCards[j][0] - offset) | 1L << (holeCards[j][1] - offset))) == 0) {
+          row[chances[j]]++;
+          total++;
+        }
+      }
+    }
+    for (double[] row : res) {
+      for (int j = 0; j < nbChances; j++) {
+        row[j] /= total;
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Get the probability of each triple of preflop chances when dealing three players from one
+   * deck. The third player's dealings are counted with inclusion-exclusion on the four cards of the
+   * first two players.
+   * 
+   * @param preflopIndexer the hole cards indexer defining the chances
+   * @return the probabilities, flattened with index (i * nbChances + j) * nbChances + k for the
+   *         players chances i, j and k
+   */
+  public static double[] threePlayersChancesProbabilities(
+      final CardsGroupsIndexer preflopIndexer) {
+    final IntCardsSpec specs = preflopIndexer.getCardsSpec();
+    final int offset = specs.getOffset();
+    final int nbChances = preflopIndexer.getIndexSize();
+    // Chance of each couple of cards, number of hole cards per chance and containing each card
+    final int[][] cardsChance = new int[52][52];
+    final int[] chanceCount = new int[nbChances];
+    final int[][] cardChanceCount = new int[52][nbChances];
+    final int[][] holeCards = allHoleCards(specs);
+    for (int[] cards : holeCards) {
+      final int c1 = cards[0] - offset;
+      final int c2 = cards[1] - offset;
+      final int chance = cardsChance[c1][c2] = cardsChance[c2][c1] =
+          preflopIndexer.indexOf(new int[][] {cards});
+      chanceCount[chance]++;
+      cardChanceCount[c1][chance]++;
+      cardChanceCount[c2][chance]++;
+    }
+    final int nbCouples = nbChances * nbChances;
+    final double[] res = new double[nbCouples * nbChances];
+    final int[] couplesCount = new int[nbCouples];
+    final int[][] couplesCardCount = new int[nbCouples][52];
+    for (int[] cards1 : holeCards) {
+      final int a1 = cards1[0] - offset;
+      final int a2 = cards1[1] - offset;
+      final int chance1 = cardsChance[a1][a2];
+      for (int[] cards2 : holeCards) {
+        final int b1 = cards2[0] - offset;
+        final int b2 = cards2[1] - offset;
+        if (a1 == b1 || a1 == b2 || a2 == b1 || a2 == b2) {
+          continue;
+        }
+        final int couple = chance1 * nbChances + cardsChance[b1][b2];
+        couplesCount[couple]++;
+        final int[] cardCount = couplesCardCount[couple];
+        cardCount[a1]++;
+        cardCount[a2]++;
+        cardCount[b1]++;
+        cardCount[b2]++;
+        // Hole cards made of two of the four cards are subtracted twice below
+        final int coupleOffset = couple * nbChances;
+        res[coupleOffset + chance1]++;
+        res[coupleOffset + cardsChance[b1][b2]]++;
+        res[coupleOffset + cardsChance[a1][b1]]++;
+        res[coupleOffset + cardsChance[a1][b2]]++;
+        res[coupleOffset + cardsChance[a2][b1]]++;
+        res[coupleOffset + cardsChance[a2][b2]]++;
+      }
+    }
+    final double total = (double) holeCards.length * (50 * 49 / 2) * (48 * 47 / 2);
+    for (int couple = 0; couple < nbCouples; couple++) {
+      final int count = couplesCount[couple];
+      if (count == 0) {
+        continue;
+      }
+      final int[] cardCount = couplesCardCount[couple];
+      final int coupleOffset = couple * nbChances;
+      for (int chance = 0; chance < nbChances; chance++) {
+        double nb = res[coupleOffset + chance] + (double) count * chanceCount[chance];
+        for (int card = 0; card < 52; card++) {
+          nb -= (double) cardCount[card] * cardChanceCount[card][chance];
+        }
+        res[coupleOffset + chance] = nb / total;
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Get a vectorized CFR terminal nodes evaluator for heads-up preflop games
+   * 
+   * @param preflopIndexer the hole cards indexer defining the chances
+   * @return the evaluator
+   */
+  public static CSCFRMHUVectorEvaluator<PreflopChances> headsUpVectorEvaluator(
+      final CardsGroupsIndexer preflopIndexer) {
+    return new CSCFRMHUVectorEvaluator<>(headsUpChancesProbabilities(preflopIndexer),
+        PreflopChances::new);
+  }
+
   public static double[][] getMoveStrategy(final int moveIndex, final CSCFRMNode[] chanceNodes,
       CardsGroupsIndexer preflopIndexer) {
     final int[][] indexes = chancesCanonicalCoordinates(preflopIndexer);
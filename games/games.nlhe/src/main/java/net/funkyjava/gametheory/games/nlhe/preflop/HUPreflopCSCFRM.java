@@ -1,6 +1,7 @@
 package net.funkyjava.gametheory.games.nlhe.preflop;
 
 import static net.funkyjava.gametheory.io.ProgramArguments.getArgument;
+import static net.funkyjava.gametheory.io.ProgramArguments.getStrictlyPositiveIntArgument;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -8,18 +9,32 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
 
 import org.apache.poi.ss.usermodel.Workbook;
 
 import com.google.common.base.Optional;
 
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.cscfrm.CSCFRMBestResponse;
+import net.funkyjava.gametheory.cscfrm.CSCFRMBestResponse.Result;
 import net.funkyjava.gametheory.cscfrm.CSCFRMChancesSynchronizer;
+import net.funkyjava.gametheory.cscfrm.CSCFRMCheckpointFormat;
+import net.funkyjava.gametheory.cscfrm.CSCFRMCheckpointFormat.Compression;
+import net.funkyjava.gametheory.cscfrm.CSCFRMCheckpointer;
 import net.funkyjava.gametheory.cscfrm.CSCFRMData;
 import net.funkyjava.gametheory.cscfrm.CSCFRMMutexChancesSynchronizer;
 import net.funkyjava.gametheory.cscfrm.CSCFRMRunner;
@@ -41,8 +56,14 @@ public class HUPreflopCSCFRM {
   private static final String interactiveArg = "-i";
   private static final String handPrefix = "hand=";
   private static final String betTreePathPrefix = "tree=";
+  private static final String vectorArg = "-v";
+  private static final String exploitabilityPrefix = "exploitability=";
+  private static final String metricsPrefix = "metrics=";
+  private static final String checkpointPrefix = "checkpoint=";
+  private static final String mappedPathPrefix = "mapped=";
+  private static final String compressionPrefix = "compression=";
 
-  private static HUPreflopEquityTables getTables(final String path)
+  static HUPreflopEquityTables getTables(final String path)
       throws IOException, ClassNotFoundException {
     try (final FileInputStream fis = new FileInputStream(Paths.get(path).toFile());
         final ObjectInputStream objectInputStream = new ObjectInputStream(fis)) {
@@ -73,21 +94,37 @@ public class HUPreflopCSCFRM {
     final Optional<String> svgOpt = getArgument(args, svgPathPrefix);
     log.info("Creating CSCFRM environment");
     final Optional<String> betTreeOpt = getArgument(args, betTreePathPrefix);
-    HUPreflopCSCFRM cfrmTmp;
-    if (betTreeOpt.isPresent()) {
-      final NLFormalBetTreeAbstractor<Integer> abstractor =
-          NLFormalBetTreeAbstractor.read(betTreeOpt.get());
-      cfrmTmp = new HUPreflopCSCFRM(hand, abstractor, tables, svgOpt.orNull());
+    final boolean vector = getArgument(args, vectorArg).isPresent();
+    if (vector) {
+      log.info("Vectorized CFR+ on all chances");
+    }
+    final NLBetTreeAbstractor<Integer> abstractor = betTreeOpt.isPresent()
+        ? NLFormalBetTreeAbstractor.read(betTreeOpt.get())
+        : new NLPushFoldBetTreeAbstractor<Integer>();
+    final Optional<String> mappedOpt = getArgument(args, mappedPathPrefix);
+    final HUPreflopCSCFRM cfrm;
+    if (mappedOpt.isPresent()) {
+      log.info("Mapping the CSCFRM data on {}", mappedOpt.get());
+      cfrm = new HUPreflopCSCFRM(hand, abstractor, tables, svgOpt.orNull(), vector,
+          mappedOpt.get());
     } else {
-      cfrmTmp = new HUPreflopCSCFRM(hand, tables, svgOpt.orNull());
+      cfrm = new HUPreflopCSCFRM(hand, abstractor, tables, svgOpt.orNull(), vector);
     }
-    final HUPreflopCSCFRM cfrm = cfrmTmp;
     try {
       cfrm.load();
     } catch (IOException e) {
       e.printStackTrace();
       return;
     }
+    final Optional<String> compressionOpt = getArgument(args, compressionPrefix);
+    if (compressionOpt.isPresent()) {
+      cfrm.setCompression(Compression.valueOf(compressionOpt.get().toUpperCase()));
+    }
+    try {
+      cfrm.runner.getMetrics().registerMBean("HUPreflop");
+    } catch (JMException e) {
+      log.warn("Unable to register the training metrics MBean", e);
+    }
     log.info("Adding shutdown hook to save the data on gentle kill");
     Runtime.getRuntime().addShutdownHook(new Thread(() -> {
       log.info("Shutting down");
@@ -113,6 +150,21 @@ public class HUPreflopCSCFRM {
     } else {
       log.info("Non-Interactive mode, running CSCFRM");
       cfrm.runner.start();
+      final Optional<Integer> checkpointOpt =
+          getStrictlyPositiveIntArgument(args, checkpointPrefix);
+      if (checkpointOpt.isPresent() && svgOpt.isPresent()) {
+        log.info("Writing checkpoints every {} minutes", checkpointOpt.get());
+        cfrm.getCheckpointer().startPeriodic(checkpointOpt.get(), TimeUnit.MINUTES);
+      }
+      final Optional<Integer> metricsOpt = getStrictlyPositiveIntArgument(args, metricsPrefix);
+      if (metricsOpt.isPresent()) {
+        cfrm.runner.getMetrics().startLogging(metricsOpt.get(), TimeUnit.SECONDS);
+      }
+      final Optional<Integer> exploitabilityOpt =
+          getStrictlyPositiveIntArgument(args, exploitabilityPrefix);
+      if (exploitabilityOpt.isPresent()) {
+        scheduleExploitability(cfrm, exploitabilityOpt.get());
+      }
       try {
         log.info(
             "Trying to read on standard input. Failure will let run, on success hitting Enter will stop and save.");
@@ -124,12 +176,28 @@ public class HUPreflopCSCFRM {
     }
   }
 
+  private static final void scheduleExploitability(final HUPreflopCSCFRM cfrm, final int minutes) {
+    log.info("Logging the exploitability every {} minutes", minutes);
+    final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      final Thread thread = new Thread(r, "exploitability");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(() -> {
+      try {
+        cfrm.logExploitability();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }, minutes, minutes, TimeUnit.MINUTES);
+  }
+
   private static final void interactive(final HUPreflopCSCFRM cscfrm)
       throws InterruptedException, IOException {
     try (final Scanner scan = new Scanner(System.in);) {
       while (true) {
-        log.info(
-            "Enter one of those commands : run | stop | print | exit | write /path/to/File.xlsx");
+        log.info("Enter one of those commands : run | stop | print | exploitability | exit | "
+            + "write /path/to/File.xlsx");
         final String line = scan.nextLine();
         switch (line) {
           case "run":
@@ -154,6 +222,9 @@ public class HUPreflopCSCFRM {
             }
             cscfrm.printStrategies();
             break;
+          case "exploitability":
+            cscfrm.logExploitability();
+            break;
           case "exit":
             System.exit(0);
             return;
@@ -186,23 +257,67 @@ public class HUPreflopCSCFRM {
   @Getter
   private final CSCFRMRunner<PreflopChances> runner;
   private final String svgPath;
+  private final boolean mapped;
+  private CSCFRMBestResponse<PreflopChances> bestResponse;
+  private CSCFRMCheckpointer checkpointer;
+  @Setter
+  private Compression compression = Compression.NONE;
 
   public HUPreflopCSCFRM(final NLHand<Integer> hand,
       final NLBetTreeAbstractor<Integer> betTreeAbstractor, final HUPreflopEquityTables tables,
       final String svgPath) {
-    this.tables = tables;
-    this.svgPath = svgPath;
+    this(hand, betTreeAbstractor, tables, svgPath, false);
+  }
+
+  public HUPreflopCSCFRM(final NLHand<Integer> hand,
+      final NLBetTreeAbstractor<Integer> betTreeAbstractor, final HUPreflopEquityTables tables,
+      final String svgPath, final boolean vector) {
+    this(tables, new CSCFRMData<>(createGame(hand, betTreeAbstractor, tables)), svgPath, vector,
+        false);
+  }
+
+  /**
+   * Constructor mapping the CSCFRM data on a file. An existing file is resumed from its last forced
+   * state and {@link #save()} forces the mapped values to the disk.
+   */
+  public HUPreflopCSCFRM(final NLHand<Integer> hand,
+      final NLBetTreeAbstractor<Integer> betTreeAbstractor, final HUPreflopEquityTables tables,
+      final String svgPath, final boolean vector, final String mappedPath) throws IOException {
+    this(tables, new CSCFRMData<>(createGame(hand, betTreeAbstractor, tables),
+        Paths.get(mappedPath)), svgPath, vector, true);
+  }
+
+  private static NoLimitHoldEm<Integer, PreflopChances> createGame(final NLHand<Integer> hand,
+      final NLBetTreeAbstractor<Integer> betTreeAbstractor, final HUPreflopEquityTables tables) {
     final NLHEHUPreflopEquityProvider equityProvider = new NLHEHUPreflopEquityProvider(tables);
     final NLAbstractedBetTree<Integer> tree =
         new NLAbstractedBetTree<>(hand, betTreeAbstractor, true);
     final NoLimitHoldEm<Integer, PreflopChances> game =
         new NoLimitHoldEm<>(tree, new int[] {169}, equityProvider);
-    final NLHEPreflopChancesProducer chancesProducer = new NLHEPreflopChancesProducer(2);
+    // 169^2 payouts per showdown node are cheap enough to be all computed upfront
+    game.setShowdownDecorator(PreflopShowdownPayouts.decorator(2, true));
+    return game;
+  }
+
+  private HUPreflopCSCFRM(final HUPreflopEquityTables tables,
+      final CSCFRMData<NLBetTreeNode<Integer>, PreflopChances> data, final String svgPath,
+      final boolean vector, final boolean mapped) {
+    this.tables = tables;
+    this.svgPath = svgPath;
+    this.mapped = mapped;
+    this.data = data;
+    if (vector) {
+      this.runner = new CSCFRMRunner<>(data,
+          HEPreflopHelper.headsUpVectorEvaluator(tables.getHoleCardsIndexer()));
+      return;
+    }
+    final PreflopChancesSampler sampler =
+        new PreflopChancesSampler(tables.getHoleCardsIndexer(), 2);
+    final NLHEPreflopSampledChancesProducer chancesProducer =
+        new NLHEPreflopSampledChancesProducer(sampler);
     final int[][] chancesSizes = new int[][] {{169, 169}};
     final CSCFRMChancesSynchronizer<PreflopChances> synchronizer =
         new CSCFRMMutexChancesSynchronizer<>(chancesProducer, chancesSizes);
-    final CSCFRMData<NLBetTreeNode<Integer>, PreflopChances> data =
-        this.data = new CSCFRMData<>(game);
     final int nbTrainerThreads = Math.max(Runtime.getRuntime().availableProcessors(), 1);
     this.runner = new CSCFRMRunner<>(data, synchronizer, nbTrainerThreads);
   }
@@ -213,6 +328,10 @@ public class HUPreflopCSCFRM {
   }
 
   public void load() throws IOException {
+    if (mapped) {
+      log.info("Resuming mapped data at {} iterations", data.getIterations().get());
+      return;
+    }
     if (svgPath == null) {
       log.warn("No svg path provided, not loading");
       return;
@@ -222,34 +341,47 @@ public class HUPreflopCSCFRM {
       log.warn("No file at path {}, may be initial run", svgPath);
       return;
     }
-    try (final FileInputStream fis = new FileInputStream(file)) {
-      data.fill(fis);
+    final boolean checkpoint = CSCFRMCheckpointFormat.isCheckpoint(file.toPath());
+    try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      if (checkpoint) {
+        new CSCFRMCheckpointFormat(data, compression).fill(channel);
+      } else {
+        log.info("Loading raw data written before checkpoint containers");
+        data.fill(channel);
+      }
     } catch (IOException e) {
       log.error("Failed to load file at path {}", svgPath);
       throw e;
     }
   }
 
-  public void save() throws IOException {
-    if (svgPath == null) {
-      log.warn("No svg path provided, not saving");
-      return;
+  private synchronized CSCFRMCheckpointer getCheckpointer() {
+    if (checkpointer == null) {
+      checkpointer = new CSCFRMCheckpointer(runner, Paths.get(svgPath), compression);
     }
-    final File file = Paths.get(svgPath).toFile();
-    if (file.exists()) {
-      if (!file.delete()) {
-        log.error("Failed to delete file at path {}, cannot save", svgPath);
-        return;
+    return checkpointer;
+  }
+
+  public void save() throws IOException, InterruptedException {
+    if (mapped) {
+      data.force();
+      log.info("Mapped data forced at {} iterations", data.getIterations().get());
+    }
+    if (svgPath == null) {
+      if (!mapped) {
+        log.warn("No svg path provided, not saving");
       }
+      return;
     }
-    try (final FileOutputStream fos = new FileOutputStream(file)) {
-      data.write(fos);
+    try {
+      getCheckpointer().checkpoint();
     } catch (IOException e) {
       log.error("Failed to save file at path {}", svgPath);
       throw e;
     }
   }
 
+
   private static Map<Integer, String> getPlayersNames() {
     final Map<Integer, String> playersNames = new HashMap<>();
     playersNames.put(0, "SB");
@@ -277,4 +409,23 @@ public class HUPreflopCSCFRM {
     }
   }
 
+  /**
+   * Compute and log the exploitability of a snapshot of the average strategies. Training is paused
+   * during the snapshot copy only.
+   *
+   * @throws InterruptedException
+   */
+  public synchronized void logExploitability() throws InterruptedException {
+    if (bestResponse == null) {
+      bestResponse = new CSCFRMBestResponse<>(data,
+          HEPreflopHelper.headsUpVectorEvaluator(tables.getHoleCardsIndexer()));
+    }
+    final long start = System.currentTimeMillis();
+    final Result result = bestResponse.compute(runner.snapshot());
+    log.info("Exploitability after {} iterations : {}, best responses {}, profile {}, in {}ms",
+        result.getIterations(), result.getExploitability(),
+        Arrays.toString(result.getBestResponseValues()),
+        Arrays.toString(result.getProfileValues()), System.currentTimeMillis() - start);
+  }
+
 }
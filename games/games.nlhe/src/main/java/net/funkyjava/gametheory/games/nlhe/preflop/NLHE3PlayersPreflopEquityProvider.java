@@ -12,18 +12,22 @@ public class NLHE3PlayersPreflopEquityProvider implements NLHEEquityProvider<Pre
     this.table = table;
   }
 
-  @Override
-  public double[] getEquity(final int betRoundIndex, final PreflopChances chances,
-      boolean[] playersToConsider) {
-    int index = ThreePlayersPreflopEquityTable.heroVilain1Vilain2Index;
+  static int equityIndex(final boolean[] playersToConsider) {
     if (!playersToConsider[0]) {
-      index = ThreePlayersPreflopEquityTable.vilain1Vilain2Index;
+      return ThreePlayersPreflopEquityTable.vilain1Vilain2Index;
     } else if (!playersToConsider[1]) {
-      index = ThreePlayersPreflopEquityTable.heroVilain2Index;
+      return ThreePlayersPreflopEquityTable.heroVilain2Index;
     } else if (!playersToConsider[2]) {
-      index = ThreePlayersPreflopEquityTable.heroVilain1Index;
+      return ThreePlayersPreflopEquityTable.heroVilain1Index;
     }
+    return ThreePlayersPreflopEquityTable.heroVilain1Vilain2Index;
+  }
+
+  @Override
+  public double[] getEquity(final int betRoundIndex, final PreflopChances chances,
+      boolean[] playersToConsider) {
     final int[] pChances = chances.getPlayersChances()[0];
+    final int index = equityIndex(playersToConsider);
     return table.getEquities(pChances[0], pChances[1], pChances[2])[index];
   }
 
@@ -0,0 +1,244 @@
+package net.funkyjava.gametheory.games.nlhe.preflop;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.funkyjava.gametheory.cscfrm.CSCFRMVectorEvaluator;
+import net.funkyjava.gametheory.extensiveformgame.ChancesPayouts;
+import net.funkyjava.gametheory.extensiveformgame.LinkedActionTreeNode;
+import net.funkyjava.gametheory.games.nlhe.NLHEChancesPayouts;
+import net.funkyjava.gametheory.gameutil.poker.he.evaluators.ThreePlayersPreflopReducedEquityTable;
+
+/**
+ * Vectorized CFR terminal nodes evaluator for three players preflop games. Each evaluation is one
+ * dense pass over all chances triples, weighted by their probability when dealing from one deck.
+ * The equity indexes of each showdown node's pots are computed on its first evaluation and cached.
+ * 
+ * @author Pierre Mardon
+ *
+ */
+public class NLHE3PlayersPreflopVectorEvaluator implements CSCFRMVectorEvaluator<PreflopChances> {
+
+  private final int nbChances;
+  private final double[] probabilities;
+  private final double[][][][][] equities;
+  private final double[] ones;
+  private final Map<NLHEChancesPayouts<?, PreflopChances>, int[]> equityIndexes =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Constructor
+   * 
+   * @param table the expanded three players preflop equity table
+   */
+  public NLHE3PlayersPreflopVectorEvaluator(final ThreePlayersPreflopReducedEquityTable table) {
+    checkArgument(table.isExpanded(), "The equity table must be expanded");
+    this.nbChances = table.getNbHoleCards();
+    this.probabilities =
+        HEPreflopHelper.threePlayersChancesProbabilities(table.getHoleCardsIndexer());
+    this.equities = table.getReducedEquities();
+    final double[] ones = this.ones = new double[nbChances];
+    Arrays.fill(ones, 1);
+  }
+
+  private final int[] equityIndexes(final NLHEChancesPayouts<?, PreflopChances> payouts) {
+    final int[] cached = equityIndexes.get(payouts);
+    if (cached != null) {
+      return cached;
+    }
+    final boolean[][] potsPlayers = payouts.getPotsPlayers();
+    final int nbPots = potsPlayers.length;
+    final int[] res = new int[nbPots];
+    for (int pot = 0; pot < nbPots; pot++) {
+      res[pot] = NLHE3PlayersPreflopEquityProvider.equityIndex(potsPlayers[pot]);
+    }
+    final int[] previous = equityIndexes.putIfAbsent(payouts, res);
+    return previous == null ? res : previous;
+  }
+
+  @Override
+  public void evaluate(final LinkedActionTreeNode<?, PreflopChances> node, final double[][] reach,
+      final double[][] utilities) {
+    switch (node.getNodeType()) {
+      case PAYOUTS_NO_CHANCE:
+        evaluate(node.getPayoutsNoChance(), reach, utilities);
+        return;
+      case CHANCES_PAYOUTS:
+        final ChancesPayouts<PreflopChances> payouts = node.getChancesPayouts();
+        checkArgument(payouts instanceof NLHEChancesPayouts,
+            "Can only evaluate NLHE showdown payouts");
+        evaluate((NLHEChancesPayouts<?, PreflopChances>) payouts, reach, utilities);
+        return;
+      default:
+        throw new IllegalArgumentException("Can only evaluate terminal nodes");
+    }
+  }
+
+  @Override
+  public void evaluate(final LinkedActionTreeNode<?, PreflopChances> node, final double[][] reach,
+      final int player, final int fromChance, final int toChance, final double[] utilities) {
+    final double[] payouts;
+    final NLHEChancesPayouts<?, PreflopChances> chancesPayouts;
+    switch (node.getNodeType()) {
+      case PAYOUTS_NO_CHANCE:
+        payouts = node.getPayoutsNoChance();
+        chancesPayouts = null;
+        break;
+      case CHANCES_PAYOUTS:
+        final ChancesPayouts<PreflopChances> nodePayouts = node.getChancesPayouts();
+        checkArgument(nodePayouts instanceof NLHEChancesPayouts,
+            "Can only evaluate NLHE showdown payouts");
+        payouts = null;
+        chancesPayouts = (NLHEChancesPayouts<?, PreflopChances>) nodePayouts;
+        break;
+      default:
+        throw new IllegalArgumentException("Can only evaluate terminal nodes");
+    }
+    final int nbChances = this.nbChances;
+    final double[] probabilities = this.probabilities;
+    final double[][][][][] equities = this.equities;
+    final double[] basePayouts = chancesPayouts == null ? null : chancesPayouts.getBasePayouts();
+    final double[] pots = chancesPayouts == null ? null : chancesPayouts.getPots();
+    final int nbPots = pots == null ? 0 : pots.length;
+    final int[] equityIndexes = chancesPayouts == null ? null : equityIndexes(chancesPayouts);
+    // Only the player's dimension is restricted, its reach is replaced by one
+    final int[] from = new int[3];
+    final int[] to = {nbChances, nbChances, nbChances};
+    from[player] = fromChance;
+    to[player] = toChance;
+    final double[] ones = this.ones;
+    final double[] reach0 = player == 0 ? ones : reach[0];
+    final double[] reach1 = player == 1 ? ones : reach[1];
+    final double[] reach2 = player == 2 ? ones : reach[2];
+    Arrays.fill(utilities, 0, toChance - fromChance, 0);
+    final int[] chances = new int[3];
+    for (int i = from[0]; i < to[0]; i++) {
+      final double r0 = reach0[i];
+      if (r0 == 0) {
+        continue;
+      }
+      chances[0] = i;
+      for (int j = from[1]; j < to[1]; j++) {
+        final double r01 = r0 * reach1[j];
+        if (r01 == 0) {
+          continue;
+        }
+        chances[1] = j;
+        int index = (i * nbChances + j) * nbChances + from[2];
+        for (int k = from[2]; k < to[2]; k++) {
+          final double weight = probabilities[index++] * r01 * reach2[k];
+          if (weight == 0) {
+            continue;
+          }
+          chances[2] = k;
+          double payout;
+          if (payouts != null) {
+            payout = payouts[player];
+          } else {
+            payout = basePayouts[player];
+            final double[][] equitiesIJK = equities[i][j][k];
+            for (int pot = 0; pot < nbPots; pot++) {
+              payout += pots[pot] * equitiesIJK[equityIndexes[pot]][player];
+            }
+          }
+          utilities[chances[player] - fromChance] += weight * payout;
+        }
+      }
+    }
+  }
+
+  private final void evaluate(final double[] payouts, final double[][] reach,
+      final double[][] utilities) {
+    final int nbChances = this.nbChances;
+    final double[] probabilities = this.probabilities;
+    final double[] reach0 = reach[0], reach1 = reach[1], reach2 = reach[2];
+    final double[] util0 = utilities[0], util1 = utilities[1], util2 = utilities[2];
+    Arrays.fill(util1, 0);
+    Arrays.fill(util2, 0);
+    int index = 0;
+    for (int i = 0; i < nbChances; i++) {
+      final double r0 = reach0[i];
+      double sum0 = 0;
+      for (int j = 0; j < nbChances; j++) {
+        final double r1 = reach1[j];
+        if (r0 == 0 && r1 == 0) {
+          index += nbChances;
+          continue;
+        }
+        final double r01 = r0 * r1;
+        double sum1 = 0;
+        for (int k = 0; k < nbChances; k++) {
+          final double probability = probabilities[index++];
+          final double r2 = reach2[k];
+          sum0 += probability * r1 * r2;
+          sum1 += probability * r2;
+          util2[k] += probability * r01;
+        }
+        util1[j] += r0 * sum1;
+      }
+      util0[i] = payouts[0] * sum0;
+    }
+    for (int j = 0; j < nbChances; j++) {
+      util1[j] *= payouts[1];
+    }
+    for (int k = 0; k < nbChances; k++) {
+      util2[k] *= payouts[2];
+    }
+  }
+
+  private final void evaluate(final NLHEChancesPayouts<?, PreflopChances> payouts,
+      final double[][] reach, final double[][] utilities) {
+    final int nbChances = this.nbChances;
+    final double[] probabilities = this.probabilities;
+    final double[][][][][] equities = this.equities;
+    final double[] basePayouts = payouts.getBasePayouts();
+    final double base0 = basePayouts[0], base1 = basePayouts[1], base2 = basePayouts[2];
+    final double[] pots = payouts.getPots();
+    final int nbPots = pots.length;
+    final int[] equityIndexes = equityIndexes(payouts);
+    final double[] reach0 = reach[0], reach1 = reach[1], reach2 = reach[2];
+    final double[] util0 = utilities[0], util1 = utilities[1], util2 = utilities[2];
+    Arrays.fill(util1, 0);
+    Arrays.fill(util2, 0);
+    int index = 0;
+    for (int i = 0; i < nbChances; i++) {
+      final double r0 = reach0[i];
+      final double[][][][] equitiesI = equities[i];
+      double sum0 = 0;
+      for (int j = 0; j < nbChances; j++) {
+        final double r1 = reach1[j];
+        if (r0 == 0 && r1 == 0) {
+          index += nbChances;
+          continue;
+        }
+        final double r01 = r0 * r1;
+        final double[][][] equitiesIJ = equitiesI[j];
+        double sum1 = 0;
+        for (int k = 0; k < nbChances; k++) {
+          final double probability = probabilities[index++];
+          if (probability == 0) {
+            continue;
+          }
+          final double[][] equitiesIJK = equitiesIJ[k];
+          double payout0 = base0, payout1 = base1, payout2 = base2;
+          for (int pot = 0; pot < nbPots; pot++) {
+            final double[] equity = equitiesIJK[equityIndexes[pot]];
+            final double value = pots[pot];
+            payout0 += value * equity[0];
+            payout1 += value * equity[1];
+            payout2 += value * equity[2];
+          }
+          final double r2 = reach2[k];
+          sum0 += probability * r1 * r2 * payout0;
+          sum1 += probability * r2 * payout1;
+          util2[k] += probability * r01 * payout2;
+        }
+        util1[j] += r0 * sum1;
+      }
+      util0[i] = sum0;
+    }
+  }
+}
@@ -3,6 +3,8 @@ package net.funkyjava.gametheory.games.nlhe.preflop;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.apache.commons.math3.random.RandomGenerator;
+
 import net.funkyjava.gametheory.cscfrm.CSCFRMChancesProducer;
 import net.funkyjava.gametheory.gameutil.cards.Deck52Cards;
 import net.funkyjava.gametheory.gameutil.poker.he.indexing.waugh.WaughIndexer;
@@ -25,6 +27,11 @@ public class NLHEPreflopChancesProducer implements CSCFRMChancesProducer<Preflop
     }
   }
 
+  public NLHEPreflopChancesProducer(final int nbPlayers, final RandomGenerator random) {
+    this(nbPlayers);
+    deck.setRandom(random);
+  }
+
   @Override
   public PreflopChances produceChances() {
     final int[][] allCards = this.allCards;
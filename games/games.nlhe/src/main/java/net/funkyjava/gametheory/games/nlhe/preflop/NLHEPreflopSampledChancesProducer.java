@@ -0,0 +1,63 @@
+package net.funkyjava.gametheory.games.nlhe.preflop;
+
+import java.util.ArrayDeque;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+import lombok.NonNull;
+import net.funkyjava.gametheory.cscfrm.CSCFRMChancesProducer;
+import net.funkyjava.gametheory.gameutil.cards.random.Xoshiro256PlusPlus;
+
+/**
+ * Preflop chances producer drawing the players hole cards indexes from a
+ * {@link PreflopChancesSampler}, with the same distribution as a {@link NLHEPreflopChancesProducer}
+ * but without dealing cards. Released chances are reused, so producing doesn't allocate.
+ *
+ * Not thread safe.
+ *
+ * @author Pierre Mardon
+ *
+ */
+public class NLHEPreflopSampledChancesProducer implements CSCFRMChancesProducer<PreflopChances> {
+
+  private final PreflopChancesSampler sampler;
+  private final RandomGenerator random;
+  private final ArrayDeque<PreflopChances> chancesCache = new ArrayDeque<>();
+
+  /**
+   * Constructor with a {@link Xoshiro256PlusPlus} random generator
+   *
+   * @param sampler the chances sampler
+   */
+  public NLHEPreflopSampledChancesProducer(final PreflopChancesSampler sampler) {
+    this(sampler, new Xoshiro256PlusPlus());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param sampler the chances sampler
+   * @param random the random generator
+   */
+  public NLHEPreflopSampledChancesProducer(@NonNull final PreflopChancesSampler sampler,
+      @NonNull final RandomGenerator random) {
+    this.sampler = sampler;
+    this.random = random;
+  }
+
+  @Override
+  public PreflopChances produceChances() {
+    PreflopChances chances = chancesCache.pollFirst();
+    if (chances == null) {
+      chances = new PreflopChances(new int[1][sampler.getNbPlayers()]);
+    }
+    sampler.sample(random, chances.getPlayersChances()[0]);
+    return chances;
+  }
+
+  @Override
+  public void endedUsing(final PreflopChances chances) {
+    chancesCache.addFirst(chances);
+  }
+
+}
@@ -0,0 +1,139 @@
+package net.funkyjava.gametheory.games.nlhe.preflop;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+import lombok.Getter;
+import net.funkyjava.gametheory.gameutil.cards.indexing.CardsGroupsIndexer;
+
+/**
+ * Draws the preflop chances of all players at once from the joint distribution of their hole cards
+ * indexes, with card removal, without dealing cards nor indexing them. The distribution is the one
+ * of {@link HEPreflopHelper#headsUpChancesProbabilities(CardsGroupsIndexer)} or
+ * {@link HEPreflopHelper#threePlayersChancesProbabilities(CardsGroupsIndexer)}.
+ *
+ * Tuples are drawn with Walker's alias method : one random int picks a column of the alias table,
+ * another one decides between the column's tuple and its alias.
+ *
+ * Immutable, so it can be shared by threads that each provide their random generator.
+ *
+ * @author Pierre Mardon
+ *
+ */
+public class PreflopChancesSampler {
+
+  @Getter
+  private final int nbPlayers;
+  @Getter
+  private final int nbChances;
+  private final int nbTuples;
+  /** A column keeps its tuple when a random int's 31 low bits are lower than its threshold */
+  private final int[] thresholds;
+  private final int[] aliases;
+
+  /**
+   * Constructor for two or three players
+   *
+   * @param preflopIndexer the hole cards indexer defining the chances
+   * @param nbPlayers the number of players
+   */
+  public PreflopChancesSampler(final CardsGroupsIndexer preflopIndexer, final int nbPlayers) {
+    this(probabilities(preflopIndexer, nbPlayers), preflopIndexer.getIndexSize(), nbPlayers);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param probabilities the probability of each tuple of chances, flattened so that the first
+   *        player's chance varies the slowest
+   * @param nbChances the number of chances of each player
+   * @param nbPlayers the number of players
+   */
+  public PreflopChancesSampler(final double[] probabilities, final int nbChances,
+      final int nbPlayers) {
+    checkArgument(nbChances > 0 && nbPlayers > 0, "Invalid number of chances or players");
+    checkArgument(probabilities.length == (int) Math.pow(nbChances, nbPlayers),
+        "Expected nbChances^nbPlayers probabilities");
+    this.nbPlayers = nbPlayers;
+    this.nbChances = nbChances;
+    final int nbTuples = this.nbTuples = probabilities.length;
+    final int[] thresholds = this.thresholds = new int[nbTuples];
+    final int[] aliases = this.aliases = new int[nbTuples];
+    double total = 0;
+    for (int i = 0; i < nbTuples; i++) {
+      checkArgument(probabilities[i] >= 0, "Negative probability");
+      total += probabilities[i];
+    }
+    checkArgument(total > 0, "No tuple can be drawn");
+    // Vose's construction : each column is filled by one small tuple and one large alias
+    final double[] scaled = new double[nbTuples];
+    final int[] small = new int[nbTuples];
+    final int[] large = new int[nbTuples];
+    int nbSmall = 0;
+    int nbLarge = 0;
+    for (int i = 0; i < nbTuples; i++) {
+      if ((scaled[i] = probabilities[i] * nbTuples / total) < 1) {
+        small[nbSmall++] = i;
+      } else {
+        large[nbLarge++] = i;
+      }
+    }
+    while (nbSmall > 0 && nbLarge > 0) {
+      final int s = small[--nbSmall];
+      final int l = large[--nbLarge];
+      thresholds[s] = (int) Math.min(Math.round(scaled[s] * 0x1p31), Integer.MAX_VALUE);
+      aliases[s] = l;
+      if ((scaled[l] = (scaled[l] + scaled[s]) - 1) < 1) {
+        small[nbSmall++] = l;
+      } else {
+        large[nbLarge++] = l;
+      }
+    }
+    // Full columns, and the ones left over by rounding errors, are their own alias
+    while (nbLarge > 0) {
+      final int l = large[--nbLarge];
+      thresholds[l] = Integer.MAX_VALUE;
+      aliases[l] = l;
+    }
+    while (nbSmall > 0) {
+      final int s = small[--nbSmall];
+      thresholds[s] = Integer.MAX_VALUE;
+      aliases[s] = s;
+    }
+  }
+
+  private static double[] probabilities(final CardsGroupsIndexer preflopIndexer,
+      final int nbPlayers) {
+    switch (nbPlayers) {
+      case 2:
+        final double[][] matrix = HEPreflopHelper.headsUpChancesProbabilities(preflopIndexer);
+        final int nbChances = matrix.length;
+        final double[] res = new double[nbChances * nbChances];
+        for (int i = 0; i < nbChances; i++) {
+          System.arraycopy(matrix[i], 0, res, i * nbChances, nbChances);
+        }
+        return res;
+      case 3:
+        return HEPreflopHelper.threePlayersChancesProbabilities(preflopIndexer);
+      default:
+        throw new IllegalArgumentException("Only two or three players are supported");
+    }
+  }
+
+  /**
+   * Draw the chances of all players
+   *
+   * @param random the random generator
+   * @param chances destination of each player's chance
+   */
+  public void sample(final RandomGenerator random, final int[] chances) {
+    final int column = random.nextInt(nbTuples);
+    int tuple = (random.nextInt() >>> 1) < thresholds[column] ? column : aliases[column];
+    final int nbChances = this.nbChances;
+    for (int player = nbPlayers - 1; player >= 0; player--) {
+      chances[player] = tuple % nbChances;
+      tuple /= nbChances;
+    }
+  }
+}
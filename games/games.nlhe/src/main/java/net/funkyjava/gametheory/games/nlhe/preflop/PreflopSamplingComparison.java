@@ -0,0 +1,125 @@
+package net.funkyjava.gametheory.games.nlhe.preflop;
+
+import static net.funkyjava.gametheory.io.ProgramArguments.getArgument;
+import static net.funkyjava.gametheory.io.ProgramArguments.getStrictlyPositiveIntArgument;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.base.Optional;
+
+import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.cscfrm.CSCFRMData;
+import net.funkyjava.gametheory.cscfrm.CSCFRMNode;
+import net.funkyjava.gametheory.cscfrm.CSCFRMRunner;
+import net.funkyjava.gametheory.cscfrm.CSCFRMSampling;
+import net.funkyjava.gametheory.gameutil.poker.bets.NLHand;
+import net.funkyjava.gametheory.gameutil.poker.bets.NLHandParser;
+import net.funkyjava.gametheory.gameutil.poker.bets.tree.NLBetTreeAbstractor;
+import net.funkyjava.gametheory.gameutil.poker.bets.tree.NLBetTreeNode;
+import net.funkyjava.gametheory.gameutil.poker.bets.tree.NLFormalBetTreeAbstractor;
+import net.funkyjava.gametheory.gameutil.poker.bets.tree.NLPushFoldBetTreeAbstractor;
+import net.funkyjava.gametheory.gameutil.poker.he.evaluators.HUPreflopEquityTables;
+
+/**
+ * Throughput and convergence comparison of the CSCFRM sampling schemes and of vectorized CFR+ on
+ * the HU preflop game. Each one trains a fresh {@link HUPreflopCSCFRM} for the same duration. The
+ * iterations rate is logged, and the average strategies are compared to the ones of the first
+ * scheme, the chances-sampled trainer, with the mean L1 distance over all information sets. A
+ * vectorized iteration walks all chances.
+ *
+ * Arguments : equity=/path/to/tables hand=hand_settings [tree=/path/to/bet/tree] [time=seconds]
+ *
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public class PreflopSamplingComparison {
+
+  private static final String equityPathPrefix = "equity=";
+  private static final String handPrefix = "hand=";
+  private static final String betTreePathPrefix = "tree=";
+  private static final String timePrefix = "time=";
+  private static final int defaultTime = 60;
+
+  private PreflopSamplingComparison() {}
+
+  public static void main(String[] args) throws Exception {
+    final Optional<String> handOpt = getArgument(args, handPrefix);
+    if (!handOpt.isPresent()) {
+      log.error("Unable to parse hand settings");
+      return;
+    }
+    final NLHand<Integer> hand = NLHandParser.parse(handOpt.get(), 1);
+    final Optional<String> eqOpt = getArgument(args, equityPathPrefix);
+    if (!eqOpt.isPresent()) {
+      return;
+    }
+    log.info("Loading equity tables");
+    final HUPreflopEquityTables tables = HUPreflopCSCFRM.getTables(eqOpt.get());
+    final Optional<String> betTreeOpt = getArgument(args, betTreePathPrefix);
+    final NLBetTreeAbstractor<Integer> abstractor =
+        betTreeOpt.isPresent() ? NLFormalBetTreeAbstractor.<Integer>read(betTreeOpt.get())
+            : new NLPushFoldBetTreeAbstractor<Integer>();
+    final int time = getStrictlyPositiveIntArgument(args, timePrefix).or(defaultTime);
+    final List<CSCFRMNode[]> reference = new ArrayList<>();
+    for (CSCFRMSampling sampling : CSCFRMSampling.values()) {
+      final HUPreflopCSCFRM cfrm = new HUPreflopCSCFRM(hand, abstractor, tables, null);
+      cfrm.getRunner().setSampling(sampling);
+      if (!run(sampling + " sampling", cfrm, time, reference)) {
+        return;
+      }
+    }
+    run("Vectorized", new HUPreflopCSCFRM(hand, abstractor, tables, null, true), time, reference);
+  }
+
+  private static boolean run(final String name, final HUPreflopCSCFRM cfrm, final int time,
+      final List<CSCFRMNode[]> reference) throws InterruptedException {
+    final CSCFRMData<NLBetTreeNode<Integer>, PreflopChances> data = cfrm.getData();
+    final CSCFRMRunner<PreflopChances> runner = cfrm.getRunner();
+    log.info("Running {} for {} seconds", name, time);
+    final long start = System.currentTimeMillis();
+    runner.start();
+    Thread.sleep(time * 1000L);
+    if (!runner.stopAndAwaitTermination().isEmpty()) {
+      log.error("{} runner failed", name);
+      return false;
+    }
+    final long duration = System.currentTimeMillis() - start;
+    final long iterations = data.getIterations().get();
+    final double[] utility = data.getUtilityAvg();
+    final List<CSCFRMNode[]> nodes = new ArrayList<>(data.nodesForEachActionNode().values());
+    if (reference.isEmpty()) {
+      reference.addAll(nodes);
+      log.info("{} : {} iterations, {} iterations per second, SB utility {}", name, iterations,
+          iterations * 1000d / duration, utility[0]);
+    } else {
+      log.info(
+          "{} : {} iterations, {} iterations per second, SB utility {}, "
+              + "mean L1 distance to {} sampling average strategies {}",
+          name, iterations, iterations * 1000d / duration, utility[0],
+          CSCFRMSampling.values()[0], meanDistance(reference, nodes));
+    }
+    return true;
+  }
+
+  private static double meanDistance(final List<CSCFRMNode[]> reference,
+      final List<CSCFRMNode[]> nodes) {
+    double sum = 0;
+    int count = 0;
+    final int nbActionNodes = reference.size();
+    for (int i = 0; i < nbActionNodes; i++) {
+      final CSCFRMNode[] refNodes = reference.get(i);
+      final CSCFRMNode[] chancesNodes = nodes.get(i);
+      for (int chance = 0; chance < refNodes.length; chance++) {
+        final double[] refStrat = refNodes[chance].getAvgStrategy();
+        final double[] strat = chancesNodes[chance].getAvgStrategy();
+        for (int action = 0; action < refStrat.length; action++) {
+          sum += Math.abs(refStrat[action] - strat[action]);
+        }
+        count++;
+      }
+    }
+    return sum / count;
+  }
+}
@@ -0,0 +1,107 @@
+package net.funkyjava.gametheory.games.nlhe.preflop;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.UnaryOperator;
+
+import net.funkyjava.gametheory.extensiveformgame.ChancesPayouts;
+
+/**
+ * {@link ChancesPayouts} decorator caching the payouts of a preflop showdown node for each tuple of
+ * the players preflop buckets. A terminal evaluation is then a single array read, without any
+ * allocation nor equity lookup.
+ *
+ * The dense mode computes the payouts of all the 169^nbPlayers tuples on construction. The lazy
+ * mode computes them on their first use. Each cached tuple costs about 40 bytes per showdown node,
+ * so the dense mode is meant for heads-up games.
+ *
+ * The returned arrays are shared and must not be modified.
+ *
+ * @author Pierre Mardon
+ *
+ */
+public class PreflopShowdownPayouts implements ChancesPayouts<PreflopChances> {
+
+  /**
+   * Number of preflop buckets of each player
+   */
+  public static final int nbBuckets = 169;
+
+  private final ChancesPayouts<PreflopChances> payouts;
+  private final int nbPlayers;
+  private final double[][] dense;
+  private final AtomicReferenceArray<double[]> lazy;
+
+  /**
+   * Constructor
+   *
+   * @param payouts the decorated showdown payouts
+   * @param nbPlayers number of players
+   * @param dense when true, all payouts are computed now. Else they are computed on their first
+   *        use.
+   */
+  public PreflopShowdownPayouts(final ChancesPayouts<PreflopChances> payouts, final int nbPlayers,
+      final boolean dense) {
+    checkArgument(nbPlayers > 0 && nbPlayers <= 3, "Unsupported number of players %s", nbPlayers);
+    this.payouts = payouts;
+    this.nbPlayers = nbPlayers;
+    int nbTuples = 1;
+    for (int i = 0; i < nbPlayers; i++) {
+      nbTuples *= nbBuckets;
+    }
+    if (dense) {
+      final double[][] table = this.dense = new double[nbTuples][];
+      final int[][] playersChances = new int[1][nbPlayers];
+      final PreflopChances chances = new PreflopChances(playersChances);
+      for (int index = 0; index < nbTuples; index++) {
+        int rest = index;
+        for (int p = nbPlayers - 1; p >= 0; p--) {
+          playersChances[0][p] = rest % nbBuckets;
+          rest /= nbBuckets;
+        }
+        table[index] = payouts.getPayouts(chances);
+      }
+      this.lazy = null;
+    } else {
+      this.dense = null;
+      this.lazy = new AtomicReferenceArray<>(nbTuples);
+    }
+  }
+
+  @Override
+  public double[] getPayouts(final PreflopChances chances) {
+    final int[] buckets = chances.getPlayersChances()[0];
+    final int nbPlayers = this.nbPlayers;
+    int index = 0;
+    for (int p = 0; p < nbPlayers; p++) {
+      index = index * nbBuckets + buckets[p];
+    }
+    final double[][] dense = this.dense;
+    if (dense != null) {
+      return dense[index];
+    }
+    final AtomicReferenceArray<double[]> lazy = this.lazy;
+    final double[] cached = lazy.get(index);
+    if (cached != null) {
+      return cached;
+    }
+    // Concurrent computations of the same tuple are equal, keeping any of them is fine
+    final double[] computed = payouts.getPayouts(chances);
+    lazy.lazySet(index, computed);
+    return computed;
+  }
+
+  /**
+   * Get a showdown payouts decorator to provide to
+   * {@link net.funkyjava.gametheory.games.nlhe.NoLimitHoldEm#setShowdownDecorator(UnaryOperator)}
+   *
+   * @param nbPlayers number of players
+   * @param dense true to compute all payouts on the game tree construction
+   * @return the decorator
+   */
+  public static UnaryOperator<ChancesPayouts<PreflopChances>> decorator(final int nbPlayers,
+      final boolean dense) {
+    return payouts -> new PreflopShowdownPayouts(payouts, nbPlayers, dense);
+  }
+}
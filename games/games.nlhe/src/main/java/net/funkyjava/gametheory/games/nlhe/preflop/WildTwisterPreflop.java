@@ -2,10 +2,11 @@ package net.funkyjava.gametheory.games.nlhe.preflop;
 
 import static net.funkyjava.gametheory.io.ProgramArguments.getArgument;
 
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -144,9 +145,9 @@ public class WildTwisterPreflop {
 
   private static ThreePlayersPreflopReducedEquityTable getTables(final String path)
       throws IOException {
-    try (final FileInputStream fis = new FileInputStream(Paths.get(path).toFile())) {
+    try (final FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
       final ThreePlayersPreflopReducedEquityTable res = new ThreePlayersPreflopReducedEquityTable();
-      res.fill(fis);
+      res.fill(channel);
       res.expand();
       return res;
     }
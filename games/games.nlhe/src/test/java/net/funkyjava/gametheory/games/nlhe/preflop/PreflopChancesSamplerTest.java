@@ -0,0 +1,88 @@
+package net.funkyjava.gametheory.games.nlhe.preflop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.stat.inference.ChiSquareTest;
+import org.junit.Test;
+
+import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.cscfrm.CSCFRMChancesProducer;
+import net.funkyjava.gametheory.gameutil.poker.he.indexing.waugh.WaughIndexer;
+
+/**
+ * Statistical comparison of {@link NLHEPreflopSampledChancesProducer} with the cards dealing
+ * {@link NLHEPreflopChancesProducer}
+ *
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public class PreflopChancesSamplerTest {
+
+  private static final int nbChances = 169;
+  private static final int nbSamples = 4000000;
+  private static final double minPValue = 1e-4;
+
+  /** Count the samples of each couple of chances of the players p1 and p2 */
+  private static long[] couplesCounts(final CSCFRMChancesProducer<PreflopChances> producer,
+      final int p1, final int p2) {
+    final long[] counts = new long[nbChances * nbChances];
+    for (int i = 0; i < nbSamples; i++) {
+      final PreflopChances chances = producer.produceChances();
+      final int[] preflopChances = chances.getPlayersChances()[0];
+      counts[preflopChances[p1] * nbChances + preflopChances[p2]]++;
+      producer.endedUsing(chances);
+    }
+    return counts;
+  }
+
+  private static void checkSame(final String name, final long[] dealt, final long[] sampled) {
+    final double pValue = new ChiSquareTest().chiSquareTestDataSetsComparison(dealt, sampled);
+    log.info("{} : dealt and sampled chances p-value {}", name, pValue);
+    assertTrue(name + " distributions differ", pValue > minPValue);
+  }
+
+  /**
+   * Heads-up sampled chances must follow the exact distribution and the one of dealt cards
+   */
+  @Test
+  public void testHeadsUp() {
+    final WaughIndexer indexer = new WaughIndexer(new int[] {2});
+    final PreflopChancesSampler sampler = new PreflopChancesSampler(indexer, 2);
+    assertEquals(nbChances, sampler.getNbChances());
+    final long[] sampled =
+        couplesCounts(new NLHEPreflopSampledChancesProducer(sampler, new MersenneTwister(0)), 0, 1);
+    final long[] dealt =
+        couplesCounts(new NLHEPreflopChancesProducer(2, new MersenneTwister(1)), 0, 1);
+    checkSame("Heads-up", dealt, sampled);
+    final double[][] probabilities = HEPreflopHelper.headsUpChancesProbabilities(indexer);
+    final double[] expected = new double[nbChances * nbChances];
+    for (int i = 0; i < nbChances; i++) {
+      System.arraycopy(probabilities[i], 0, expected, i * nbChances, nbChances);
+    }
+    final double pValue = new ChiSquareTest().chiSquareTest(expected, sampled);
+    log.info("Heads-up : sampled chances goodness of fit p-value {}", pValue);
+    assertTrue("Heads-up sampled chances don't fit the exact distribution", pValue > minPValue);
+  }
+
+  /**
+   * Each couple of players sampled chances must follow the distribution of dealt cards
+   */
+  @Test
+  public void testThreePlayers() {
+    final PreflopChancesSampler sampler =
+        new PreflopChancesSampler(new WaughIndexer(new int[] {2}), 3);
+    final NLHEPreflopSampledChancesProducer sampledProducer =
+        new NLHEPreflopSampledChancesProducer(sampler, new MersenneTwister(0));
+    final NLHEPreflopChancesProducer dealtProducer =
+        new NLHEPreflopChancesProducer(3, new MersenneTwister(1));
+    final int[][] couples = {{0, 1}, {0, 2}, {1, 2}};
+    for (int[] couple : couples) {
+      final String name = "Three players " + couple[0] + "-" + couple[1];
+      checkSame(name, couplesCounts(dealtProducer, couple[0], couple[1]),
+          couplesCounts(sampledProducer, couple[0], couple[1]));
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package net.funkyjava.gametheory.games.nlhe.preflop;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.extensiveformgame.ChancesPayouts;
+
+/**
+ * Check the tuples indexing of {@link PreflopShowdownPayouts} against the decorated payouts
+ *
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public class PreflopShowdownPayoutsTest {
+
+  private static final int nbBuckets = PreflopShowdownPayouts.nbBuckets;
+
+  /**
+   * Payouts telling each player's bucket apart, counting the calls
+   */
+  private static final class BucketsPayouts implements ChancesPayouts<PreflopChances> {
+
+    private final AtomicLong nbCalls = new AtomicLong();
+
+    @Override
+    public double[] getPayouts(final PreflopChances chances) {
+      nbCalls.incrementAndGet();
+      final int[] buckets = chances.getPlayersChances()[0];
+      final double[] payouts = new double[buckets.length];
+      for (int p = 0; p < buckets.length; p++) {
+        payouts[p] = (p + 1) * 1000 + buckets[p];
+      }
+      return payouts;
+    }
+  }
+
+  private static PreflopChances chances(final int... buckets) {
+    return new PreflopChances(new int[][] {buckets});
+  }
+
+  /**
+   * Dense payouts are all computed on construction and match the decorated ones for each tuple
+   */
+  @Test
+  public void testDenseHeadsUp() {
+    final BucketsPayouts payouts = new BucketsPayouts();
+    final PreflopShowdownPayouts showdown = new PreflopShowdownPayouts(payouts, 2, true);
+    assertEquals(nbBuckets * nbBuckets, payouts.nbCalls.get());
+    for (int b0 = 0; b0 < nbBuckets; b0++) {
+      for (int b1 = 0; b1 < nbBuckets; b1++) {
+        final PreflopChances chances = chances(b0, b1);
+        assertArrayEquals(payouts.getPayouts(chances), showdown.getPayouts(chances), 0);
+      }
+    }
+    final long nbCalls = payouts.nbCalls.get();
+    showdown.getPayouts(chances(12, 34));
+    assertEquals(nbCalls, payouts.nbCalls.get());
+  }
+
+  /**
+   * Lazy payouts are computed once per tuple on their first use and match the decorated ones
+   */
+  @Test
+  public void testLazyThreePlayers() {
+    final BucketsPayouts payouts = new BucketsPayouts();
+    final PreflopShowdownPayouts showdown = new PreflopShowdownPayouts(payouts, 3, false);
+    assertEquals(0, payouts.nbCalls.get());
+    final Random random = new Random(0);
+    for (int i = 0; i < 10000; i++) {
+      final PreflopChances chances =
+          chances(random.nextInt(nbBuckets), random.nextInt(nbBuckets), random.nextInt(nbBuckets));
+      final double[] expected = new BucketsPayouts().getPayouts(chances);
+      final double[] first = showdown.getPayouts(chances);
+      assertArrayEquals(expected, first, 0);
+      final long nbCalls = payouts.nbCalls.get();
+      assertSame(first, showdown.getPayouts(chances));
+      assertEquals(nbCalls, payouts.nbCalls.get());
+    }
+    final PreflopChances last = chances(nbBuckets - 1, 0, nbBuckets - 1);
+    assertArrayEquals(new BucketsPayouts().getPayouts(last), showdown.getPayouts(last), 0);
+  }
+
+  /**
+   * Only one to three players are supported
+   */
+  @Test
+  public void testNbPlayers() {
+    try {
+      new PreflopShowdownPayouts(new BucketsPayouts(), 4, false);
+      fail("Four players should be rejected");
+    } catch (IllegalArgumentException e) {
+      log.info("Rejected number of players : {}", e.getMessage());
+    }
+  }
+}
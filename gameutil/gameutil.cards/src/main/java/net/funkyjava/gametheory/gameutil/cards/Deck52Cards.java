@@ -3,12 +3,12 @@
  */
 package net.funkyjava.gametheory.gameutil.cards;
 
-import org.apache.commons.math3.random.ISAACRandom;
-import org.apache.commons.math3.random.JDKRandomGenerator;
-import org.apache.commons.math3.random.MersenneTwister;
 import org.apache.commons.math3.random.RandomGenerator;
 import org.apache.commons.math3.util.CombinatoricsUtils;
 
+import net.funkyjava.gametheory.gameutil.cards.random.FastRandom;
+import net.funkyjava.gametheory.gameutil.cards.random.Xoshiro256PlusPlus;
+
 /**
  * <p>
  * This class has two purposes :
@@ -17,7 +17,8 @@ import org.apache.commons.math3.util.CombinatoricsUtils;
  * <li>Provide a persistent deck from where card can be drawn successively, and that can be reseted.
  * See {@link #draw(int[])} and {@link #reset()} respectively.</li>
  * <li>Provide a one shot drawing method over a fresh deck with no variable creations. See
- * {@link Deck52Cards#oneShotDeckDraw(int[])}.</li>
+ * {@link Deck52Cards#oneShotDeckDraw(int[])}, and its variants writing into a flat array or a 64
+ * bits cards mask.</li>
  * </ul>
  * </p>
  * <p>
@@ -25,8 +26,12 @@ import org.apache.commons.math3.util.CombinatoricsUtils;
  * determined by the destination array where thoses bytes will be written.
  * </p>
  * <p>
- * A better {@link RandomGenerator} like {@link ISAACRandom} or {@link MersenneTwister} can be set
- * via {@link #setRandom(RandomGenerator)} to replace the default JDK's random.
+ * The default random generator is a {@link Xoshiro256PlusPlus} with an unpredictable seed. Any
+ * {@link RandomGenerator} can be set via {@link #setRandom(RandomGenerator)}, for example a
+ * {@link FastRandom} with a chosen seed to reproduce the draws.
+ * </p>
+ * <p>
+ * In cards masks, the bit of a card is its index minus the offset.
  * </p>
  * <p>
  * Not thread safe.
@@ -44,7 +49,7 @@ public class Deck52Cards {
   /** Deck for one-shot draws */
   private final int[] oneShotDeck = new int[52];
   /** The random generator */
-  private RandomGenerator rand = new JDKRandomGenerator();
+  private RandomGenerator rand = new Xoshiro256PlusPlus();
 
   /** Number of cards already drawed in the persistent deck */
   private int drawed = 0;
@@ -176,6 +181,51 @@ public class Deck52Cards {
 
   }
 
+  /**
+   * Draw cards from a fresh deck and write them in a range of the destination array. No other calls
+   * can be performed on the same deck.
+   *
+   * @param dest destination array for cards
+   * @param destOffset index of the first card in the destination array
+   * @param nbCards number of cards to draw
+   * @return the mask of the drawn cards
+   */
+  public long oneShotDeckDraw(final int[] dest, final int destOffset, final int nbCards) {
+    final int[] oneShotDeck = this.oneShotDeck;
+    final RandomGenerator rand = this.rand;
+    final int offset = this.offset;
+    long mask = 0;
+    int tmp;
+    for (int i = 0; i < nbCards; i++) {
+      final int card = oneShotDeck[tmp = (i + rand.nextInt(52 - i))];
+      oneShotDeck[tmp] = oneShotDeck[i];
+      oneShotDeck[i] = dest[destOffset + i] = card;
+      mask |= 1L << (card - offset);
+    }
+    return mask;
+  }
+
+  /**
+   * Draw cards from a fresh deck. No other calls can be performed on the same deck.
+   *
+   * @param nbCards number of cards to draw
+   * @return the mask of the drawn cards
+   */
+  public long oneShotDeckDrawMask(final int nbCards) {
+    final int[] oneShotDeck = this.oneShotDeck;
+    final RandomGenerator rand = this.rand;
+    final int offset = this.offset;
+    long mask = 0;
+    int tmp;
+    for (int i = 0; i < nbCards; i++) {
+      final int card = oneShotDeck[tmp = (i + rand.nextInt(52 - i))];
+      oneShotDeck[tmp] = oneShotDeck[i];
+      oneShotDeck[i] = card;
+      mask |= 1L << (card - offset);
+    }
+    return mask;
+  }
+
   /**
    * Sets the random generator
    *
@@ -0,0 +1,111 @@
+package net.funkyjava.gametheory.gameutil.cards.random;
+
+import org.apache.commons.math3.exception.NotStrictlyPositiveException;
+import org.apache.commons.math3.random.BitsStreamGenerator;
+
+/**
+ * Base of the fast 64 bits random generators. They are commons-math random generators, so they can
+ * replace any {@link org.apache.commons.math3.random.RandomGenerator}, for example in
+ * {@link net.funkyjava.gametheory.gameutil.cards.Deck52Cards#setRandom}. Bounded ints are drawn
+ * with Lemire's multiply and shift method, that almost never needs a second draw nor a division.
+ *
+ * Not thread safe : each thread needs its own instance, see {@link #streamSeed(long, int)}.
+ *
+ * @author Pierre Mardon
+ *
+ */
+public abstract class FastRandom extends BitsStreamGenerator {
+
+  private static final long serialVersionUID = 5426403460532245573L;
+
+  /** The golden ratio increment of SplitMix64 */
+  protected static final long golden = 0x9E3779B97F4A7C15L;
+
+  /**
+   * The SplitMix64 finalizer, a bijective mix of the 64 bits of a value
+   *
+   * @param z the value
+   * @return the mixed value
+   */
+  public static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * Derive the seed of a random stream from a base seed, so that each trainer or thread of a run
+   * gets a distinct and reproducible seed
+   *
+   * @param seed the base seed
+   * @param stream the stream index
+   * @return the stream seed
+   */
+  public static long streamSeed(final long seed, final int stream) {
+    return mix(seed + (stream + 1L) * golden);
+  }
+
+  /**
+   * Get an unpredictable seed
+   *
+   * @return the seed
+   */
+  protected static long randomSeed() {
+    return mix(System.nanoTime() ^ mix(System.identityHashCode(new Object())));
+  }
+
+  @Override
+  public abstract long nextLong();
+
+  @Override
+  public void setSeed(final int seed) {
+    setSeed((long) seed);
+  }
+
+  @Override
+  public void setSeed(final int[] seed) {
+    long res = 0;
+    for (int value : seed) {
+      res = mix(res + golden + value);
+    }
+    setSeed(res);
+  }
+
+  @Override
+  protected int next(final int bits) {
+    return (int) (nextLong() >>> (64 - bits));
+  }
+
+  @Override
+  public int nextInt() {
+    return (int) (nextLong() >>> 32);
+  }
+
+  @Override
+  public int nextInt(final int bound) {
+    if (bound <= 0) {
+      throw new NotStrictlyPositiveException(bound);
+    }
+    long product = (nextLong() >>> 32) * bound;
+    int low = (int) product;
+    if (Integer.compareUnsigned(low, bound) < 0) {
+      // Reject the 2^32 mod bound lowest values so that all results are equally likely
+      final int threshold = Integer.remainderUnsigned(-bound, bound);
+      while (Integer.compareUnsigned(low, threshold) < 0) {
+        product = (nextLong() >>> 32) * bound;
+        low = (int) product;
+      }
+    }
+    return (int) (product >>> 32);
+  }
+
+  @Override
+  public double nextDouble() {
+    return (nextLong() >>> 11) * 0x1.0p-53;
+  }
+
+  @Override
+  public boolean nextBoolean() {
+    return nextLong() < 0;
+  }
+}
@@ -0,0 +1,44 @@
+package net.funkyjava.gametheory.gameutil.cards.random;
+
+/**
+ * SplitMix64 random generator : a 64 bits counter incremented by the golden ratio and mixed. One
+ * addition and a few multiplications per value. Mostly used to seed other generators.
+ *
+ * Not thread safe.
+ *
+ * @author Pierre Mardon
+ *
+ */
+public final class SplitMix64 extends FastRandom {
+
+  private static final long serialVersionUID = -2397493716356040125L;
+
+  private long state;
+
+  /**
+   * Constructor with an unpredictable seed
+   */
+  public SplitMix64() {
+    this(randomSeed());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param seed the seed
+   */
+  public SplitMix64(final long seed) {
+    state = seed;
+  }
+
+  @Override
+  public void setSeed(final long seed) {
+    state = seed;
+    clear();
+  }
+
+  @Override
+  public long nextLong() {
+    return mix(state += golden);
+  }
+}
@@ -0,0 +1,109 @@
+package net.funkyjava.gametheory.gameutil.cards.random;
+
+/**
+ * xoshiro256++ random generator of Blackman and Vigna : 256 bits of state, period 2^256 - 1, a few
+ * shifts, rotations and xors per value. The state is seeded with {@link SplitMix64}.
+ *
+ * {@link #jump()} advances the generator by 2^128 values, so {@link #forStream(long, int)}
+ * generators of the same seed never overlap.
+ *
+ * Not thread safe.
+ *
+ * @author Pierre Mardon
+ *
+ */
+public final class Xoshiro256PlusPlus extends FastRandom {
+
+  private static final long serialVersionUID = 1373063460584245376L;
+
+  private static final long[] jumpPolynomial =
+      {0x180EC6D33CFD0ABAL, 0xD5A61266F0C9392CL, 0xA9582618E03FC9AAL, 0x39ABDC4529B1661CL};
+
+  private long s0;
+  private long s1;
+  private long s2;
+  private long s3;
+
+  /**
+   * Constructor with an unpredictable seed
+   */
+  public Xoshiro256PlusPlus() {
+    this(randomSeed());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param seed the seed
+   */
+  public Xoshiro256PlusPlus(final long seed) {
+    setSeed(seed);
+  }
+
+  /**
+   * Create the generator of a stream : the generator of the seed, jumped stream times
+   *
+   * @param seed the seed shared by all streams
+   * @param stream the stream index
+   * @return the generator
+   */
+  public static Xoshiro256PlusPlus forStream(final long seed, final int stream) {
+    final Xoshiro256PlusPlus res = new Xoshiro256PlusPlus(seed);
+    for (int i = 0; i < stream; i++) {
+      res.jump();
+    }
+    return res;
+  }
+
+  @Override
+  public void setSeed(final long seed) {
+    final SplitMix64 seeder = new SplitMix64(seed);
+    // SplitMix64 never outputs four zeros in a row
+    s0 = seeder.nextLong();
+    s1 = seeder.nextLong();
+    s2 = seeder.nextLong();
+    s3 = seeder.nextLong();
+    clear();
+  }
+
+  @Override
+  public long nextLong() {
+    final long s0 = this.s0;
+    final long s1 = this.s1;
+    final long s2 = this.s2 ^ s0;
+    final long s3 = this.s3 ^ s1;
+    final long result = Long.rotateLeft(s0 + this.s3, 23) + s0;
+    final long t = s1 << 17;
+    this.s1 = s1 ^ s2;
+    this.s0 = s0 ^ s3;
+    this.s2 = s2 ^ t;
+    this.s3 = Long.rotateLeft(s3, 45);
+    return result;
+  }
+
+  /**
+   * Advance the generator by 2^128 values
+   */
+  public void jump() {
+    long j0 = 0;
+    long j1 = 0;
+    long j2 = 0;
+    long j3 = 0;
+    for (long polynomial : jumpPolynomial) {
+      for (int bit = 0; bit < 64; bit++) {
+        if ((polynomial & (1L << bit)) != 0) {
+          j0 ^= s0;
+          j1 ^= s1;
+          j2 ^= s2;
+          j3 ^= s3;
+        }
+        nextLong();
+      }
+    }
+    s0 = j0;
+    s1 = j1;
+    s2 = j2;
+    s3 = j3;
+    clear();
+  }
+}
@@ -1,5 +1,6 @@
 package net.funkyjava.gametheory.gameutil.cards;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -9,6 +10,7 @@ import org.junit.Test;
 
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.gameutil.cards.random.Xoshiro256PlusPlus;
 
 /**
  * @author Pierre Mardon
@@ -48,6 +50,33 @@ public class Deck52CardsTest {
         val = (System.currentTimeMillis() - start), nbDrawing * 1000 / val);
   }
 
+  /**
+   * Test one shot draws into a flat array and into cards masks
+   */
+  @Test
+  public void testOneShotDeckDrawMask() {
+    final Deck52Cards d = new Deck52Cards(1);
+    d.setRandom(new Xoshiro256PlusPlus(0));
+    final int[] cards = new int[11];
+    for (int draw = 0; draw < 1000; draw++) {
+      final long mask = d.oneShotDeckDraw(cards, 2, 9);
+      assertEquals(9, Long.bitCount(mask));
+      for (int i = 2; i < 11; i++) {
+        assertTrue("Card not in the mask", (mask & (1L << (cards[i] - 1))) != 0);
+      }
+      assertEquals(9, Long.bitCount(d.oneShotDeckDrawMask(9)));
+    }
+    assertEquals(0xFFFFFFFFFFFFFL, d.oneShotDeckDrawMask(52));
+    final int nbDrawing = 1000000;
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < nbDrawing; i++) {
+      d.oneShotDeckDrawMask(9);
+    }
+    double val;
+    log.info("{} Full Hold'em Heads Up masks drawings in {}ms, {} drawings per second", nbDrawing,
+        val = (System.currentTimeMillis() - start), nbDrawing * 1000 / val);
+  }
+
   /**
    * @throws Exception unexpected exception
    */
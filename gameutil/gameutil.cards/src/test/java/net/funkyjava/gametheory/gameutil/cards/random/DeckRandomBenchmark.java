@@ -0,0 +1,110 @@
+package net.funkyjava.gametheory.gameutil.cards.random;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.math3.random.JDKRandomGenerator;
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.funkyjava.gametheory.gameutil.cards.Deck52Cards;
+
+/**
+ * JMH comparison of the random generators on a bounded int and on heads-up hold'em one shot draws.
+ * Run it with {@link #main(String[])} from the test classpath.
+ *
+ * @author Pierre Mardon
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeckRandomBenchmark {
+
+  @Param({"jdk", "mersenne", "splitmix", "xoshiro"})
+  private String generator;
+
+  private RandomGenerator random;
+  private Deck52Cards deck;
+  private final int[] cards = new int[9];
+
+  /**
+   * Create the generator and the deck
+   */
+  @Setup
+  public void setup() {
+    switch (generator) {
+      case "jdk":
+        random = new JDKRandomGenerator();
+        break;
+      case "mersenne":
+        random = new MersenneTwister(0);
+        break;
+      case "splitmix":
+        random = new SplitMix64(0);
+        break;
+      default:
+        random = new Xoshiro256PlusPlus(0);
+    }
+    deck = new Deck52Cards(0);
+    deck.setRandom(random);
+  }
+
+  /**
+   * Bounded int as drawn for each card
+   *
+   * @return the int
+   */
+  @Benchmark
+  public int nextInt52() {
+    return random.nextInt(52);
+  }
+
+  /**
+   * Heads-up hold'em one shot draw into an array
+   *
+   * @return the cards
+   */
+  @Benchmark
+  public int[] oneShotDeckDraw() {
+    deck.oneShotDeckDraw(cards);
+    return cards;
+  }
+
+  /**
+   * Heads-up hold'em one shot draw into a cards mask
+   *
+   * @return the cards mask
+   */
+  @Benchmark
+  public long oneShotDeckDrawMask() {
+    return deck.oneShotDeckDrawMask(9);
+  }
+
+  /**
+   * Run the benchmark
+   *
+   * @param args unused
+   * @throws RunnerException when the benchmark fails
+   */
+  public static void main(final String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(DeckRandomBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
@@ -0,0 +1,71 @@
+package net.funkyjava.gametheory.gameutil.cards.random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.math3.stat.inference.ChiSquareTest;
+import org.junit.Test;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public class FastRandomTest {
+
+  /**
+   * SplitMix64 must match the reference implementation
+   */
+  @Test
+  public void testSplitMix64Reference() {
+    assertEquals(0xE220A8397B1DCDAFL, new SplitMix64(0).nextLong());
+  }
+
+  /**
+   * Same seeds and streams give the same values, other streams give other values
+   */
+  @Test
+  public void testStreams() {
+    final Xoshiro256PlusPlus r1 = Xoshiro256PlusPlus.forStream(42, 3);
+    final Xoshiro256PlusPlus r2 = Xoshiro256PlusPlus.forStream(42, 3);
+    final Xoshiro256PlusPlus other = Xoshiro256PlusPlus.forStream(42, 4);
+    for (int i = 0; i < 1000; i++) {
+      final long value = r1.nextLong();
+      assertEquals(value, r2.nextLong());
+      assertNotEquals(value, other.nextLong());
+    }
+    r1.setSeed(7);
+    r2.setSeed(7);
+    assertEquals(r1.nextInt(52), r2.nextInt(52));
+    assertNotEquals(FastRandom.streamSeed(42, 0), FastRandom.streamSeed(42, 1));
+  }
+
+  /**
+   * Bounded ints must be in range and uniform
+   */
+  @Test
+  public void testBoundedInts() {
+    final Xoshiro256PlusPlus random = new Xoshiro256PlusPlus(0);
+    for (int bound : new int[] {1, 3, 52, (1 << 30) + 1, Integer.MAX_VALUE}) {
+      for (int i = 0; i < 10000; i++) {
+        final int value = random.nextInt(bound);
+        assertTrue(value >= 0 && value < bound);
+      }
+    }
+    final int bound = 52;
+    final long[] counts = new long[bound];
+    final double[] expected = new double[bound];
+    for (int i = 0; i < bound; i++) {
+      expected[i] = 1;
+    }
+    for (int i = 0; i < 1000000; i++) {
+      counts[random.nextInt(bound)]++;
+    }
+    final double pValue = new ChiSquareTest().chiSquareTest(expected, counts);
+    log.info("nextInt({}) uniformity p-value {}", bound, pValue);
+    assertTrue(pValue > 1e-4);
+  }
+}
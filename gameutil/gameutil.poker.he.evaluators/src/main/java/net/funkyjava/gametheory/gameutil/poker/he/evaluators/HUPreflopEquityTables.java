@@ -12,6 +12,7 @@ import java.nio.file.Paths;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.mutable.MutableLong;
 
@@ -31,6 +32,10 @@ public class HUPreflopEquityTables implements Serializable {
   private static final long serialVersionUID = 1808572853794466312L;
   private static final int[] onePlayerGroupsSize = {2};
   private static final int[] twoPlayersGroupsSize = {2, 2};
+  private static final int[] boardGroupsSize = {5};
+  private static final int nbHoleCardsCombinations = 52 * 51 / 2;
+  /** Number of boards for two players hole cards, C(48, 5) */
+  private static final int nbBoardsPerHoleCards = 48 * 47 * 46 * 45 * 44 / 120;
 
   @Getter
   private final WaughIndexer twoPlayersIndexer = new WaughIndexer(twoPlayersGroupsSize);
@@ -60,6 +65,20 @@ public class HUPreflopEquityTables implements Serializable {
     computeReducedEquity();
   }
 
+  /**
+   * Compute the same tables as {@link #compute()}, but evaluating each board once for all hole
+   * cards combinations instead of once per two players index. Only one board per suit isomorphism
+   * class is evaluated, weighted by the size of its class. Threads accumulate the results of
+   * disjoint boards separately, and they are merged at the end.
+   *
+   * @throws InterruptedException when interrupted while waiting for the threads
+   */
+  public synchronized void computeBoardMajor() throws InterruptedException {
+    checkState(!isComputed(), "Tables have already been computed");
+    computeBoardMajorEquity();
+    computeReducedEquity();
+  }
+
   private final void computeAccurateEquity() throws InterruptedException {
     final double[] equity = this.equity;
     final MutableLong done = new MutableLong();
@@ -83,39 +102,12 @@ public class HUPreflopEquityTables implements Serializable {
       final int[][] reversedHoleCards = new int[][] {holeCards[1], holeCards[0]};
       final int reversedIndex = holeCardsIndexer.indexOf(reversedHoleCards);
       translateToEval.translate(holeCards);
-      final int[] heroCards = new int[7];
-      heroCards[0] = holeCards[0][0];
-      heroCards[1] = holeCards[0][1];
-      final int[] vilainCards = new int[7];
-      vilainCards[0] = holeCards[1][0];
-      vilainCards[1] = holeCards[1][1];
-
-      final Deck52Cards evalDeck = new Deck52Cards(eval.getCardsSpec());
-      final int[] WLT = new int[3];
       // Just to set it reserved
       equity[index] = 1;
       equity[reversedIndex] = 1;
       total++;
       exe.execute(() -> {
-        evalDeck.drawAllGroupsCombinations(new int[] {5}, (CardsGroupsDrawingTask) cardsGroups -> {
-          final int[] board = cardsGroups[0];
-          System.arraycopy(board, 0, heroCards, 2, 5);
-          System.arraycopy(board, 0, vilainCards, 2, 5);
-          final int heroVal = eval.get7CardsEval(heroCards);
-          final int vilainVal = eval.get7CardsEval(vilainCards);
-          if (heroVal > vilainVal) {
-            WLT[0]++;
-          } else if (heroVal < vilainVal) {
-            WLT[1]++;
-          } else {
-            WLT[2]++;
-          }
-          return true;
-        }, holeCards[0], holeCards[1]);
-        final double win = WLT[0];
-        final double lose = WLT[1];
-        final double tie = WLT[2];
-        final double eq = (win + tie / 2d) / (win + lose + tie);
+        final double eq = enumeratedEquity(eval, holeCards);
         equity[finalIndex] = eq;
         equity[reversedIndex] = 1 - eq;
         synchronized (done) {
@@ -136,6 +128,199 @@ public class HUPreflopEquityTables implements Serializable {
     exe.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
   }
 
+  private static double enumeratedEquity(final TwoPlusTwoEvaluator eval, final int[][] holeCards) {
+    final int[] heroCards = new int[7];
+    heroCards[0] = holeCards[0][0];
+    heroCards[1] = holeCards[0][1];
+    final int[] vilainCards = new int[7];
+    vilainCards[0] = holeCards[1][0];
+    vilainCards[1] = holeCards[1][1];
+
+    final Deck52Cards evalDeck = new Deck52Cards(eval.getCardsSpec());
+    final int[] WLT = new int[3];
+    evalDeck.drawAllGroupsCombinations(boardGroupsSize, (CardsGroupsDrawingTask) cardsGroups -> {
+      final int[] board = cardsGroups[0];
+      System.arraycopy(board, 0, heroCards, 2, 5);
+      System.arraycopy(board, 0, vilainCards, 2, 5);
+      final int heroVal = eval.get7CardsEval(heroCards);
+      final int vilainVal = eval.get7CardsEval(vilainCards);
+      if (heroVal > vilainVal) {
+        WLT[0]++;
+      } else if (heroVal < vilainVal) {
+        WLT[1]++;
+      } else {
+        WLT[2]++;
+      }
+      return true;
+    }, holeCards[0], holeCards[1]);
+    final double win = WLT[0];
+    final double lose = WLT[1];
+    final double tie = WLT[2];
+    return (win + tie / 2d) / (win + lose + tie);
+  }
+
+  /**
+   * Hero's equity for a two players index, enumerating all boards like {@link #compute()}
+   *
+   * @param index the two players index
+   * @return hero's equity
+   */
+  double enumeratedEquity(final int index) {
+    final TwoPlusTwoEvaluator eval = new TwoPlusTwoEvaluator();
+    final int[][] holeCards = new int[2][2];
+    twoPlayersIndexer.unindex(index, holeCards);
+    new Cards52SpecTranslator(twoPlayersIndexer.getCardsSpec(), eval.getCardsSpec())
+        .translate(holeCards);
+    return enumeratedEquity(eval, holeCards);
+  }
+
+  private final void computeBoardMajorEquity() throws InterruptedException {
+    final TwoPlusTwoEvaluator eval = new TwoPlusTwoEvaluator();
+    final IntCardsSpec evalSpec = eval.getCardsSpec();
+    final int offset = evalSpec.getOffset();
+    final int nbCombinations = nbHoleCardsCombinations;
+    // Hole cards combinations in the evaluator's spec, and the two players index of each pair
+    final int[][] combinations = new int[nbCombinations][];
+    final long[] combinationsMasks = new long[nbCombinations];
+    final MutableLong nbDrawn = new MutableLong();
+    new Deck52Cards(evalSpec).drawAllGroupsCombinations(onePlayerGroupsSize,
+        (CardsGroupsDrawingTask) cardsGroups -> {
+          final int[] cards = cardsGroups[0].clone();
+          final int combination = nbDrawn.intValue();
+          combinations[combination] = cards;
+          combinationsMasks[combination] =
+              (1L << (cards[0] - offset)) | (1L << (cards[1] - offset));
+          nbDrawn.increment();
+          return true;
+        });
+    final WaughIndexer twoPlayersIndexer = new WaughIndexer(twoPlayersGroupsSize);
+    final Cards52SpecTranslator translateToIndexer =
+        new Cards52SpecTranslator(evalSpec, twoPlayersIndexer.getCardsSpec());
+    final int[] pairsIndexes = new int[nbCombinations * nbCombinations];
+    final int[][] pair = new int[2][2];
+    for (int hero = 0; hero < nbCombinations; hero++) {
+      for (int vilain = 0; vilain < nbCombinations; vilain++) {
+        if ((combinationsMasks[hero] & combinationsMasks[vilain]) != 0) {
+          pairsIndexes[hero * nbCombinations + vilain] = -1;
+          continue;
+        }
+        System.arraycopy(combinations[hero], 0, pair[0], 0, 2);
+        System.arraycopy(combinations[vilain], 0, pair[1], 0, 2);
+        translateToIndexer.translate(pair);
+        pairsIndexes[hero * nbCombinations + vilain] = twoPlayersIndexer.indexOf(pair);
+      }
+    }
+    // One board per suit isomorphism class, weighted by the class size
+    final WaughIndexer boardIndexer = new WaughIndexer(boardGroupsSize);
+    final int nbBoards = boardIndexer.getIndexSize();
+    final int[] boardsWeights = new int[nbBoards];
+    new Deck52Cards(boardIndexer.getCardsSpec()).drawAllGroupsCombinations(boardGroupsSize,
+        (CardsGroupsDrawingTask) cardsGroups -> {
+          boardsWeights[boardIndexer.indexOf(cardsGroups)]++;
+          return true;
+        });
+    final Cards52SpecTranslator translateToEval =
+        new Cards52SpecTranslator(boardIndexer.getCardsSpec(), evalSpec);
+    final int[][] boards = new int[nbBoards][5];
+    final long[] boardsMasks = new long[nbBoards];
+    for (int board = 0; board < nbBoards; board++) {
+      final int[][] cards = {boards[board]};
+      boardIndexer.unindex(board, cards);
+      translateToEval.translate(cards);
+      for (int card : boards[board]) {
+        boardsMasks[board] |= 1L << (card - offset);
+      }
+    }
+
+    // Sums of 2 * win + tie over the boards, for each two players index
+    final long[] indexesPoints = new long[nbPreflopTwoPlayers];
+    final AtomicInteger nextBoard = new AtomicInteger();
+    final int nbThreads = Runtime.getRuntime().availableProcessors();
+    final ExecutorService exe = Executors.newFixedThreadPool(nbThreads);
+    start = System.currentTimeMillis();
+    for (int thread = 0; thread < nbThreads; thread++) {
+      exe.execute(() -> {
+        final TwoPlusTwoEvaluator threadEval = new TwoPlusTwoEvaluator();
+        // Indexed by hero and vilain combinations, hero's being the lowest
+        final int[] heroPoints = new int[nbCombinations * nbCombinations];
+        final int[] vilainPoints = new int[nbCombinations * nbCombinations];
+        final int[] boardCombinations = new int[nbCombinations];
+        final int[] ranks = new int[nbCombinations];
+        int board;
+        while ((board = nextBoard.getAndIncrement()) < nbBoards) {
+          final long boardMask = boardsMasks[board];
+          final int weight = boardsWeights[board];
+          threadEval.setFirstCards(boards[board]);
+          int nbBoardCombinations = 0;
+          for (int combination = 0; combination < nbCombinations; combination++) {
+            if ((combinationsMasks[combination] & boardMask) == 0) {
+              boardCombinations[nbBoardCombinations] = combination;
+              ranks[nbBoardCombinations++] =
+                  threadEval.getEvalForNext2Cards(combinations[combination]);
+            }
+          }
+          for (int i = 0; i < nbBoardCombinations; i++) {
+            final int hero = boardCombinations[i];
+            final long heroMask = combinationsMasks[hero];
+            final int heroRank = ranks[i];
+            final int heroRow = hero * nbCombinations;
+            for (int j = i + 1; j < nbBoardCombinations; j++) {
+              final int vilain = boardCombinations[j];
+              if ((combinationsMasks[vilain] & heroMask) != 0) {
+                continue;
+              }
+              // 2 * weight for a win, weight for a tie
+              final int points = weight * (Integer.compare(heroRank, ranks[j]) + 1);
+              heroPoints[heroRow + vilain] += points;
+              vilainPoints[heroRow + vilain] += 2 * weight - points;
+            }
+          }
+          if (board % 10000 == 0 && board != 0) {
+            final long elapsed = System.currentTimeMillis() - start;
+            log.info("Remaining boards {}/{}, time {}s", nbBoards - board, nbBoards,
+                (int) (elapsed * (nbBoards - board) / (1000L * board)));
+          }
+        }
+        synchronized (indexesPoints) {
+          for (int hero = 0; hero < nbCombinations; hero++) {
+            for (int vilain = hero + 1; vilain < nbCombinations; vilain++) {
+              final int index = pairsIndexes[hero * nbCombinations + vilain];
+              if (index >= 0) {
+                indexesPoints[index] += heroPoints[hero * nbCombinations + vilain];
+                indexesPoints[pairsIndexes[vilain * nbCombinations + hero]] +=
+                    vilainPoints[hero * nbCombinations + vilain];
+              }
+            }
+          }
+        }
+      });
+    }
+    exe.shutdown();
+    exe.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+
+    // Each index's pairs all sum to the same points over all boards
+    final int[] indexesPairs = new int[nbPreflopTwoPlayers];
+    for (int index : pairsIndexes) {
+      if (index >= 0) {
+        indexesPairs[index]++;
+      }
+    }
+    final double[] equity = this.equity;
+    final int nbIndexes = this.nbPreflopTwoPlayers;
+    for (int index = 0; index < nbIndexes; index++) {
+      if (equity[index] != 0) {
+        continue;
+      }
+      twoPlayersIndexer.unindex(index, pair);
+      final int reversedIndex = twoPlayersIndexer.indexOf(new int[][] {pair[1], pair[0]});
+      // Same operations and order as compute()
+      final double eq =
+          (indexesPoints[index] / indexesPairs[index] / 2d) / nbBoardsPerHoleCards;
+      equity[index] = eq;
+      equity[reversedIndex] = 1 - eq;
+    }
+  }
+
   private void computeReducedEquity() {
     final IntCardsSpec indexSpecs = holeCardsIndexer.getCardsSpec();
     final double[] equity = this.equity;
@@ -191,7 +376,7 @@ public class HUPreflopEquityTables implements Serializable {
     try (final ObjectOutputStream oos =
         new ObjectOutputStream(new FileOutputStream(path.toFile()))) {
       final HUPreflopEquityTables tables = new HUPreflopEquityTables();
-      tables.compute();
+      tables.computeBoardMajor();
       oos.writeObject(tables);
       oos.flush();
       oos.close();
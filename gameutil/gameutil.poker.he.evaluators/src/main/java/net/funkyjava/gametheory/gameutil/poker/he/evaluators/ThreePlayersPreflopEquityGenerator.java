@@ -0,0 +1,285 @@
+package net.funkyjava.gametheory.gameutil.poker.he.evaluators;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.gameutil.cards.Cards52SpecTranslator;
+import net.funkyjava.gametheory.gameutil.poker.he.handeval.twoplustwo.TwoPlusTwoEvaluator;
+import net.funkyjava.gametheory.gameutil.poker.he.indexing.waugh.WaughIndexer;
+import net.funkyjava.gametheory.io.Fillable;
+import net.funkyjava.gametheory.io.IOUtils;
+
+/**
+ * Generates the file of a {@link ThreePlayersPreflopEquityTable} by shards, so that the
+ * computation can be resumed after a crash and split between processes.
+ *
+ * The three players indexes are split in contiguous shards. Like
+ * {@link ThreePlayersPreflopEquityTable#compute()}, only the indexes with sorted hole cards indexes
+ * are computed : each Waugh index is already a suit isomorphism class, so this enumerates one
+ * representative per suits and players permutation. A shard's file holds its indexes in the
+ * table's format, and is written atomically once they are all computed. Shards whose file exists
+ * are skipped, so a restarted generation resumes where it stopped. The table's file is the
+ * concatenation of the shards files, see {@link #merge(Path)}.
+ *
+ * Processes with the same directory and number of shards, but different process indexes, compute
+ * disjoint shards.
+ *
+ * @author Pierre Mardon
+ *
+ */
+@Slf4j
+public class ThreePlayersPreflopEquityGenerator {
+
+  private static final int[] onePlayerGroupsSize = {2};
+  private static final int[] threePlayersGroupsSize = {2, 2, 2};
+  private static final byte nullArray = 0;
+  private static final byte filledArray = 1;
+
+  @Getter
+  private final Path directory;
+  @Getter
+  private final int nbShards;
+  private final int nbIndexes;
+  private final int shardSize;
+
+  /**
+   * Constructor
+   *
+   * @param directory the shards directory
+   * @param nbShards the number of shards, that must be the same for all processes and restarts
+   */
+  public ThreePlayersPreflopEquityGenerator(@NonNull final Path directory, final int nbShards) {
+    this.nbIndexes = new WaughIndexer(threePlayersGroupsSize).getIndexSize();
+    checkArgument(nbShards > 0 && nbShards <= nbIndexes,
+        "The number of shards must be between 1 and " + nbIndexes);
+    this.directory = directory;
+    this.nbShards = nbShards;
+    this.shardSize = (nbIndexes + nbShards - 1) / nbShards;
+  }
+
+  /**
+   * Get the path of a shard's file
+   *
+   * @param shard the shard
+   * @return the shard's path
+   */
+  public Path shardPath(final int shard) {
+    return directory.resolve("3p-equity-" + shard + "-of-" + nbShards + ".dat");
+  }
+
+  /**
+   * Check whether all shards are written
+   *
+   * @return true when all shards files exist
+   */
+  public boolean isComplete() {
+    for (int shard = 0; shard < nbShards; shard++) {
+      if (!Files.exists(shardPath(shard))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Compute and write the shards of a process that are not written yet. The process owns the
+   * shards whose number modulo the number of processes is its index.
+   *
+   * @param process the process index
+   * @param nbProcesses the number of processes
+   * @param nbThreads the number of threads
+   * @throws IOException when a shard computation or writing failed
+   * @throws InterruptedException when interrupted while waiting for the threads
+   */
+  public void generate(final int process, final int nbProcesses, final int nbThreads)
+      throws IOException, InterruptedException {
+    checkArgument(process >= 0 && process < nbProcesses, "Invalid process index");
+    checkArgument(nbThreads > 0, "The number of threads must be > 0");
+    Files.createDirectories(directory);
+    new TwoPlusTwoEvaluator(); // Just to load it before we get started
+    final List<Integer> shards = new ArrayList<>();
+    for (int shard = process; shard < nbShards; shard += nbProcesses) {
+      if (!Files.exists(shardPath(shard))) {
+        shards.add(shard);
+      }
+    }
+    log.info("Process {}/{} : {} shards to compute", process, nbProcesses, shards.size());
+    final AtomicInteger remaining = new AtomicInteger(shards.size());
+    final long start = System.currentTimeMillis();
+    final ExecutorService exe = Executors.newFixedThreadPool(nbThreads);
+    final List<Future<?>> futures = new ArrayList<>();
+    for (final int shard : shards) {
+      futures.add(exe.submit(() -> {
+        generateShard(shard);
+        final int left = remaining.decrementAndGet();
+        final int done = shards.size() - left;
+        final long elapsed = System.currentTimeMillis() - start;
+        log.info("Wrote shard {}, remaining shards {}, time {} minutes", shard, left,
+            (int) (elapsed * left / (60 * 1000L * done)));
+        return null;
+      }));
+    }
+    exe.shutdown();
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (ExecutionException e) {
+      exe.shutdownNow();
+      throw new IOException("Shard computation failed", e.getCause());
+    }
+    exe.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+  }
+
+  /**
+   * Compute and write a shard unless it is already written
+   *
+   * @param shard the shard
+   * @throws IOException when writing failed
+   */
+  void generateShard(final int shard) throws IOException {
+    final Path path = shardPath(shard);
+    if (Files.exists(path)) {
+      return;
+    }
+    final int first = shard * shardSize;
+    final int end = Math.min(nbIndexes, first + shardSize);
+    final WaughIndexer threePlayersIndexer = new WaughIndexer(threePlayersGroupsSize);
+    final WaughIndexer holeCardsIndexer = new WaughIndexer(onePlayerGroupsSize);
+    final TwoPlusTwoEvaluator eval = new TwoPlusTwoEvaluator();
+    final Cards52SpecTranslator translateToEval =
+        new Cards52SpecTranslator(threePlayersIndexer.getCardsSpec(), eval.getCardsSpec());
+    final double[][][] equities = new double[Math.max(0, end - first)][][];
+    final int[][] holeCards = new int[3][2];
+    for (int index = first; index < end; index++) {
+      threePlayersIndexer.unindex(index, holeCards);
+      if (!ThreePlayersPreflopEquityTable.hasSortedHoleCards(holeCardsIndexer, holeCards)) {
+        continue;
+      }
+      translateToEval.translate(holeCards);
+      final double[][] handEquities = equities[index - first] = new double[4][3];
+      ThreePlayersPreflopEquityTable.computeEquities(eval, holeCards, handEquities);
+    }
+    IOUtils.writeAtomically(new Shard(equities), path);
+  }
+
+  /**
+   * Concatenate all shards into a {@link ThreePlayersPreflopEquityTable} file. The destination is
+   * written next to it, renamed, then its directory is synced.
+   *
+   * @param destination the table's file
+   * @throws IOException when reading the shards or writing the destination failed
+   */
+  public void merge(@NonNull final Path destination) throws IOException {
+    checkState(isComplete(), "Some shards are missing");
+    final Path tmp = destination.resolveSibling(destination.getFileName() + ".tmp");
+    try (final FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      for (int shard = 0; shard < nbShards; shard++) {
+        try (final FileChannel in = FileChannel.open(shardPath(shard), StandardOpenOption.READ)) {
+          final long size = in.size();
+          long position = 0;
+          while (position < size) {
+            position += in.transferTo(position, size - position, out);
+          }
+        }
+      }
+      out.force(true);
+    } catch (IOException e) {
+      Files.deleteIfExists(tmp);
+      throw e;
+    }
+    Files.move(tmp, destination, StandardCopyOption.ATOMIC_MOVE);
+    IOUtils.forceDirectory(destination.toAbsolutePath().getParent());
+  }
+
+  /**
+   * A shard's equities, with the table's format
+   */
+  private static class Shard implements Fillable {
+
+    private final double[][][] equities;
+
+    Shard(final double[][][] equities) {
+      this.equities = equities;
+    }
+
+    @Override
+    public void fill(final InputStream is) throws IOException {
+      final double[][][] equities = this.equities;
+      final DataInputStream dis = new DataInputStream(is);
+      for (int i = 0; i < equities.length; i++) {
+        if (dis.readByte() == nullArray) {
+          equities[i] = null;
+          continue;
+        }
+        final double[][] handEquities = equities[i] = new double[4][3];
+        IOUtils.fill(dis, handEquities);
+      }
+    }
+
+    @Override
+    public void write(final OutputStream os) throws IOException {
+      // Shards are written with one or a few bytes per call, buffer them
+      final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os, 1 << 16));
+      for (double[][] handEquities : equities) {
+        if (handEquities == null) {
+          dos.writeByte(nullArray);
+          continue;
+        }
+        dos.writeByte(filledArray);
+        IOUtils.write(dos, handEquities);
+      }
+      dos.flush();
+    }
+  }
+
+  public static void main(String[] args) {
+    checkArgument(
+        (args.length == 5 && args[0].equals("generate"))
+            || (args.length == 4 && args[0].equals("merge")),
+        "Usage : generate <directory> <nbShards> <process> <nbProcesses>"
+            + " | merge <directory> <nbShards> <destination>");
+    final ThreePlayersPreflopEquityGenerator generator =
+        new ThreePlayersPreflopEquityGenerator(Paths.get(args[1]), Integer.parseInt(args[2]));
+    try {
+      if (args[0].equals("generate")) {
+        final int nbProcesses = Integer.parseInt(args[4]);
+        generator.generate(Integer.parseInt(args[3]), nbProcesses,
+            Math.max(1, Runtime.getRuntime().availableProcessors() / nbProcesses));
+      } else {
+        final Path destination = Paths.get(args[3]);
+        checkArgument(!Files.exists(destination),
+            "File " + destination.toAbsolutePath().toString() + " already exists");
+        generator.merge(destination);
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      System.exit(-1);
+    }
+  }
+}
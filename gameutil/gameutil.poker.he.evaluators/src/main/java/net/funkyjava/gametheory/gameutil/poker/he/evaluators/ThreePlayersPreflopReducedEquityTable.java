@@ -4,13 +4,16 @@ import static com.google.common.base.Preconditions.checkArgument;
 
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Scanner;
 
 import lombok.AllArgsConstructor;
@@ -186,6 +189,7 @@ public class ThreePlayersPreflopReducedEquityTable implements Fillable {
         }
       }
     }
+    expanded = true;
   }
 
   private static final int[] getOrdered(final int i, final int j, final int k) {
@@ -223,36 +227,51 @@ public class ThreePlayersPreflopReducedEquityTable implements Fillable {
 
   @Override
   public void fill(InputStream is) throws IOException {
-    final double[][][][][] reducedEquities = this.reducedEquities;
-    final int nbHoleCards = this.nbHoleCards;
-    for (int i = 0; i < nbHoleCards; i++) {
-      final double[][][][] ei = reducedEquities[i];
-      for (int j = i; j < nbHoleCards; j++) {
-        final double[][][] eij = ei[j];
-        for (int k = j; k < nbHoleCards; k++) {
-          final double[][] eijk = eij[k] = new double[4][3];
-          IOUtils.fill(is, eijk);
-        }
-      }
-    }
+    IOUtils.fill(is, equitiesRows(true));
     computed = true;
   }
 
   @Override
   public void write(OutputStream os) throws IOException {
     checkArgument(computed, "Tables are not computed");
+    IOUtils.write(os, equitiesRows(false));
+  }
+
+  /**
+   * Get the reduced equities rows in serialization order : for each ordered hands triple, the 4
+   * rows of its 4x3 equities
+   */
+  private double[][] equitiesRows(final boolean create) {
     final double[][][][][] reducedEquities = this.reducedEquities;
     final int nbHoleCards = this.nbHoleCards;
+    final int nbTriples = nbHoleCards * (nbHoleCards + 1) * (nbHoleCards + 2) / 6;
+    final double[][] res = new double[4 * nbTriples][];
+    int index = 0;
     for (int i = 0; i < nbHoleCards; i++) {
       final double[][][][] ei = reducedEquities[i];
       for (int j = i; j < nbHoleCards; j++) {
         final double[][][] eij = ei[j];
         for (int k = j; k < nbHoleCards; k++) {
-          final double[][] eijk = eij[k];
-          IOUtils.write(os, eijk);
+          final double[][] eijk = create ? (eij[k] = new double[4][3]) : eij[k];
+          for (int l = 0; l < 4; l++) {
+            res[index++] = eijk[l];
+          }
         }
       }
     }
+    return res;
+  }
+
+  @Override
+  public void fill(ReadableByteChannel channel) throws IOException {
+    IOUtils.fill(channel, equitiesRows(true));
+    computed = true;
+  }
+
+  @Override
+  public void write(WritableByteChannel channel) throws IOException {
+    checkArgument(computed, "Tables are not computed");
+    IOUtils.write(channel, equitiesRows(false));
   }
 
   public void interactiveCheck() {
@@ -324,8 +343,9 @@ public class ThreePlayersPreflopReducedEquityTable implements Fillable {
     final ThreePlayersPreflopReducedEquityTable table = new ThreePlayersPreflopReducedEquityTable();
     table.compute(fullTables);
     log.info("Writing reduced equities");
-    try (final FileOutputStream fos = new FileOutputStream(destPath.toFile())) {
-      table.write(fos);
+    try (final FileChannel channel =
+        FileChannel.open(destPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      table.write(channel);
     } catch (Exception e) {
       e.printStackTrace();
       System.exit(-1);
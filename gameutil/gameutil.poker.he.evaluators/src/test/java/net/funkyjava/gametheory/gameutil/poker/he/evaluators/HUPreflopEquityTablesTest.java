@@ -1,5 +1,7 @@
 package net.funkyjava.gametheory.gameutil.poker.he.evaluators;
 
+import static org.junit.Assert.assertEquals;
+
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -8,11 +10,13 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Random;
 
 import org.junit.Test;
 
 import lombok.extern.slf4j.Slf4j;
 import net.funkyjava.gametheory.gameutil.cards.Cards52Strings;
+import net.funkyjava.gametheory.gameutil.poker.he.indexing.waugh.WaughIndexer;
 
 @Slf4j
 public class HUPreflopEquityTablesTest {
@@ -21,6 +25,8 @@ public class HUPreflopEquityTablesTest {
 
   private static final boolean testWrite = false;
   private static final boolean testRead = false;
+  private static final boolean testBoardMajor = false;
+  private static final int nbCheckedIndexes = 50;
 
   @Test
   public void testWrite() throws IOException, InterruptedException {
@@ -58,4 +64,34 @@ public class HUPreflopEquityTablesTest {
           reducedEquity);
     }
   }
+
+  /**
+   * Check that the board major computation gives the same equities as the enumeration of all boards
+   * for each index, on random indexes
+   *
+   * @throws InterruptedException unexpected interruption
+   */
+  @Test
+  public void testBoardMajor() throws InterruptedException {
+    if (!testBoardMajor) {
+      return;
+    }
+    final HUPreflopEquityTables tables = new HUPreflopEquityTables();
+    final long start = System.currentTimeMillis();
+    tables.computeBoardMajor();
+    log.info("Board major computation took {}s", (System.currentTimeMillis() - start) / 1000);
+    final double[] equity = tables.getEquity();
+    final WaughIndexer indexer = tables.getTwoPlayersIndexer();
+    final int[][] holeCards = new int[2][2];
+    final Random random = new Random(0);
+    for (int i = 0; i < nbCheckedIndexes; i++) {
+      final int index = random.nextInt(tables.getNbPreflopTwoPlayers());
+      indexer.unindex(index, holeCards);
+      final int reversedIndex = indexer.indexOf(new int[][] {holeCards[1], holeCards[0]});
+      // compute() sets the equity of the lowest index of both, then the other one
+      final double expected = index < reversedIndex ? tables.enumeratedEquity(index)
+          : 1 - tables.enumeratedEquity(reversedIndex);
+      assertEquals("Equity mismatch for index " + index, expected, equity[index], 0);
+    }
+  }
 }
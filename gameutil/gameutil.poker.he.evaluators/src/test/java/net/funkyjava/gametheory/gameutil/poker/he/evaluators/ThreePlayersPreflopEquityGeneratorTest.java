@@ -0,0 +1,128 @@
+package net.funkyjava.gametheory.gameutil.poker.he.evaluators;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import lombok.extern.slf4j.Slf4j;
+import net.funkyjava.gametheory.gameutil.poker.he.indexing.waugh.WaughIndexer;
+import net.funkyjava.gametheory.io.IOUtils;
+
+@Slf4j
+public class ThreePlayersPreflopEquityGeneratorTest {
+
+  private static final WaughIndexer threePlayersIndexer = new WaughIndexer(new int[] {2, 2, 2});
+  private static final WaughIndexer holeCardsIndexer = new WaughIndexer(new int[] {2});
+
+  private static int firstIndex(final boolean sortedHoleCards) {
+    final int[][] holeCards = new int[3][2];
+    for (int index = 0;; index++) {
+      threePlayersIndexer.unindex(index, holeCards);
+      if (ThreePlayersPreflopEquityTable.hasSortedHoleCards(holeCardsIndexer,
+          holeCards) == sortedHoleCards) {
+        return index;
+      }
+    }
+  }
+
+  private static void delete(final Path dir) throws IOException {
+    try (final DirectoryStream<Path> paths = Files.newDirectoryStream(dir)) {
+      for (Path path : paths) {
+        Files.delete(path);
+      }
+    }
+    Files.delete(dir);
+  }
+
+  /**
+   * Generate the shards of one index each, and check that written shards are skipped
+   *
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void testShardsResume() throws Exception {
+    final int nbIndexes = threePlayersIndexer.getIndexSize();
+    final Path dir = Files.createTempDirectory("3p-equity");
+    try {
+      final ThreePlayersPreflopEquityGenerator generator =
+          new ThreePlayersPreflopEquityGenerator(dir, nbIndexes);
+      final int index = firstIndex(true);
+      // This process only owns the index's shard
+      generator.generate(index, nbIndexes, 1);
+      final Path path = generator.shardPath(index);
+      assertTrue(Files.exists(path));
+      assertFalse(Files.exists(generator.shardPath(index + 1)));
+      assertFalse(generator.isComplete());
+      final DataInputStream dis =
+          new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(path)));
+      assertEquals(1, dis.readByte());
+      final double[][] equities = new double[4][3];
+      IOUtils.fill(dis, equities);
+      assertEquals(-1, dis.read());
+      log.info("Equities of index {} : {}", index, equities);
+      final double[] threePlayers =
+          equities[ThreePlayersPreflopEquityTable.heroVilain1Vilain2Index];
+      assertEquals(1, threePlayers[0] + threePlayers[1] + threePlayers[2], 1e-12);
+
+      // Written shards are not computed again
+      final byte[] marker = {42};
+      Files.write(path, marker);
+      generator.generate(index, nbIndexes, 1);
+      assertArrayEquals(marker, Files.readAllBytes(path));
+
+      // Indexes that are permutations of others are null
+      final int unsortedIndex = firstIndex(false);
+      generator.generateShard(unsortedIndex);
+      assertArrayEquals(new byte[] {0}, Files.readAllBytes(generator.shardPath(unsortedIndex)));
+    } finally {
+      delete(dir);
+    }
+  }
+
+  /**
+   * Check that merging requires all shards
+   *
+   * @throws IOException unexpected exception
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testMergeMissingShards() throws IOException {
+    final Path dir = Files.createTempDirectory("3p-equity");
+    try {
+      new ThreePlayersPreflopEquityGenerator(dir, 2).merge(dir.resolve("table.dat"));
+    } finally {
+      delete(dir);
+    }
+  }
+
+  /**
+   * Check that the table's file is the concatenation of the shards
+   *
+   * @throws IOException unexpected exception
+   */
+  @Test
+  public void testMerge() throws IOException {
+    final Path dir = Files.createTempDirectory("3p-equity");
+    try {
+      final ThreePlayersPreflopEquityGenerator generator =
+          new ThreePlayersPreflopEquityGenerator(dir, 2);
+      Files.write(generator.shardPath(0), new byte[] {1, 2});
+      Files.write(generator.shardPath(1), new byte[] {3});
+      assertTrue(generator.isComplete());
+      final Path table = dir.resolve("table.dat");
+      generator.merge(table);
+      assertArrayEquals(new byte[] {1, 2, 3}, Files.readAllBytes(table));
+    } finally {
+      delete(dir);
+    }
+  }
+}
@@ -3,10 +3,38 @@ package net.funkyjava.gametheory.io;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 
 public interface Fillable {
 
   public void fill(InputStream is) throws IOException;
 
   public void write(OutputStream os) throws IOException;
+
+  /**
+   * Fill from a channel. Must read exactly the bytes written by
+   * {@link #write(WritableByteChannel)}, which are the same as the ones written by
+   * {@link #write(OutputStream)}. Reads through {@link #fill(InputStream)} by default,
+   * implementations with large contents should read the channel directly.
+   *
+   * @param channel the source channel
+   * @throws IOException
+   */
+  public default void fill(ReadableByteChannel channel) throws IOException {
+    fill(Channels.newInputStream(channel));
+  }
+
+  /**
+   * Write to a channel. Must write the same bytes as {@link #write(OutputStream)}. Writes through
+   * {@link #write(OutputStream)} by default, implementations with large contents should write the
+   * channel directly.
+   *
+   * @param channel the destination channel
+   * @throws IOException
+   */
+  public default void write(WritableByteChannel channel) throws IOException {
+    write(Channels.newOutputStream(channel));
+  }
 }
@@ -2,56 +2,51 @@ package net.funkyjava.gametheory.io;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 
 public class IOUtils {
 
+  /**
+   * Maximum size in bytes of the staging buffers of bulk transfers
+   */
+  public static final int bufferSize = 1 << 16;
+
   private IOUtils() {}
 
   public static void fill(InputStream is, double[] dest) throws IOException {
-    final DataInputStream dis = new DataInputStream(is);
-    final int length = dest.length;
-    for (int i = 0; i < length; i++) {
-      dest[i] = dis.readDouble();
-    }
+    fillRows(is, new double[][] {dest});
   }
 
   public static void fill(InputStream is, double[][] dest) throws IOException {
-    final DataInputStream dis = new DataInputStream(is);
-    final int length = dest.length;
-    for (int i = 0; i < length; i++) {
-      final double[] destI = dest[i];
-      final int lengthI = destI.length;
-      for (int j = 0; j < lengthI; j++) {
-        destI[j] = dis.readDouble();
-      }
-    }
+    fillRows(is, dest);
   }
 
   public static void fill(InputStream is, double[][][] dest) throws IOException {
-    final int length = dest.length;
-    for (int i = 0; i < length; i++) {
-      final double[][] destI = dest[i];
-      fill(is, destI);
-    }
+    fillRows(is, rows(dest));
   }
 
   public static void fill(InputStream is, double[][][][] dest) throws IOException {
-    final int length = dest.length;
-    for (int i = 0; i < length; i++) {
-      final double[][][] destI = dest[i];
-      fill(is, destI);
-    }
+    fillRows(is, rows(dest));
   }
 
   public static void fill(InputStream is, double[][][][][] dest) throws IOException {
-    final int length = dest.length;
-    for (int i = 0; i < length; i++) {
-      final double[][][][] destI = dest[i];
-      fill(is, destI);
-    }
+    fillRows(is, rows(dest));
   }
 
   public static void fill(InputStream is, int[] dest) throws IOException {
@@ -105,47 +100,23 @@ public class IOUtils {
   }
 
   public static void write(OutputStream os, double[] src) throws IOException {
-    final DataOutputStream dos = new DataOutputStream(os);
-    final int length = src.length;
-    for (int i = 0; i < length; i++) {
-      dos.writeDouble(src[i]);
-    }
+    writeRows(os, new double[][] {src});
   }
 
   public static void write(OutputStream os, double[][] src) throws IOException {
-    final DataOutputStream dos = new DataOutputStream(os);
-    final int length = src.length;
-    for (int i = 0; i < length; i++) {
-      final double[] srcI = src[i];
-      final int lengthI = srcI.length;
-      for (int j = 0; j < lengthI; j++) {
-        dos.writeDouble(srcI[j]);
-      }
-    }
+    writeRows(os, src);
   }
 
   public static void write(OutputStream os, double[][][] src) throws IOException {
-    final int length = src.length;
-    for (int i = 0; i < length; i++) {
-      final double[][] srcI = src[i];
-      write(os, srcI);
-    }
+    writeRows(os, rows(src));
   }
 
   public static void write(OutputStream os, double[][][][] src) throws IOException {
-    final int length = src.length;
-    for (int i = 0; i < length; i++) {
-      final double[][][] srcI = src[i];
-      write(os, srcI);
-    }
+    writeRows(os, rows(src));
   }
 
   public static void write(OutputStream os, double[][][][][] src) throws IOException {
-    final int length = src.length;
-    for (int i = 0; i < length; i++) {
-      final double[][][][] srcI = src[i];
-      write(os, srcI);
-    }
+    writeRows(os, rows(src));
   }
 
   public static void write(OutputStream os, int[] src) throws IOException {
@@ -197,4 +168,417 @@ public class IOUtils {
       write(os, src[i]);
     }
   }
+
+  public static void fill(ReadableByteChannel channel, double[] dest) throws IOException {
+    fillRows(channel, new double[][] {dest});
+  }
+
+  public static void fill(ReadableByteChannel channel, double[][] dest) throws IOException {
+    fillRows(channel, dest);
+  }
+
+  public static void fill(ReadableByteChannel channel, double[][][] dest) throws IOException {
+    fillRows(channel, rows(dest));
+  }
+
+  public static void fill(ReadableByteChannel channel, double[][][][] dest) throws IOException {
+    fillRows(channel, rows(dest));
+  }
+
+  public static void fill(ReadableByteChannel channel, double[][][][][] dest)
+      throws IOException {
+    fillRows(channel, rows(dest));
+  }
+
+  public static void write(WritableByteChannel channel, double[] src) throws IOException {
+    writeRows(channel, new double[][] {src});
+  }
+
+  public static void write(WritableByteChannel channel, double[][] src) throws IOException {
+    writeRows(channel, src);
+  }
+
+  public static void write(WritableByteChannel channel, double[][][] src) throws IOException {
+    writeRows(channel, rows(src));
+  }
+
+  public static void write(WritableByteChannel channel, double[][][][] src) throws IOException {
+    writeRows(channel, rows(src));
+  }
+
+  public static void write(WritableByteChannel channel, double[][][][][] src)
+      throws IOException {
+    writeRows(channel, rows(src));
+  }
+
+  public static void fill(ReadableByteChannel channel, int[] dest) throws IOException {
+    fillRows(channel, new int[][] {dest});
+  }
+
+  public static void fill(ReadableByteChannel channel, int[][] dest) throws IOException {
+    fillRows(channel, dest);
+  }
+
+  public static void fill(ReadableByteChannel channel, int[][][] dest) throws IOException {
+    fillRows(channel, rows(dest));
+  }
+
+  public static void write(WritableByteChannel channel, int[] src) throws IOException {
+    writeRows(channel, new int[][] {src});
+  }
+
+  public static void write(WritableByteChannel channel, int[][] src) throws IOException {
+    writeRows(channel, src);
+  }
+
+  public static void write(WritableByteChannel channel, int[][][] src) throws IOException {
+    writeRows(channel, rows(src));
+  }
+
+  /**
+   * Bulk read doubles from a buffer with its byte order. The buffer's position is advanced by the
+   * number of bytes read.
+   * 
+   * @param src the source buffer
+   * @param dest the destination array
+   */
+  public static void fill(ByteBuffer src, double[] dest) {
+    src.asDoubleBuffer().get(dest);
+    src.position(src.position() + dest.length * Double.BYTES);
+  }
+
+  public static void fill(ByteBuffer src, double[][] dest) {
+    final int length = dest.length;
+    for (int i = 0; i < length; i++) {
+      fill(src, dest[i]);
+    }
+  }
+
+  /**
+   * Bulk write doubles to a buffer with its byte order. The buffer's position is advanced by the
+   * number of bytes written.
+   * 
+   * @param dest the destination buffer
+   * @param src the source array
+   */
+  public static void write(ByteBuffer dest, double[] src) {
+    dest.asDoubleBuffer().put(src);
+    dest.position(dest.position() + src.length * Double.BYTES);
+  }
+
+  public static void write(ByteBuffer dest, double[][] src) {
+    final int length = src.length;
+    for (int i = 0; i < length; i++) {
+      write(dest, src[i]);
+    }
+  }
+
+  /**
+   * Read from the channel until the buffer is full
+   * 
+   * @param channel the source channel
+   * @param buffer the destination buffer
+   * @throws EOFException when the end of the channel is reached first
+   * @throws IOException
+   */
+  public static void readFully(ReadableByteChannel channel, ByteBuffer buffer)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        throw new EOFException();
+      }
+    }
+  }
+
+  /**
+   * Write the buffer's remaining bytes to the channel
+   * 
+   * @param channel the destination channel
+   * @param buffer the source buffer
+   * @throws IOException
+   */
+  public static void writeFully(WritableByteChannel channel, ByteBuffer buffer)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private static void readFully(InputStream is, byte[] bytes, int length) throws IOException {
+    int read = 0;
+    while (read < length) {
+      final int n = is.read(bytes, read, length - read);
+      if (n < 0) {
+        throw new EOFException();
+      }
+      read += n;
+    }
+  }
+
+  private static long nbDoubles(final double[][] rows) {
+    long res = 0;
+    for (double[] row : rows) {
+      res += row.length;
+    }
+    return res;
+  }
+
+  private static int stagingSize(final double[][] rows) {
+    return (int) Math.min(nbDoubles(rows) * Double.BYTES, bufferSize);
+  }
+
+  private static long nbInts(final int[][] rows) {
+    long res = 0;
+    for (int[] row : rows) {
+      res += row.length;
+    }
+    return res;
+  }
+
+  private static int stagingSize(final int[][] rows) {
+    return (int) Math.min(nbInts(rows) * Integer.BYTES, bufferSize);
+  }
+
+  private static int[][] rows(final int[][][] arrays) {
+    final List<int[]> res = new ArrayList<>();
+    for (int[][] rows : arrays) {
+      for (int[] row : rows) {
+        res.add(row);
+      }
+    }
+    return res.toArray(new int[res.size()][]);
+  }
+
+  private static double[][] rows(final double[][][] arrays) {
+    final List<double[]> res = new ArrayList<>();
+    for (double[][] rows : arrays) {
+      for (double[] row : rows) {
+        res.add(row);
+      }
+    }
+    return res.toArray(new double[res.size()][]);
+  }
+
+  private static double[][] rows(final double[][][][] arrays) {
+    final List<double[]> res = new ArrayList<>();
+    for (double[][][] subArrays : arrays) {
+      for (double[] row : rows(subArrays)) {
+        res.add(row);
+      }
+    }
+    return res.toArray(new double[res.size()][]);
+  }
+
+  private static double[][] rows(final double[][][][][] arrays) {
+    final List<double[]> res = new ArrayList<>();
+    for (double[][][][] subArrays : arrays) {
+      for (double[] row : rows(subArrays)) {
+        res.add(row);
+      }
+    }
+    return res.toArray(new double[res.size()][]);
+  }
+
+  /**
+   * Read exactly the doubles of the rows, one staging buffer at a time
+   */
+  private static void fillRows(final InputStream is, final double[][] rows) throws IOException {
+    final byte[] bytes = new byte[stagingSize(rows)];
+    final DoubleBuffer doubles = ByteBuffer.wrap(bytes).asDoubleBuffer();
+    doubles.limit(0);
+    long remaining = nbDoubles(rows);
+    for (double[] row : rows) {
+      final int length = row.length;
+      for (int offset = 0; offset < length;) {
+        if (!doubles.hasRemaining()) {
+          final int n = (int) Math.min(remaining, doubles.capacity());
+          readFully(is, bytes, n * Double.BYTES);
+          doubles.clear();
+          doubles.limit(n);
+          remaining -= n;
+        }
+        final int n = Math.min(doubles.remaining(), length - offset);
+        doubles.get(row, offset, n);
+        offset += n;
+      }
+    }
+  }
+
+  private static void writeRows(final OutputStream os, final double[][] rows) throws IOException {
+    final byte[] bytes = new byte[stagingSize(rows)];
+    final DoubleBuffer doubles = ByteBuffer.wrap(bytes).asDoubleBuffer();
+    for (double[] row : rows) {
+      final int length = row.length;
+      for (int offset = 0; offset < length;) {
+        if (!doubles.hasRemaining()) {
+          os.write(bytes, 0, doubles.position() * Double.BYTES);
+          doubles.clear();
+        }
+        final int n = Math.min(doubles.remaining(), length - offset);
+        doubles.put(row, offset, n);
+        offset += n;
+      }
+    }
+    os.write(bytes, 0, doubles.position() * Double.BYTES);
+  }
+
+  /**
+   * Read exactly the doubles of the rows, so that the channel can be shared with following reads
+   */
+  private static void fillRows(final ReadableByteChannel channel, final double[][] rows)
+      throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(stagingSize(rows));
+    final DoubleBuffer doubles = buffer.asDoubleBuffer();
+    doubles.limit(0);
+    long remaining = nbDoubles(rows);
+    for (double[] row : rows) {
+      final int length = row.length;
+      for (int offset = 0; offset < length;) {
+        if (!doubles.hasRemaining()) {
+          final int n = (int) Math.min(remaining, doubles.capacity());
+          buffer.clear();
+          buffer.limit(n * Double.BYTES);
+          readFully(channel, buffer);
+          doubles.clear();
+          doubles.limit(n);
+          remaining -= n;
+        }
+        final int n = Math.min(doubles.remaining(), length - offset);
+        doubles.get(row, offset, n);
+        offset += n;
+      }
+    }
+  }
+
+  private static void writeRows(final WritableByteChannel channel, final double[][] rows)
+      throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(stagingSize(rows));
+    final DoubleBuffer doubles = buffer.asDoubleBuffer();
+    for (double[] row : rows) {
+      final int length = row.length;
+      for (int offset = 0; offset < length;) {
+        if (!doubles.hasRemaining()) {
+          flush(channel, buffer, doubles);
+        }
+        final int n = Math.min(doubles.remaining(), length - offset);
+        doubles.put(row, offset, n);
+        offset += n;
+      }
+    }
+    flush(channel, buffer, doubles);
+  }
+
+  private static void flush(final WritableByteChannel channel, final ByteBuffer buffer,
+      final DoubleBuffer doubles) throws IOException {
+    buffer.clear();
+    buffer.limit(doubles.position() * Double.BYTES);
+    writeFully(channel, buffer);
+    doubles.clear();
+  }
+
+  /**
+   * Read exactly the ints of the rows, so that the channel can be shared with following reads
+   */
+  private static void fillRows(final ReadableByteChannel channel, final int[][] rows)
+      throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(stagingSize(rows));
+    final IntBuffer ints = buffer.asIntBuffer();
+    ints.limit(0);
+    long remaining = nbInts(rows);
+    for (int[] row : rows) {
+      final int length = row.length;
+      for (int offset = 0; offset < length;) {
+        if (!ints.hasRemaining()) {
+          final int n = (int) Math.min(remaining, ints.capacity());
+          buffer.clear();
+          buffer.limit(n * Integer.BYTES);
+          readFully(channel, buffer);
+          ints.clear();
+          ints.limit(n);
+          remaining -= n;
+        }
+        final int n = Math.min(ints.remaining(), length - offset);
+        ints.get(row, offset, n);
+        offset += n;
+      }
+    }
+  }
+
+  private static void writeRows(final WritableByteChannel channel, final int[][] rows)
+      throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(stagingSize(rows));
+    final IntBuffer ints = buffer.asIntBuffer();
+    for (int[] row : rows) {
+      final int length = row.length;
+      for (int offset = 0; offset < length;) {
+        if (!ints.hasRemaining()) {
+          flush(channel, buffer, ints);
+        }
+        final int n = Math.min(ints.remaining(), length - offset);
+        ints.put(row, offset, n);
+        offset += n;
+      }
+    }
+    flush(channel, buffer, ints);
+  }
+
+  private static void flush(final WritableByteChannel channel, final ByteBuffer buffer,
+      final IntBuffer ints) throws IOException {
+    buffer.clear();
+    buffer.limit(ints.position() * Integer.BYTES);
+    writeFully(channel, buffer);
+    ints.clear();
+  }
+
+  /**
+   * Write a fillable to a new temporary file in the destination's directory, sync it to disk, rename
+   * it to the destination and sync the directory, so that the destination is either the previous
+   * file or the complete new one, even after a crash.
+   * 
+   * @param src the fillable to write
+   * @param path the destination path
+   * @throws IOException when writing or renaming fails, the destination is then left untouched
+   */
+  public static void writeAtomically(final Fillable src, final Path path) throws IOException {
+    final Path dir = path.toAbsolutePath().getParent();
+    final Path tmp = Files.createTempFile(dir, path.getFileName() + ".", ".tmp");
+    try {
+      try (final FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+        src.write(channel);
+        channel.force(true);
+      }
+      try {
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(tmp);
+      throw e;
+    }
+    forceDirectory(dir);
+  }
+
+  /**
+   * Sync a directory's entries to disk, so that a file created or renamed in it survives a crash.
+   * Does nothing on platforms where directories can't be opened.
+   * 
+   * @param dir the directory
+   * @throws IOException when the sync fails
+   */
+  public static void forceDirectory(final Path dir) throws IOException {
+    final FileChannel channel;
+    try {
+      channel = FileChannel.open(dir, StandardOpenOption.READ);
+    } catch (IOException e) {
+      // Some platforms, like Windows, can't open directories
+      return;
+    }
+    try {
+      channel.force(true);
+    } finally {
+      channel.close();
+    }
+  }
 }